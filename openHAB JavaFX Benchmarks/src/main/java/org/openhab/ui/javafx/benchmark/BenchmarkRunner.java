@@ -0,0 +1,38 @@
+package org.openhab.ui.javafx.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler enabled, so that the allocation rate
+ * is reported along with the throughput of each benchmark.
+ *
+ * Any standard JMH option can be given on the command line, e.g. a regular
+ * expression to select the benchmarks or -f 1 for a quicker run.
+ *
+ * @author Flavio Costa
+ */
+public class BenchmarkRunner {
+
+	/**
+	 * Runs the benchmarks.
+	 *
+	 * @param args
+	 *            JMH command line options.
+	 * @throws CommandLineOptionException
+	 *             If the options are not valid.
+	 * @throws RunnerException
+	 *             If the benchmarks could not be run.
+	 */
+	public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+		Options options = new OptionsBuilder().parent(new CommandLineOptions(args)).addProfiler(GCProfiler.class)
+				// the benchmarks never start the JavaFX toolkit
+				.jvmArgsAppend("-Djava.awt.headless=true").build();
+		new Runner(options).run();
+	}
+}
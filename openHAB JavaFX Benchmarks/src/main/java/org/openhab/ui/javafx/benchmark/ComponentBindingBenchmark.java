@@ -0,0 +1,219 @@
+package org.openhab.ui.javafx.benchmark;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import org.openhab.ui.javafx.model.AbstractComponent;
+import org.openhab.ui.javafx.model.Component;
+import org.openhab.ui.javafx.model.ComponentType;
+import org.openhab.ui.javafx.model.container.Container;
+import org.openhab.ui.javafx.model.rendering.ComponentDeserializer;
+import org.openhab.ui.javafx.model.rendering.ComponentTypeDeserializer;
+import org.openhab.ui.javafx.model.rendering.SitemapGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonDeserializationContext;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+/**
+ * Deserialization of JSON trees with {@link ComponentDeserializer}, which
+ * resolves the reflective metadata of each component class once, compared
+ * with the previous implementation, which walked the class hierarchy, made the
+ * fields accessible and looked up the constructor for every object.
+ *
+ * The sitemaps are created by {@link SitemapGenerator}, with 10 widgets per
+ * frame.
+ *
+ * @author Flavio Costa
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ComponentBindingBenchmark {
+
+	/**
+	 * Number of frames in the sitemap.
+	 */
+	@Param({ "10", "100", "1000" })
+	private int frames;
+
+	/**
+	 * Sitemap parsed as a JSON tree.
+	 */
+	private JsonElement tree;
+
+	/**
+	 * Deserializes with the bindings resolved once per class.
+	 */
+	private Gson cached;
+
+	/**
+	 * Deserializes resolving the reflective metadata for every object.
+	 */
+	private Gson uncached;
+
+	/**
+	 * Generates the sitemap and creates the deserializers.
+	 */
+	@Setup
+	public void setUp() {
+		SitemapGenerator generator = new SitemapGenerator();
+		generator.setFrames(frames);
+		// a single document, as pages are deserialized separately
+		generator.setGroupDepth(0);
+		tree = new JsonParser().parse(generator.generate().values().iterator().next());
+
+		cached = create(new ComponentDeserializer());
+		uncached = create(new UncachedComponentDeserializer());
+	}
+
+	/**
+	 * Deserializes the tree with {@link ComponentDeserializer}.
+	 *
+	 * @return Sitemap component.
+	 */
+	@Benchmark
+	public Component<?> cachedBindings() {
+		return cached.fromJson(tree, Component.class);
+	}
+
+	/**
+	 * Deserializes the tree as it was done before the bindings were cached.
+	 *
+	 * @return Sitemap component.
+	 */
+	@Benchmark
+	public Component<?> uncachedReflection() {
+		return uncached.fromJson(tree, Component.class);
+	}
+
+	/**
+	 * Creates a Gson instance deserializing components with a given
+	 * deserializer.
+	 *
+	 * @param deserializer
+	 *            Component deserializer.
+	 * @return Gson instance.
+	 */
+	private static Gson create(JsonDeserializer<Component<?>> deserializer) {
+		return new GsonBuilder().registerTypeAdapter(Component.class, deserializer)
+				.registerTypeAdapter(Container.class, deserializer)
+				.registerTypeAdapter(ComponentType.class, new ComponentTypeDeserializer()).create();
+	}
+
+	/**
+	 * Component deserializer as it was before {@link ComponentDeserializer}
+	 * cached the reflective metadata of each class.
+	 */
+	private static class UncachedComponentDeserializer implements JsonDeserializer<Component<?>> {
+
+		@Override
+		public Component<?> deserialize(JsonElement element, Type typeOfT, JsonDeserializationContext context)
+				throws JsonParseException {
+
+			JsonObject json = element.getAsJsonObject();
+			ComponentType componentType = context.deserialize(json.get("type"), ComponentType.class);
+			AbstractComponent<?> component = getComponentInstance(componentType);
+
+			try {
+				for (Field field : combineFields(component.getClass())) {
+					JsonElement member = json.get(field.getName());
+					if (member != null) {
+						Object value;
+						if (member.isJsonPrimitive() || member.isJsonObject()) {
+							value = context.deserialize(member, getFieldClass(component, field));
+						} else if (member.isJsonArray()) {
+							value = StreamSupport.stream(member.getAsJsonArray().spliterator(), false)
+									.map(c -> context.deserialize(c, Component.class)).collect(Collectors.toList());
+						} else {
+							throw new JsonParseException("Unsupported Json element type: " + member.getClass());
+						}
+						field.setAccessible(true);
+						field.set(component, value);
+					}
+				}
+			} catch (SecurityException | IllegalArgumentException | IllegalAccessException e) {
+				throw new JsonParseException(e);
+			}
+			return component;
+		}
+
+		/**
+		 * Determines the type of a field, assuming a generic field has the first
+		 * type argument of the generic superclass.
+		 *
+		 * @param component
+		 *            Component instance being deserialized.
+		 * @param field
+		 *            Field reference.
+		 * @return Inferred field type.
+		 */
+		private Type getFieldClass(Component<?> component, Field field) {
+			if (field.getGenericType() instanceof TypeVariable) {
+				ParameterizedType superClassType = (ParameterizedType) component.getClass().getGenericSuperclass();
+				return superClassType.getActualTypeArguments()[0];
+			}
+			return field.getType();
+		}
+
+		/**
+		 * Retrieves the fields for a class and all its superclasses.
+		 *
+		 * @param objectClass
+		 *            Class reference.
+		 * @return All fields going up in the class hierarchy.
+		 */
+		private List<Field> combineFields(Class<?> objectClass) {
+			List<Field> combinedFields = new ArrayList<>(Arrays.asList(objectClass.getDeclaredFields()));
+			Class<?> superClass = objectClass.getSuperclass();
+			if (superClass != Object.class) {
+				combinedFields.addAll(combineFields(superClass));
+			}
+			return combinedFields;
+		}
+
+		/**
+		 * Creates a component instance for a type.
+		 *
+		 * @param componentType
+		 *            Type for the component.
+		 * @return Created object.
+		 */
+		private AbstractComponent<?> getComponentInstance(ComponentType componentType) {
+			try {
+				return (AbstractComponent<?>) componentType.getImplementingClass().getConstructor().newInstance();
+			} catch (InstantiationException | IllegalAccessException | IllegalArgumentException
+					| InvocationTargetException | NoSuchMethodException | SecurityException e) {
+				throw new JsonParseException(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package org.openhab.ui.javafx.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openhab.ui.javafx.model.Component;
+import org.openhab.ui.javafx.model.ComponentType;
+import org.openhab.ui.javafx.model.container.Container;
+import org.openhab.ui.javafx.model.rendering.ComponentDeserializer;
+import org.openhab.ui.javafx.model.rendering.ComponentTypeAdapter;
+import org.openhab.ui.javafx.model.rendering.ComponentTypeDeserializer;
+import org.openhab.ui.javafx.model.rendering.SitemapGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+
+/**
+ * Deserialization of sitemaps of increasing size, both from a JSON tree with
+ * {@link ComponentDeserializer} and from a token stream with
+ * {@link ComponentTypeAdapter}.
+ *
+ * The sitemaps are created by {@link SitemapGenerator}, with 10 widgets per
+ * frame.
+ *
+ * @author Flavio Costa
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ComponentDeserializerBenchmark {
+
+	/**
+	 * Number of frames in the sitemap.
+	 */
+	@Param({ "10", "100", "1000" })
+	private int frames;
+
+	/**
+	 * Sitemap document.
+	 */
+	private String json;
+
+	/**
+	 * Sitemap parsed as a JSON tree.
+	 */
+	private JsonElement tree;
+
+	/**
+	 * Deserializes JSON trees with {@link ComponentDeserializer}.
+	 */
+	private Gson gson;
+
+	/**
+	 * Reads components from a token stream.
+	 */
+	private ComponentTypeAdapter adapter;
+
+	/**
+	 * Generates the sitemap and creates the deserializers.
+	 */
+	@Setup
+	public void setUp() {
+		SitemapGenerator generator = new SitemapGenerator();
+		generator.setFrames(frames);
+		// a single document, as pages are deserialized separately
+		generator.setGroupDepth(0);
+		json = generator.generate().values().iterator().next();
+		tree = new JsonParser().parse(json);
+
+		ComponentDeserializer deserializer = new ComponentDeserializer();
+		gson = new GsonBuilder().registerTypeAdapter(Component.class, deserializer)
+				.registerTypeAdapter(Container.class, deserializer)
+				.registerTypeAdapter(ComponentType.class, new ComponentTypeDeserializer()).create();
+		adapter = new ComponentTypeAdapter(
+				new GsonBuilder().registerTypeAdapter(ComponentType.class, new ComponentTypeDeserializer()).create());
+	}
+
+	/**
+	 * Deserializes the components of a JSON tree already parsed.
+	 *
+	 * @return Sitemap component.
+	 */
+	@Benchmark
+	public Component<?> deserializeTree() {
+		return gson.fromJson(tree, Component.class);
+	}
+
+	/**
+	 * Parses the document into a JSON tree and deserializes it, as the rendering
+	 * models were originally read.
+	 *
+	 * @return Sitemap component.
+	 */
+	@Benchmark
+	public Component<?> parseAndDeserializeTree() {
+		return gson.fromJson(json, Component.class);
+	}
+
+	/**
+	 * Reads the components directly from the document tokens.
+	 *
+	 * @return Sitemap component.
+	 * @throws IOException
+	 *             Not expected, the document is in memory.
+	 */
+	@Benchmark
+	public Component<?> readStream() throws IOException {
+		return adapter.read(new JsonReader(new StringReader(json)));
+	}
+}
@@ -0,0 +1,139 @@
+package org.openhab.ui.javafx.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import org.openhab.ui.javafx.view.iconset.IconImageCache;
+import org.openhab.ui.javafx.view.iconset.IconSchemeHandler;
+import org.openhab.ui.javafx.view.iconset.SvgRasterizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javafx.scene.image.Image;
+
+/**
+ * Cost of displaying an icon at a given size in pixels, from its PNG file and
+ * from its SVG file, both the first time (decoding or rasterizing the icon)
+ * and once it is cached. PNG icons are scaled up beyond their 24 pixels,
+ * while SVG icons are rendered at the exact size.
+ *
+ * @author Flavio Costa
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class IconRasterBenchmark {
+
+	/**
+	 * Icon URI.
+	 */
+	@Param({ "icon:light#95", "icon:temperature", "icon:cistern#10" })
+	private String icon;
+
+	/**
+	 * Size of the image, in pixels: 24 at scale 1, 2 and 3.
+	 */
+	@Param({ "24", "48", "72" })
+	private int size;
+
+	/**
+	 * Handler whose caches are measured.
+	 */
+	private IconSchemeHandler handler;
+
+	/**
+	 * Renders the SVG icons.
+	 */
+	private final SvgRasterizer rasterizer = new SvgRasterizer();
+
+	/**
+	 * Icon URI, already parsed.
+	 */
+	private URI iconURI;
+
+	/**
+	 * PNG icon resource.
+	 */
+	private URL png;
+
+	/**
+	 * SVG icon resource.
+	 */
+	private URL svg;
+
+	/**
+	 * Resolves the icon and fills the caches.
+	 */
+	@Setup
+	public void setUp() {
+		handler = new IconSchemeHandler();
+		iconURI = URI.create(icon);
+		png = handler.resolve(iconURI).get();
+		svg = handler.resolveVector(iconURI).get();
+		handler.getImageCache().get(iconURI, size);
+		handler.getVectorCache().get(iconURI, size);
+	}
+
+	/**
+	 * Decodes the PNG icon, as the first time it is displayed.
+	 *
+	 * @return Image decoded.
+	 * @throws IOException
+	 *             If the icon could not be read.
+	 */
+	@Benchmark
+	public Image decodePng() throws IOException {
+		try (InputStream is = png.openStream()) {
+			return IconImageCache.RASTER.decode(is, size);
+		}
+	}
+
+	/**
+	 * Rasterizes the SVG icon, as the first time it is displayed.
+	 *
+	 * @return Image rendered.
+	 * @throws IOException
+	 *             If the icon could not be read.
+	 */
+	@Benchmark
+	public Image rasterizeSvg() throws IOException {
+		try (InputStream is = svg.openStream()) {
+			return rasterizer.rasterize(is, size);
+		}
+	}
+
+	/**
+	 * Returns the PNG image already cached.
+	 *
+	 * @return Image cached.
+	 */
+	@Benchmark
+	public Image cachedPng() {
+		return handler.getImageCache().get(iconURI, size);
+	}
+
+	/**
+	 * Returns the SVG image already cached.
+	 *
+	 * @return Image cached.
+	 */
+	@Benchmark
+	public Image cachedSvg() {
+		return handler.getVectorCache().get(iconURI, size);
+	}
+}
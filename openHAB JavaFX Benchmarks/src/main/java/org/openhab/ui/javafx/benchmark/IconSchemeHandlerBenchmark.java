@@ -0,0 +1,164 @@
+package org.openhab.ui.javafx.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openhab.ui.javafx.view.iconset.IconPack;
+import org.openhab.ui.javafx.view.iconset.IconPackCompiler;
+import org.openhab.ui.javafx.view.iconset.IconSchemeHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Icon lookup with {@link IconSchemeHandler}, for icons without a state, with a
+ * state that has its own icon, with a numeric state mapped to a level icon,
+ * and with a state that falls back to the category icon. Icons are read either
+ * from the classpath resources or from an {@link IconPack} mapped into memory,
+ * which is compiled from the classpath resources when the benchmark starts.
+ *
+ * @author Flavio Costa
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class IconSchemeHandlerBenchmark {
+
+	/**
+	 * Icon URI.
+	 */
+	@Param({ "icon:light", "icon:light#ON", "icon:temperature#21.3", "icon:light#95", "icon:material/arrow-back" })
+	private String icon;
+
+	/**
+	 * Where the icon files are read from.
+	 */
+	@Param({ "classpath", "pack" })
+	private String source;
+
+	/**
+	 * Handler being measured.
+	 */
+	private IconSchemeHandler handler;
+
+	/**
+	 * Icon URI, already parsed.
+	 */
+	private URI iconURI;
+
+	/**
+	 * Creates the handler, with the icon pack if needed.
+	 *
+	 * @throws IOException
+	 *             If the icon pack could not be compiled or mapped.
+	 * @throws URISyntaxException
+	 *             If the icon sets could not be located.
+	 */
+	@Setup
+	public void setUp() throws IOException, URISyntaxException {
+		handler = new IconSchemeHandler();
+		iconURI = URI.create(icon);
+		if ("pack".equals(source)) {
+			handler.setPack(new IconPack(compilePack()));
+			handler.setClasspathFallback(false);
+		}
+	}
+
+	/**
+	 * Compiles the icon sets on the classpath into a temporary icon pack.
+	 *
+	 * @return Icon pack file.
+	 * @throws IOException
+	 *             If the icon pack could not be compiled.
+	 * @throws URISyntaxException
+	 *             If the icon sets could not be located.
+	 */
+	private static Path compilePack() throws IOException, URISyntaxException {
+		Path pack = Files.createTempFile("icons", ".pack");
+		pack.toFile().deleteOnExit();
+		URI iconSets = IconPack.class.getResource("").toURI();
+		try (OutputStream os = Files.newOutputStream(pack)) {
+			if ("jar".equals(iconSets.getScheme())) {
+				try (FileSystem jar = FileSystems.newFileSystem(iconSets, Collections.emptyMap())) {
+					IconPackCompiler.compile(jar.provider().getPath(iconSets), os);
+				}
+			} else {
+				IconPackCompiler.compile(Paths.get(iconSets), os);
+			}
+		}
+		return pack;
+	}
+
+	/**
+	 * Looks up the icon, closing the stream without reading it.
+	 *
+	 * @return Whether the icon was found.
+	 * @throws IOException
+	 *             If the stream could not be closed.
+	 */
+	@Benchmark
+	public boolean handle() throws IOException {
+		Optional<InputStream> stream = handler.handle(iconURI);
+		if (stream.isPresent()) {
+			stream.get().close();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Looks up the icon and reads all its contents, as done to decode it.
+	 *
+	 * @return Number of bytes read.
+	 * @throws IOException
+	 *             If the icon could not be read.
+	 */
+	@Benchmark
+	public int read() throws IOException {
+		Optional<InputStream> stream = handler.handle(iconURI);
+		if (!stream.isPresent()) {
+			return -1;
+		}
+		int count = 0;
+		byte[] buffer = new byte[8192];
+		try (InputStream is = stream.get()) {
+			for (int read; (read = is.read(buffer)) >= 0;) {
+				count += read;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Resolves the icon to its resource, without opening it.
+	 *
+	 * @return Icon resource, if found.
+	 */
+	@Benchmark
+	public Optional<URL> resolve() {
+		return handler.resolve(iconURI);
+	}
+}
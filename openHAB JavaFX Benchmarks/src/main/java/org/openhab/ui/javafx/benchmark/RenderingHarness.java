@@ -0,0 +1,512 @@
+package org.openhab.ui.javafx.benchmark;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.openhab.ui.javafx.SitemapApplication;
+import org.openhab.ui.javafx.SnackbarHandler;
+import org.openhab.ui.javafx.model.container.Container;
+import org.openhab.ui.javafx.model.rendering.RenderingModelProvider;
+import org.openhab.ui.javafx.model.rendering.SitemapGenerator;
+import org.openhab.ui.javafx.navigation.NavigationHistory;
+import org.openhab.ui.javafx.navigation.SitemapSchemeHandler;
+import org.openhab.ui.javafx.scheme.SchemeHandler;
+import org.openhab.ui.javafx.view.ContainerListCell;
+import org.openhab.ui.javafx.view.SitemapListView;
+import org.openhab.ui.javafx.view.iconset.IconAtlas;
+import org.openhab.ui.javafx.view.iconset.IconSchemeHandler;
+
+import com.sun.javafx.tk.TKPulseListener;
+import com.sun.javafx.tk.Toolkit;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.BorderPane;
+import javafx.stage.Stage;
+import javafx.util.Callback;
+
+/**
+ * Measures how fast sitemaps are rendered by {@link SitemapListView} and
+ * {@link ContainerListCell}, without a physical display.
+ *
+ * A sitemap is created by {@link SitemapGenerator} and displayed in a window
+ * of the same size as the application. The list is then scrolled to the end,
+ * a few rows per pulse, and the harness navigates into the pages of the
+ * sitemap and back. For each phase it reports the pulse durations, the cells
+ * created, the calls to {@link ContainerListCell#updateItem} per second and
+ * the bytes allocated by the application thread per row scrolled. It also
+ * reports how many distinct images the icons displayed were drawn from, as
+ * each one is a separate texture for the hardware pipelines: at most in a
+ * single pulse, and in total over the phase, which approximates the texture
+ * uploads needed.
+ *
+ * Pulse durations cover the work done on the application thread (animation,
+ * CSS, layout and synchronization of the scene graph), from the start of the
+ * pulse until the scenes are processed; the rendering itself happens on
+ * another thread and is not included. They are measured with the toolkit's
+ * internal pulse listeners, as there is no public API for that in JavaFX 8.
+ *
+ * Unless another platform is selected with system properties, the harness
+ * runs headless with Monocle and the software pipeline. Parameters, all
+ * optional: --frames=&lt;n&gt;, --widgets=&lt;widgets per frame&gt;,
+ * --depth=&lt;group depth&gt;, --step=&lt;rows scrolled per pulse&gt;,
+ * --navigations=&lt;n&gt;, --atlas=false to display icons without the
+ * {@link IconAtlas}, --scale=&lt;output scale&gt; to pick the icon size.
+ *
+ * @author Flavio Costa
+ */
+public class RenderingHarness extends Application {
+
+	/**
+	 * Used for logging activities of this class.
+	 */
+	private static final Logger logger = Logger.getLogger(RenderingHarness.class.getPackage().getName());
+
+	/**
+	 * System properties selecting the headless platform, set unless defined
+	 * already.
+	 */
+	private static final String[][] HEADLESS_PROPERTIES = { { "glass.platform", "Monocle" },
+			{ "monocle.platform", "Headless" }, { "prism.order", "sw" }, { "prism.text", "t2k" },
+			{ "java.awt.headless", "true" } };
+
+	/**
+	 * Maximum time to wait for a sitemap or page to be displayed, in
+	 * nanoseconds.
+	 */
+	private static final long LOAD_TIMEOUT = TimeUnit.MINUTES.toNanos(1);
+
+	/**
+	 * List being measured.
+	 */
+	private SitemapListView listView;
+
+	/**
+	 * Navigation history of the list.
+	 */
+	private NavigationHistory navigation;
+
+	/**
+	 * All cells created by the list.
+	 */
+	private final List<ContainerListCell> cells = new ArrayList<>();
+
+	/**
+	 * Handles icon URIs, reporting on the decoded images cached.
+	 */
+	private final IconSchemeHandler iconHandler = new IconSchemeHandler();
+
+	/**
+	 * URIs of the pages linked from the sitemap.
+	 */
+	private List<URI> pages;
+
+	/**
+	 * Rows scrolled per pulse.
+	 */
+	private int step;
+
+	/**
+	 * Number of navigations into a page or back.
+	 */
+	private int navigations;
+
+	/**
+	 * Description of the sitemap generated.
+	 */
+	private String sitemapDescription;
+
+	/**
+	 * Runs the harness.
+	 *
+	 * @param args
+	 *            Parameters, see the class description.
+	 */
+	public static void main(String[] args) {
+		for (String[] property : HEADLESS_PROPERTIES) {
+			if (System.getProperty(property[0]) == null) {
+				System.setProperty(property[0], property[1]);
+			}
+		}
+		launch(args);
+	}
+
+	@Override
+	public void start(Stage stage) throws IOException {
+		Map<String, String> named = getParameters().getNamed();
+		step = Integer.parseInt(named.getOrDefault("step", "3"));
+		navigations = Integer.parseInt(named.getOrDefault("navigations", "20"));
+		iconHandler.setAtlasEnabled(Boolean.parseBoolean(named.getOrDefault("atlas", "true")));
+		iconHandler.setOutputScale(Double.parseDouble(named.getOrDefault("scale", "1")));
+
+		SitemapGenerator generator = new SitemapGenerator();
+		generator.setFrames(Integer.parseInt(named.getOrDefault("frames", "100")));
+		generator.setWidgetsPerFrame(Integer.parseInt(named.getOrDefault("widgets", "10")));
+		generator.setGroupDepth(Integer.parseInt(named.getOrDefault("depth", "1")));
+		Path directory = Files.createTempDirectory("sitemaps");
+		generator.write(directory);
+		sitemapDescription = String.format("%d widgets in %d pages", generator.getWidgetCount(),
+				generator.getPageCount() + 1);
+
+		// pages linked directly from the sitemap
+		URI sitemap = URI.create("sitemap://generated/");
+		try (Stream<Path> files = Files.list(directory.resolve("generated"))) {
+			pages = files.map(f -> f.getFileName().toString()).filter(f -> f.endsWith(".json")).sorted()
+					.map(f -> sitemap.resolve(f.substring(0, f.length() - ".json".length()) + '/'))
+					.collect(Collectors.toList());
+		} catch (IOException e) {
+			pages = new ArrayList<>();
+		}
+
+		// same setup as the application
+		BorderPane borderPane = new BorderPane();
+		listView = new SitemapListView();
+		Callback<ListView<Container<?, ?>>, ListCell<Container<?, ?>>> cellFactory = listView.getCellFactory();
+		listView.setCellFactory(view -> {
+			ListCell<Container<?, ?>> cell = cellFactory.call(view);
+			cells.add((ContainerListCell) cell);
+			return cell;
+		});
+		SchemeHandler.register(iconHandler);
+		SchemeHandler.register(new SnackbarHandler(borderPane));
+		SitemapSchemeHandler sitemapHandler = new SitemapSchemeHandler(listView,
+				RenderingModelProvider.get(directory.toUri().toString()));
+		SchemeHandler.register(sitemapHandler);
+		navigation = sitemapHandler.getNavigation();
+
+		borderPane.setCenter(listView);
+		Scene scene = new Scene(borderPane, 400, 600);
+		scene.getStylesheets().add(SitemapApplication.class.getResource("config/default.css").toExternalForm());
+		listView.getStyleCompiler().addTo(scene.getStylesheets());
+		stage.setScene(scene);
+		stage.show();
+
+		PulseDriver driver = new PulseDriver();
+		Toolkit.getToolkit().addPostSceneTkPulseListener(driver);
+		driver.start();
+		navigation.navigateTo(sitemap);
+	}
+
+	/**
+	 * Returns the total number of times the items of the cells were updated.
+	 *
+	 * @return Number of updates.
+	 */
+	private long getUpdateCount() {
+		return cells.stream().mapToLong(ContainerListCell::getUpdateCount).sum();
+	}
+
+	/**
+	 * Returns the number of bytes allocated so far by the current thread.
+	 *
+	 * @return Number of bytes, or -1 if not supported by the JVM.
+	 */
+	private static long getAllocatedBytes() {
+		java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+
+	/**
+	 * Describes the distribution of some durations.
+	 *
+	 * @param times
+	 *            Durations, in nanoseconds.
+	 * @return Average, median, 95th percentile and maximum, in milliseconds.
+	 */
+	private static String describe(List<Long> times) {
+		if (times.isEmpty()) {
+			return "none measured";
+		}
+		long[] sorted = times.stream().mapToLong(Long::longValue).toArray();
+		Arrays.sort(sorted);
+		return String.format("avg %.2f ms, p50 %.2f ms, p95 %.2f ms, max %.2f ms",
+				Arrays.stream(sorted).average().getAsDouble() / 1e6, sorted[sorted.length / 2] / 1e6,
+				sorted[(int) (sorted.length * 0.95)] / 1e6, sorted[sorted.length - 1] / 1e6);
+	}
+
+	/**
+	 * Drives the harness one step per pulse, and measures each pulse: it starts
+	 * with the animation timers and ends once the scenes are processed.
+	 */
+	private class PulseDriver extends AnimationTimer implements TKPulseListener {
+
+		/**
+		 * Measurements of the phase in progress.
+		 */
+		private PhaseStats phase;
+
+		/**
+		 * Report of the phases completed.
+		 */
+		private final StringBuilder report = new StringBuilder();
+
+		/**
+		 * Start of the current pulse, in nanoseconds, or 0 if not measured.
+		 */
+		private long pulseStart;
+
+		/**
+		 * Time when the current load started, in nanoseconds.
+		 */
+		private long loadStart = System.nanoTime();
+
+		/**
+		 * Items displayed before the current load started.
+		 */
+		private ObservableList<Container<?, ?>> previousItems;
+
+		/**
+		 * Set when the items loaded are being laid out in the current pulse.
+		 */
+		private boolean loaded;
+
+		/**
+		 * Next row to be scrolled to.
+		 */
+		private int row;
+
+		/**
+		 * Navigations done so far.
+		 */
+		private int navigated;
+
+		/**
+		 * Whether a navigation is in progress.
+		 */
+		private boolean navigating;
+
+		/**
+		 * Duration of each navigation, in nanoseconds.
+		 */
+		private final List<Long> navigationTimes = new ArrayList<>();
+
+		@Override
+		public void handle(long now) {
+			pulseStart = System.nanoTime();
+
+			if (phase == null) {
+				// waiting for the sitemap
+				if (isLoaded()) {
+					report.append(String.format("%n  first page: %d rows, displayed in %.1f ms",
+							listView.getItems().size(), (pulseStart - loadStart) / 1e6));
+					phase = new PhaseStats("scroll");
+				}
+			} else if (phase.name.equals("scroll")) {
+				if (row < listView.getItems().size()) {
+					listView.scrollTo(row);
+					row += step;
+				} else {
+					report.append(phase.end(row));
+					phase = new PhaseStats("navigation");
+				}
+			} else if (navigating) {
+				if (isLoaded()) {
+					loaded = true;
+					navigating = false;
+				}
+			} else if (navigated < navigations && !pages.isEmpty()) {
+				previousItems = listView.getItems();
+				loadStart = pulseStart;
+				navigating = true;
+				if (navigated++ % 2 == 0) {
+					navigation.navigateTo(pages.get(navigated / 2 % pages.size()));
+				} else {
+					navigation.back();
+				}
+			} else {
+				report.append(phase.end(0));
+				report.append(String.format("%n  navigations: %d, %s", navigationTimes.size(),
+						describe(navigationTimes)));
+				report.append(String.format("%n  icons: %s", iconHandler.getImageCache()));
+				report.append(String.format("%n  svg icons: %s", iconHandler.getVectorCache()));
+				report.append(String.format("%n  atlas: %d icons, %d images loaded", iconHandler.getAtlas().size(),
+						iconHandler.getAtlas().getPageCount()));
+				finish();
+				return;
+			}
+
+			if (pulseStart - loadStart > LOAD_TIMEOUT && (phase == null || navigating)) {
+				logger.severe("Timed out waiting for the sitemap to be displayed");
+				finish();
+			}
+		}
+
+		@Override
+		public void pulse() {
+			if (pulseStart == 0) {
+				return;
+			}
+			long end = System.nanoTime();
+			if (phase != null) {
+				phase.pulseTimes.add(end - pulseStart);
+				phase.countImages();
+			}
+			if (loaded) {
+				navigationTimes.add(end - loadStart);
+				loaded = false;
+			}
+			pulseStart = 0;
+		}
+
+		/**
+		 * Determines whether new items were displayed since the last load started.
+		 *
+		 * @return True if the items changed and are not empty.
+		 */
+		private boolean isLoaded() {
+			ObservableList<Container<?, ?>> items = listView.getItems();
+			return items != previousItems && items != null && !items.isEmpty();
+		}
+
+		/**
+		 * Stops the harness and logs the report.
+		 */
+		private void finish() {
+			stop();
+			Toolkit.getToolkit().removePostSceneTkPulseListener(this);
+			logger.info(String.format("Rendering harness, %s:%s", sitemapDescription, report));
+			Platform.exit();
+		}
+	}
+
+	/**
+	 * Measurements of a phase of the harness.
+	 */
+	private class PhaseStats {
+
+		/**
+		 * Name of the phase.
+		 */
+		private final String name;
+
+		/**
+		 * Duration of each pulse, in nanoseconds.
+		 */
+		private final List<Long> pulseTimes = new ArrayList<>();
+
+		/**
+		 * Time when the phase started, in nanoseconds.
+		 */
+		private final long start = System.nanoTime();
+
+		/**
+		 * Bytes allocated by the application thread when the phase started.
+		 */
+		private final long startAllocated = getAllocatedBytes();
+
+		/**
+		 * Cells created when the phase started.
+		 */
+		private final int startCells = cells.size();
+
+		/**
+		 * Cell updates when the phase started.
+		 */
+		private final long startUpdates = getUpdateCount();
+
+		/**
+		 * Distinct images displayed by the cells during the phase.
+		 */
+		private final Set<Image> images = Collections.newSetFromMap(new IdentityHashMap<>());
+
+		/**
+		 * Maximum number of distinct images displayed by the cells in a pulse.
+		 */
+		private int maxPulseImages;
+
+		/**
+		 * Starts measuring a phase.
+		 *
+		 * @param name
+		 *            Name of the phase.
+		 */
+		private PhaseStats(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * Counts the distinct images displayed by the visible cells.
+		 */
+		private void countImages() {
+			Set<Image> pulseImages = Collections.newSetFromMap(new IdentityHashMap<>());
+			for (ContainerListCell cell : cells) {
+				if (cell.isVisible() && cell.getGraphic() != null) {
+					collectImages(cell.getGraphic(), pulseImages);
+				}
+			}
+			images.addAll(pulseImages);
+			maxPulseImages = Math.max(maxPulseImages, pulseImages.size());
+		}
+
+		/**
+		 * Collects the images displayed by a node and its children.
+		 *
+		 * @param node
+		 *            Node displayed.
+		 * @param found
+		 *            Images found so far.
+		 */
+		private void collectImages(Node node, Set<Image> found) {
+			if (node instanceof ImageView) {
+				Image image = ((ImageView) node).getImage();
+				if (image != null) {
+					found.add(image);
+				}
+			} else if (node instanceof Parent) {
+				for (Node child : ((Parent) node).getChildrenUnmodifiable()) {
+					collectImages(child, found);
+				}
+			}
+		}
+
+		/**
+		 * Ends the phase.
+		 *
+		 * @param rows
+		 *            Rows scrolled during the phase, if any.
+		 * @return Description of the measurements.
+		 */
+		private String end(int rows) {
+			double seconds = (System.nanoTime() - start) / 1e9;
+			long updates = getUpdateCount() - startUpdates;
+			long allocated = getAllocatedBytes() - startAllocated;
+
+			StringBuilder description = new StringBuilder(String.format(
+					"%n  %s: %d pulses, %s%n    %d cells created, %d updateItem calls (%.0f/s), %d KB allocated",
+					name, pulseTimes.size(), describe(pulseTimes), cells.size() - startCells, updates,
+					updates / seconds, allocated / 1024));
+			if (rows > 0) {
+				description.append(String.format(" (%d bytes per row scrolled)", allocated / rows));
+			}
+			description.append(String.format("%n    %d distinct icon images, at most %d in a pulse", images.size(),
+					maxPulseImages));
+			return description.toString();
+		}
+	}
+}
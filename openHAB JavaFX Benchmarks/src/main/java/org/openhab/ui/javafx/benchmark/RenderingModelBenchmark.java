@@ -0,0 +1,70 @@
+package org.openhab.ui.javafx.benchmark;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.openhab.ui.javafx.model.container.Container;
+import org.openhab.ui.javafx.model.container.NavigableContainer;
+import org.openhab.ui.javafx.model.rendering.ClasspathResourceRenderingModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Retrieval of the demo sitemap and page with
+ * {@link ClasspathResourceRenderingModel}, without any caching, so each
+ * invocation opens and reads the classpath resource.
+ *
+ * @author Flavio Costa
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class RenderingModelBenchmark {
+
+	/**
+	 * URI of the navigable container retrieved.
+	 */
+	@Param({ "sitemap://demo/", "sitemap://demo/components-4/" })
+	private String uri;
+
+	/**
+	 * Provider being measured.
+	 */
+	private ClasspathResourceRenderingModel provider;
+
+	/**
+	 * URI of the navigable container retrieved, already parsed.
+	 */
+	private URI containerURI;
+
+	/**
+	 * Creates the provider.
+	 */
+	@Setup
+	public void setUp() {
+		provider = new ClasspathResourceRenderingModel();
+		containerURI = URI.create(uri);
+	}
+
+	/**
+	 * Retrieves the navigable container.
+	 *
+	 * @return Rendering model retrieved.
+	 */
+	@Benchmark
+	public NavigableContainer<?, Container<?, ?>> retrieve() {
+		return provider.retrieve(containerURI);
+	}
+}
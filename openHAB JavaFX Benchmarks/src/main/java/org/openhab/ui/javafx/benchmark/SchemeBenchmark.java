@@ -0,0 +1,96 @@
+package org.openhab.ui.javafx.benchmark;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openhab.ui.javafx.scheme.SchemeHandler;
+import org.openhab.ui.javafx.scheme.SchemeType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Scheme resolution with {@link SchemeType#parse(String)} and URI parsing with
+ * {@link SchemeHandler#handle(String)}, which run for every click and every
+ * icon displayed.
+ *
+ * @author Flavio Costa
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class SchemeBenchmark {
+
+	/**
+	 * URI handled, of a scheme listed first, last or in none of the scheme
+	 * types.
+	 */
+	@Param({ "sitemap://demo", "sitemap://demo/components-4/", "mailto:someone@example.com",
+			"ftp://example.com/" })
+	private String uri;
+
+	/**
+	 * Scheme of the URI.
+	 */
+	private String scheme;
+
+	/**
+	 * Handler that only returns the URI parsed, so the parsing is all that is
+	 * measured.
+	 */
+	private SchemeHandler<URI> handler;
+
+	/**
+	 * Creates the handler.
+	 */
+	@Setup
+	public void setUp() {
+		scheme = URI.create(uri).getScheme();
+		SchemeType type = SchemeType.parse(scheme);
+		handler = new SchemeHandler<URI>() {
+
+			@Override
+			public Set<SchemeType> getAcceptedTypes() {
+				return Collections.singleton(type);
+			}
+
+			@Override
+			public URI handle(URI uri) throws IllegalArgumentException {
+				return uri;
+			}
+		};
+	}
+
+	/**
+	 * Determines the type of the scheme.
+	 *
+	 * @return Scheme type.
+	 */
+	@Benchmark
+	public SchemeType parseSchemeType() {
+		return SchemeType.parse(scheme);
+	}
+
+	/**
+	 * Parses the URI as a scheme handler does.
+	 *
+	 * @return URI parsed.
+	 */
+	@Benchmark
+	public URI handleString() {
+		return handler.handle(uri);
+	}
+}
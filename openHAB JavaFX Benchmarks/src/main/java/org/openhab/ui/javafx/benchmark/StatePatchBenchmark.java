@@ -0,0 +1,163 @@
+package org.openhab.ui.javafx.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openhab.ui.javafx.model.Component;
+import org.openhab.ui.javafx.model.container.Container;
+import org.openhab.ui.javafx.model.container.ContainerIndex;
+import org.openhab.ui.javafx.model.container.NavigableContainer;
+import org.openhab.ui.javafx.model.container.Widget;
+import org.openhab.ui.javafx.model.rendering.AbstractJsonRenderingModel;
+import org.openhab.ui.javafx.model.rendering.SitemapGenerator;
+import org.openhab.ui.javafx.model.state.StatePatch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Item state updates applied to a displayed sitemap, either as a
+ * {@link StatePatch} changing the atoms in place, or by retrieving the whole
+ * sitemap again and rebuilding its index, as the view did before patches.
+ *
+ * The sitemaps are created by {@link SitemapGenerator}, with 10 widgets per
+ * frame, and each update changes the state of 10 items.
+ *
+ * @author Flavio Costa
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class StatePatchBenchmark {
+
+	/**
+	 * Number of items whose state changes in each update.
+	 */
+	private static final int UPDATED_ITEMS = 10;
+
+	/**
+	 * URI of the generated sitemap.
+	 */
+	private static final URI SITEMAP = URI.create("sitemap://generated/");
+
+	/**
+	 * Number of frames in the sitemap.
+	 */
+	@Param({ "10", "100", "1000" })
+	private int frames;
+
+	/**
+	 * Reads the generated documents from memory.
+	 */
+	private AbstractJsonRenderingModel provider;
+
+	/**
+	 * Sitemap displayed, which the patches are applied to.
+	 */
+	private NavigableContainer<?, Container<?, ?>> displayed;
+
+	/**
+	 * Patches changing the items back and forth between two states.
+	 */
+	private StatePatch[] patches;
+
+	/**
+	 * Number of patches applied so far.
+	 */
+	private int applied;
+
+	/**
+	 * Generates the sitemap, displays it and prepares the updates.
+	 */
+	@Setup
+	public void setUp() {
+		SitemapGenerator generator = new SitemapGenerator();
+		generator.setId("generated");
+		generator.setFrames(frames);
+		// a single document, as pages are displayed separately
+		generator.setGroupDepth(0);
+		Map<String, String> documents = generator.generate();
+
+		provider = new AbstractJsonRenderingModel() {
+
+			@Override
+			protected InputStream open(URI uri, String documentPath) {
+				String document = documents.get(documentPath);
+				return document == null ? null : new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8));
+			}
+		};
+		displayed = provider.retrieve(SITEMAP);
+
+		// items spread over the whole sitemap
+		ContainerIndex index = displayed.getIndex();
+		List<String> items = new ArrayList<>(index.getItemNames());
+		patches = new StatePatch[] { new StatePatch(), new StatePatch() };
+		for (int i = 0; i < UPDATED_ITEMS; i++) {
+			String item = items.get(i * items.size() / UPDATED_ITEMS);
+			String[] states = getStates(index.getWidgets(item).get(0));
+			patches[0].put(item, states[0]);
+			patches[1].put(item, states[1]);
+		}
+	}
+
+	/**
+	 * Applies the updates to the sitemap displayed.
+	 *
+	 * @return Widgets changed, whose rows the view renders again.
+	 */
+	@Benchmark
+	public Set<Widget> applyPatch() {
+		return patches[applied++ & 1].applyTo(displayed);
+	}
+
+	/**
+	 * Retrieves the sitemap again and indexes it, as done before the view was
+	 * rendered again from scratch.
+	 *
+	 * @return Index of the sitemap retrieved.
+	 */
+	@Benchmark
+	public ContainerIndex retrieveAndIndex() {
+		return provider.retrieve(SITEMAP).getIndex();
+	}
+
+	/**
+	 * Determines two different states that a widget can display, according to
+	 * the control it contains.
+	 *
+	 * @param widget
+	 *            Widget representing an item.
+	 * @return Two states.
+	 */
+	private static String[] getStates(Widget widget) {
+		List<? extends Component<?>> atoms = widget.getComponents();
+		switch (atoms.get(atoms.size() - 1).getType()) {
+		case SWITCH:
+			return new String[] { "ON", "OFF" };
+		case SELECTION:
+			return new String[] { "0", "1" };
+		case SLIDER:
+			return new String[] { "20", "80" };
+		default:
+			return new String[] { "20.5", "21.5" };
+		}
+	}
+}
@@ -2,20 +2,43 @@ package org.openhab.ui.javafx;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Optional;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
 import java.util.logging.LogManager;
 import java.util.logging.Logger;
 
+import org.openhab.ui.javafx.model.ComponentType;
+import org.openhab.ui.javafx.model.atom.Atom;
+import org.openhab.ui.javafx.model.atom.IconAtom;
+import org.openhab.ui.javafx.model.container.Container;
+import org.openhab.ui.javafx.model.container.NavigableContainer;
+import org.openhab.ui.javafx.model.container.Widget;
+import org.openhab.ui.javafx.model.rendering.RenderingModelProvider;
+import org.openhab.ui.javafx.model.state.ItemCommandSender;
+import org.openhab.ui.javafx.model.state.ItemStateSubscriber;
 import org.openhab.ui.javafx.navigation.NavigationHistory;
+import org.openhab.ui.javafx.navigation.NavigationSnapshot;
 import org.openhab.ui.javafx.navigation.SitemapAppBar;
 import org.openhab.ui.javafx.navigation.SitemapSchemeHandler;
 import org.openhab.ui.javafx.navigation.WebSchemeHandler;
 import org.openhab.ui.javafx.scheme.SchemeHandler;
-import org.openhab.ui.javafx.scheme.SchemeType;
+import org.openhab.ui.javafx.view.ContainerListCell;
 import org.openhab.ui.javafx.view.SitemapListView;
+import org.openhab.ui.javafx.view.StatePatchApplier;
+import org.openhab.ui.javafx.view.iconset.IconPack;
 import org.openhab.ui.javafx.view.iconset.IconSchemeHandler;
 
+import javafx.animation.AnimationTimer;
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
 import javafx.scene.Scene;
 import javafx.scene.image.Image;
 import javafx.scene.layout.BorderPane;
@@ -31,6 +54,32 @@ import javafx.stage.Stage;
  * For now, the following argument should be provided on the command line for
  * test purposes: --load=sitemap://demo
  * 
+ * Rendering models are loaded from classpath resources, unless another source
+ * is provided with --models=&lt;URI&gt; (e.g. --models=file:///etc/sitemaps to
+ * read them from a directory, which is reloaded whenever files change, or
+ * --models=http://localhost:8080 to fetch them from an openHAB server). When
+ * the models come from a server, the states of the items displayed are also
+ * kept up to date with the events it publishes, and the controls send commands
+ * to their items.
+ * 
+ * When the application is closed, the pages loaded and the navigation history
+ * are saved in a snapshot (in ~/.openhab-javafx/snapshot, or the directory
+ * provided with --snapshot=&lt;path&gt;). The next launch displays the last
+ * page from the snapshot right away, while it is retrieved again in the
+ * background.
+ * 
+ * Icons are read from the classpath, unless an icon pack compiled during the
+ * build is provided with --icons=&lt;path&gt; (e.g. target/icons.pack), in
+ * which case they are served from memory. Icons missing from the pack are
+ * still read from the classpath, unless --icon-fallback=false is provided.
+ * 
+ * Everything that does not need the JavaFX application thread (the rendering
+ * model of the first page, the snapshot and icons) is prepared in parallel
+ * from {@link #init()}, while the toolkit starts up. The stylesheet is not
+ * among them, as JavaFX reads and parses it on the application thread anyway.
+ * {@link #start(Stage)} only wires the results into the scene. The time taken
+ * by each startup phase is logged with the first frame.
+ * 
  * @author Flavio Costa
  */
 public class SitemapApplication extends Application {
@@ -40,11 +89,85 @@ public class SitemapApplication extends Application {
 	 */
 	private static final String APP_TITLE = "openHAB sitemap";
 
+	/**
+	 * Time to wait for the navigation snapshot to be saved on exit, in seconds.
+	 */
+	private static final long SNAPSHOT_TIMEOUT = 5;
+
+	/**
+	 * Number of rows of the first page whose icons are decoded before it is
+	 * rendered, enough to fill the window.
+	 */
+	private static final int WARM_UP_ROWS = 20;
+
 	/**
 	 * Used for logging activities of this class.
 	 */
 	private static final Logger logger = Logger.getLogger(SitemapApplication.class.getPackage().getName());
 
+	/**
+	 * Receives item state updates from the server, if the models come from one.
+	 */
+	private ItemStateSubscriber stateSubscriber;
+
+	/**
+	 * Applies the item state updates received, keeping metrics about them.
+	 */
+	private StatePatchApplier stateApplier;
+
+	/**
+	 * Sends commands from the controls to the server, if the models come from
+	 * one.
+	 */
+	private ItemCommandSender commandSender;
+
+	/**
+	 * Saves and restores the navigation state, if a sitemap is loaded.
+	 */
+	private NavigationSnapshot snapshot;
+
+	/**
+	 * Navigation history of the sitemap loaded, if any.
+	 */
+	private NavigationHistory navigation;
+
+	/**
+	 * Runs and times the startup phases.
+	 */
+	private StartupPipeline pipeline;
+
+	/**
+	 * Handles icon URIs. It is created by {@link #init()} to load icons in the
+	 * background, and registered by {@link #start(Stage)}.
+	 */
+	private final IconSchemeHandler iconHandler = new IconSchemeHandler();
+
+	/**
+	 * Provider of the rendering models, being created.
+	 */
+	private CompletableFuture<RenderingModelProvider> modelProvider;
+
+	/**
+	 * Application icon, being loaded.
+	 */
+	private CompletableFuture<Image> appIcon;
+
+	/**
+	 * URI of the sitemap to be loaded, if any.
+	 */
+	private URI sitemapURI;
+
+	/**
+	 * URI of the page restored from the snapshot, or null if there is none,
+	 * being loaded.
+	 */
+	private CompletableFuture<URI> restoredURI;
+
+	/**
+	 * Up-to-date rendering model of the first page displayed, being loaded.
+	 */
+	private CompletableFuture<NavigableContainer<?, Container<?, ?>>> firstPage;
+
 	/**
 	 * Standard main method to launch the GUI.
 	 * 
@@ -65,59 +188,238 @@ public class SitemapApplication extends Application {
 		launch(args);
 	}
 
+	@Override
+	public void init() throws Exception {
+		pipeline = new StartupPipeline();
+		String models = getParameters().getNamed().get("models");
+
+		// mapping the pack only reads its header, so all icons can use it
+		String icons = getParameters().getNamed().get("icons");
+		if (icons != null) {
+			try {
+				iconHandler.setPack(new IconPack(Paths.get(icons)));
+				iconHandler.setClasspathFallback(
+						!"false".equalsIgnoreCase(getParameters().getNamed().get("icon-fallback")));
+			} catch (IOException e) {
+				logger.log(Level.WARNING, String.format("Could not map the icon pack %s", icons), e);
+			}
+		}
+
+		modelProvider = pipeline.run("models", () -> RenderingModelProvider.get(models));
+		appIcon = pipeline.run("app icon", () -> new Image(iconHandler.handle("icon:app/openhab").get()));
+
+		String load = getParameters().getNamed().get("load");
+		if (load != null) {
+			// same root URI as the sitemap scheme handler would navigate to
+			URI uri = URI.create(load);
+			sitemapURI = !uri.isOpaque() && uri.getPath().isEmpty() ? uri.resolve("/") : uri;
+
+			// the last page displayed, if possible, and its up-to-date model
+			String snapshotDirectory = getParameters().getNamed().getOrDefault("snapshot",
+					Paths.get(System.getProperty("user.home"), ".openhab-javafx", "snapshot").toString());
+			snapshot = new NavigationSnapshot(Paths.get(snapshotDirectory), models);
+			restoredURI = pipeline.run("snapshot", () -> snapshot.load(sitemapURI));
+			firstPage = pipeline.then("first page", restoredURI,
+					restored -> StartupPipeline.join(modelProvider).retrieve(restored == null ? sitemapURI : restored));
+			// icons are rendered for the screen, which is queried on the application thread
+			CompletableFuture<Void> screen = new CompletableFuture<>();
+			Platform.runLater(() -> {
+				iconHandler.setOutputScale(IconSchemeHandler.measureOutputScale());
+				screen.complete(null);
+			});
+			pipeline.then("page icons", firstPage.thenCombine(screen, (page, ignored) -> page), this::readIcons);
+		}
+	}
+
 	@Override
 	public void start(Stage stage) throws Exception {
 		logger.info("JavaFX sitemap client start");
 
-		// create required objects for the scheme handlers
-		BorderPane borderPane = new BorderPane();
-		SitemapListView listView = new SitemapListView();
-
-		// register scheme handler instances
-		SchemeHandler.register(new IconSchemeHandler());
-		SchemeHandler.register(new WebSchemeHandler(getHostServices()));
-		SchemeHandler.register(new SnackbarHandler(borderPane));
-		SchemeHandler.register(new SitemapSchemeHandler(listView));
-
-		// general app layout
-		stage.setTitle(APP_TITLE);
-		stage.setWidth(400);
-		stage.setHeight(600);
-		SchemeHandler<Optional<InputStream>> iconHandler = SchemeHandler.of(SchemeType.ICON);
-		stage.getIcons().add(new Image(iconHandler.handle("icon:app/openhab").get()));
-		Scene scene = new Scene(borderPane);
-		scene.getStylesheets().add(SitemapApplication.class.getResource("config/default.css").toExternalForm());
-		SitemapAppBar appBar = new SitemapAppBar();
-		borderPane.setTop(appBar);
-		borderPane.setCenter(listView);
-
-		String sitemapURI = getParameters().getNamed().get("load");
+		// waits only for what is needed to build the scene
+		RenderingModelProvider provider = StartupPipeline.join(modelProvider);
+		Image icon = StartupPipeline.join(appIcon);
+
+		pipeline.time("scene", () -> {
+			// create required objects for the scheme handlers
+			BorderPane borderPane = new BorderPane();
+			SitemapListView listView = new SitemapListView();
+
+			// register scheme handler instances
+			SchemeHandler.register(iconHandler);
+			SchemeHandler.register(new WebSchemeHandler(getHostServices()));
+			SchemeHandler.register(new SnackbarHandler(borderPane));
+			SitemapSchemeHandler sitemapHandler = new SitemapSchemeHandler(listView, provider);
+			SchemeHandler.register(sitemapHandler);
+
+			// general app layout
+			stage.setTitle(APP_TITLE);
+			stage.setWidth(400);
+			stage.setHeight(600);
+			stage.getIcons().add(icon);
+			Scene scene = new Scene(borderPane);
+			scene.getStylesheets().add(SitemapApplication.class.getResource("config/default.css").toExternalForm());
+			listView.getStyleCompiler().addTo(scene.getStylesheets());
+			SitemapAppBar appBar = new SitemapAppBar();
+			borderPane.setTop(appBar);
+			borderPane.setCenter(listView);
+
+			if (sitemapURI == null) {
+				// warning as the application will not really behave properly
+				logger.warning("No sitemap provided as an argument");
+			} else {
+				NavigationHistory nav = sitemapHandler.getNavigation();
+
+				// property binding
+				appBar.titleProperty().bind(nav.currentTitleProperty());
+				Pane hamburger = appBar.getIcon(SitemapAppBar.IconId.HAMBURGER);
+				hamburger.visibleProperty().bind(nav.currentLevelProperty().lessThanOrEqualTo(1));
+				hamburger.managedProperty().bind(hamburger.visibleProperty());
+				Pane goUp = appBar.getIcon(SitemapAppBar.IconId.NAV_UP);
+				goUp.visibleProperty().bind(nav.currentLevelProperty().greaterThan(1));
+				goUp.managedProperty().bind(goUp.visibleProperty());
+
+				String models = getParameters().getNamed().get("models");
+				if (models != null && models.matches("(?i)https?:.*")) {
+					// state updates are applied to the list at most once per pulse
+					stateApplier = new StatePatchApplier(listView);
+					stateSubscriber = new ItemStateSubscriber(URI.create(models), stateApplier.getBuffer()::put);
+					nav.addPageListener(page -> stateSubscriber.subscribe(page.getIndex().getItemNames()));
+
+					// and the controls send commands back to the server
+					commandSender = new ItemCommandSender(URI.create(models));
+					listView.setCommandSender(commandSender);
+				}
+
+				// the snapshot is displayed right away, the first page once loaded
+				navigation = nav;
+				StartupPipeline.join(restoredURI);
+				boolean restored = snapshot.restore(nav, firstPage);
+				logFirstFrame(listView, restored ? "snapshot" : "source");
+				if (!restored) {
+					nav.navigateTo(sitemapURI, firstPage);
+				}
+			}
+
+			// ready to be displayed
+			stage.setScene(scene);
+		});
+		pipeline.time("show", stage::show);
 		if (sitemapURI == null) {
-			// warning as the application will not really behave properly
-			logger.warning("No sitemap provided as an argument");
-		} else {
-			// load the sitemap
-			SchemeHandler<NavigationHistory> sitemapHandler = SchemeHandler.of(SchemeType.SITEMAP);
-			NavigationHistory nav = sitemapHandler.handle(sitemapURI);
-
-			// property binding
-			appBar.titleProperty().bind(nav.currentTitleProperty());
-			Pane hamburger = appBar.getIcon(SitemapAppBar.IconId.HAMBURGER);
-			hamburger.visibleProperty().bind(nav.currentLevelProperty().lessThanOrEqualTo(1));
-			hamburger.managedProperty().bind(hamburger.visibleProperty());
-			Pane goUp = appBar.getIcon(SitemapAppBar.IconId.NAV_UP);
-			goUp.visibleProperty().bind(nav.currentLevelProperty().greaterThan(1));
-			goUp.managedProperty().bind(goUp.visibleProperty());
+			logger.info(pipeline.report());
+		}
+	}
+
+	/**
+	 * Decodes the icons of the widgets in the first rows of a page into the
+	 * image cache, so that they are readily available when the page is first
+	 * rendered. Rows further down are left alone, so that subcomponents loaded
+	 * lazily are not decoded before they are displayed.
+	 * 
+	 * @param page
+	 *            Page to be displayed.
+	 * @return Number of icons decoded.
+	 */
+	private int readIcons(NavigableContainer<?, Container<?, ?>> page) {
+		List<Container<?, ?>> containers = page.getComponents();
+		if (containers == null) {
+			return 0;
+		}
+
+		// same rows as in the list view: each container, then the subcomponents
+		// of those that are not widgets
+		int rows = 0;
+		int count = 0;
+		for (int i = 0; i < containers.size() && rows < WARM_UP_ROWS; i++) {
+			Container<?, ?> container = containers.get(i);
+			count += readRowIcons(container);
+			rows++;
+			if (container.getType() != ComponentType.WIDGET && container.getComponents() != null) {
+				List<?> components = container.getComponents();
+				for (int j = 0; j < components.size() && rows < WARM_UP_ROWS; j++) {
+					count += readRowIcons(components.get(j));
+					rows++;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Decodes the icons displayed in a row into the image cache.
+	 * 
+	 * @param row
+	 *            Container displayed in the row.
+	 * @return Number of icons decoded.
+	 */
+	private int readRowIcons(Object row) {
+		if (!(row instanceof Widget)) {
+			return 0;
 		}
+		int count = 0;
+		for (Atom<?> atom : ((Widget) row).getComponents()) {
+			if (atom instanceof IconAtom
+					&& iconHandler.prepare(((IconAtom) atom).getData(), ContainerListCell.ICON_SIZE)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Logs the time from the launch of the application until the first frame
+	 * displaying a sitemap or page is rendered.
+	 * 
+	 * @param listView
+	 *            List where the sitemap is displayed.
+	 * @param origin
+	 *            Where the first page displayed comes from.
+	 */
+	private void logFirstFrame(SitemapListView listView, String origin) {
+		listView.itemsProperty().addListener(new ChangeListener<Object>() {
 
-		// ready to be displayed
-		stage.setScene(scene);
-		stage.show();
+			@Override
+			public void changed(ObservableValue<?> observable, Object oldValue, Object newValue) {
+				listView.itemsProperty().removeListener(this);
+				new AnimationTimer() {
+
+					/**
+					 * Pulses since the items were set.
+					 */
+					private int pulses;
+
+					@Override
+					public void handle(long now) {
+						// the pulse after the items were set renders them
+						if (++pulses == 2) {
+							stop();
+							logger.info(String.format("First usable frame after %d ms (from %s)",
+									ManagementFactory.getRuntimeMXBean().getUptime(), origin));
+							logger.info(pipeline.report());
+						}
+					}
+				}.start();
+			}
+		});
 	}
 
 	@Override
 	public void stop() throws Exception {
 		super.stop();
+		if (navigation != null) {
+			try {
+				// the files are written in the background, but before exiting
+				snapshot.save(navigation, pipeline.getExecutor()).get(SNAPSHOT_TIMEOUT, TimeUnit.SECONDS);
+			} catch (TimeoutException e) {
+				logger.warning("Navigation snapshot not saved in time");
+			}
+		}
+		if (stateSubscriber != null) {
+			stateSubscriber.close();
+			logger.info(String.format("Item state updates: %s", stateApplier));
+		}
+		if (commandSender != null) {
+			commandSender.close();
+		}
 		logger.info("JavaFX sitemap client stop");
 	}
 }
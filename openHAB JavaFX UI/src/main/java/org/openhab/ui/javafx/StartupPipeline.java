@@ -0,0 +1,228 @@
+package org.openhab.ui.javafx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs the phases of the application startup, timing each of them.
+ *
+ * Phases that do not depend on the JavaFX application thread (loading the
+ * rendering models, icons and stylesheets) are started in parallel from
+ * {@link javafx.application.Application#init()}, so they make progress while
+ * the toolkit is still starting up. {@link javafx.application.Application#start}
+ * then only waits for the results it needs to build the scene.
+ *
+ * The report lists when each phase started, how long it took and on which
+ * thread. The sum of the phase durations, compared with the time elapsed, shows
+ * how much was saved by running them in parallel.
+ *
+ * @author Flavio Costa
+ */
+final class StartupPipeline {
+
+	/**
+	 * Number of threads created to run phases.
+	 */
+	private final AtomicInteger threadCount = new AtomicInteger();
+
+	/**
+	 * Runs the phases started in the background. Its threads are discarded once
+	 * idle for a while after the startup.
+	 */
+	private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+		Thread thread = new Thread(r, "startup-" + threadCount.incrementAndGet());
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * Time when the pipeline was created, in nanoseconds.
+	 */
+	private final long origin = System.nanoTime();
+
+	/**
+	 * Phases completed so far, in the order they completed.
+	 */
+	private final List<Phase> phases = new ArrayList<>();
+
+	/**
+	 * Returns the executor running the phases started in the background. It may
+	 * also run other background work of the application.
+	 *
+	 * @return Executor of the pipeline.
+	 */
+	Executor getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Starts a phase in the background.
+	 *
+	 * @param name
+	 *            Name of the phase, for the report.
+	 * @param task
+	 *            Task producing the result of the phase.
+	 * @return Future completed with the result of the phase.
+	 */
+	<T> CompletableFuture<T> run(String name, Supplier<T> task) {
+		return CompletableFuture.supplyAsync(() -> time(name, task), executor);
+	}
+
+	/**
+	 * Starts a phase in the background once another one completes
+	 * successfully.
+	 *
+	 * @param name
+	 *            Name of the phase, for the report.
+	 * @param previous
+	 *            Phase whose result is needed.
+	 * @param task
+	 *            Task producing the result of the phase from the previous result.
+	 * @return Future completed with the result of the phase.
+	 */
+	<T, R> CompletableFuture<R> then(String name, CompletableFuture<T> previous, Function<? super T, R> task) {
+		return previous.thenApplyAsync(value -> time(name, () -> task.apply(value)), executor);
+	}
+
+	/**
+	 * Runs a phase on the calling thread.
+	 *
+	 * @param name
+	 *            Name of the phase, for the report.
+	 * @param task
+	 *            Task producing the result of the phase.
+	 * @return Result of the phase.
+	 */
+	<T> T time(String name, Supplier<T> task) {
+		long start = System.nanoTime();
+		try {
+			return task.get();
+		} finally {
+			Phase phase = new Phase(name, Thread.currentThread().getName(), start - origin, System.nanoTime() - start);
+			synchronized (phases) {
+				phases.add(phase);
+			}
+		}
+	}
+
+	/**
+	 * Runs a phase with no result on the calling thread.
+	 *
+	 * @param name
+	 *            Name of the phase, for the report.
+	 * @param task
+	 *            Task to be run.
+	 */
+	void time(String name, Runnable task) {
+		time(name, () -> {
+			task.run();
+			return null;
+		});
+	}
+
+	/**
+	 * Waits for the result of a phase.
+	 *
+	 * @param phase
+	 *            Phase started in the background.
+	 * @return Result of the phase.
+	 * @throws RuntimeException
+	 *             If the phase failed, the exception it threw.
+	 */
+	static <T> T join(CompletableFuture<T> phase) {
+		try {
+			return phase.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Describes the phases completed so far.
+	 *
+	 * @return Report with one line per phase.
+	 */
+	String report() {
+		long elapsed = System.nanoTime() - origin;
+		long total = 0;
+		StringBuilder report = new StringBuilder("Startup phases:");
+		synchronized (phases) {
+			for (Phase phase : phases) {
+				total += phase.duration;
+				report.append(String.format("%n  %-12s +%5d ms %5d ms  [%s]", phase.name, toMillis(phase.start),
+						toMillis(phase.duration), phase.thread));
+			}
+		}
+		return report.append(String.format("%n  %d ms in phases, %d ms elapsed", toMillis(total), toMillis(elapsed)))
+				.toString();
+	}
+
+	/**
+	 * Converts a time to milliseconds.
+	 *
+	 * @param nanos
+	 *            Time in nanoseconds.
+	 * @return Time in milliseconds.
+	 */
+	private static long toMillis(long nanos) {
+		return TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+
+	/**
+	 * Phase completed.
+	 */
+	private static class Phase {
+
+		/**
+		 * Name of the phase.
+		 */
+		private final String name;
+
+		/**
+		 * Thread where the phase ran.
+		 */
+		private final String thread;
+
+		/**
+		 * Time when the phase started, relative to the creation of the pipeline,
+		 * in nanoseconds.
+		 */
+		private final long start;
+
+		/**
+		 * Duration of the phase, in nanoseconds.
+		 */
+		private final long duration;
+
+		/**
+		 * Creates a new instance.
+		 *
+		 * @param name
+		 *            Name of the phase.
+		 * @param thread
+		 *            Thread where the phase ran.
+		 * @param start
+		 *            Relative start time, in nanoseconds.
+		 * @param duration
+		 *            Duration, in nanoseconds.
+		 */
+		private Phase(String name, String thread, long start, long duration) {
+			this.name = name;
+			this.thread = thread;
+			this.start = start;
+			this.duration = duration;
+		}
+	}
+}
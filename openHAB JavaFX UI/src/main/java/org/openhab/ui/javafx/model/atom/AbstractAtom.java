@@ -22,4 +22,37 @@ public abstract class AbstractAtom<D> extends AbstractComponent<D> implements At
 	public D getData() {
 		return data;
 	}
+
+	/**
+	 * Replaces the data associated to this atom.
+	 * 
+	 * @param data
+	 *            New data.
+	 */
+	protected void setData(D data) {
+		this.data = data;
+	}
+
+	/**
+	 * Updates this atom to reflect a new state of the item it represents. By
+	 * default, atoms do not depend on the item state, so nothing is changed.
+	 * 
+	 * @param state
+	 *            New item state.
+	 * @return True if the atom data was changed.
+	 */
+	public boolean updateState(String state) {
+		return false;
+	}
+
+	/**
+	 * Returns the item state currently reflected by this atom, in the same form
+	 * accepted by {@link #updateState(String)}. By default, atoms do not depend
+	 * on the item state, so there is none.
+	 * 
+	 * @return Item state, or null if the atom does not reflect it.
+	 */
+	public String getState() {
+		return null;
+	}
 }
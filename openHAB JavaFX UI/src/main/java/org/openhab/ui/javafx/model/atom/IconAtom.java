@@ -1,6 +1,7 @@
 package org.openhab.ui.javafx.model.atom;
 
 import java.net.URI;
+import java.net.URISyntaxException;
 
 /**
  * Icon Atom model implementation.
@@ -10,4 +11,19 @@ import java.net.URI;
 public class IconAtom extends AbstractAtom<URI> {
 	
 	// data for IconAtom is the icon URI
+
+	@Override
+	public boolean updateState(String state) {
+		URI uri = getData();
+		if (uri == null || state.equals(uri.getFragment())) {
+			return false;
+		}
+		try {
+			// the state is kept in the fragment, e.g. icon:light#ON
+			setData(new URI(uri.getScheme(), uri.getSchemeSpecificPart(), state));
+			return true;
+		} catch (URISyntaxException e) {
+			throw new IllegalArgumentException("Invalid state for icon " + uri + ": " + state, e);
+		}
+	}
 }
@@ -1,9 +1,11 @@
 package org.openhab.ui.javafx.model.atom;
 
+import java.math.BigDecimal;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
+import org.openhab.ui.javafx.model.ComponentType;
 import org.openhab.ui.javafx.model.atom.MappingsAtom.Data;
 
 /**
@@ -12,6 +14,10 @@ import org.openhab.ui.javafx.model.atom.MappingsAtom.Data;
  * selected. The entries must be ordered according to their sequence in the
  * rendering model.
  * 
+ * Only the states that can be selected are reflected by the atom: one of the
+ * mapping keys or, for a switch without mappings, ON and OFF. Numeric states
+ * of a switch (e.g. from a dimmer) are displayed as ON when above zero.
+ * 
  * @author Flavio Costa
  */
 public class MappingsAtom extends AbstractAtom<Data> {
@@ -40,6 +46,16 @@ public class MappingsAtom extends AbstractAtom<Data> {
 			return selected;
 		}
 
+		/**
+		 * Changes the selected mapping key.
+		 * 
+		 * @param selected
+		 *            New selected key.
+		 */
+		public void setSelected(String selected) {
+			this.selected = selected;
+		}
+
 		/**
 		 * Returns the ordered mappings.
 		 * 
@@ -49,4 +65,51 @@ public class MappingsAtom extends AbstractAtom<Data> {
 			return Collections.unmodifiableMap(mappings);
 		}
 	}
+
+	@Override
+	public boolean updateState(String state) {
+		Data data = getData();
+		if (data == null) {
+			return false;
+		}
+		String selected = select(data, state);
+		if (selected == null || selected.equals(data.getSelected())) {
+			return false;
+		}
+		data.setSelected(selected);
+		return true;
+	}
+
+	/**
+	 * Determines the mapping key selected by an item state.
+	 * 
+	 * @param data
+	 *            Mapping data of the atom.
+	 * @param state
+	 *            Item state.
+	 * @return Selected key, or null if the state cannot be displayed by the
+	 *         atom.
+	 */
+	private String select(Data data, String state) {
+		if (data.mappings != null && !data.mappings.isEmpty()) {
+			return data.mappings.containsKey(state) ? state : null;
+		}
+		if (getType() != ComponentType.SWITCH) {
+			return null;
+		}
+		if (state.equals("ON") || state.equals("OFF")) {
+			return state;
+		}
+		try {
+			return new BigDecimal(state).signum() > 0 ? "ON" : "OFF";
+		} catch (NumberFormatException e) {
+			// not an on/off state (e.g. NULL or UNDEF)
+			return null;
+		}
+	}
+
+	@Override
+	public String getState() {
+		return getData() == null ? null : getData().getSelected();
+	}
 }
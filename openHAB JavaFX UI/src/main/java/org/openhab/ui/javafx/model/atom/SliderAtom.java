@@ -1,5 +1,7 @@
 package org.openhab.ui.javafx.model.atom;
 
+import java.math.BigDecimal;
+
 /**
  * Slider Atom model implementation.
  * 
@@ -8,4 +10,25 @@ package org.openhab.ui.javafx.model.atom;
 public class SliderAtom extends AbstractAtom<Double> {
 
 	// data for SliderAtom is the slider Double value
+
+	@Override
+	public boolean updateState(String state) {
+		Double value;
+		try {
+			value = Double.valueOf(state);
+		} catch (NumberFormatException e) {
+			// not a numeric state (e.g. NULL or UNDEF)
+			return false;
+		}
+		if (value.equals(getData())) {
+			return false;
+		}
+		setData(value);
+		return true;
+	}
+
+	@Override
+	public String getState() {
+		return getData() == null ? null : BigDecimal.valueOf(getData()).stripTrailingZeros().toPlainString();
+	}
 }
@@ -1,5 +1,11 @@
 package org.openhab.ui.javafx.model.atom;
 
+import java.math.BigDecimal;
+import java.util.IllegalFormatConversionException;
+import java.util.IllegalFormatException;
+
+import org.openhab.ui.javafx.model.ComponentType;
+
 /**
  * Text Atom model implementation.
  * 
@@ -9,4 +15,54 @@ public class TextAtom extends AbstractAtom<String> {
 
 	// data for TextAtom is a text String
 
+	/**
+	 * Pattern used to display the item state (e.g. "%.1f °C"), in the syntax
+	 * of {@link String#format(String, Object...)}. Without a pattern, the state
+	 * is displayed as is.
+	 */
+	private String pattern;
+
+	@Override
+	public boolean updateState(String state) {
+		if (getType() != ComponentType.TEXT) {
+			// labels do not reflect the item state
+			return false;
+		}
+		String text = format(state);
+		if (text.equals(getData())) {
+			return false;
+		}
+		setData(text);
+		return true;
+	}
+
+	/**
+	 * Formats an item state with the pattern of this atom. Numeric states are
+	 * formatted as numbers, so that patterns like "%.1f" or "%d" apply to them.
+	 * 
+	 * @param state
+	 *            Item state.
+	 * @return Text to be displayed.
+	 */
+	private String format(String state) {
+		if (pattern == null) {
+			return state;
+		}
+		try {
+			BigDecimal number = new BigDecimal(state);
+			try {
+				return String.format(pattern, number);
+			} catch (IllegalFormatConversionException e) {
+				// integer conversions (%d, %x) do not accept decimals
+				return String.format(pattern, number.toBigInteger());
+			}
+		} catch (NumberFormatException | IllegalFormatException e) {
+			// not a numeric state (e.g. NULL or UNDEF), or not a numeric pattern
+		}
+		try {
+			return String.format(pattern, state);
+		} catch (IllegalFormatException e) {
+			return state;
+		}
+	}
 }
@@ -22,6 +22,11 @@ public abstract class AbstractNavigableContainer<D extends NavigableContainer.Da
 	 */
 	private D data;
 
+	/**
+	 * Index for the components, built on demand.
+	 */
+	private transient volatile ContainerIndex index;
+
 	/**
 	 * Implementation of the Data interface for navigable containers. This is made a
 	 * static class to avoid an "infinite recursion" on Java generics in subclass
@@ -64,4 +69,19 @@ public abstract class AbstractNavigableContainer<D extends NavigableContainer.Da
 	public D getData() {
 		return data;
 	}
+
+	@Override
+	public ContainerIndex getIndex() {
+		ContainerIndex result = index;
+		if (result == null) {
+			synchronized (this) {
+				result = index;
+				if (result == null) {
+					result = new ContainerIndex(this);
+					index = result;
+				}
+			}
+		}
+		return result;
+	}
 }
@@ -0,0 +1,159 @@
+package org.openhab.ui.javafx.model.container;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.openhab.ui.javafx.model.Component;
+import org.openhab.ui.javafx.model.ComponentType;
+import org.openhab.ui.javafx.model.atom.ActionableAtom;
+import org.openhab.ui.javafx.model.atom.Atom;
+
+/**
+ * Lookup tables for the components of a navigable container, built in a single
+ * pass so that clicks, state updates and scrolling do not need to scan the
+ * whole container.
+ *
+ * Rows are numbered the same way as they are displayed: each container in the
+ * navigable container takes one row, followed by one row for each of its
+ * subcomponents if it is not a widget.
+ *
+ * @author Flavio Costa
+ */
+public class ContainerIndex {
+
+	/**
+	 * Action URI of each widget that has one.
+	 */
+	private final Map<Widget, URI> actions = new IdentityHashMap<>();
+
+	/**
+	 * Widgets representing each item.
+	 */
+	private final Map<String, List<Widget>> widgetsByItem = new HashMap<>();
+
+	/**
+	 * Row of each container.
+	 */
+	private final Map<Container<?, ?>, Integer> rows = new IdentityHashMap<>();
+
+	/**
+	 * Builds the index for a navigable container.
+	 *
+	 * @param navigableContainer
+	 *            Navigable container to be indexed.
+	 */
+	public ContainerIndex(NavigableContainer<?, ?> navigableContainer) {
+		if (navigableContainer.getComponents() == null) {
+			return;
+		}
+
+		int row = 0;
+		for (Container<?, ?> container : navigableContainer.getComponents()) {
+			add(container, row++);
+			if (container.getType() != ComponentType.WIDGET && container.getComponents() != null) {
+				for (Component<?> component : container.getComponents()) {
+					add((Container<?, ?>) component, row++);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds a container to the index.
+	 *
+	 * @param container
+	 *            Container displayed in a row.
+	 * @param row
+	 *            Row of the container.
+	 */
+	private void add(Container<?, ?> container, int row) {
+		rows.put(container, row);
+
+		if (container.getType() == ComponentType.WIDGET) {
+			Widget widget = (Widget) container;
+			for (Atom<?> atom : widget.getComponents()) {
+				if (atom instanceof ActionableAtom) {
+					// only the first actionable atom defines the action
+					actions.put(widget, ((ActionableAtom) atom).getData());
+					break;
+				}
+			}
+			if (widget.getItem() != null) {
+				widgetsByItem.computeIfAbsent(widget.getItem(), i -> new ArrayList<>(1)).add(widget);
+			}
+		}
+	}
+
+	/**
+	 * Returns the action of a widget, as {@link Widget#getData()} would.
+	 *
+	 * @param widget
+	 *            Widget in the navigable container.
+	 * @return Action URI, or null if the widget has no action.
+	 */
+	public URI getAction(Widget widget) {
+		return actions.get(widget);
+	}
+
+	/**
+	 * Returns the widgets representing an item.
+	 *
+	 * @param item
+	 *            Item name.
+	 * @return Widgets for the item, empty if there is none.
+	 */
+	public List<Widget> getWidgets(String item) {
+		return widgetsByItem.getOrDefault(item, Collections.emptyList());
+	}
+
+	/**
+	 * Returns the names of all items represented in the navigable container.
+	 *
+	 * @return Item names.
+	 */
+	public Set<String> getItemNames() {
+		return Collections.unmodifiableSet(widgetsByItem.keySet());
+	}
+
+	/**
+	 * Returns the atoms in all widgets representing an item.
+	 *
+	 * @param item
+	 *            Item name.
+	 * @return Atoms for the item, empty if there is none.
+	 */
+	public List<Atom<?>> getAtoms(String item) {
+		List<Atom<?>> atoms = new ArrayList<>();
+		for (Widget widget : getWidgets(item)) {
+			atoms.addAll(widget.getComponents());
+		}
+		return atoms;
+	}
+
+	/**
+	 * Returns the row where a container is displayed.
+	 *
+	 * @param container
+	 *            Container in the navigable container.
+	 * @return Row index, or -1 if the container is not displayed in a row.
+	 */
+	public int getRow(Object container) {
+		Integer row = rows.get(container);
+		return row == null ? -1 : row;
+	}
+
+	/**
+	 * Returns the number of rows.
+	 *
+	 * @return Number of rows.
+	 */
+	public int getRowCount() {
+		return rows.size();
+	}
+}
@@ -51,4 +51,12 @@ public interface NavigableContainer<D extends Data, C extends Container<?, ?>> e
 	 * @return Data associated with this container.
 	 */
 	D getData();
+
+	/**
+	 * Returns the lookup tables for the components in this container. The index
+	 * is built when first requested, and reused afterwards.
+	 * 
+	 * @return Index for this container.
+	 */
+	ContainerIndex getIndex();
 }
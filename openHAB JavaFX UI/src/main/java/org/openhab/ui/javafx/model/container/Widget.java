@@ -2,18 +2,71 @@ package org.openhab.ui.javafx.model.container;
 
 import java.net.URI;
 
+import org.openhab.ui.javafx.model.atom.AbstractAtom;
 import org.openhab.ui.javafx.model.atom.ActionableAtom;
 import org.openhab.ui.javafx.model.atom.Atom;
 
 /**
  * Widget model implementation. A widget only contains atoms, but not other
  * containers. Its action is determined by the first {@link ActionableAtom} it
- * contains.
+ * contains. Widgets representing an item are identified by the item name, so
+ * they can be updated when the item state changes.
  * 
  * @author Flavio Costa
  */
 public class Widget extends AbstractContainer<URI, Atom<?>> {
 
+	/**
+	 * Name of the item represented by the widget, if any.
+	 */
+	private String item;
+
+	/**
+	 * Returns the name of the item represented by the widget.
+	 * 
+	 * @return Item name, or null if the widget does not represent an item.
+	 */
+	public String getItem() {
+		return item;
+	}
+
+	/**
+	 * Updates the atoms in the widget to reflect a new state of its item. Each
+	 * atom decides whether it is bound to the state and how to display it, so
+	 * labels are left untouched, texts are formatted with their pattern and
+	 * controls only take the states they can represent.
+	 * 
+	 * @param state
+	 *            New item state.
+	 * @return True if any atom was changed.
+	 */
+	public boolean updateState(String state) {
+		boolean changed = false;
+		for (Atom<?> atom : components) {
+			if (atom instanceof AbstractAtom) {
+				changed |= ((AbstractAtom<?>) atom).updateState(state);
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Returns the state of its item currently reflected by the widget.
+	 * 
+	 * @return State of the first atom that reflects it, or null if there is none.
+	 */
+	public String getState() {
+		for (Atom<?> atom : components) {
+			if (atom instanceof AbstractAtom) {
+				String state = ((AbstractAtom<?>) atom).getState();
+				if (state != null) {
+					return state;
+				}
+			}
+		}
+		return null;
+	}
+
 	@Override
 	public URI getData() {
 		// URI of the first component that is an Actionable Atom
@@ -0,0 +1,222 @@
+package org.openhab.ui.javafx.model.rendering;
+
+import java.io.CharArrayReader;
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openhab.ui.javafx.model.Component;
+import org.openhab.ui.javafx.model.ComponentType;
+import org.openhab.ui.javafx.model.container.Container;
+import org.openhab.ui.javafx.model.container.NavigableContainer;
+import org.openhab.ui.javafx.model.container.Page;
+import org.openhab.ui.javafx.model.container.Sitemap;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+
+/**
+ * Base class for providers that deserialize rendering models stored as JSON
+ * documents, one per sitemap or page. The JSON document is parsed as a stream
+ * by {@link ComponentTypeAdapter}. Subclasses only need to define where the
+ * documents are read from.
+ * 
+ * Arrays with many subcomponents are not decoded right away: they are kept as
+ * ranges of the document in a {@link LazyComponentList}, and each subcomponent
+ * is only built when accessed, e.g. when its row becomes visible.
+ * 
+ * @author Flavio Costa
+ */
+public abstract class AbstractJsonRenderingModel implements RenderingModelProvider {
+
+	/**
+	 * Used for logging activities of this class.
+	 */
+	private static final Logger logger = Logger.getLogger(AbstractJsonRenderingModel.class.getPackage().getName());
+
+	/**
+	 * Default minimum number of subcomponents for an array to be decoded lazily.
+	 */
+	public static final int DEFAULT_LAZY_THRESHOLD = 100;
+
+	/**
+	 * Creates components directly from the JSON stream.
+	 */
+	private final ComponentTypeAdapter componentAdapter = new ComponentTypeAdapter(
+			new GsonBuilder().registerTypeAdapter(ComponentType.class, new ComponentTypeDeserializer()).create());
+
+	/**
+	 * Reads documents keeping large arrays undecoded, null if disabled.
+	 */
+	private volatile LazyComponentReader lazyReader = new LazyComponentReader(componentAdapter,
+			DEFAULT_LAZY_THRESHOLD);
+
+	/**
+	 * Sets the minimum number of subcomponents for an array to be decoded
+	 * lazily.
+	 * 
+	 * @param threshold
+	 *            Minimum number of subcomponents, or zero to always decode all
+	 *            components while reading the document.
+	 */
+	public void setLazyThreshold(int threshold) {
+		lazyReader = threshold > 0 ? new LazyComponentReader(componentAdapter, threshold) : null;
+	}
+
+	@Override
+	public NavigableContainer<?, Container<?, ?>> retrieve(URI uri) {
+
+		String id = uri.getHost();
+		// here the trailing slash should become the file extension
+		String path = uri.getPath().replaceAll("/$", "\\.json");
+		try (InputStream is = open(uri, id + path)) {
+
+			if (is == null) {
+				logger.log(Level.SEVERE, String.format("Resource not found for %s", uri));
+			} else {
+				return read(is, uri);
+			}
+
+		} catch (IOException e) {
+			logger.log(Level.SEVERE, String.format("Loading %s failed", uri), e);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Opens the JSON document for a sitemap or page.
+	 * 
+	 * @param uri
+	 *            Navigable container URI.
+	 * @param documentPath
+	 *            Relative path of the document, in the format
+	 *            &lt;id&gt;[/&lt;page&gt;].json.
+	 * @return Stream with the document contents, or null if there is no document
+	 *         for the URI.
+	 * @throws IOException
+	 *             If the document could not be opened.
+	 */
+	protected abstract InputStream open(URI uri, String documentPath) throws IOException;
+
+	/**
+	 * Reads a navigable container from a JSON stream, without building an
+	 * intermediate tree for the document.
+	 * 
+	 * @param is
+	 *            Stream with the document contents, in UTF-8.
+	 * @param uri
+	 *            Navigable container URI.
+	 * @return Navigable container read from the stream.
+	 * @throws IOException
+	 *             If the stream could not be read.
+	 * @throws JsonParseException
+	 *             If the component read is not of the class expected for the URI.
+	 */
+	protected NavigableContainer<?, Container<?, ?>> read(InputStream is, URI uri)
+			throws IOException, JsonParseException {
+		return read(new InputStreamReader(is, StandardCharsets.UTF_8), uri);
+	}
+
+	/**
+	 * Reads a navigable container from a JSON document whose characters are
+	 * already decoded.
+	 * 
+	 * @param documentReader
+	 *            Reader for the document contents.
+	 * @param uri
+	 *            Navigable container URI.
+	 * @return Navigable container read from the document.
+	 * @throws IOException
+	 *             If the document could not be read.
+	 * @throws JsonParseException
+	 *             If the component read is not of the class expected for the URI.
+	 */
+	@SuppressWarnings("unchecked")
+	protected NavigableContainer<?, Container<?, ?>> read(Reader documentReader, URI uri)
+			throws IOException, JsonParseException {
+
+		LazyComponentReader lazy = lazyReader;
+		try (Reader reader = documentReader) {
+			Class<?> containerClass = getContainerClass(uri.getPath());
+			Component<?> component;
+			if (lazy == null) {
+				component = componentAdapter.read(new JsonReader(reader));
+			} else {
+				// only documents long enough to have lazy arrays are kept in memory
+				char[] head = new char[lazy.getMinimumLength()];
+				int length = read(reader, head);
+				component = length < head.length
+						? componentAdapter.read(new JsonReader(new CharArrayReader(head, 0, length)))
+						: lazy.read(readFully(head, reader));
+			}
+			if (!containerClass.isInstance(component)) {
+				throw new JsonParseException(String.format("Expected %s but found %s",
+						containerClass.getSimpleName(), component == null ? null : component.getType()));
+			}
+			return (NavigableContainer<?, Container<?, ?>>) component;
+		}
+	}
+
+	/**
+	 * Reads the start of a document, until a buffer is full.
+	 * 
+	 * @param reader
+	 *            Reader for the document contents.
+	 * @param buffer
+	 *            Receives the start of the document.
+	 * @return Number of characters read, less than the buffer length only if
+	 *         the document ended.
+	 * @throws IOException
+	 *             If the document could not be read.
+	 */
+	private int read(Reader reader, char[] buffer) throws IOException {
+		int length = 0;
+		int read;
+		while (length < buffer.length && (read = reader.read(buffer, length, buffer.length - length)) >= 0) {
+			length += read;
+		}
+		return length;
+	}
+
+	/**
+	 * Reads the rest of a document into memory.
+	 * 
+	 * @param head
+	 *            Start of the document, already read.
+	 * @param reader
+	 *            Reader for the rest of the document contents.
+	 * @return Document contents.
+	 * @throws IOException
+	 *             If the document could not be read.
+	 */
+	private char[] readFully(char[] head, Reader reader) throws IOException {
+		CharArrayWriter writer = new CharArrayWriter(Math.max(head.length * 2, 8192));
+		writer.write(head);
+		char[] buffer = new char[8192];
+		int read;
+		while ((read = reader.read(buffer)) >= 0) {
+			writer.write(buffer, 0, read);
+		}
+		return writer.toCharArray();
+	}
+
+	/**
+	 * Determines at runtime which class to use for deserialization.
+	 * 
+	 * @param path
+	 *            URI path.
+	 * @return Type of the Container implementation.
+	 */
+	private Class<?> getContainerClass(String path) {
+		// empty or root path? => Sitemap, else Page
+		return path.equals("/") ? Sitemap.class : Page.class;
+	}
+}
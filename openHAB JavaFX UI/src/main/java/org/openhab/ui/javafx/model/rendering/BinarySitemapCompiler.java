@@ -0,0 +1,338 @@
+package org.openhab.ui.javafx.model.rendering;
+
+import static org.openhab.ui.javafx.model.rendering.BinarySitemapFormat.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.openhab.ui.javafx.model.Component;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * Compiles sitemaps in JSON format into the binary format described in
+ * {@link BinarySitemapFormat}, so they can be loaded by
+ * {@link MappedRenderingModel} without any text parsing. This class is run
+ * during the build, but it may also be used standalone:
+ *
+ * <pre>
+ * java BinarySitemapCompiler &lt;source directory&gt; &lt;target directory&gt;
+ * </pre>
+ *
+ * The source directory is expected to have the same layout used for classpath
+ * resources, i.e. a file &lt;id&gt;.json for each sitemap and its pages in a
+ * subdirectory named after the sitemap id. One file &lt;id&gt;.ohsm is written
+ * for each sitemap, containing the sitemap itself and all its pages.
+ *
+ * @author Flavio Costa
+ */
+public class BinarySitemapCompiler {
+
+	/**
+	 * Used for logging activities of this class.
+	 */
+	private static final Logger logger = Logger.getLogger(BinarySitemapCompiler.class.getPackage().getName());
+
+	/**
+	 * Extension of the source files.
+	 */
+	private static final String JSON_EXTENSION = ".json";
+
+	/**
+	 * Strings already added to the string table, with their indexes.
+	 */
+	private final Map<String, Integer> strings = new LinkedHashMap<>();
+
+	/**
+	 * Component records written so far.
+	 */
+	private final ByteArrayOutputStream records = new ByteArrayOutputStream();
+
+	/**
+	 * Output for the component records.
+	 */
+	private final DataOutputStream recordOutput = new DataOutputStream(records);
+
+	/**
+	 * Offsets of the page records, indexed by the page path.
+	 */
+	private final Map<String, Integer> pages = new TreeMap<>();
+
+	/**
+	 * Compiles all sitemaps in a directory.
+	 *
+	 * @param args
+	 *            Source directory and target directory.
+	 * @throws IOException
+	 *             If any file could not be read or written.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			throw new IllegalArgumentException("Usage: BinarySitemapCompiler <source directory> <target directory>");
+		}
+		compileAll(Paths.get(args[0]), Paths.get(args[1]));
+	}
+
+	/**
+	 * Compiles all sitemaps in a directory.
+	 *
+	 * @param sourceDirectory
+	 *            Directory containing the sitemaps in JSON format.
+	 * @param targetDirectory
+	 *            Directory where the compiled sitemaps are written.
+	 * @throws IOException
+	 *             If any file could not be read or written.
+	 */
+	public static void compileAll(Path sourceDirectory, Path targetDirectory) throws IOException {
+		Files.createDirectories(targetDirectory);
+		try (DirectoryStream<Path> sitemaps = Files.newDirectoryStream(sourceDirectory, "*" + JSON_EXTENSION)) {
+			for (Path sitemap : sitemaps) {
+				String fileName = sitemap.getFileName().toString();
+				String id = fileName.substring(0, fileName.length() - JSON_EXTENSION.length());
+				Path target = targetDirectory.resolve(id + FILE_EXTENSION);
+				try (OutputStream os = Files.newOutputStream(target)) {
+					new BinarySitemapCompiler().compile(sitemap, sourceDirectory.resolve(id), os);
+				}
+				logger.info(String.format("Compiled %s into %s", sitemap, target));
+			}
+		}
+	}
+
+	/**
+	 * Compiles rendering models already loaded, e.g. to keep a copy of them that
+	 * can be loaded quickly later. All models must belong to the same sitemap.
+	 *
+	 * @param models
+	 *            Rendering models, indexed by URI path ("/" for the sitemap
+	 *            itself).
+	 * @param os
+	 *            Stream where the compiled sitemap is written.
+	 * @throws IOException
+	 *             If the stream could not be written.
+	 */
+	public static void compile(Map<String, ? extends Component<?>> models, OutputStream os) throws IOException {
+		BinarySitemapCompiler compiler = new BinarySitemapCompiler();
+		ComponentTypeAdapter adapter = new ComponentTypeAdapter(new Gson());
+		for (Map.Entry<String, ? extends Component<?>> model : models.entrySet()) {
+			compiler.pages.put(model.getKey(),
+					compiler.writeComponent(adapter.toJsonTree(model.getValue()).getAsJsonObject()));
+		}
+		compiler.write(os);
+	}
+
+	/**
+	 * Compiles one sitemap and its pages.
+	 *
+	 * @param sitemap
+	 *            Sitemap file.
+	 * @param pageDirectory
+	 *            Directory containing the pages of the sitemap. It may not exist.
+	 * @param os
+	 *            Stream where the compiled sitemap is written.
+	 * @throws IOException
+	 *             If any file could not be read or written.
+	 */
+	void compile(Path sitemap, Path pageDirectory, OutputStream os) throws IOException {
+
+		addPage("/", sitemap);
+		if (Files.isDirectory(pageDirectory)) {
+			List<Path> pageFiles;
+			try (Stream<Path> files = Files.walk(pageDirectory)) {
+				pageFiles = files.filter(p -> p.toString().endsWith(JSON_EXTENSION)).sorted()
+						.collect(Collectors.toList());
+			}
+			for (Path page : pageFiles) {
+				// the file extension becomes the trailing slash
+				String relative = pageDirectory.relativize(page).toString().replace('\\', '/');
+				addPage('/' + relative.substring(0, relative.length() - JSON_EXTENSION.length()) + '/', page);
+			}
+		}
+
+		write(os);
+	}
+
+	/**
+	 * Adds a page to the compiled sitemap.
+	 *
+	 * @param path
+	 *            URI path of the page.
+	 * @param file
+	 *            Page file.
+	 * @throws IOException
+	 *             If the file could not be read.
+	 */
+	private void addPage(String path, Path file) throws IOException {
+		try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			JsonElement page = new JsonParser().parse(reader);
+			pages.put(path, writeComponent(page.getAsJsonObject()));
+		} catch (JsonParseException | IllegalStateException e) {
+			throw new IOException("Invalid sitemap " + file, e);
+		}
+	}
+
+	/**
+	 * Writes a component record, after the records of its subcomponents.
+	 *
+	 * @param component
+	 *            Component in JSON format.
+	 * @return Offset of the component record.
+	 * @throws IOException
+	 *             If the record could not be written.
+	 */
+	private int writeComponent(JsonObject component) throws IOException {
+
+		// children first, so their offsets are known when the parent is written
+		List<Integer> children = null;
+		JsonElement subcomponents = component.get(COMPONENTS_MEMBER);
+		if (subcomponents != null && subcomponents.isJsonArray()) {
+			children = new ArrayList<>();
+			for (JsonElement child : subcomponents.getAsJsonArray()) {
+				children.add(writeComponent(child.getAsJsonObject()));
+			}
+		}
+
+		List<Map.Entry<String, JsonElement>> members = component.entrySet().stream()
+				.filter(e -> !e.getKey().equals(TYPE_MEMBER) && !e.getKey().equals(COMPONENTS_MEMBER))
+				.collect(Collectors.toList());
+
+		int offset = HEADER_SIZE + recordOutput.size();
+		JsonElement type = component.get(TYPE_MEMBER);
+		if (type == null) {
+			throw new JsonParseException("Component without type: " + component);
+		}
+		recordOutput.writeInt(stringIndex(type.getAsString()));
+		recordOutput.writeShort(members.size());
+		for (Map.Entry<String, JsonElement> member : members) {
+			recordOutput.writeInt(stringIndex(member.getKey()));
+			writeValue(member.getValue());
+		}
+
+		if (children == null) {
+			recordOutput.writeInt(-1);
+		} else {
+			recordOutput.writeInt(children.size());
+			for (int child : children) {
+				recordOutput.writeInt(child);
+			}
+		}
+		return offset;
+	}
+
+	/**
+	 * Writes a tagged value.
+	 *
+	 * @param value
+	 *            Value in JSON format.
+	 * @throws IOException
+	 *             If the value could not be written.
+	 */
+	private void writeValue(JsonElement value) throws IOException {
+		if (value.isJsonNull()) {
+			recordOutput.writeByte(TAG_NULL);
+		} else if (value.isJsonObject()) {
+			JsonObject object = value.getAsJsonObject();
+			recordOutput.writeByte(TAG_OBJECT);
+			recordOutput.writeInt(object.size());
+			for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+				recordOutput.writeInt(stringIndex(entry.getKey()));
+				writeValue(entry.getValue());
+			}
+		} else if (value.isJsonArray()) {
+			JsonArray array = value.getAsJsonArray();
+			recordOutput.writeByte(TAG_ARRAY);
+			recordOutput.writeInt(array.size());
+			for (JsonElement element : array) {
+				writeValue(element);
+			}
+		} else {
+			JsonPrimitive primitive = value.getAsJsonPrimitive();
+			if (primitive.isBoolean()) {
+				recordOutput.writeByte(primitive.getAsBoolean() ? TAG_TRUE : TAG_FALSE);
+			} else {
+				recordOutput.writeByte(primitive.isNumber() ? TAG_NUMBER : TAG_STRING);
+				recordOutput.writeInt(stringIndex(primitive.getAsString()));
+			}
+		}
+	}
+
+	/**
+	 * Returns the index of a string in the string table, adding it if needed.
+	 *
+	 * @param string
+	 *            String value.
+	 * @return Index in the string table.
+	 */
+	private int stringIndex(String string) {
+		return strings.computeIfAbsent(string, s -> strings.size());
+	}
+
+	/**
+	 * Writes the whole compiled sitemap.
+	 *
+	 * @param os
+	 *            Stream where the compiled sitemap is written.
+	 * @throws IOException
+	 *             If the stream could not be written.
+	 */
+	private void write(OutputStream os) throws IOException {
+
+		// page paths must be in the string table before it is written
+		Map<Integer, Integer> pageIndex = new LinkedHashMap<>();
+		for (Map.Entry<String, Integer> page : pages.entrySet()) {
+			pageIndex.put(stringIndex(page.getKey()), page.getValue());
+		}
+
+		List<byte[]> encoded = strings.keySet().stream().map(s -> s.getBytes(StandardCharsets.UTF_8))
+				.collect(Collectors.toList());
+		int stringTableOffset = HEADER_SIZE + records.size();
+		int stringTableSize = 4 * encoded.size() + encoded.stream().mapToInt(b -> b.length).sum();
+
+		DataOutputStream output = new DataOutputStream(os);
+		output.writeInt(MAGIC);
+		output.writeShort(VERSION);
+		output.writeShort(0); // flags, none defined yet
+		output.writeInt(encoded.size());
+		output.writeInt(stringTableOffset);
+		output.writeInt(pageIndex.size());
+		output.writeInt(stringTableOffset + stringTableSize);
+
+		records.writeTo(output);
+
+		int end = 0;
+		for (byte[] string : encoded) {
+			end += string.length;
+			output.writeInt(end);
+		}
+		for (byte[] string : encoded) {
+			output.write(string);
+		}
+
+		for (Map.Entry<Integer, Integer> page : pageIndex.entrySet()) {
+			output.writeInt(page.getKey());
+			output.writeInt(page.getValue());
+		}
+		output.flush();
+	}
+}
@@ -0,0 +1,99 @@
+package org.openhab.ui.javafx.model.rendering;
+
+/**
+ * Constants describing the binary sitemap format, written by
+ * {@link BinarySitemapCompiler} and read by {@link MappedRenderingModel}. All
+ * numbers are big-endian, and all offsets are absolute positions in the file.
+ *
+ * <pre>
+ * header       magic (int), version (short), flags (short),
+ *              string count (int), string table offset (int),
+ *              page count (int), page index offset (int)
+ * records      one per component, children always before their parent:
+ *              type string (int), member count (short),
+ *              member name string (int) and value for each member,
+ *              child count (int, -1 without components), child offsets (int[])
+ * strings      end offsets relative to the string data (int[]),
+ *              followed by the UTF-8 string data
+ * page index   path string (int) and record offset (int) for each page
+ * </pre>
+ *
+ * A value starts with one of the tags defined here, followed by a string
+ * reference for strings and numbers (numbers keep their JSON representation),
+ * or by a count and the nested entries for objects and arrays.
+ *
+ * @author Flavio Costa
+ */
+public final class BinarySitemapFormat {
+
+	/**
+	 * File extension for compiled sitemaps.
+	 */
+	public static final String FILE_EXTENSION = ".ohsm";
+
+	/**
+	 * Magic number at the start of every file ("OHSM").
+	 */
+	static final int MAGIC = 0x4F48534D;
+
+	/**
+	 * Current format version.
+	 */
+	static final short VERSION = 1;
+
+	/**
+	 * Size of the header, in bytes.
+	 */
+	static final int HEADER_SIZE = 24;
+
+	/**
+	 * Tag for a null value.
+	 */
+	static final byte TAG_NULL = 0;
+
+	/**
+	 * Tag for a string value.
+	 */
+	static final byte TAG_STRING = 1;
+
+	/**
+	 * Tag for a number value.
+	 */
+	static final byte TAG_NUMBER = 2;
+
+	/**
+	 * Tag for the boolean value true.
+	 */
+	static final byte TAG_TRUE = 3;
+
+	/**
+	 * Tag for the boolean value false.
+	 */
+	static final byte TAG_FALSE = 4;
+
+	/**
+	 * Tag for an object value.
+	 */
+	static final byte TAG_OBJECT = 5;
+
+	/**
+	 * Tag for an array value.
+	 */
+	static final byte TAG_ARRAY = 6;
+
+	/**
+	 * Name of the type member in JSON.
+	 */
+	static final String TYPE_MEMBER = "type";
+
+	/**
+	 * Name of the member holding subcomponents in JSON.
+	 */
+	static final String COMPONENTS_MEMBER = "components";
+
+	/**
+	 * Not supposed to be instantiated.
+	 */
+	private BinarySitemapFormat() {
+	}
+}
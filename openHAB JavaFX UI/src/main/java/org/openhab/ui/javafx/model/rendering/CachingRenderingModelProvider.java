@@ -0,0 +1,697 @@
+package org.openhab.ui.javafx.model.rendering;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openhab.ui.javafx.model.Component;
+import org.openhab.ui.javafx.model.container.Container;
+import org.openhab.ui.javafx.model.container.NavigableContainer;
+
+/**
+ * Keeps recently retrieved rendering models in memory, so that going back to a
+ * page or visiting it again does not require loading it one more time. Any
+ * other {@link RenderingModelProvider} can be wrapped by this class.
+ *
+ * Entries are evicted in least-recently-used order whenever the number of
+ * entries or their total weight exceeds the configured limits, and they expire
+ * after a fixed time to live, counted from the moment they were loaded. Models
+ * reported as changed by the delegate are removed from the cache before the
+ * change is passed on to the listeners of this provider.
+ *
+ * Concurrent retrievals of a model that is not cached share a single load by
+ * the delegate. If the model is invalidated while it is being loaded, it is
+ * still returned to the threads waiting for it, but it is not cached. Since
+ * lazily decoded models grow as they are displayed, the cache keeps the
+ * {@link LazyComponentList} instances found when weighing each model. A model
+ * is weighed again only if more of its components were decoded since, and
+ * only when the total weight is checked.
+ *
+ * Models loaded by {@link #prefetch(URI)} are kept apart, in a smaller area
+ * that is evicted first, so that pages that may never be shown do not push
+ * out the ones that were. They only join the other models once retrieved.
+ *
+ * @author Flavio Costa
+ */
+public class CachingRenderingModelProvider implements RenderingModelProvider {
+
+	/**
+	 * Used for logging activities of this class.
+	 */
+	private static final Logger logger = Logger.getLogger(CachingRenderingModelProvider.class.getPackage().getName());
+
+	/**
+	 * Default maximum number of cached models.
+	 */
+	public static final int DEFAULT_MAXIMUM_SIZE = 32;
+
+	/**
+	 * Default maximum total weight (number of components) of the cached models.
+	 */
+	public static final long DEFAULT_MAXIMUM_WEIGHT = 50_000;
+
+	/**
+	 * Default time to live of each entry, in milliseconds.
+	 */
+	public static final long DEFAULT_TIME_TO_LIVE = TimeUnit.MINUTES.toMillis(10);
+
+	/**
+	 * Provider that actually loads the models.
+	 */
+	private final RenderingModelProvider delegate;
+
+	/**
+	 * Maximum number of cached models.
+	 */
+	private final int maximumSize;
+
+	/**
+	 * Maximum total weight of the cached models.
+	 */
+	private final long maximumWeight;
+
+	/**
+	 * Time to live of each entry, in milliseconds.
+	 */
+	private final long timeToLive;
+
+	/**
+	 * Calculates the weight of a model.
+	 */
+	private final ToLongFunction<NavigableContainer<?, ?>> weigher;
+
+	/**
+	 * Maximum number of models prefetched but not retrieved yet.
+	 */
+	private final int maximumPrefetched;
+
+	/**
+	 * Cached entries, iterated from the least to the most recently used. Entries
+	 * are moved to the end explicitly when retrieved, so that looking them up
+	 * for other reasons does not affect the order.
+	 */
+	private final LinkedHashMap<URI, Entry> entries = new LinkedHashMap<>();
+
+	/**
+	 * Entries prefetched but not retrieved yet, from the oldest to the newest.
+	 * They are evicted before any entry in {@link #entries}, where they are
+	 * moved once retrieved.
+	 */
+	private final LinkedHashMap<URI, Entry> prefetched = new LinkedHashMap<>();
+
+	/**
+	 * Loads in progress, by URI. Invalidating a URI also removes its load, so
+	 * that the model being loaded is not cached when the load completes.
+	 */
+	private final Map<URI, CompletableFuture<NavigableContainer<?, Container<?, ?>>>> loads = new HashMap<>();
+
+	/**
+	 * Listeners notified about changed models.
+	 */
+	private final List<Consumer<URI>> listeners = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Sum of the weights of all cached entries.
+	 */
+	private long totalWeight;
+
+	/**
+	 * Number of retrievals served from the cache, or by a load already in
+	 * progress.
+	 */
+	private long hitCount;
+
+	/**
+	 * Number of retrievals forwarded to the delegate.
+	 */
+	private long missCount;
+
+	/**
+	 * Number of entries removed because of the size, weight or time limits.
+	 */
+	private long evictionCount;
+
+	/**
+	 * Cached model with its weight and expiration time.
+	 */
+	private static class Entry {
+
+		/**
+		 * Cached model.
+		 */
+		private final NavigableContainer<?, Container<?, ?>> model;
+
+		/**
+		 * Weight of the model, when it was last weighed.
+		 */
+		private long weight;
+
+		/**
+		 * Lazy lists in the model, when it was last weighed.
+		 */
+		private List<LazyComponentList> lazyLists;
+
+		/**
+		 * Number of subcomponents decoded in the lazy lists, when the model was
+		 * last weighed.
+		 */
+		private long decodedCount;
+
+		/**
+		 * Time (as in {@link System#nanoTime()}) when the entry expires.
+		 */
+		private final long expiresAt;
+
+		/**
+		 * Creates a new entry, to be weighed.
+		 *
+		 * @param model
+		 *            Cached model.
+		 * @param expiresAt
+		 *            Expiration time.
+		 */
+		private Entry(NavigableContainer<?, Container<?, ?>> model, long expiresAt) {
+			this.model = model;
+			this.expiresAt = expiresAt;
+		}
+
+		/**
+		 * Determines whether more components were decoded in the model since it
+		 * was last weighed.
+		 *
+		 * @return True if the model grew.
+		 */
+		private boolean hasGrown() {
+			long count = 0;
+			for (LazyComponentList lazyList : lazyLists) {
+				count += lazyList.getDecodedCount();
+			}
+			return count != decodedCount;
+		}
+	}
+
+	/**
+	 * Creates a cache with the default limits.
+	 *
+	 * @param delegate
+	 *            Provider that actually loads the models.
+	 */
+	public CachingRenderingModelProvider(RenderingModelProvider delegate) {
+		this(delegate, DEFAULT_MAXIMUM_SIZE, DEFAULT_MAXIMUM_WEIGHT, DEFAULT_TIME_TO_LIVE);
+	}
+
+	/**
+	 * Creates a cache weighing each model by its number of components.
+	 *
+	 * @param delegate
+	 *            Provider that actually loads the models.
+	 * @param maximumSize
+	 *            Maximum number of cached models.
+	 * @param maximumWeight
+	 *            Maximum total number of components in the cached models.
+	 * @param timeToLive
+	 *            Time to live of each entry, in milliseconds.
+	 */
+	public CachingRenderingModelProvider(RenderingModelProvider delegate, int maximumSize, long maximumWeight,
+			long timeToLive) {
+		this(delegate, maximumSize, maximumWeight, timeToLive, CachingRenderingModelProvider::countComponents);
+	}
+
+	/**
+	 * Creates a cache with a custom weigher.
+	 *
+	 * @param delegate
+	 *            Provider that actually loads the models.
+	 * @param maximumSize
+	 *            Maximum number of cached models.
+	 * @param maximumWeight
+	 *            Maximum total weight of the cached models.
+	 * @param timeToLive
+	 *            Time to live of each entry, in milliseconds.
+	 * @param weigher
+	 *            Calculates the weight of a model. It is called again for a
+	 *            cached model only once more of its lazily decoded components
+	 *            were decoded.
+	 */
+	public CachingRenderingModelProvider(RenderingModelProvider delegate, int maximumSize, long maximumWeight,
+			long timeToLive, ToLongFunction<NavigableContainer<?, ?>> weigher) {
+		this.delegate = delegate;
+		this.maximumSize = maximumSize;
+		this.maximumWeight = maximumWeight;
+		this.timeToLive = timeToLive;
+		this.weigher = weigher;
+		this.maximumPrefetched = Math.max(1, maximumSize / 2);
+
+		delegate.addChangeListener(uri -> {
+			synchronized (this) {
+				remove(uri);
+				loads.remove(uri);
+			}
+			listeners.forEach(l -> l.accept(uri));
+		});
+	}
+
+	@Override
+	public NavigableContainer<?, Container<?, ?>> retrieve(URI uri) {
+		return get(uri, true);
+	}
+
+	@Override
+	public void addChangeListener(Consumer<URI> listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Loads a model into the cache ahead of time, if it is not cached yet. Unlike
+	 * {@link #retrieve(URI)}, this method does not count as a hit or a miss, and
+	 * it does not make the model more recently used. A model loaded by this
+	 * method is among the first to be evicted until it is retrieved.
+	 *
+	 * @param uri
+	 *            URI of the model.
+	 * @return Cached or loaded model, or null if it could not be loaded.
+	 */
+	public NavigableContainer<?, Container<?, ?>> prefetch(URI uri) {
+		return get(uri, false);
+	}
+
+	/**
+	 * Returns a cached model, loading it if needed. If another thread is already
+	 * loading it, its load is waited for instead.
+	 *
+	 * @param uri
+	 *            URI of the model.
+	 * @param counted
+	 *            Whether the model is retrieved to be shown, so it counts as a hit
+	 *            or a miss and becomes the most recently used. Otherwise, it is
+	 *            being prefetched.
+	 * @return Cached or loaded model, or null if it could not be loaded.
+	 */
+	private NavigableContainer<?, Container<?, ?>> get(URI uri, boolean counted) {
+
+		CompletableFuture<NavigableContainer<?, Container<?, ?>>> load;
+		boolean loading = false;
+		synchronized (this) {
+			Entry entry = entries.get(uri);
+			if (entry == null) {
+				entry = prefetched.get(uri);
+			}
+			if (entry != null) {
+				if (entry.expiresAt - System.nanoTime() > 0) {
+					if (counted) {
+						hitCount++;
+						promote(uri);
+					}
+					evict();
+					return entry.model;
+				}
+				// expired, will be loaded again
+				remove(uri);
+				evictionCount++;
+			}
+
+			load = loads.get(uri);
+			if (load != null) {
+				if (counted) {
+					hitCount++;
+				}
+			} else {
+				if (counted) {
+					missCount++;
+				}
+				load = new CompletableFuture<>();
+				loads.put(uri, load);
+				loading = true;
+			}
+		}
+
+		if (loading) {
+			return load(uri, load, !counted);
+		}
+		NavigableContainer<?, Container<?, ?>> model;
+		try {
+			model = load.join();
+		} catch (CompletionException e) {
+			// the delegate failed in the thread loading the model
+			throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+		}
+		if (counted) {
+			synchronized (this) {
+				// it may have been loaded by a prefetch
+				promote(uri);
+			}
+		}
+		return model;
+	}
+
+	/**
+	 * Makes an entry the most recently used, moving it out of the prefetched
+	 * entries if that is where it is.
+	 *
+	 * @param uri
+	 *            URI of the model.
+	 */
+	private void promote(URI uri) {
+		Entry entry = entries.remove(uri);
+		if (entry == null) {
+			entry = prefetched.remove(uri);
+		}
+		if (entry != null) {
+			entries.put(uri, entry);
+		}
+	}
+
+	/**
+	 * Loads a model with the delegate and caches it, unless it was invalidated
+	 * meanwhile.
+	 *
+	 * @param uri
+	 *            URI of the model.
+	 * @param load
+	 *            Load of the model, completed with the model or the failure.
+	 * @param prefetch
+	 *            Whether the model is being prefetched.
+	 * @return Loaded model, or null if it could not be loaded.
+	 */
+	private NavigableContainer<?, Container<?, ?>> load(URI uri,
+			CompletableFuture<NavigableContainer<?, Container<?, ?>>> load, boolean prefetch) {
+		NavigableContainer<?, Container<?, ?>> model;
+		try {
+			// load outside the lock, so other URIs can still be served meanwhile
+			model = delegate.retrieve(uri);
+		} catch (RuntimeException | Error e) {
+			synchronized (this) {
+				loads.remove(uri, load);
+			}
+			load.completeExceptionally(e);
+			throw e;
+		}
+
+		synchronized (this) {
+			// the load is no longer there if the URI was invalidated
+			if (loads.remove(uri, load) && model != null) {
+				put(uri, model, prefetch);
+			}
+		}
+		load.complete(model);
+		return model;
+	}
+
+	/**
+	 * Adds a model to the cache, evicting the least recently used entries if the
+	 * limits are exceeded.
+	 *
+	 * @param uri
+	 *            URI of the model.
+	 * @param model
+	 *            Model to be cached.
+	 * @param prefetch
+	 *            Whether the model was prefetched, so it is added to the
+	 *            prefetched entries instead of becoming the most recently used.
+	 */
+	private synchronized void put(URI uri, NavigableContainer<?, Container<?, ?>> model, boolean prefetch) {
+
+		Entry entry = new Entry(model, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeToLive));
+		weigh(entry);
+		if (entry.weight > maximumWeight) {
+			logger.log(Level.FINE, "{0} is too heavy to be cached ({1})", new Object[] { uri, entry.weight });
+			return;
+		}
+
+		remove(uri);
+		(prefetch ? prefetched : entries).put(uri, entry);
+		totalWeight += entry.weight;
+		evict();
+	}
+
+	/**
+	 * Weighs a model, and takes note of its lazy lists to find out when it
+	 * grows.
+	 *
+	 * @param entry
+	 *            Entry with the model.
+	 * @return Change in the weight of the entry.
+	 */
+	private long weigh(Entry entry) {
+		long previous = entry.weight;
+		entry.weight = weigher.applyAsLong(entry.model);
+		entry.lazyLists = new ArrayList<>();
+		entry.decodedCount = findLazyLists(entry.model, entry.lazyLists);
+		return entry.weight - previous;
+	}
+
+	/**
+	 * Weighs again the cached models that grew since they were last weighed,
+	 * updating the total weight.
+	 */
+	private void reweighGrown() {
+		for (Map<URI, Entry> area : Arrays.asList(entries, prefetched)) {
+			for (Entry entry : area.values()) {
+				if (entry.hasGrown()) {
+					totalWeight += weigh(entry);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Evicts entries while the limits are exceeded, starting with the oldest
+	 * prefetched ones and then the least recently used.
+	 */
+	private void evict() {
+		while (prefetched.size() > maximumPrefetched || entries.size() + prefetched.size() > maximumSize) {
+			evictEldest();
+		}
+		// the models may have grown since they were weighed
+		reweighGrown();
+		while (totalWeight > maximumWeight) {
+			evictEldest();
+		}
+	}
+
+	/**
+	 * Evicts the oldest prefetched entry or, if there is none, the least
+	 * recently used one.
+	 */
+	private void evictEldest() {
+		Iterator<Map.Entry<URI, Entry>> eldest = (prefetched.isEmpty() ? entries : prefetched).entrySet().iterator();
+		Map.Entry<URI, Entry> evicted = eldest.next();
+		totalWeight -= evicted.getValue().weight;
+		eldest.remove();
+		evictionCount++;
+		logger.log(Level.FINE, "Evicted {0} from the rendering model cache", evicted.getKey());
+	}
+
+	/**
+	 * Removes an entry from the cache, if present.
+	 *
+	 * @param uri
+	 *            URI of the model.
+	 */
+	private void remove(URI uri) {
+		Entry removed = entries.remove(uri);
+		if (removed == null) {
+			removed = prefetched.remove(uri);
+		}
+		if (removed != null) {
+			totalWeight -= removed.weight;
+		}
+	}
+
+	/**
+	 * Removes all entries whose URI starts with the given prefix. For example,
+	 * invalidating "sitemap://demo/" removes every page of the demo sitemap.
+	 * Models being loaded for those URIs will not be cached either.
+	 *
+	 * @param prefix
+	 *            URI prefix.
+	 * @return Number of entries removed.
+	 */
+	public synchronized int invalidate(URI prefix) {
+		String prefixString = prefix.toString();
+		loads.keySet().removeIf(uri -> uri.toString().startsWith(prefixString));
+		int count = 0;
+		for (Map<URI, Entry> area : Arrays.asList(entries, prefetched)) {
+			Iterator<Map.Entry<URI, Entry>> iterator = area.entrySet().iterator();
+			while (iterator.hasNext()) {
+				Map.Entry<URI, Entry> entry = iterator.next();
+				if (entry.getKey().toString().startsWith(prefixString)) {
+					totalWeight -= entry.getValue().weight;
+					iterator.remove();
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the models currently cached whose URI starts with the given prefix,
+	 * without affecting their order of use. Expired entries are not included.
+	 *
+	 * @param prefix
+	 *            URI prefix.
+	 * @return Cached models, from the most to the least recently used, followed
+	 *         by the prefetched models not retrieved yet.
+	 */
+	public synchronized Map<URI, NavigableContainer<?, Container<?, ?>>> getCachedModels(URI prefix) {
+		String prefixString = prefix.toString();
+		long now = System.nanoTime();
+		List<Map.Entry<URI, Entry>> matching = new ArrayList<>();
+		for (Map.Entry<URI, Entry> entry : entries.entrySet()) {
+			if (entry.getKey().toString().startsWith(prefixString) && entry.getValue().expiresAt - now > 0) {
+				matching.add(entry);
+			}
+		}
+
+		Map<URI, NavigableContainer<?, Container<?, ?>>> models = new LinkedHashMap<>();
+		for (int i = matching.size() - 1; i >= 0; i--) {
+			models.put(matching.get(i).getKey(), matching.get(i).getValue().model);
+		}
+		// followed by the prefetched models, which were never retrieved
+		for (Map.Entry<URI, Entry> entry : prefetched.entrySet()) {
+			if (entry.getKey().toString().startsWith(prefixString) && entry.getValue().expiresAt - now > 0) {
+				models.put(entry.getKey(), entry.getValue().model);
+			}
+		}
+		return models;
+	}
+
+	/**
+	 * Removes all entries from the cache. Models being loaded will not be
+	 * cached either.
+	 */
+	public synchronized void invalidateAll() {
+		loads.clear();
+		entries.clear();
+		prefetched.clear();
+		totalWeight = 0;
+	}
+
+	/**
+	 * Returns the number of cached models.
+	 *
+	 * @return Current number of entries.
+	 */
+	public synchronized int size() {
+		return entries.size() + prefetched.size();
+	}
+
+	/**
+	 * Returns the sum of the weights of all cached models, weighing again those
+	 * that grew since they were last weighed.
+	 *
+	 * @return Current total weight.
+	 */
+	public synchronized long getTotalWeight() {
+		reweighGrown();
+		return totalWeight;
+	}
+
+	/**
+	 * Returns the number of retrievals served from the cache, including those
+	 * that waited for a load already in progress.
+	 *
+	 * @return Hit count.
+	 */
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * Returns the number of retrievals that had to be loaded by the delegate.
+	 *
+	 * @return Miss count.
+	 */
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * Returns the number of entries removed because of the size, weight or time
+	 * limits. Explicit invalidations are not counted.
+	 *
+	 * @return Eviction count.
+	 */
+	public synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s[size=%d, weight=%d, hits=%d, misses=%d, evictions=%d]", getClass().getSimpleName(),
+				size(), getTotalWeight(), getHitCount(), getMissCount(), getEvictionCount());
+	}
+
+	/**
+	 * Default weigher, counting all components in a model recursively.
+	 * Subcomponents not decoded yet in a {@link LazyComponentList} are counted
+	 * as single components, so weighing does not force them to be decoded.
+	 *
+	 * @param component
+	 *            Component to be weighed.
+	 * @return Number of components, including the one provided.
+	 */
+	static long countComponents(Component<?> component) {
+		long count = 1;
+		if (component instanceof Container && ((Container<?, ?>) component).getComponents() != null) {
+			List<? extends Component<?>> children = ((Container<?, ?>) component).getComponents();
+			if (children instanceof LazyComponentList) {
+				LazyComponentList lazy = (LazyComponentList) children;
+				for (int i = 0; i < lazy.size(); i++) {
+					count += lazy.isDecoded(i) ? countComponents(lazy.get(i)) : 1;
+				}
+			} else {
+				for (Component<?> child : children) {
+					count += countComponents(child);
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Finds the lazy lists in a model, including those in subcomponents already
+	 * decoded. Subcomponents not decoded yet are not decoded to look into them.
+	 *
+	 * @param component
+	 *            Component to look into.
+	 * @param lazyLists
+	 *            Receives the lazy lists found.
+	 * @return Number of subcomponents decoded in the lazy lists found.
+	 */
+	static long findLazyLists(Component<?> component, List<LazyComponentList> lazyLists) {
+		long decodedCount = 0;
+		if (component instanceof Container && ((Container<?, ?>) component).getComponents() != null) {
+			List<? extends Component<?>> children = ((Container<?, ?>) component).getComponents();
+			if (children instanceof LazyComponentList) {
+				LazyComponentList lazy = (LazyComponentList) children;
+				lazyLists.add(lazy);
+				decodedCount += lazy.getDecodedCount();
+				for (int i = 0; i < lazy.size(); i++) {
+					if (lazy.isDecoded(i)) {
+						decodedCount += findLazyLists(lazy.get(i), lazyLists);
+					}
+				}
+			} else {
+				for (Component<?> child : children) {
+					decodedCount += findLazyLists(child, lazyLists);
+				}
+			}
+		}
+		return decodedCount;
+	}
+}
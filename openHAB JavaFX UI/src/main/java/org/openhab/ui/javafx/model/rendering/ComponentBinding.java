@@ -0,0 +1,263 @@
+package org.openhab.ui.javafx.model.rendering;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.openhab.ui.javafx.model.AbstractComponent;
+import org.openhab.ui.javafx.model.ComponentType;
+
+import com.google.gson.JsonParseException;
+
+/**
+ * Describes how to create and populate instances of one Component implementing
+ * class. All the reflective work (walking the class hierarchy, resolving
+ * generic field types, making private fields accessible and looking up the
+ * constructor) is done only once per class, and the resulting binding is shared
+ * by every deserialization afterwards.
+ *
+ * @author Flavio Costa
+ */
+final class ComponentBinding {
+
+	/**
+	 * Bindings already created, indexed by component type.
+	 */
+	private static final Map<ComponentType, ComponentBinding> bindingsByType = new ConcurrentHashMap<>();
+
+	/**
+	 * No-args constructor of the implementing class.
+	 */
+	private final Constructor<?> constructor;
+
+	/**
+	 * Bound fields, indexed by their member name in JSON.
+	 */
+	private final Map<String, FieldBinding> fields;
+
+	/**
+	 * Binding for a single field of a Component implementing class.
+	 */
+	static final class FieldBinding {
+
+		/**
+		 * Field reference, already made accessible.
+		 */
+		private final Field field;
+
+		/**
+		 * Field type, with generic type variables resolved against the
+		 * implementing class.
+		 */
+		private final Type valueType;
+
+		/**
+		 * Creates a new binding for a field.
+		 *
+		 * @param field
+		 *            Field reference.
+		 * @param valueType
+		 *            Resolved field type.
+		 */
+		private FieldBinding(Field field, Type valueType) {
+			this.field = field;
+			this.valueType = valueType;
+		}
+
+		/**
+		 * Returns the member name for this field in JSON.
+		 *
+		 * @return Field name.
+		 */
+		String getName() {
+			return field.getName();
+		}
+
+		/**
+		 * Returns the type to be used to deserialize the field value.
+		 *
+		 * @return Resolved field type.
+		 */
+		Type getValueType() {
+			return valueType;
+		}
+
+		/**
+		 * Determines whether the field holds subcomponents.
+		 *
+		 * @return True if the field is a list of components.
+		 */
+		boolean isComponentList() {
+			return List.class.isAssignableFrom(field.getType());
+		}
+
+		/**
+		 * Gets the value of the field from a component instance.
+		 * 
+		 * @param component
+		 *            Component instance.
+		 * @return Current value.
+		 * @throws JsonParseException
+		 *             If the value could not be read from the field.
+		 */
+		Object get(AbstractComponent<?> component) throws JsonParseException {
+			try {
+				return field.get(component);
+			} catch (IllegalArgumentException | IllegalAccessException e) {
+				throw new JsonParseException(e);
+			}
+		}
+
+		/**
+		 * Sets the value of the field on a component instance.
+		 *
+		 * @param component
+		 *            Component instance.
+		 * @param value
+		 *            New value to set.
+		 * @throws JsonParseException
+		 *             If the value could not be assigned to the field.
+		 */
+		void set(AbstractComponent<?> component, Object value) throws JsonParseException {
+			try {
+				field.set(component, value);
+			} catch (IllegalArgumentException | IllegalAccessException e) {
+				throw new JsonParseException(e);
+			}
+		}
+	}
+
+	/**
+	 * Creates the binding for an implementing class.
+	 *
+	 * @param implementingClass
+	 *            Class implementing a component type.
+	 * @throws JsonParseException
+	 *             If the class does not provide a public no-args constructor.
+	 */
+	private ComponentBinding(Class<?> implementingClass) throws JsonParseException {
+
+		try {
+			constructor = implementingClass.getConstructor();
+		} catch (NoSuchMethodException | SecurityException e) {
+			throw new JsonParseException(e);
+		}
+
+		Map<String, FieldBinding> fieldMap = new LinkedHashMap<>();
+		for (Class<?> c = implementingClass; c != Object.class; c = c.getSuperclass()) {
+			for (Field field : c.getDeclaredFields()) {
+				if (field.isSynthetic() || Modifier.isStatic(field.getModifiers())
+						|| Modifier.isTransient(field.getModifiers())) {
+					continue;
+				}
+				// fields declared in subclasses take precedence, as it happened with the
+				// original lookup order
+				if (!fieldMap.containsKey(field.getName())) {
+					field.setAccessible(true); // access it even if private
+					fieldMap.put(field.getName(), new FieldBinding(field, resolveType(implementingClass, field)));
+				}
+			}
+		}
+		fields = Collections.unmodifiableMap(fieldMap);
+	}
+
+	/**
+	 * Obtains the binding for a component type.
+	 *
+	 * @param componentType
+	 *            Type for the component.
+	 * @return Binding for the class implementing the type.
+	 */
+	static ComponentBinding of(ComponentType componentType) {
+		return bindingsByType.computeIfAbsent(componentType,
+				t -> new ComponentBinding(t.getImplementingClass()));
+	}
+
+	/**
+	 * Returns all bound fields.
+	 *
+	 * @return Fields of the implementing class and all its superclasses.
+	 */
+	Collection<FieldBinding> getFields() {
+		return fields.values();
+	}
+
+	/**
+	 * Returns the binding for a JSON member.
+	 *
+	 * @param name
+	 *            Member name.
+	 * @return Binding, or null if there is no field for that member.
+	 */
+	FieldBinding getField(String name) {
+		return fields.get(name);
+	}
+
+	/**
+	 * Creates a new instance of the implementing class.
+	 *
+	 * @return Created object.
+	 * @throws JsonParseException
+	 *             If the constructor could not be called.
+	 */
+	AbstractComponent<?> newInstance() throws JsonParseException {
+		try {
+			// calls the no-args constructor for the implementing class
+			return (AbstractComponent<?>) constructor.newInstance();
+		} catch (InstantiationException | IllegalAccessException | IllegalArgumentException
+				| InvocationTargetException e) {
+			throw new JsonParseException(e);
+		}
+	}
+
+	/**
+	 * If a field type is defined as a generic one, goes down the class hierarchy
+	 * (from the class declaring the field to the implementing class) to determine
+	 * the actual type argument.
+	 *
+	 * @param implementingClass
+	 *            Class implementing a component type.
+	 * @param field
+	 *            Field reference.
+	 * @return Inferred field type.
+	 */
+	private static Type resolveType(Class<?> implementingClass, Field field) {
+
+		Type type = field.getGenericType();
+		if (!(type instanceof TypeVariable)) {
+			// just return the type for the field
+			return type;
+		}
+
+		// classes between the implementing class and the one declaring the field
+		Deque<Class<?>> hierarchy = new ArrayDeque<>();
+		for (Class<?> c = implementingClass; c != field.getDeclaringClass(); c = c.getSuperclass()) {
+			hierarchy.push(c);
+		}
+
+		while (type instanceof TypeVariable && !hierarchy.isEmpty()) {
+			TypeVariable<?> variable = (TypeVariable<?>) type;
+			int index = Arrays.asList(variable.getGenericDeclaration().getTypeParameters()).indexOf(variable);
+			Type superClassType = hierarchy.pop().getGenericSuperclass();
+			if (index < 0 || !(superClassType instanceof ParameterizedType)) {
+				break;
+			}
+			type = ((ParameterizedType) superClassType).getActualTypeArguments()[index];
+		}
+
+		return type instanceof TypeVariable ? field.getType() : type;
+	}
+}
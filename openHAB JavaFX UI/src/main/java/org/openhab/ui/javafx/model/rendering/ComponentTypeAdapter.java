@@ -0,0 +1,243 @@
+package org.openhab.ui.javafx.model.rendering;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.openhab.ui.javafx.model.AbstractComponent;
+import org.openhab.ui.javafx.model.Component;
+import org.openhab.ui.javafx.model.ComponentType;
+import org.openhab.ui.javafx.model.rendering.ComponentBinding.FieldBinding;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Streaming counterpart of {@link ComponentDeserializer}. Components are
+ * created directly from the {@link JsonReader} tokens, so no intermediate
+ * JsonElement tree is built for the document. The resulting component graph is
+ * the same one produced by the tree-based deserializer.
+ *
+ * Members are expected to appear after the type member, as in the rendering
+ * models generated by the server. Members appearing before it are buffered
+ * until the component type is known. Components are also written back in that
+ * order.
+ *
+ * @author Flavio Costa
+ */
+public class ComponentTypeAdapter extends TypeAdapter<Component<?>> {
+
+	/**
+	 * Name of the type member in JSON.
+	 */
+	private static final String TYPE_MEMBER = "type";
+
+	/**
+	 * Used to read the values of component fields (e.g. data).
+	 */
+	private final Gson gson;
+
+	/**
+	 * Creates a new adapter.
+	 *
+	 * @param gson
+	 *            Gson instance used to read field values. It must be able to
+	 *            deserialize {@link ComponentType} members.
+	 */
+	public ComponentTypeAdapter(Gson gson) {
+		this.gson = gson;
+	}
+
+	@Override
+	public Component<?> read(JsonReader reader) throws IOException {
+
+		if (reader.peek() == JsonToken.NULL) {
+			reader.nextNull();
+			return null;
+		}
+
+		AbstractComponent<?> component = null;
+		ComponentBinding binding = null;
+		Map<String, JsonElement> buffered = null;
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String name = reader.nextName();
+
+			if (binding == null) {
+				if (TYPE_MEMBER.equals(name)) {
+					// determine the component type and create the instance
+					ComponentType componentType = gson.getAdapter(ComponentType.class).read(reader);
+					binding = ComponentBinding.of(componentType);
+					component = binding.newInstance();
+					setField(component, binding.getField(TYPE_MEMBER), componentType);
+
+					if (buffered != null) {
+						// members that came before the type can be processed now
+						for (Map.Entry<String, JsonElement> entry : buffered.entrySet()) {
+							readField(component, binding.getField(entry.getKey()), entry.getValue());
+						}
+					}
+				} else {
+					// type still unknown, keep the member for later
+					if (buffered == null) {
+						buffered = new LinkedHashMap<>();
+					}
+					buffered.put(name, gson.getAdapter(JsonElement.class).read(reader));
+				}
+			} else {
+				readField(component, binding.getField(name), reader);
+			}
+		}
+		reader.endObject();
+
+		if (component == null) {
+			throw new JsonParseException("Component without type at " + reader.getPath());
+		}
+		return component;
+	}
+
+	/**
+	 * Reads a component type on its own.
+	 *
+	 * @param json
+	 *            Type member value in JSON format.
+	 * @return Component type.
+	 * @throws IOException
+	 *             If the value could not be read.
+	 */
+	ComponentType readType(String json) throws IOException {
+		return gson.getAdapter(ComponentType.class).fromJson(json);
+	}
+
+	/**
+	 * Reads a component field value from the JSON stream.
+	 *
+	 * @param component
+	 *            Component being deserialized.
+	 * @param field
+	 *            Field binding, or null if the component has no such field.
+	 * @param reader
+	 *            Reader positioned at the field value.
+	 * @throws IOException
+	 *             If the value could not be read.
+	 */
+	private void readField(AbstractComponent<?> component, FieldBinding field, JsonReader reader)
+			throws IOException {
+
+		if (field == null || reader.peek() == JsonToken.NULL) {
+			// nothing to be set on the component
+			reader.skipValue();
+			return;
+		}
+
+		Object value;
+		if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+			// array type, each element is a subcomponent
+			List<Component<?>> components = new ArrayList<>();
+			reader.beginArray();
+			while (reader.hasNext()) {
+				components.add(read(reader));
+			}
+			reader.endArray();
+			value = components;
+		} else {
+			// primitive or object type, just deserialize it
+			value = gson.getAdapter(TypeToken.get(field.getValueType())).read(reader);
+		}
+
+		setField(component, field, value);
+	}
+
+	/**
+	 * Reads a component field value from a buffered JSON element.
+	 *
+	 * @param component
+	 *            Component being deserialized.
+	 * @param field
+	 *            Field binding, or null if the component has no such field.
+	 * @param element
+	 *            Buffered field value.
+	 */
+	private void readField(AbstractComponent<?> component, FieldBinding field, JsonElement element) {
+
+		if (field == null || element.isJsonNull()) {
+			return;
+		}
+
+		Object value;
+		if (element.isJsonArray()) {
+			List<Component<?>> components = new ArrayList<>();
+			for (JsonElement c : (JsonArray) element) {
+				components.add(fromJsonTree(c));
+			}
+			value = components;
+		} else {
+			value = gson.fromJson(element, field.getValueType());
+		}
+
+		setField(component, field, value);
+	}
+
+	/**
+	 * Sets a field value, ignoring members that are not mapped in the model.
+	 *
+	 * @param component
+	 *            Component being deserialized.
+	 * @param field
+	 *            Field binding, may be null.
+	 * @param value
+	 *            Value to set.
+	 */
+	private void setField(AbstractComponent<?> component, FieldBinding field, Object value) {
+		if (field != null) {
+			field.set(component, value);
+		}
+	}
+
+	@Override
+	public void write(JsonWriter writer, Component<?> component) throws IOException {
+
+		if (component == null) {
+			writer.nullValue();
+			return;
+		}
+
+		ComponentBinding binding = ComponentBinding.of(component.getType());
+		writer.beginObject();
+		// the type goes first, so the component can be read back in one pass
+		writer.name(TYPE_MEMBER);
+		writer.value(component.getType().name().toLowerCase(Locale.ROOT));
+
+		for (FieldBinding field : binding.getFields()) {
+			Object value = field.get((AbstractComponent<?>) component);
+			if (value == null || TYPE_MEMBER.equals(field.getName())) {
+				continue;
+			}
+
+			writer.name(field.getName());
+			if (field.isComponentList()) {
+				writer.beginArray();
+				for (Object subcomponent : (List<?>) value) {
+					write(writer, (Component<?>) subcomponent);
+				}
+				writer.endArray();
+			} else {
+				@SuppressWarnings("unchecked")
+				TypeAdapter<Object> adapter = (TypeAdapter<Object>) gson.getAdapter(TypeToken.get(field.getValueType()));
+				adapter.write(writer, value);
+			}
+		}
+		writer.endObject();
+	}
+}
@@ -0,0 +1,257 @@
+package org.openhab.ui.javafx.model.rendering;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Deserializes the rendering model from JSON files in a directory, using the
+ * same layout as the classpath resources (&lt;id&gt;.json for each sitemap and
+ * &lt;id&gt;/&lt;page&gt;.json for its pages).
+ *
+ * The directory is watched for changes, and registered change listeners are
+ * notified about each page whose file was created, modified or deleted. Bursts
+ * of file events (e.g. a file being copied in several writes) are collapsed,
+ * so listeners are only called once the directory has been quiet for the
+ * debounce period. If the watch service loses events, every page read so far
+ * and every page found in the directory is reported as changed.
+ *
+ * @author Flavio Costa
+ */
+public class FileSystemRenderingModel extends AbstractJsonRenderingModel {
+
+	/**
+	 * Used for logging activities of this class.
+	 */
+	private static final Logger logger = Logger.getLogger(FileSystemRenderingModel.class.getPackage().getName());
+
+	/**
+	 * Default quiet period before changes are notified, in milliseconds.
+	 */
+	public static final long DEFAULT_DEBOUNCE = 250;
+
+	/**
+	 * Extension of the page files.
+	 */
+	private static final String JSON_EXTENSION = ".json";
+
+	/**
+	 * Directory containing the sitemaps.
+	 */
+	private final Path directory;
+
+	/**
+	 * Quiet period before changes are notified, in milliseconds.
+	 */
+	private final long debounce;
+
+	/**
+	 * Listeners notified about changed pages.
+	 */
+	private final List<Consumer<URI>> listeners = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Pages read so far, which may be cached by the callers and must be
+	 * reported if events are lost.
+	 */
+	private final Set<URI> opened = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Watches the directory and its subdirectories, created along with the
+	 * first listener.
+	 */
+	private WatchService watchService;
+
+	/**
+	 * Creates a provider with the default debounce period.
+	 *
+	 * @param directory
+	 *            Directory containing the sitemaps.
+	 */
+	public FileSystemRenderingModel(Path directory) {
+		this(directory, DEFAULT_DEBOUNCE);
+	}
+
+	/**
+	 * Creates a provider.
+	 *
+	 * @param directory
+	 *            Directory containing the sitemaps.
+	 * @param debounce
+	 *            Quiet period before changes are notified, in milliseconds.
+	 */
+	public FileSystemRenderingModel(Path directory, long debounce) {
+		this.directory = directory;
+		this.debounce = debounce;
+	}
+
+	@Override
+	protected InputStream open(URI uri, String documentPath) throws IOException {
+		opened.add(uri);
+		try {
+			return Files.newInputStream(directory.resolve(documentPath));
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+	}
+
+	@Override
+	public synchronized void addChangeListener(Consumer<URI> listener) {
+		listeners.add(listener);
+
+		if (watchService == null) {
+			try {
+				watchService = FileSystems.getDefault().newWatchService();
+				register(directory);
+			} catch (IOException e) {
+				logger.log(Level.SEVERE, String.format("Could not watch %s for changes", directory), e);
+				return;
+			}
+
+			Thread watcher = new Thread(this::watch, "rendering-model-watcher");
+			watcher.setDaemon(true);
+			watcher.start();
+		}
+	}
+
+	/**
+	 * Stops watching the directory for changes.
+	 *
+	 * @throws IOException
+	 *             If the watch service could not be closed.
+	 */
+	public synchronized void close() throws IOException {
+		if (watchService != null) {
+			watchService.close();
+			watchService = null;
+		}
+	}
+
+	/**
+	 * Registers a directory and all its subdirectories with the watch service.
+	 * A subdirectory that cannot be registered (e.g. because it was deleted
+	 * meanwhile) is skipped, so the others are still watched.
+	 *
+	 * @param root
+	 *            Directory to be watched.
+	 * @throws IOException
+	 *             If the directories could not be listed.
+	 */
+	private void register(Path root) throws IOException {
+		List<Path> directories;
+		try (Stream<Path> paths = Files.walk(root)) {
+			directories = paths.filter(Files::isDirectory).collect(Collectors.toList());
+		}
+		for (Path dir : directories) {
+			try {
+				dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+						StandardWatchEventKinds.ENTRY_DELETE);
+			} catch (IOException e) {
+				logger.log(Level.WARNING, String.format("Could not watch %s for changes", dir), e);
+			}
+		}
+	}
+
+	/**
+	 * Adds the URIs of all pages stored below a directory.
+	 *
+	 * @param root
+	 *            Directory with page files.
+	 * @param changed
+	 *            Receives the URIs of the pages.
+	 * @throws IOException
+	 *             If the directory could not be listed.
+	 */
+	private void addPages(Path root, Set<URI> changed) throws IOException {
+		try (Stream<Path> paths = Files.walk(root)) {
+			paths.filter(file -> file.getFileName().toString().endsWith(JSON_EXTENSION))
+					.filter(Files::isRegularFile).map(this::toURI).forEach(changed::add);
+		}
+	}
+
+	/**
+	 * Processes file events until the watch service is closed.
+	 */
+	private void watch() {
+
+		WatchService service = watchService;
+		Set<URI> changed = new LinkedHashSet<>();
+
+		try {
+			while (true) {
+				// wait indefinitely for the first event, then only for the quiet period
+				WatchKey key = changed.isEmpty() ? service.take() : service.poll(debounce, TimeUnit.MILLISECONDS);
+
+				if (key == null) {
+					// the directory has been quiet long enough
+					for (URI uri : changed) {
+						logger.log(Level.FINE, "Rendering model changed: {0}", uri);
+						listeners.forEach(l -> l.accept(uri));
+					}
+					changed.clear();
+					continue;
+				}
+
+				Path dir = (Path) key.watchable();
+				for (WatchEvent<?> event : key.pollEvents()) {
+					try {
+						if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+							// events were lost, so any page may have changed
+							logger.log(Level.WARNING, "File events lost while watching {0}", directory);
+							changed.addAll(opened);
+							addPages(directory, changed);
+							continue;
+						}
+
+						Path file = dir.resolve((Path) event.context());
+						if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(file)) {
+							// pages for a new sitemap, possibly written before it was registered
+							register(file);
+							addPages(file, changed);
+						} else if (file.getFileName().toString().endsWith(JSON_EXTENSION)) {
+							changed.add(toURI(file));
+						}
+					} catch (IOException e) {
+						logger.log(Level.WARNING, String.format("Could not list the changes in %s", dir), e);
+					}
+				}
+				key.reset();
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			// watching finished
+		}
+	}
+
+	/**
+	 * Determines the URI of the sitemap or page stored in a file.
+	 *
+	 * @param file
+	 *            Page file.
+	 * @return Corresponding sitemap URI.
+	 */
+	private URI toURI(Path file) {
+		String relative = directory.relativize(file).toString().replace('\\', '/');
+		// the file extension becomes the trailing slash
+		return URI.create("sitemap://" + relative.substring(0, relative.length() - JSON_EXTENSION.length()) + "/");
+	}
+}
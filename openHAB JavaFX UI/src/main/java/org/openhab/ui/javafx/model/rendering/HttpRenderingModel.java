@@ -0,0 +1,309 @@
+package org.openhab.ui.javafx.model.rendering;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.ref.WeakReference;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+import org.openhab.ui.javafx.model.container.Container;
+import org.openhab.ui.javafx.model.container.NavigableContainer;
+
+/**
+ * Retrieves rendering models from an openHAB server through its REST API. The
+ * URI sitemap://&lt;id&gt;/&lt;page&gt;/ is fetched from
+ * &lt;base&gt;/rest/sitemaps/&lt;id&gt;/&lt;page&gt;.
+ *
+ * Responses are requested compressed with gzip, and connections are kept alive
+ * between requests (as long as each response is fully read). The ETag and
+ * Last-Modified headers of each response are kept along with the model read
+ * from it, so that retrieving the same URI again only sends a conditional
+ * request; if the server answers 304 (Not Modified), the previous model is
+ * returned without reading anything else.
+ *
+ * Only the validators of the most recently retrieved URIs are kept, and the
+ * models are only weakly referenced, so they are kept in memory by whoever
+ * caches them (e.g. {@link CachingRenderingModelProvider}) rather than by this
+ * class. Once a model has been collected, its URI is requested again in full.
+ *
+ * @author Flavio Costa
+ */
+public class HttpRenderingModel extends AbstractJsonRenderingModel {
+
+	/**
+	 * Used for logging activities of this class.
+	 */
+	private static final Logger logger = Logger.getLogger(HttpRenderingModel.class.getPackage().getName());
+
+	/**
+	 * Default timeout to establish a connection, in milliseconds.
+	 */
+	public static final int DEFAULT_CONNECT_TIMEOUT = 5000;
+
+	/**
+	 * Default timeout waiting for data from an established connection, in
+	 * milliseconds.
+	 */
+	public static final int DEFAULT_READ_TIMEOUT = 10000;
+
+	/**
+	 * Maximum number of URIs whose response validators are kept.
+	 */
+	private static final int MAX_VALIDATED_RESPONSES = 256;
+
+	/**
+	 * Path of the sitemaps resource, relative to the base URI.
+	 */
+	private static final String SITEMAPS_PATH = "rest/sitemaps/";
+
+	/**
+	 * Base URI of the openHAB server.
+	 */
+	private final URI baseUri;
+
+	/**
+	 * Timeout to establish a connection, in milliseconds.
+	 */
+	private final int connectTimeout;
+
+	/**
+	 * Timeout waiting for data, in milliseconds.
+	 */
+	private final int readTimeout;
+
+	/**
+	 * Last response for each URI, used for revalidation, in access order so that
+	 * the least recently retrieved URI is dropped first.
+	 */
+	private final Map<URI, Response> responses = Collections
+			.synchronizedMap(new LinkedHashMap<URI, Response>(16, 0.75f, true) {
+
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<URI, Response> eldest) {
+					return size() > MAX_VALIDATED_RESPONSES;
+				}
+			});
+
+	/**
+	 * Creates a provider with the default timeouts.
+	 *
+	 * @param baseUri
+	 *            Base URI of the openHAB server, e.g. http://localhost:8080/.
+	 */
+	public HttpRenderingModel(URI baseUri) {
+		this(baseUri, DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT);
+	}
+
+	/**
+	 * Creates a provider.
+	 *
+	 * @param baseUri
+	 *            Base URI of the openHAB server, e.g. http://localhost:8080/.
+	 * @param connectTimeout
+	 *            Timeout to establish a connection, in milliseconds.
+	 * @param readTimeout
+	 *            Timeout waiting for data, in milliseconds.
+	 */
+	public HttpRenderingModel(URI baseUri, int connectTimeout, int readTimeout) {
+		// relative paths must be resolved inside the base path
+		this.baseUri = baseUri.getPath().endsWith("/") ? baseUri : URI.create(baseUri + "/");
+		this.connectTimeout = connectTimeout;
+		this.readTimeout = readTimeout;
+	}
+
+	@Override
+	public NavigableContainer<?, Container<?, ?>> retrieve(URI uri) {
+
+		Response previous = responses.get(uri);
+		NavigableContainer<?, Container<?, ?>> previousModel = previous == null ? null : previous.model.get();
+		try {
+			HttpURLConnection connection = connect(uri);
+			// without the previous model, a 304 response would be of no use
+			if (previousModel != null) {
+				if (previous.etag != null) {
+					connection.setRequestProperty("If-None-Match", previous.etag);
+				}
+				if (previous.lastModified != 0) {
+					connection.setIfModifiedSince(previous.lastModified);
+				}
+			}
+
+			int status = connection.getResponseCode();
+			if (status != HttpURLConnection.HTTP_OK) {
+				release(connection);
+				if (status == HttpURLConnection.HTTP_NOT_MODIFIED && previousModel != null) {
+					logger.log(Level.FINE, "Not modified: {0}", uri);
+					return previousModel;
+				} else if (status == HttpURLConnection.HTTP_NOT_FOUND) {
+					logger.log(Level.SEVERE, String.format("Resource not found for %s", uri));
+				} else {
+					logger.log(Level.SEVERE, String.format("Loading %s failed with HTTP status %d", uri, status));
+				}
+				return null;
+			}
+
+			NavigableContainer<?, Container<?, ?>> model;
+			try (InputStream is = getInputStream(connection)) {
+				model = read(new InputStreamReader(is, getCharset(connection)), uri);
+			}
+
+			String etag = connection.getHeaderField("ETag");
+			long lastModified = connection.getLastModified();
+			if (etag != null || lastModified != 0) {
+				responses.put(uri, new Response(etag, lastModified, model));
+			} else {
+				responses.remove(uri);
+			}
+			return model;
+
+		} catch (IOException e) {
+			logger.log(Level.SEVERE, String.format("Loading %s failed", uri), e);
+		}
+
+		return null;
+	}
+
+	@Override
+	protected InputStream open(URI uri, String documentPath) throws IOException {
+		HttpURLConnection connection = connect(uri);
+		if (connection.getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+			release(connection);
+			return null;
+		}
+		return getInputStream(connection);
+	}
+
+	/**
+	 * Opens a connection to the server for a rendering model.
+	 *
+	 * @param uri
+	 *            Navigable container URI.
+	 * @return Connection, not yet connected.
+	 * @throws IOException
+	 *             If the connection could not be opened.
+	 */
+	private HttpURLConnection connect(URI uri) throws IOException {
+		// sitemap://<id>/<page>/ => <base>/rest/sitemaps/<id>/<page>
+		String path = uri.getHost() + uri.getPath().replaceAll("/$", "");
+		HttpURLConnection connection = (HttpURLConnection) baseUri.resolve(SITEMAPS_PATH + path).toURL()
+				.openConnection();
+		connection.setConnectTimeout(connectTimeout);
+		connection.setReadTimeout(readTimeout);
+		connection.setRequestProperty("Accept", "application/json");
+		connection.setRequestProperty("Accept-Encoding", "gzip");
+		return connection;
+	}
+
+	/**
+	 * Returns the stream with the response body, decompressing it if needed.
+	 *
+	 * @param connection
+	 *            Connection with a successful response.
+	 * @return Response body.
+	 * @throws IOException
+	 *             If the body could not be read.
+	 */
+	private InputStream getInputStream(HttpURLConnection connection) throws IOException {
+		InputStream is = connection.getInputStream();
+		return "gzip".equalsIgnoreCase(connection.getContentEncoding()) ? new GZIPInputStream(is) : is;
+	}
+
+	/**
+	 * Determines the character encoding of a response, which for JSON is UTF-8
+	 * unless stated otherwise.
+	 *
+	 * @param connection
+	 *            Connection with a successful response.
+	 * @return Character encoding of the response body.
+	 */
+	private Charset getCharset(HttpURLConnection connection) {
+		String contentType = connection.getContentType();
+		if (contentType != null) {
+			for (String parameter : contentType.split(";")) {
+				String[] pair = parameter.trim().split("=", 2);
+				if (pair.length == 2 && pair[0].equalsIgnoreCase("charset")) {
+					try {
+						return Charset.forName(pair[1].replace("\"", "").trim());
+					} catch (IllegalArgumentException e) {
+						logger.log(Level.WARNING, "Unsupported charset in {0}", contentType);
+					}
+				}
+			}
+		}
+		return StandardCharsets.UTF_8;
+	}
+
+	/**
+	 * Reads whatever is left of a response, so that the connection can be kept
+	 * alive and reused for the next request.
+	 *
+	 * @param connection
+	 *            Connection to be released.
+	 */
+	private void release(HttpURLConnection connection) {
+		try {
+			InputStream is = connection.getResponseCode() < HttpURLConnection.HTTP_BAD_REQUEST
+					? connection.getInputStream()
+					: connection.getErrorStream();
+			if (is != null) {
+				try (InputStream body = is) {
+					byte[] buffer = new byte[4096];
+					while (body.read(buffer) >= 0) {
+						// discard
+					}
+				}
+			}
+		} catch (IOException e) {
+			// the connection will just not be reused
+			connection.disconnect();
+		}
+	}
+
+	/**
+	 * Validators of a response and the model read from it.
+	 */
+	private static class Response {
+
+		/**
+		 * Entity tag, if any.
+		 */
+		private final String etag;
+
+		/**
+		 * Last modification time, or zero if unknown.
+		 */
+		private final long lastModified;
+
+		/**
+		 * Model read from the response, as long as it is still in use.
+		 */
+		private final WeakReference<NavigableContainer<?, Container<?, ?>>> model;
+
+		/**
+		 * Creates a new instance.
+		 *
+		 * @param etag
+		 *            Entity tag, if any.
+		 * @param lastModified
+		 *            Last modification time, or zero if unknown.
+		 * @param model
+		 *            Model read from the response.
+		 */
+		private Response(String etag, long lastModified, NavigableContainer<?, Container<?, ?>> model) {
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.model = new WeakReference<>(model);
+		}
+	}
+}
@@ -0,0 +1,203 @@
+package org.openhab.ui.javafx.model.rendering;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+import org.openhab.ui.javafx.model.Component;
+import org.openhab.ui.javafx.model.ComponentType;
+
+import com.google.gson.JsonParseException;
+
+/**
+ * List of subcomponents that are still kept as ranges of the JSON document
+ * they were read from. Each subcomponent is decoded when it is first accessed,
+ * so containers with many components can be displayed before all of them are
+ * built. The type of each subcomponent is known without decoding it.
+ *
+ * As subcomponents are decoded, the ranges still pending are copied into a
+ * smaller array once they take up less than a quarter of the one referenced,
+ * so the rest of the document can be released. Once all subcomponents are
+ * decoded, no document is referenced by the list anymore. Instances may be
+ * accessed by multiple threads.
+ *
+ * @author Flavio Costa
+ */
+public class LazyComponentList extends AbstractList<Component<?>> implements RandomAccess {
+
+	/**
+	 * Decodes the subcomponents.
+	 */
+	private final LazyComponentReader reader;
+
+	/**
+	 * Document contents, or the ranges not decoded yet, until all
+	 * subcomponents are decoded.
+	 */
+	private char[] source;
+
+	/**
+	 * Start of each subcomponent in the document.
+	 */
+	private final int[] starts;
+
+	/**
+	 * End of each subcomponent in the document (exclusive).
+	 */
+	private final int[] ends;
+
+	/**
+	 * Type of each subcomponent, if found while scanning the document.
+	 */
+	private final ComponentType[] types;
+
+	/**
+	 * Subcomponents already decoded.
+	 */
+	private final Component<?>[] components;
+
+	/**
+	 * Number of subcomponents not decoded yet.
+	 */
+	private int pending;
+
+	/**
+	 * Total length of the subcomponents not decoded yet.
+	 */
+	private int pendingLength;
+
+	/**
+	 * Creates a new list.
+	 *
+	 * @param reader
+	 *            Decodes the subcomponents.
+	 * @param source
+	 *            Document contents.
+	 * @param starts
+	 *            Start of each subcomponent in the document.
+	 * @param ends
+	 *            End of each subcomponent in the document (exclusive).
+	 * @param types
+	 *            Type of each subcomponent, where known.
+	 */
+	LazyComponentList(LazyComponentReader reader, char[] source, int[] starts, int[] ends, ComponentType[] types) {
+		this.reader = reader;
+		this.source = source;
+		this.starts = starts;
+		this.ends = ends;
+		this.types = types;
+		this.components = new Component<?>[starts.length];
+		this.pending = starts.length;
+		for (int i = 0; i < starts.length; i++) {
+			pendingLength += ends[i] - starts[i];
+		}
+	}
+
+	@Override
+	public synchronized Component<?> get(int index) {
+		Component<?> component = components[index];
+		if (component == null && source != null) {
+			try {
+				component = reader.read(source, starts[index], ends[index]);
+			} catch (IOException e) {
+				throw new JsonParseException("Invalid component at " + starts[index], e);
+			}
+			store(index, component);
+		}
+		return component;
+	}
+
+	@Override
+	public synchronized Component<?> set(int index, Component<?> component) {
+		Component<?> previous = get(index);
+		store(index, component);
+		return previous;
+	}
+
+	@Override
+	public int size() {
+		return starts.length;
+	}
+
+	/**
+	 * Returns the type of a subcomponent, decoding it only if the type could
+	 * not be determined in advance.
+	 *
+	 * @param index
+	 *            Index of the subcomponent.
+	 * @return Component type.
+	 */
+	public synchronized ComponentType getType(int index) {
+		ComponentType type = types[index];
+		if (type == null) {
+			Component<?> component = get(index);
+			type = component == null ? null : component.getType();
+		}
+		return type;
+	}
+
+	/**
+	 * Determines whether a subcomponent has already been decoded.
+	 *
+	 * @param index
+	 *            Index of the subcomponent.
+	 * @return True if it was decoded.
+	 */
+	public synchronized boolean isDecoded(int index) {
+		return source == null || components[index] != null;
+	}
+
+	/**
+	 * Returns the number of subcomponents decoded so far. It only grows, so it
+	 * tells whether the list grew since it was last looked at.
+	 *
+	 * @return Number of subcomponents decoded.
+	 */
+	public synchronized int getDecodedCount() {
+		return starts.length - pending;
+	}
+
+	/**
+	 * Stores a decoded subcomponent.
+	 *
+	 * @param index
+	 *            Index of the subcomponent.
+	 * @param component
+	 *            Decoded subcomponent.
+	 */
+	private void store(int index, Component<?> component) {
+		boolean decoded = components[index] == null && component != null;
+		components[index] = component;
+		if (component != null) {
+			types[index] = component.getType();
+		}
+		if (decoded) {
+			pendingLength -= ends[index] - starts[index];
+			if (--pending == 0) {
+				// everything decoded, the document is not needed anymore
+				source = null;
+			} else if (pendingLength < source.length / 4) {
+				compact();
+			}
+		}
+	}
+
+	/**
+	 * Copies the subcomponents not decoded yet into a smaller array, so that
+	 * the document they were read from can be released.
+	 */
+	private void compact() {
+		char[] compacted = new char[pendingLength];
+		int position = 0;
+		for (int i = 0; i < starts.length; i++) {
+			if (components[i] == null) {
+				int length = ends[i] - starts[i];
+				System.arraycopy(source, starts[i], compacted, position, length);
+				starts[i] = position;
+				ends[i] = position + length;
+				position += length;
+			}
+		}
+		source = compacted;
+	}
+}
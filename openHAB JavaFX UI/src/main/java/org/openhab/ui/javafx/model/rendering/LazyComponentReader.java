@@ -0,0 +1,477 @@
+package org.openhab.ui.javafx.model.rendering;
+
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.openhab.ui.javafx.model.AbstractComponent;
+import org.openhab.ui.javafx.model.Component;
+import org.openhab.ui.javafx.model.ComponentType;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.MalformedJsonException;
+
+/**
+ * Reads components from a JSON document held in memory, keeping large arrays
+ * of subcomponents as unparsed character ranges. Such arrays are represented
+ * by a {@link LazyComponentList}, which decodes each subcomponent only when it
+ * is first accessed. Smaller arrays are read eagerly by
+ * {@link ComponentTypeAdapter}.
+ *
+ * Locating the subcomponents only requires a light scan of the document, which
+ * skips over the characters without creating any objects, apart from reading
+ * the type of each subcomponent.
+ *
+ * @author Flavio Costa
+ */
+final class LazyComponentReader {
+
+	/**
+	 * Name of the type member in JSON.
+	 */
+	private static final String TYPE_MEMBER = "type";
+
+	/**
+	 * Name of the member holding subcomponents in JSON.
+	 */
+	private static final String COMPONENTS_MEMBER = "components";
+
+	/**
+	 * Minimum length of a component in JSON, i.e. {"type":"x"}.
+	 */
+	private static final int MIN_COMPONENT_LENGTH = 12;
+
+	/**
+	 * Reads components eagerly.
+	 */
+	private final ComponentTypeAdapter adapter;
+
+	/**
+	 * Minimum number of subcomponents for an array to be decoded lazily.
+	 */
+	private final int threshold;
+
+	/**
+	 * Component types already read, indexed by their JSON representation.
+	 */
+	private final Map<String, ComponentType> typesByJson = new ConcurrentHashMap<>();
+
+	/**
+	 * Creates a new reader.
+	 *
+	 * @param adapter
+	 *            Reads components eagerly.
+	 * @param threshold
+	 *            Minimum number of subcomponents for an array to be decoded
+	 *            lazily, must be positive.
+	 */
+	LazyComponentReader(ComponentTypeAdapter adapter, int threshold) {
+		this.adapter = adapter;
+		this.threshold = threshold;
+	}
+
+	/**
+	 * Returns the minimum length of a document that may contain an array to be
+	 * decoded lazily. Shorter documents are always decoded eagerly.
+	 *
+	 * @return Minimum length, in characters.
+	 */
+	int getMinimumLength() {
+		return threshold * MIN_COMPONENT_LENGTH;
+	}
+
+	/**
+	 * Reads the component in a JSON document.
+	 *
+	 * @param source
+	 *            Document contents. The array is referenced by the lazy lists
+	 *            created, so it must not be changed afterwards.
+	 * @return Component read.
+	 * @throws IOException
+	 *             If the document is not valid.
+	 */
+	Component<?> read(char[] source) throws IOException {
+		int start = skipWhitespace(source, 0, source.length);
+		int end = source.length;
+		while (end > start && Character.isWhitespace(source[end - 1])) {
+			end--;
+		}
+		return read(source, start, end);
+	}
+
+	/**
+	 * Reads a component from a range of a JSON document.
+	 *
+	 * @param source
+	 *            Document contents.
+	 * @param start
+	 *            Start of the component object.
+	 * @param end
+	 *            End of the component object (exclusive).
+	 * @return Component read.
+	 * @throws IOException
+	 *             If the range does not contain a valid component.
+	 */
+	Component<?> read(char[] source, int start, int end) throws IOException {
+
+		if (source[start] != '{' || end - start < getMinimumLength()) {
+			// too short to contain enough subcomponents (or e.g. null)
+			return adapter.read(new JsonReader(new CharArrayReader(source, start, end - start)));
+		}
+
+		// locate the subcomponents, while skipping over everything else
+		ComponentArray array = null;
+		int position = skipWhitespace(source, start + 1, end);
+		while (source[position] != '}') {
+			int nameStart = position;
+			int nameEnd = skipString(source, position, end);
+			position = skipWhitespace(source, nameEnd, end);
+			position = skipWhitespace(source, expect(source, position, ':'), end);
+			int valueEnd;
+			if (source[position] == '[' && isName(source, nameStart, nameEnd, COMPONENTS_MEMBER)) {
+				array = scanComponents(source, position, end);
+				valueEnd = array.end;
+			} else {
+				valueEnd = skipValue(source, position, end);
+			}
+			position = skipWhitespace(source, valueEnd, end);
+			if (source[position] == ',') {
+				position = skipWhitespace(source, position + 1, end);
+			}
+		}
+
+		if (array == null) {
+			return adapter.read(new JsonReader(new CharArrayReader(source, start, end - start)));
+		}
+
+		// read everything else, with the subcomponents replaced by null
+		char[] remainder = new char[array.start - start + 4 + end - array.end];
+		System.arraycopy(source, start, remainder, 0, array.start - start);
+		"null".getChars(0, 4, remainder, array.start - start);
+		System.arraycopy(source, array.end, remainder, array.start - start + 4, end - array.end);
+		AbstractComponent<?> component = (AbstractComponent<?>) adapter
+				.read(new JsonReader(new CharArrayReader(remainder)));
+
+		ComponentBinding.FieldBinding field = ComponentBinding.of(component.getType()).getField(COMPONENTS_MEMBER);
+		if (field != null) {
+			field.set(component, toList(source, array));
+		}
+		return component;
+	}
+
+	/**
+	 * Locates each subcomponent in an array, and its type.
+	 *
+	 * @param source
+	 *            Document contents.
+	 * @param start
+	 *            Start of the array.
+	 * @param end
+	 *            Limit for the scan.
+	 * @return Location of the subcomponents.
+	 * @throws IOException
+	 *             If the array is not valid.
+	 */
+	private ComponentArray scanComponents(char[] source, int start, int end) throws IOException {
+
+		ComponentArray array = new ComponentArray(start, Math.max(threshold, 16));
+		int position = skipWhitespace(source, start + 1, end);
+		while (source[position] != ']') {
+			int index = array.add(position);
+			array.ends[index] = source[position] == '{' ? scanType(source, position, end, array.types, index)
+					: skipValue(source, position, end);
+			position = skipWhitespace(source, array.ends[index], end);
+			if (source[position] == ',') {
+				position = skipWhitespace(source, position + 1, end);
+			}
+		}
+		array.end = position + 1;
+		return array;
+	}
+
+	/**
+	 * Creates the list of subcomponents in an array.
+	 *
+	 * @param source
+	 *            Document contents.
+	 * @param array
+	 *            Location of the subcomponents.
+	 * @return Lazy list of subcomponents, or a list of subcomponents already
+	 *         read if there are not enough of them to be worth it (in which
+	 *         case their own subcomponents may still be loaded lazily).
+	 * @throws IOException
+	 *             If any subcomponent is not valid.
+	 */
+	private List<Component<?>> toList(char[] source, ComponentArray array) throws IOException {
+		if (array.count < threshold) {
+			List<Component<?>> components = new ArrayList<>(array.count);
+			for (int i = 0; i < array.count; i++) {
+				components.add(read(source, array.starts[i], array.ends[i]));
+			}
+			return components;
+		}
+		return new LazyComponentList(this, source, Arrays.copyOf(array.starts, array.count),
+				Arrays.copyOf(array.ends, array.count), Arrays.copyOf(array.types, array.count));
+	}
+
+	/**
+	 * Skips over a component object, taking note of its type.
+	 *
+	 * @param source
+	 *            Document contents.
+	 * @param start
+	 *            Start of the object.
+	 * @param end
+	 *            Limit for the scan.
+	 * @param types
+	 *            Receives the component type.
+	 * @param index
+	 *            Index of the component in the array.
+	 * @return End of the object (exclusive).
+	 * @throws IOException
+	 *             If the object is not valid.
+	 */
+	private int scanType(char[] source, int start, int end, ComponentType[] types, int index) throws IOException {
+		int position = skipWhitespace(source, start + 1, end);
+		while (source[position] != '}') {
+			int nameStart = position;
+			int nameEnd = skipString(source, position, end);
+			position = skipWhitespace(source, nameEnd, end);
+			position = skipWhitespace(source, expect(source, position, ':'), end);
+			int valueEnd = skipValue(source, position, end);
+			if (source[position] == '"' && isName(source, nameStart, nameEnd, TYPE_MEMBER)) {
+				types[index] = getType(new String(source, position, valueEnd - position));
+			}
+			position = skipWhitespace(source, valueEnd, end);
+			if (source[position] == ',') {
+				position = skipWhitespace(source, position + 1, end);
+			}
+		}
+		return position + 1;
+	}
+
+	/**
+	 * Returns the component type for a type member value.
+	 *
+	 * @param json
+	 *            Type member value in JSON format.
+	 * @return Component type.
+	 * @throws IOException
+	 *             If the value is not a valid type.
+	 */
+	private ComponentType getType(String json) throws IOException {
+		ComponentType type = typesByJson.get(json);
+		if (type == null) {
+			type = adapter.readType(json);
+			typesByJson.put(json, type);
+		}
+		return type;
+	}
+
+	/**
+	 * Determines whether a member name is a given one.
+	 *
+	 * @param source
+	 *            Document contents.
+	 * @param nameStart
+	 *            Position of the opening quote of the name.
+	 * @param nameEnd
+	 *            Position after the closing quote of the name.
+	 * @param name
+	 *            Expected name.
+	 * @return True if the member has the expected name.
+	 */
+	private boolean isName(char[] source, int nameStart, int nameEnd, String name) {
+		if (nameEnd - nameStart != name.length() + 2) {
+			return false;
+		}
+		for (int i = 0; i < name.length(); i++) {
+			if (source[nameStart + 1 + i] != name.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Skips over any JSON value.
+	 *
+	 * @param source
+	 *            Document contents.
+	 * @param start
+	 *            Start of the value.
+	 * @param end
+	 *            Limit for the scan.
+	 * @return End of the value (exclusive).
+	 * @throws IOException
+	 *             If the value is not valid.
+	 */
+	private int skipValue(char[] source, int start, int end) throws IOException {
+		char first = source[start];
+		if (first == '"') {
+			return skipString(source, start, end);
+		}
+
+		if (first == '{' || first == '[') {
+			int depth = 0;
+			for (int position = start; position < end; position++) {
+				char c = source[position];
+				if (c == '"') {
+					position = skipString(source, position, end) - 1;
+				} else if (c == '{' || c == '[') {
+					depth++;
+				} else if ((c == '}' || c == ']') && --depth == 0) {
+					return position + 1;
+				}
+			}
+			throw new MalformedJsonException("Unterminated value at " + start);
+		}
+
+		// literal or number
+		int position = start;
+		while (position < end && ",}] \t\r\n".indexOf(source[position]) < 0) {
+			position++;
+		}
+		return position;
+	}
+
+	/**
+	 * Skips over a string.
+	 *
+	 * @param source
+	 *            Document contents.
+	 * @param start
+	 *            Position of the opening quote.
+	 * @param end
+	 *            Limit for the scan.
+	 * @return Position after the closing quote.
+	 * @throws IOException
+	 *             If the string is not valid.
+	 */
+	private int skipString(char[] source, int start, int end) throws IOException {
+		expect(source, start, '"');
+		for (int position = start + 1; position < end; position++) {
+			char c = source[position];
+			if (c == '\\') {
+				position++;
+			} else if (c == '"') {
+				return position + 1;
+			}
+		}
+		throw new MalformedJsonException("Unterminated string at " + start);
+	}
+
+	/**
+	 * Skips whitespace characters.
+	 *
+	 * @param source
+	 *            Document contents.
+	 * @param start
+	 *            Start of the scan.
+	 * @param end
+	 *            Limit for the scan.
+	 * @return Position of the first character that is not whitespace.
+	 * @throws IOException
+	 *             If the limit is reached.
+	 */
+	private int skipWhitespace(char[] source, int start, int end) throws IOException {
+		for (int position = start; position < end; position++) {
+			if (!Character.isWhitespace(source[position])) {
+				return position;
+			}
+		}
+		throw new MalformedJsonException("Unexpected end of input at " + end);
+	}
+
+	/**
+	 * Checks that a certain character is found.
+	 *
+	 * @param source
+	 *            Document contents.
+	 * @param position
+	 *            Position of the character.
+	 * @param expected
+	 *            Expected character.
+	 * @return Position after the character.
+	 * @throws IOException
+	 *             If another character is found.
+	 */
+	private int expect(char[] source, int position, char expected) throws IOException {
+		if (source[position] != expected) {
+			throw new MalformedJsonException("Expected '" + expected + "' at " + position);
+		}
+		return position + 1;
+	}
+
+	/**
+	 * Location of the subcomponents in an array.
+	 */
+	private static final class ComponentArray {
+
+		/**
+		 * Start of the array.
+		 */
+		private final int start;
+
+		/**
+		 * End of the array (exclusive).
+		 */
+		private int end;
+
+		/**
+		 * Number of subcomponents.
+		 */
+		private int count;
+
+		/**
+		 * Start of each subcomponent.
+		 */
+		private int[] starts;
+
+		/**
+		 * End of each subcomponent (exclusive).
+		 */
+		private int[] ends;
+
+		/**
+		 * Type of each subcomponent, where found.
+		 */
+		private ComponentType[] types;
+
+		/**
+		 * Creates an empty array location.
+		 *
+		 * @param start
+		 *            Start of the array.
+		 * @param capacity
+		 *            Initial capacity.
+		 */
+		private ComponentArray(int start, int capacity) {
+			this.start = start;
+			starts = new int[capacity];
+			ends = new int[capacity];
+			types = new ComponentType[capacity];
+		}
+
+		/**
+		 * Adds a subcomponent.
+		 *
+		 * @param position
+		 *            Start of the subcomponent.
+		 * @return Index of the subcomponent.
+		 */
+		private int add(int position) {
+			if (count == starts.length) {
+				starts = Arrays.copyOf(starts, count * 2);
+				ends = Arrays.copyOf(ends, count * 2);
+				types = Arrays.copyOf(types, count * 2);
+			}
+			starts[count] = position;
+			return count++;
+		}
+	}
+}
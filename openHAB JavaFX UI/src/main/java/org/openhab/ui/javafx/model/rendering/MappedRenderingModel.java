@@ -0,0 +1,354 @@
+package org.openhab.ui.javafx.model.rendering;
+
+import static org.openhab.ui.javafx.model.rendering.BinarySitemapFormat.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openhab.ui.javafx.model.AbstractComponent;
+import org.openhab.ui.javafx.model.Component;
+import org.openhab.ui.javafx.model.ComponentType;
+import org.openhab.ui.javafx.model.container.Container;
+import org.openhab.ui.javafx.model.container.NavigableContainer;
+import org.openhab.ui.javafx.model.container.Page;
+import org.openhab.ui.javafx.model.container.Sitemap;
+import org.openhab.ui.javafx.model.rendering.ComponentBinding.FieldBinding;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * Loads rendering models from sitemaps compiled by
+ * {@link BinarySitemapCompiler}. Each compiled file is memory-mapped when its
+ * sitemap is first requested, and only its header and page index are read at
+ * that moment; each page is decoded from its offset when it is retrieved.
+ *
+ * The URI sitemap://&lt;id&gt;/&lt;path&gt; is loaded from the file
+ * &lt;id&gt;.ohsm in the configured directory.
+ *
+ * @author Flavio Costa
+ */
+public class MappedRenderingModel implements RenderingModelProvider {
+
+	/**
+	 * Used for logging activities of this class.
+	 */
+	private static final Logger logger = Logger.getLogger(MappedRenderingModel.class.getPackage().getName());
+
+	/**
+	 * Directory containing the compiled sitemaps.
+	 */
+	private final Path directory;
+
+	/**
+	 * Sitemaps already mapped, indexed by sitemap id.
+	 */
+	private final Map<String, MappedSitemap> sitemaps = new ConcurrentHashMap<>();
+
+	/**
+	 * Converts values that cannot be decoded directly (e.g. component data
+	 * objects).
+	 */
+	private final Gson gson = new Gson();
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param directory
+	 *            Directory containing the compiled sitemaps.
+	 */
+	public MappedRenderingModel(Path directory) {
+		this.directory = directory;
+	}
+
+	@Override
+	public NavigableContainer<?, Container<?, ?>> retrieve(URI uri) {
+
+		String id = uri.getHost();
+		try {
+			MappedSitemap sitemap = sitemaps.get(id);
+			if (sitemap == null) {
+				Path file = directory.resolve(id + FILE_EXTENSION);
+				if (!Files.isRegularFile(file)) {
+					logger.log(Level.SEVERE, String.format("Compiled sitemap not found for %s", uri));
+					return null;
+				}
+				sitemap = sitemaps.computeIfAbsent(id, i -> new MappedSitemap(file));
+			}
+
+			// sitemap://<id> is the same as sitemap://<id>/
+			String path = uri.getPath().isEmpty() ? "/" : uri.getPath();
+			Integer offset = sitemap.pages.get(path);
+			if (offset == null) {
+				logger.log(Level.SEVERE, String.format("Page not found for %s", uri));
+				return null;
+			}
+
+			Component<?> component = sitemap.readComponent(offset);
+			// empty or root path? => Sitemap, else Page
+			Class<?> containerClass = path.equals("/") ? Sitemap.class : Page.class;
+			if (!containerClass.isInstance(component)) {
+				throw new IllegalStateException(String.format("Expected %s but found %s for %s",
+						containerClass.getSimpleName(), component.getType(), uri));
+			}
+
+			@SuppressWarnings("unchecked")
+			NavigableContainer<?, Container<?, ?>> container = (NavigableContainer<?, Container<?, ?>>) component;
+			return container;
+
+		} catch (UncheckedIOException e) {
+			logger.log(Level.SEVERE, String.format("Loading %s failed", uri), e.getCause());
+			return null;
+		}
+	}
+
+	/**
+	 * Compiled sitemap mapped into memory.
+	 */
+	private class MappedSitemap {
+
+		/**
+		 * Contents of the file.
+		 */
+		private final ByteBuffer buffer;
+
+		/**
+		 * Offset of the string table.
+		 */
+		private final int stringTableOffset;
+
+		/**
+		 * Offset of the string data, right after the string end offsets.
+		 */
+		private final int stringDataOffset;
+
+		/**
+		 * Strings already decoded, indexed by their position in the table.
+		 */
+		private final String[] strings;
+
+		/**
+		 * Component types already decoded, indexed by the type string position.
+		 */
+		private final ComponentType[] types;
+
+		/**
+		 * Page record offsets, indexed by page path.
+		 */
+		private final Map<String, Integer> pages = new HashMap<>();
+
+		/**
+		 * Maps a compiled sitemap file and reads its header.
+		 *
+		 * @param file
+		 *            Compiled sitemap file.
+		 * @throws UncheckedIOException
+		 *             If the file could not be mapped or is not valid.
+		 */
+		private MappedSitemap(Path file) throws UncheckedIOException {
+
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+				MappedByteBuffer mapped = channel.map(MapMode.READ_ONLY, 0, channel.size());
+				buffer = mapped;
+
+				if (buffer.getInt(0) != MAGIC || buffer.getShort(4) != VERSION) {
+					throw new IOException(file + " is not a compiled sitemap in the supported version");
+				}
+
+				int stringCount = buffer.getInt(8);
+				stringTableOffset = buffer.getInt(12);
+				stringDataOffset = stringTableOffset + 4 * stringCount;
+				strings = new String[stringCount];
+				types = new ComponentType[stringCount];
+
+				int pageCount = buffer.getInt(16);
+				int pageIndexOffset = buffer.getInt(20);
+				for (int i = 0; i < pageCount; i++) {
+					int position = pageIndexOffset + 8 * i;
+					pages.put(getString(buffer.getInt(position)), buffer.getInt(position + 4));
+				}
+
+				logger.log(Level.FINE, "Mapped {0} with {1} pages", new Object[] { file, pageCount });
+
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		/**
+		 * Returns a string from the string table.
+		 *
+		 * @param index
+		 *            Index in the string table.
+		 * @return String value.
+		 */
+		private String getString(int index) {
+			String string = strings[index];
+			if (string == null) {
+				int start = index == 0 ? 0 : buffer.getInt(stringTableOffset + 4 * (index - 1));
+				int end = buffer.getInt(stringTableOffset + 4 * index);
+				byte[] bytes = new byte[end - start];
+				ByteBuffer slice = buffer.duplicate();
+				slice.position(stringDataOffset + start);
+				slice.get(bytes);
+				string = new String(bytes, StandardCharsets.UTF_8);
+				// racing threads would just decode the same value
+				strings[index] = string;
+			}
+			return string;
+		}
+
+		/**
+		 * Returns a component type from the string table.
+		 *
+		 * @param index
+		 *            Index of the type name in the string table.
+		 * @return Component type.
+		 */
+		private ComponentType getType(int index) {
+			ComponentType type = types[index];
+			if (type == null) {
+				// converts types to uppercase to match the Java enum naming
+				type = ComponentType.valueOf(getString(index).toUpperCase(Locale.ROOT));
+				types[index] = type;
+			}
+			return type;
+		}
+
+		/**
+		 * Decodes a component and its subcomponents.
+		 *
+		 * @param offset
+		 *            Offset of the component record.
+		 * @return Decoded component.
+		 */
+		private Component<?> readComponent(int offset) {
+
+			ByteBuffer record = buffer.duplicate();
+			record.position(offset);
+
+			ComponentType componentType = getType(record.getInt());
+			ComponentBinding binding = ComponentBinding.of(componentType);
+			AbstractComponent<?> component = binding.newInstance();
+			binding.getField(TYPE_MEMBER).set(component, componentType);
+
+			int memberCount = record.getShort();
+			for (int i = 0; i < memberCount; i++) {
+				FieldBinding field = binding.getField(getString(record.getInt()));
+				Object value = readValue(record, field);
+				if (field != null && value != null) {
+					field.set(component, value);
+				}
+			}
+
+			int childCount = record.getInt();
+			if (childCount >= 0) {
+				List<Component<?>> components = new ArrayList<>(childCount);
+				for (int i = 0; i < childCount; i++) {
+					components.add(readComponent(record.getInt()));
+				}
+				FieldBinding field = binding.getField(COMPONENTS_MEMBER);
+				if (field != null) {
+					field.set(component, components);
+				}
+			}
+
+			return component;
+		}
+
+		/**
+		 * Decodes a value for a component field. Strings, URIs and numbers are
+		 * decoded directly, anything else is converted as it would be from JSON.
+		 *
+		 * @param record
+		 *            Buffer positioned at the value.
+		 * @param field
+		 *            Field that receives the value, or null if there is none (in
+		 *            which case the value is just skipped).
+		 * @return Decoded value.
+		 */
+		private Object readValue(ByteBuffer record, FieldBinding field) {
+
+			byte tag = record.get();
+			if (field != null && (tag == TAG_STRING || tag == TAG_NUMBER)) {
+				int position = record.position();
+				String string = getString(record.getInt());
+				if (field.getValueType() == String.class) {
+					return string;
+				} else if (field.getValueType() == URI.class) {
+					return URI.create(string);
+				} else if (field.getValueType() == Double.class) {
+					return Double.valueOf(string);
+				}
+				record.position(position);
+			}
+
+			JsonElement element = readElement(record, tag);
+			return field == null ? null : gson.fromJson(element, field.getValueType());
+		}
+
+		/**
+		 * Decodes a value as a JSON element.
+		 *
+		 * @param record
+		 *            Buffer positioned after the value tag.
+		 * @param tag
+		 *            Tag of the value.
+		 * @return Equivalent JSON element.
+		 */
+		private JsonElement readElement(ByteBuffer record, byte tag) {
+			switch (tag) {
+			case TAG_NULL:
+				return JsonNull.INSTANCE;
+			case TAG_STRING:
+				return new JsonPrimitive(getString(record.getInt()));
+			case TAG_NUMBER:
+				// keeps the exact JSON representation of the number
+				return new JsonParser().parse(getString(record.getInt()));
+			case TAG_TRUE:
+				return new JsonPrimitive(true);
+			case TAG_FALSE:
+				return new JsonPrimitive(false);
+			case TAG_OBJECT:
+				JsonObject object = new JsonObject();
+				int memberCount = record.getInt();
+				for (int i = 0; i < memberCount; i++) {
+					String name = getString(record.getInt());
+					object.add(name, readElement(record, record.get()));
+				}
+				return object;
+			case TAG_ARRAY:
+				JsonArray array = new JsonArray();
+				int elementCount = record.getInt();
+				for (int i = 0; i < elementCount; i++) {
+					array.add(readElement(record, record.get()));
+				}
+				return array;
+			default:
+				throw new IllegalStateException("Invalid value tag " + tag + " at " + (record.position() - 1));
+			}
+		}
+	}
+}
@@ -1,6 +1,14 @@
 package org.openhab.ui.javafx.model.rendering;
 
+import java.io.IOException;
 import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import org.openhab.ui.javafx.model.container.Container;
 import org.openhab.ui.javafx.model.container.NavigableContainer;
@@ -19,8 +27,57 @@ public interface RenderingModelProvider {
 	 * @return Rendering model for a certain Container type.
 	 */
 	static RenderingModelProvider get() {
-		// for now, just return a hard-coded concrete implementation
-		return new ClasspathResourceRenderingModel();
+		// for now, just return a hard-coded concrete implementation, caching the
+		// models so that going back to a page does not require loading it again
+		return new CachingRenderingModelProvider(new ClasspathResourceRenderingModel());
+	}
+
+	/**
+	 * Obtains a RenderingModel for a given source of rendering models. The
+	 * provider implementation is selected by the scheme of the source URI:
+	 * <ul>
+	 * <li>no source: classpath resources, as in {@link #get()};</li>
+	 * <li>file: a directory with either sitemaps compiled into the binary format
+	 * or JSON files, which are reloaded when changed;</li>
+	 * <li>http or https: the REST API of an openHAB server at that base URI.</li>
+	 * </ul>
+	 * 
+	 * @param source
+	 *            URI of the source, may be null.
+	 * @return Rendering model provider for the source.
+	 * @throws IllegalArgumentException
+	 *             If the source is not supported.
+	 */
+	static RenderingModelProvider get(String source) throws IllegalArgumentException {
+		if (source == null) {
+			return get();
+		}
+
+		URI uri = URI.create(source);
+		RenderingModelProvider provider;
+		switch (String.valueOf(uri.getScheme())) {
+		case "file":
+			Path directory = Paths.get(uri);
+			if (!Files.isDirectory(directory)) {
+				throw new IllegalArgumentException(directory + " is not a directory");
+			}
+			try (Stream<Path> files = Files.list(directory)) {
+				provider = files.anyMatch(f -> f.toString().endsWith(BinarySitemapFormat.FILE_EXTENSION))
+						? new MappedRenderingModel(directory)
+						: new FileSystemRenderingModel(directory);
+			} catch (IOException e) {
+				throw new IllegalArgumentException("Could not list " + directory, e);
+			}
+			break;
+		case "http":
+		case "https":
+			provider = new HttpRenderingModel(uri);
+			break;
+		default:
+			throw new IllegalArgumentException("Unsupported source of rendering models: " + source);
+		}
+
+		return new CachingRenderingModelProvider(provider);
 	}
 
 	/**
@@ -33,4 +90,32 @@ public interface RenderingModelProvider {
 	 *         retrievable with the given URI.
 	 */
 	NavigableContainer<?, Container<?, ?>> retrieve(URI uri);
+
+	/**
+	 * Retrieves a rendering model instance for a given URI without blocking the
+	 * calling thread. The default implementation runs {@link #retrieve(URI)} on
+	 * the provided executor, which should be one suitable for I/O bound tasks.
+	 * 
+	 * @param uri
+	 *            Navigable container URI.
+	 * @param executor
+	 *            Executor where the model is loaded.
+	 * @return Future completed with the rendering model instance, or with null if
+	 *         there is no container retrievable with the given URI.
+	 */
+	default CompletableFuture<NavigableContainer<?, Container<?, ?>>> retrieveAsync(URI uri, Executor executor) {
+		return CompletableFuture.supplyAsync(() -> retrieve(uri), executor);
+	}
+
+	/**
+	 * Registers a listener to be notified whenever the rendering model for a URI
+	 * changes at its source, so that it can be retrieved again. Listeners may be
+	 * called from any thread.
+	 * 
+	 * @param listener
+	 *            Receives the URI of the changed rendering model.
+	 */
+	default void addChangeListener(Consumer<URI> listener) {
+		// by default, rendering models never change after being retrieved
+	}
 }
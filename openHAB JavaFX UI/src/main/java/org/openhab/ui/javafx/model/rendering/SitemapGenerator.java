@@ -0,0 +1,563 @@
+package org.openhab.ui.javafx.model.rendering;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.logging.Logger;
+
+import org.openhab.ui.javafx.model.ComponentType;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Generates synthetic sitemaps of configurable size and shape, to find out how
+ * the client behaves with sitemaps much larger than the demo one.
+ *
+ * The documents follow the same JSON format and layout as the demo sitemap:
+ * &lt;id&gt;.json for the sitemap, with frames of widgets, and
+ * &lt;id&gt;/&lt;page&gt;.json for each page, with widgets only. Pages are
+ * linked from GROUP widgets, and may contain GROUP widgets themselves up to the
+ * nesting depth defined. Every widget has an icon from the classic icon set,
+ * with a state when the control has one, a label and a control, whose type is
+ * picked according to the weights defined for each type.
+ *
+ * The same parameters and seed always generate the same documents. The
+ * generator is part of the main sources, rather than of the benchmarks, so
+ * that the tests of this module can use it as well.
+ *
+ * @author Flavio Costa
+ */
+public class SitemapGenerator {
+
+	/**
+	 * Used for logging activities of this class.
+	 */
+	private static final Logger logger = Logger.getLogger(SitemapGenerator.class.getPackage().getName());
+
+	/**
+	 * Classic icons for switches, which have ON and OFF states.
+	 */
+	private static final String[] SWITCH_ICONS = { "light", "switch", "network", "screen" };
+
+	/**
+	 * Classic icons for sliders, which have states in steps of 10.
+	 */
+	private static final String[] SLIDER_ICONS = { "light", "blinds", "rollershutter", "humidity" };
+
+	/**
+	 * Classic icons for selections.
+	 */
+	private static final String[] SELECTION_ICONS = { "heating", "player", "soundvolume", "fan" };
+
+	/**
+	 * Classic icons for groups.
+	 */
+	private static final String[] GROUP_ICONS = { "group", "bedroom", "kitchen", "bath", "garden", "sofa", "garage" };
+
+	/**
+	 * Style of the icon atoms, as in the demo sitemap.
+	 */
+	private static final String ICON_STYLE = "width:16px;height:16px";
+
+	/**
+	 * Sitemap id.
+	 */
+	private String id = "generated";
+
+	/**
+	 * Number of frames in the sitemap.
+	 */
+	private int frames = 10;
+
+	/**
+	 * Number of widgets in each frame of the sitemap, and in each page.
+	 */
+	private int widgetsPerFrame = 10;
+
+	/**
+	 * Depth of the pages linked from GROUP widgets.
+	 */
+	private int groupDepth = 1;
+
+	/**
+	 * Maximum number of pages generated.
+	 */
+	private int maxPages = 1000;
+
+	/**
+	 * Number of options in each SELECTION control.
+	 */
+	private int mappingSize = 4;
+
+	/**
+	 * Seed for the random choices.
+	 */
+	private long seed;
+
+	/**
+	 * Relative weight of each type of control.
+	 */
+	private final Map<ComponentType, Integer> atomMix = new EnumMap<>(ComponentType.class);
+
+	/**
+	 * Random choices of the current generation.
+	 */
+	private Random random;
+
+	/**
+	 * Documents generated, indexed by their relative path.
+	 */
+	private Map<String, String> documents;
+
+	/**
+	 * Number of widgets generated.
+	 */
+	private int widgetCount;
+
+	/**
+	 * Number of pages generated.
+	 */
+	private int pageCount;
+
+	/**
+	 * Creates a generator with the default parameters: 10 frames of 10 widgets,
+	 * one level of pages and a control mix similar to the demo sitemap.
+	 */
+	public SitemapGenerator() {
+		atomMix.put(ComponentType.TEXT, 4);
+		atomMix.put(ComponentType.SWITCH, 3);
+		atomMix.put(ComponentType.SLIDER, 1);
+		atomMix.put(ComponentType.SELECTION, 1);
+		atomMix.put(ComponentType.GROUP, 1);
+	}
+
+	/**
+	 * Generates sitemaps into a directory, from the command line.
+	 *
+	 * @param args
+	 *            Target directory, and optionally the number of frames, widgets
+	 *            per frame and group nesting depth.
+	 * @throws IOException
+	 *             If any file could not be written.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1 || args.length > 4) {
+			throw new IllegalArgumentException(
+					"Usage: SitemapGenerator <target directory> [frames] [widgets per frame] [group depth]");
+		}
+		SitemapGenerator generator = new SitemapGenerator();
+		if (args.length > 1) {
+			generator.setFrames(Integer.parseInt(args[1]));
+		}
+		if (args.length > 2) {
+			generator.setWidgetsPerFrame(Integer.parseInt(args[2]));
+		}
+		if (args.length > 3) {
+			generator.setGroupDepth(Integer.parseInt(args[3]));
+		}
+		generator.write(Paths.get(args[0]));
+	}
+
+	/**
+	 * Defines the sitemap id.
+	 *
+	 * @param id
+	 *            Sitemap id, also the name of its document.
+	 */
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	/**
+	 * Defines the number of frames in the sitemap.
+	 *
+	 * @param frames
+	 *            Number of frames.
+	 */
+	public void setFrames(int frames) {
+		this.frames = requirePositive(frames, "frames");
+	}
+
+	/**
+	 * Defines the number of widgets in each frame, and in each page.
+	 *
+	 * @param widgetsPerFrame
+	 *            Number of widgets.
+	 */
+	public void setWidgetsPerFrame(int widgetsPerFrame) {
+		this.widgetsPerFrame = requirePositive(widgetsPerFrame, "widgetsPerFrame");
+	}
+
+	/**
+	 * Defines how deep pages are nested. With a depth of 0 there are no GROUP
+	 * widgets; with 1, GROUP widgets in the sitemap link to pages without GROUP
+	 * widgets; and so on.
+	 *
+	 * @param groupDepth
+	 *            Nesting depth.
+	 */
+	public void setGroupDepth(int groupDepth) {
+		if (groupDepth < 0) {
+			throw new IllegalArgumentException("groupDepth cannot be negative");
+		}
+		this.groupDepth = groupDepth;
+	}
+
+	/**
+	 * Defines the maximum number of pages, as nested groups multiply them
+	 * quickly. Once it is reached, no more GROUP widgets are generated.
+	 *
+	 * @param maxPages
+	 *            Maximum number of pages.
+	 */
+	public void setMaxPages(int maxPages) {
+		this.maxPages = requirePositive(maxPages, "maxPages");
+	}
+
+	/**
+	 * Defines the number of options in each SELECTION control.
+	 *
+	 * @param mappingSize
+	 *            Number of options.
+	 */
+	public void setMappingSize(int mappingSize) {
+		this.mappingSize = requirePositive(mappingSize, "mappingSize");
+	}
+
+	/**
+	 * Defines the relative weight of a type of control. A weight of 0 excludes
+	 * the type.
+	 *
+	 * @param type
+	 *            One of TEXT, SWITCH, SLIDER, SELECTION or GROUP.
+	 * @param weight
+	 *            Relative weight.
+	 */
+	public void setAtomWeight(ComponentType type, int weight) {
+		if (!atomMix.containsKey(type)) {
+			throw new IllegalArgumentException(type + " is not a type of control");
+		} else if (weight < 0) {
+			throw new IllegalArgumentException("weight cannot be negative");
+		}
+		atomMix.put(type, weight);
+	}
+
+	/**
+	 * Defines the seed for the random choices.
+	 *
+	 * @param seed
+	 *            Seed.
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Returns the number of widgets in the documents last generated, including
+	 * those in pages.
+	 *
+	 * @return Number of widgets.
+	 */
+	public int getWidgetCount() {
+		return widgetCount;
+	}
+
+	/**
+	 * Returns the number of pages in the documents last generated.
+	 *
+	 * @return Number of pages.
+	 */
+	public int getPageCount() {
+		return pageCount;
+	}
+
+	/**
+	 * Generates the sitemap and its pages.
+	 *
+	 * @return Documents, indexed by their path relative to the directory of the
+	 *         sitemaps (e.g. &lt;id&gt;.json or &lt;id&gt;/page-1.json), with
+	 *         the sitemap first.
+	 */
+	public Map<String, String> generate() {
+		if (atomMix.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+			throw new IllegalStateException("No type of control has a weight");
+		}
+
+		random = new Random(seed);
+		documents = new LinkedHashMap<>();
+		documents.put(id + ".json", null);
+		widgetCount = 0;
+		pageCount = 0;
+
+		try {
+			StringWriter out = new StringWriter();
+			try (JsonWriter writer = newWriter(out)) {
+				writer.beginObject();
+				writer.name("type").value("smarthome");
+				writer.name("data").beginObject();
+				writer.name("id").value(id);
+				writer.name("label").value(String.format("Generated sitemap (%d frames)", frames));
+				writer.name("lang").value("en");
+				writer.endObject();
+				writer.name("layout").value("list");
+				writer.name("components").beginArray();
+				for (int f = 1; f <= frames; f++) {
+					writer.beginObject();
+					writer.name("type").value("frame");
+					writer.name("data").value("Frame " + f);
+					writer.name("style").value("font-weight:bold;font-size:large");
+					writer.name("layout").value("listcontrol");
+					writer.name("components").beginArray();
+					for (int w = 0; w < widgetsPerFrame; w++) {
+						writeWidget(writer, id, 0);
+					}
+					writer.endArray();
+					writer.endObject();
+				}
+				writer.endArray();
+				writer.endObject();
+			}
+			documents.put(id + ".json", out.toString());
+		} catch (IOException e) {
+			// not expected, the documents are written in memory
+			throw new IllegalStateException(e);
+		}
+
+		return Collections.unmodifiableMap(documents);
+	}
+
+	/**
+	 * Generates the sitemap and its pages into a directory, with the same layout
+	 * as the classpath resources.
+	 *
+	 * @param directory
+	 *            Directory of the sitemaps.
+	 * @throws IOException
+	 *             If any file could not be written.
+	 */
+	public void write(Path directory) throws IOException {
+		for (Map.Entry<String, String> document : generate().entrySet()) {
+			Path file = directory.resolve(document.getKey());
+			Files.createDirectories(file.getParent());
+			try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+				writer.write(document.getValue());
+			}
+		}
+		logger.info(String.format("Generated %s with %d widgets in %d pages into %s", id, widgetCount,
+				pageCount + 1, directory));
+	}
+
+	/**
+	 * Writes a widget, generating the page it links to if it is a GROUP.
+	 *
+	 * @param writer
+	 *            Writer of the document containing the widget.
+	 * @param pageDirectory
+	 *            Path of the directory with the pages linked from the document.
+	 * @param depth
+	 *            Nesting depth of the document, 0 for the sitemap.
+	 * @throws IOException
+	 *             If the widget could not be written.
+	 */
+	private void writeWidget(JsonWriter writer, String pageDirectory, int depth) throws IOException {
+		int number = ++widgetCount;
+		ComponentType type = pickType(depth < groupDepth && pageCount < maxPages);
+
+		writer.beginObject();
+		writer.name("type").value("widget");
+		if (type != ComponentType.GROUP) {
+			writer.name("item").value("Item_" + number);
+		}
+		writer.name("components").beginArray();
+
+		switch (type) {
+		case SWITCH:
+			String selected = random.nextBoolean() ? "ON" : "OFF";
+			writeIcon(writer, pick(SWITCH_ICONS) + '#' + selected);
+			writeLabel(writer, "Switch " + number);
+			writer.beginObject().name("type").value("switch");
+			writer.name("data").beginObject().name("selected").value(selected).endObject();
+			writer.endObject();
+			break;
+		case SLIDER:
+			int level = random.nextInt(11) * 10;
+			writeIcon(writer, pick(SLIDER_ICONS) + '#' + level);
+			writeLabel(writer, "Dimmer " + number);
+			writer.beginObject().name("type").value("slider").name("data").value(Integer.toString(level)).endObject();
+			break;
+		case SELECTION:
+			int option = random.nextInt(mappingSize);
+			writeIcon(writer, pick(SELECTION_ICONS));
+			writeLabel(writer, "Selection " + number);
+			writer.beginObject().name("type").value("selection");
+			writer.name("data").beginObject().name("mappings").beginObject();
+			for (int m = 0; m < mappingSize; m++) {
+				writer.name(Integer.toString(m)).value("Option " + m);
+			}
+			writer.endObject().name("selected").value(Integer.toString(option)).endObject();
+			writer.endObject();
+			break;
+		case GROUP:
+			String page = "page-" + (++pageCount);
+			writeIcon(writer, pick(GROUP_ICONS));
+			writeLabel(writer, "Page " + pageCount);
+			writer.beginObject().name("type").value("group").name("data").value(page + '/').endObject();
+			writePage(pageDirectory + '/' + page, "Page " + pageCount, depth + 1);
+			break;
+		default:
+			String temperature = String.format(Locale.ROOT, "%.1f", 15 + random.nextInt(150) / 10.0);
+			writeIcon(writer, "temperature#" + temperature);
+			writeLabel(writer, "Temperature " + number);
+			writer.beginObject().name("type").value("text").name("data").value(temperature + " °C");
+			writer.name("pattern").value("%.1f °C").name("style").value("font-weight:bold").endObject();
+			break;
+		}
+
+		writer.endArray();
+		writer.endObject();
+	}
+
+	/**
+	 * Generates a page document.
+	 *
+	 * @param path
+	 *            Path of the page, without the file extension.
+	 * @param label
+	 *            Page label.
+	 * @param depth
+	 *            Nesting depth of the page.
+	 * @throws IOException
+	 *             If the page could not be written.
+	 */
+	private void writePage(String path, String label, int depth) throws IOException {
+		String key = path + ".json";
+		// reserves the position, so pages are listed in the order they are linked
+		documents.put(key, null);
+
+		StringWriter out = new StringWriter();
+		try (JsonWriter writer = newWriter(out)) {
+			writer.beginObject();
+			writer.name("type").value("page");
+			writer.name("data").beginObject().name("label").value(label).endObject();
+			writer.name("layout").value("listcontrol");
+			writer.name("components").beginArray();
+			for (int w = 0; w < widgetsPerFrame; w++) {
+				writeWidget(writer, path, depth);
+			}
+			writer.endArray();
+			writer.endObject();
+		}
+		documents.put(key, out.toString());
+	}
+
+	/**
+	 * Writes an icon atom.
+	 *
+	 * @param writer
+	 *            Writer of the document.
+	 * @param icon
+	 *            Icon category in the classic set, optionally followed by # and
+	 *            a state.
+	 * @throws IOException
+	 *             If the atom could not be written.
+	 */
+	private void writeIcon(JsonWriter writer, String icon) throws IOException {
+		writer.beginObject().name("type").value("icon").name("data").value("icon:" + icon);
+		writer.name("style").value(ICON_STYLE).endObject();
+	}
+
+	/**
+	 * Writes a label atom.
+	 *
+	 * @param writer
+	 *            Writer of the document.
+	 * @param label
+	 *            Label text.
+	 * @throws IOException
+	 *             If the atom could not be written.
+	 */
+	private void writeLabel(JsonWriter writer, String label) throws IOException {
+		writer.beginObject().name("type").value("label").name("data").value(label).endObject();
+	}
+
+	/**
+	 * Picks the type of a control according to the weights defined.
+	 *
+	 * @param groups
+	 *            Whether GROUP may be picked.
+	 * @return Type of control.
+	 */
+	private ComponentType pickType(boolean groups) {
+		int total = 0;
+		for (Map.Entry<ComponentType, Integer> entry : atomMix.entrySet()) {
+			if (groups || entry.getKey() != ComponentType.GROUP) {
+				total += entry.getValue();
+			}
+		}
+		if (total == 0) {
+			// only groups have a weight, but no more may be generated here
+			return ComponentType.TEXT;
+		}
+
+		int choice = random.nextInt(total);
+		for (Map.Entry<ComponentType, Integer> entry : atomMix.entrySet()) {
+			if (groups || entry.getKey() != ComponentType.GROUP) {
+				choice -= entry.getValue();
+				if (choice < 0) {
+					return entry.getKey();
+				}
+			}
+		}
+		throw new IllegalStateException("No type picked");
+	}
+
+	/**
+	 * Picks one of the icons available.
+	 *
+	 * @param icons
+	 *            Icon categories.
+	 * @return Icon category.
+	 */
+	private String pick(String[] icons) {
+		return icons[random.nextInt(icons.length)];
+	}
+
+	/**
+	 * Creates a writer for a document, indented as the demo sitemap.
+	 *
+	 * @param out
+	 *            Where the document is written.
+	 * @return JSON writer.
+	 */
+	private static JsonWriter newWriter(Writer out) {
+		JsonWriter writer = new JsonWriter(out);
+		writer.setIndent("\t");
+		return writer;
+	}
+
+	/**
+	 * Validates a parameter that must be positive.
+	 *
+	 * @param value
+	 *            Parameter value.
+	 * @param name
+	 *            Parameter name.
+	 * @return The value, if valid.
+	 */
+	private static int requirePositive(int value, String name) {
+		if (value <= 0) {
+			throw new IllegalArgumentException(name + " must be positive");
+		}
+		return value;
+	}
+}
@@ -0,0 +1,250 @@
+package org.openhab.ui.javafx.model.state;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Stream of server-sent events, read line by line from an HTTP connection of
+ * its own.
+ *
+ * The request is sent through a plain socket rather than an HttpURLConnection,
+ * so that the stream can be closed from any thread while another one is
+ * blocked reading it: disconnecting an HttpURLConnection blocks until the
+ * reading thread receives something else.
+ *
+ * Being a minimal HTTP/1.1 client, it only supports what the event stream of
+ * openHAB needs: a direct connection, plain or over TLS with the server
+ * certificate checked against the host name, and a response that is either
+ * chunked or delimited by the end of the connection. Unlike the REST requests
+ * of {@link org.openhab.ui.javafx.model.rendering.HttpRenderingModel}, which go
+ * through HttpURLConnection, it does not go through proxies, does not
+ * authenticate, and does not follow redirects (a 3xx status is reported as an
+ * IOException).
+ *
+ * @author Flavio Costa
+ */
+class EventStream implements Closeable {
+
+	/**
+	 * Connection to the server.
+	 */
+	private final Socket connection;
+
+	/**
+	 * Socket the events are received from, the connection itself or the TLS
+	 * layer on top of it.
+	 */
+	private final Socket socket;
+
+	/**
+	 * Reads the lines of the events.
+	 */
+	private final BufferedReader reader;
+
+	/**
+	 * Connects to an event stream.
+	 *
+	 * @param uri
+	 *            Event stream URI, http or https.
+	 * @param connectTimeout
+	 *            Timeout to establish the connection, in milliseconds.
+	 * @param readTimeout
+	 *            Timeout waiting for data, in milliseconds.
+	 * @param sslSocketFactory
+	 *            Creates the TLS layer for https URIs.
+	 * @throws IOException
+	 *             If the connection could not be established, the server
+	 *             certificate is not valid for the host, or the server did not
+	 *             answer with a stream.
+	 */
+	EventStream(URI uri, int connectTimeout, int readTimeout, SSLSocketFactory sslSocketFactory)
+			throws IOException {
+		boolean secure = "https".equalsIgnoreCase(uri.getScheme());
+		int port = uri.getPort() < 0 ? (secure ? 443 : 80) : uri.getPort();
+		Socket plain = new Socket();
+		connection = plain;
+		try {
+			plain.connect(new InetSocketAddress(uri.getHost(), port), connectTimeout);
+			plain.setSoTimeout(readTimeout);
+			if (secure) {
+				SSLSocket ssl = (SSLSocket) sslSocketFactory.createSocket(plain, uri.getHost(), port, true);
+				// the handshake alone accepts a valid certificate for any host
+				SSLParameters parameters = ssl.getSSLParameters();
+				parameters.setEndpointIdentificationAlgorithm("HTTPS");
+				ssl.setSSLParameters(parameters);
+				ssl.startHandshake();
+				socket = ssl;
+			} else {
+				socket = plain;
+			}
+
+			String target = uri.getRawQuery() == null ? uri.getRawPath() : uri.getRawPath() + "?" + uri.getRawQuery();
+			String host = uri.getPort() < 0 ? uri.getHost() : uri.getHost() + ":" + uri.getPort();
+			OutputStream os = socket.getOutputStream();
+			os.write(String.format("GET %s HTTP/1.1\r\nHost: %s\r\nAccept: text/event-stream\r\n"
+					+ "Cache-Control: no-cache\r\nConnection: close\r\n\r\n", target, host)
+					.getBytes(StandardCharsets.US_ASCII));
+			os.flush();
+
+			InputStream is = new BufferedInputStream(socket.getInputStream());
+			String status = readHeaderLine(is);
+			String[] statusParts = status.split(" ", 3);
+			if (statusParts.length < 2 || !statusParts[1].equals("200")) {
+				throw new IOException("Unexpected HTTP status " + status + " from " + uri);
+			}
+
+			boolean chunked = false;
+			for (String header; !(header = readHeaderLine(is)).isEmpty();) {
+				String[] pair = header.split(":", 2);
+				if (pair.length == 2 && pair[0].trim().equalsIgnoreCase("Transfer-Encoding")) {
+					chunked = pair[1].trim().toLowerCase(Locale.ROOT).endsWith("chunked");
+				}
+			}
+			reader = new BufferedReader(
+					new InputStreamReader(chunked ? new ChunkedInputStream(is) : is, StandardCharsets.UTF_8));
+		} catch (IOException | RuntimeException e) {
+			plain.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Reads the next line of the stream.
+	 *
+	 * @return Line without its terminator, or null at the end of the stream.
+	 * @throws IOException
+	 *             If the stream could not be read, was closed, or nothing was
+	 *             received within the read timeout
+	 *             (java.net.SocketTimeoutException).
+	 */
+	String readLine() throws IOException {
+		return reader.readLine();
+	}
+
+	/**
+	 * Closes the connection. A thread blocked reading the stream gets an
+	 * IOException right away.
+	 *
+	 * The TLS layer is not closed by itself, as that waits for a thread blocked
+	 * reading it until the read timeout.
+	 */
+	@Override
+	public void close() throws IOException {
+		connection.close();
+	}
+
+	/**
+	 * Reads a line of the response header.
+	 *
+	 * @param is
+	 *            Response stream.
+	 * @return Line without its terminator.
+	 * @throws IOException
+	 *             If the stream could not be read or ended.
+	 */
+	private static String readHeaderLine(InputStream is) throws IOException {
+		StringBuilder line = new StringBuilder();
+		for (int c; (c = is.read()) != '\n';) {
+			if (c < 0) {
+				throw new IOException("Connection closed while reading the response header");
+			}
+			if (c != '\r') {
+				line.append((char) c);
+			}
+		}
+		return line.toString();
+	}
+
+	/**
+	 * Decodes a response body sent with chunked transfer encoding, which is how
+	 * servers send streams of unknown length.
+	 */
+	private static class ChunkedInputStream extends InputStream {
+
+		/**
+		 * Response stream, positioned after the header.
+		 */
+		private final InputStream is;
+
+		/**
+		 * Bytes left in the current chunk, or -1 after the last chunk.
+		 */
+		private int remaining;
+
+		/**
+		 * Creates a new instance.
+		 *
+		 * @param is
+		 *            Response stream, positioned after the header.
+		 */
+		private ChunkedInputStream(InputStream is) {
+			this.is = is;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			if (remaining == 0) {
+				nextChunk();
+			}
+			if (remaining < 0) {
+				return -1;
+			}
+			int count = is.read(b, off, Math.min(len, remaining));
+			if (count < 0) {
+				throw new IOException("Connection closed in the middle of a chunk");
+			}
+			remaining -= count;
+			if (remaining == 0) {
+				// each chunk is followed by a line break
+				readHeaderLine(is);
+			}
+			return count;
+		}
+
+		/**
+		 * Reads the size of the next chunk.
+		 *
+		 * @throws IOException
+		 *             If the stream could not be read or the size is invalid.
+		 */
+		private void nextChunk() throws IOException {
+			String line = readHeaderLine(is);
+			int extension = line.indexOf(';');
+			try {
+				remaining = Integer.parseInt((extension < 0 ? line : line.substring(0, extension)).trim(), 16);
+			} catch (NumberFormatException e) {
+				throw new IOException("Invalid chunk size: " + line);
+			}
+			if (remaining == 0) {
+				// no more chunks, skip any trailers
+				while (!readHeaderLine(is).isEmpty()) {
+					// discard
+				}
+				remaining = -1;
+			}
+		}
+	}
+}
@@ -0,0 +1,466 @@
+package org.openhab.ui.javafx.model.state;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sends commands to openHAB items, by posting them to
+ * &lt;base&gt;/rest/items/&lt;item&gt;.
+ *
+ * Commands are queued and sent in order by a single daemon thread, so that
+ * the same keep-alive connection is reused for all of them and the caller (the
+ * JavaFX application thread) never waits for the network. Commands for the
+ * same item are rate-limited: after a command is sent, the next one for that
+ * item waits for a minimum interval, and if several commands arrive meanwhile
+ * only the last is sent. Dragging a slider then sends a few commands, instead
+ * of one for each value it goes through.
+ *
+ * A command that fails is attempted again a limited number of times, unless a
+ * newer command for the same item replaces it.
+ *
+ * The current state of an item can also be requested, through the same queue,
+ * e.g. to display it again when a command was not confirmed.
+ *
+ * @author Flavio Costa
+ */
+public class ItemCommandSender {
+
+	/**
+	 * Used for logging activities of this class.
+	 */
+	private static final Logger logger = Logger.getLogger(ItemCommandSender.class.getPackage().getName());
+
+	/**
+	 * Default minimum interval between commands for the same item, in
+	 * milliseconds.
+	 */
+	public static final long DEFAULT_MIN_INTERVAL = 200;
+
+	/**
+	 * Maximum number of attempts to send each command.
+	 */
+	private static final int MAX_ATTEMPTS = 3;
+
+	/**
+	 * Delay before attempting to send a command again, in milliseconds. It is
+	 * doubled after each failed attempt.
+	 */
+	private static final long RETRY_DELAY = 500;
+
+	/**
+	 * Timeout to establish a connection and to wait for a response, in
+	 * milliseconds.
+	 */
+	private static final int TIMEOUT = 5000;
+
+	/**
+	 * Path of the items resource, relative to the base URI.
+	 */
+	private static final String ITEMS_PATH = "rest/items/";
+
+	/**
+	 * Base URI of the openHAB server.
+	 */
+	private final URI baseUri;
+
+	/**
+	 * Minimum interval between commands for the same item, in nanoseconds.
+	 */
+	private final long minInterval;
+
+	/**
+	 * Latest command waiting to be sent for each item.
+	 */
+	private final Map<String, Command> pending = new LinkedHashMap<>();
+
+	/**
+	 * Time when the last command for each item was sent, in nanoseconds.
+	 */
+	private final Map<String, Long> lastSent = new HashMap<>();
+
+	/**
+	 * Thread sending the commands, started with the first one.
+	 */
+	private Thread thread;
+
+	/**
+	 * Set once the sender is closed.
+	 */
+	private boolean closed;
+
+	/**
+	 * Number of commands requested.
+	 */
+	private long requestedCount;
+
+	/**
+	 * Number of commands sent successfully.
+	 */
+	private long sentCount;
+
+	/**
+	 * Number of commands given up after all attempts failed.
+	 */
+	private long failedCount;
+
+	/**
+	 * Number of commands replaced by a newer one before being sent.
+	 */
+	private long replacedCount;
+
+	/**
+	 * Creates a sender with the default minimum interval.
+	 *
+	 * @param baseUri
+	 *            Base URI of the openHAB server, e.g. http://localhost:8080/.
+	 */
+	public ItemCommandSender(URI baseUri) {
+		this(baseUri, DEFAULT_MIN_INTERVAL);
+	}
+
+	/**
+	 * Creates a sender.
+	 *
+	 * @param baseUri
+	 *            Base URI of the openHAB server, e.g. http://localhost:8080/.
+	 * @param minInterval
+	 *            Minimum interval between commands for the same item, in
+	 *            milliseconds.
+	 */
+	public ItemCommandSender(URI baseUri, long minInterval) {
+		this.baseUri = baseUri.getPath().endsWith("/") ? baseUri : URI.create(baseUri + "/");
+		this.minInterval = TimeUnit.MILLISECONDS.toNanos(minInterval);
+	}
+
+	/**
+	 * Queues a command to be sent, replacing any command for the same item still
+	 * waiting.
+	 *
+	 * @param item
+	 *            Item name.
+	 * @param command
+	 *            Command, e.g. ON or 42.
+	 */
+	public synchronized void send(String item, String command) {
+		if (closed) {
+			return;
+		}
+		requestedCount++;
+		Command replaced = pending.remove(item);
+		if (replaced != null && replaced.command != null) {
+			replacedCount++;
+		}
+		// re-inserted at the end, so items are served in order
+		queue(new Command(item, command, null));
+	}
+
+	/**
+	 * Queues a request for the current state of an item, unless a command for
+	 * the item is already waiting, whose outcome is about to be known anyway.
+	 * A request that fails is not attempted again.
+	 *
+	 * @param item
+	 *            Item name.
+	 * @param consumer
+	 *            Receives the item name and its state, from the thread sending
+	 *            the commands.
+	 */
+	public synchronized void requestState(String item, BiConsumer<String, String> consumer) {
+		if (closed || pending.containsKey(item)) {
+			return;
+		}
+		queue(new Command(item, null, consumer));
+	}
+
+	/**
+	 * Adds a command to the queue, starting the thread sending the commands if
+	 * needed.
+	 *
+	 * @param command
+	 *            Command or state request.
+	 */
+	private void queue(Command command) {
+		pending.put(command.item, command);
+
+		if (thread == null) {
+			thread = new Thread(this::run, "item-commands");
+			thread.setDaemon(true);
+			thread.start();
+		}
+		notifyAll();
+	}
+
+	/**
+	 * Stops sending commands. Those still waiting are discarded.
+	 */
+	public synchronized void close() {
+		closed = true;
+		pending.clear();
+		notifyAll();
+	}
+
+	/**
+	 * Sends commands until the sender is closed.
+	 */
+	private void run() {
+		Command command;
+		while ((command = next()) != null) {
+			if (command.consumer != null) {
+				try {
+					get(command);
+				} catch (IOException e) {
+					logger.log(Level.WARNING, String.format("Could not get the state of %s", command.item), e);
+				}
+				continue;
+			}
+			try {
+				post(command);
+				synchronized (this) {
+					sentCount++;
+				}
+			} catch (IOException e) {
+				retry(command, e);
+			}
+		}
+	}
+
+	/**
+	 * Waits for the next command that may be sent.
+	 *
+	 * @return Command to be sent, or null if the sender was closed.
+	 */
+	private synchronized Command next() {
+		try {
+			while (!closed) {
+				long now = System.nanoTime();
+				long wait = Long.MAX_VALUE;
+
+				for (Iterator<Command> i = pending.values().iterator(); i.hasNext();) {
+					Command command = i.next();
+					Long last = lastSent.get(command.item);
+					long ready = Math.max(command.notBefore, last == null ? now : last + minInterval);
+					if (ready <= now) {
+						i.remove();
+						lastSent.put(command.item, now);
+						return command;
+					}
+					wait = Math.min(wait, ready - now);
+				}
+
+				if (wait == Long.MAX_VALUE) {
+					wait();
+				} else {
+					TimeUnit.NANOSECONDS.timedWait(this, wait);
+				}
+			}
+		} catch (InterruptedException e) {
+			// same as closed
+		}
+		return null;
+	}
+
+	/**
+	 * Queues a failed command to be attempted again, unless it was already
+	 * attempted too many times or a newer command replaced it.
+	 *
+	 * @param command
+	 *            Command that failed.
+	 * @param e
+	 *            Failure.
+	 */
+	private synchronized void retry(Command command, IOException e) {
+		if (closed || pending.containsKey(command.item)) {
+			// a newer command for the item is already waiting
+			return;
+		} else if (command.attempts >= MAX_ATTEMPTS) {
+			failedCount++;
+			logger.log(Level.WARNING, String.format("Could not send %s to %s", command.command, command.item), e);
+			return;
+		}
+
+		logger.log(Level.FINE, String.format("Sending %s to %s failed, will try again", command.command,
+				command.item), e);
+		command.notBefore = System.nanoTime()
+				+ TimeUnit.MILLISECONDS.toNanos(RETRY_DELAY << (command.attempts - 1));
+		pending.put(command.item, command);
+		notifyAll();
+	}
+
+	/**
+	 * Posts a command to the server. The response is read completely, so that
+	 * the connection can be reused for the next command.
+	 *
+	 * @param command
+	 *            Command to be sent.
+	 * @throws IOException
+	 *             If the command could not be sent or was not accepted.
+	 */
+	private void post(Command command) throws IOException {
+		command.attempts++;
+		URI uri = baseUri.resolve(ITEMS_PATH + URLEncoder.encode(command.item, "UTF-8"));
+		byte[] body = command.command.getBytes(StandardCharsets.UTF_8);
+
+		HttpURLConnection connection = (HttpURLConnection) uri.toURL().openConnection();
+		connection.setConnectTimeout(TIMEOUT);
+		connection.setReadTimeout(TIMEOUT);
+		connection.setRequestMethod("POST");
+		connection.setRequestProperty("Content-Type", "text/plain; charset=UTF-8");
+		connection.setFixedLengthStreamingMode(body.length);
+		connection.setDoOutput(true);
+		try (OutputStream os = connection.getOutputStream()) {
+			os.write(body);
+		}
+
+		int status = connection.getResponseCode();
+		try (InputStream is = status < HttpURLConnection.HTTP_BAD_REQUEST ? connection.getInputStream()
+				: connection.getErrorStream()) {
+			if (is != null) {
+				byte[] buffer = new byte[1024];
+				while (is.read(buffer) >= 0) {
+					// discard
+				}
+			}
+		}
+
+		if (status >= HttpURLConnection.HTTP_BAD_REQUEST) {
+			throw new IOException("Unexpected HTTP status " + status + " from " + uri);
+		}
+		logger.log(Level.FINEST, "Sent {0} to {1}", new Object[] { command.command, command.item });
+	}
+
+	/**
+	 * Gets the current state of an item from the server, and passes it on.
+	 *
+	 * @param request
+	 *            State request.
+	 * @throws IOException
+	 *             If the state could not be read.
+	 */
+	private void get(Command request) throws IOException {
+		URI uri = baseUri.resolve(ITEMS_PATH + URLEncoder.encode(request.item, "UTF-8") + "/state");
+		HttpURLConnection connection = (HttpURLConnection) uri.toURL().openConnection();
+		connection.setConnectTimeout(TIMEOUT);
+		connection.setReadTimeout(TIMEOUT);
+
+		int status = connection.getResponseCode();
+		ByteArrayOutputStream state = new ByteArrayOutputStream();
+		try (InputStream is = status < HttpURLConnection.HTTP_BAD_REQUEST ? connection.getInputStream()
+				: connection.getErrorStream()) {
+			if (is != null) {
+				byte[] buffer = new byte[1024];
+				for (int read; (read = is.read(buffer)) >= 0;) {
+					state.write(buffer, 0, read);
+				}
+			}
+		}
+
+		if (status >= HttpURLConnection.HTTP_BAD_REQUEST) {
+			throw new IOException("Unexpected HTTP status " + status + " from " + uri);
+		}
+		request.consumer.accept(request.item, new String(state.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Returns the number of commands requested.
+	 *
+	 * @return Number of commands.
+	 */
+	public synchronized long getRequestedCount() {
+		return requestedCount;
+	}
+
+	/**
+	 * Returns the number of commands sent successfully.
+	 *
+	 * @return Number of commands.
+	 */
+	public synchronized long getSentCount() {
+		return sentCount;
+	}
+
+	/**
+	 * Returns the number of commands given up after all attempts failed.
+	 *
+	 * @return Number of commands.
+	 */
+	public synchronized long getFailedCount() {
+		return failedCount;
+	}
+
+	/**
+	 * Returns the number of commands replaced by a newer one for the same item
+	 * before being sent.
+	 *
+	 * @return Number of commands.
+	 */
+	public synchronized long getReplacedCount() {
+		return replacedCount;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("%s[requested=%d, sent=%d, replaced=%d, failed=%d, pending=%d]",
+				getClass().getSimpleName(), requestedCount, sentCount, replacedCount, failedCount, pending.size());
+	}
+
+	/**
+	 * Command waiting to be sent.
+	 */
+	private static class Command {
+
+		/**
+		 * Item name.
+		 */
+		private final String item;
+
+		/**
+		 * Command to be sent, null for a state request.
+		 */
+		private final String command;
+
+		/**
+		 * Receives the state of the item, for a state request.
+		 */
+		private final BiConsumer<String, String> consumer;
+
+		/**
+		 * Number of attempts made so far.
+		 */
+		private int attempts;
+
+		/**
+		 * Time before which the command must not be sent, in nanoseconds.
+		 */
+		private long notBefore = Long.MIN_VALUE;
+
+		/**
+		 * Creates a new instance.
+		 *
+		 * @param item
+		 *            Item name.
+		 * @param command
+		 *            Command to be sent, null for a state request.
+		 * @param consumer
+		 *            Receives the state of the item, for a state request.
+		 */
+		private Command(String item, String command, BiConsumer<String, String> consumer) {
+			this.item = item;
+			this.command = command;
+			this.consumer = consumer;
+		}
+	}
+}
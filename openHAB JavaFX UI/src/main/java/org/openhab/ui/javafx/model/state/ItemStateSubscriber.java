@@ -0,0 +1,357 @@
+package org.openhab.ui.javafx.model.state;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import javax.net.ssl.SSLSocketFactory;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+/**
+ * Subscribes to item state changes published by an openHAB server as
+ * server-sent events, at &lt;base&gt;/rest/events. Only the items of interest
+ * (usually those on the page being displayed) are subscribed to, and changing
+ * them closes the connection and reconnects with the new topics.
+ *
+ * Events are received and decoded on a single daemon thread, shared by all
+ * subscriptions, which passes the item name and new state to a consumer (e.g.
+ * {@link StateUpdateBuffer#put(String, String)}). If the connection is lost,
+ * it is established again after a delay that grows with consecutive failures.
+ *
+ * @author Flavio Costa
+ */
+public class ItemStateSubscriber {
+
+	/**
+	 * Used for logging activities of this class.
+	 */
+	private static final Logger logger = Logger.getLogger(ItemStateSubscriber.class.getPackage().getName());
+
+	/**
+	 * Timeout to establish a connection, in milliseconds.
+	 */
+	private static final int CONNECT_TIMEOUT = 5000;
+
+	/**
+	 * Time without any data after which the connection is established again, in
+	 * milliseconds.
+	 */
+	private static final int IDLE_TIMEOUT = 60000;
+
+	/**
+	 * Delay before the first reconnection attempt, in milliseconds.
+	 */
+	private static final long MIN_RECONNECT_DELAY = 1000;
+
+	/**
+	 * Maximum delay between reconnection attempts, in milliseconds.
+	 */
+	private static final long MAX_RECONNECT_DELAY = 30000;
+
+	/**
+	 * Path of the events resource, relative to the base URI.
+	 */
+	private static final String EVENTS_PATH = "rest/events";
+
+	/**
+	 * Base URI of the openHAB server.
+	 */
+	private final URI baseUri;
+
+	/**
+	 * Receives the item name and new state of each event.
+	 */
+	private final BiConsumer<String, String> consumer;
+
+	/**
+	 * Creates the TLS layer of https event streams.
+	 */
+	private final SSLSocketFactory sslSocketFactory;
+
+	/**
+	 * Items currently subscribed to.
+	 */
+	private Set<String> items = Collections.emptySet();
+
+	/**
+	 * Incremented whenever the subscription changes, so that events for a
+	 * previous subscription are no longer passed on.
+	 */
+	private int generation;
+
+	/**
+	 * Stream being received, if connected.
+	 */
+	private EventStream stream;
+
+	/**
+	 * Thread receiving the events, started with the first subscription.
+	 */
+	private Thread thread;
+
+	/**
+	 * Set once the subscriber is closed.
+	 */
+	private boolean closed;
+
+	/**
+	 * Creates a new subscriber.
+	 *
+	 * @param baseUri
+	 *            Base URI of the openHAB server, e.g. http://localhost:8080/.
+	 * @param consumer
+	 *            Receives the item name and new state of each event.
+	 */
+	public ItemStateSubscriber(URI baseUri, BiConsumer<String, String> consumer) {
+		this(baseUri, consumer, (SSLSocketFactory) SSLSocketFactory.getDefault());
+	}
+
+	/**
+	 * Creates a new subscriber that trusts the certificates of a given TLS
+	 * configuration.
+	 *
+	 * @param baseUri
+	 *            Base URI of the openHAB server, e.g. https://localhost:8443/.
+	 * @param consumer
+	 *            Receives the item name and new state of each event.
+	 * @param sslSocketFactory
+	 *            Creates the TLS layer of https event streams.
+	 */
+	ItemStateSubscriber(URI baseUri, BiConsumer<String, String> consumer, SSLSocketFactory sslSocketFactory) {
+		this.baseUri = baseUri.getPath().endsWith("/") ? baseUri : URI.create(baseUri + "/");
+		this.consumer = consumer;
+		this.sslSocketFactory = sslSocketFactory;
+	}
+
+	/**
+	 * Changes the items subscribed to. Nothing is done if the items are the same
+	 * already subscribed.
+	 *
+	 * The connection for the previous items is closed, and the receiving thread
+	 * connects again for the new items. No connection is kept while there are
+	 * no items.
+	 *
+	 * @param itemNames
+	 *            Names of the items.
+	 */
+	public synchronized void subscribe(Collection<String> itemNames) {
+		Set<String> newItems = new TreeSet<>(itemNames);
+		if (closed || newItems.equals(items)) {
+			return;
+		}
+		items = newItems;
+		generation++;
+		closeStream();
+		notifyAll();
+
+		if (thread == null && !items.isEmpty()) {
+			thread = new Thread(this::run, "item-state-events");
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/**
+	 * Stops receiving events.
+	 */
+	public synchronized void close() {
+		closed = true;
+		generation++;
+		closeStream();
+		notifyAll();
+	}
+
+	/**
+	 * Closes the stream being received, if any, which makes the receiving thread
+	 * stop reading it right away.
+	 */
+	private synchronized void closeStream() {
+		if (stream != null) {
+			try {
+				stream.close();
+			} catch (IOException e) {
+				logger.log(Level.FINE, "Could not close the item state events stream", e);
+			}
+			stream = null;
+		}
+	}
+
+	/**
+	 * Checks if a subscription is still the current one.
+	 *
+	 * @param subscription
+	 *            Generation of the subscription.
+	 * @return True if it was not replaced or closed.
+	 */
+	private synchronized boolean isCurrent(int subscription) {
+		return subscription == generation;
+	}
+
+	/**
+	 * Receives events for each subscription in turn, until the subscriber is
+	 * closed.
+	 */
+	private void run() {
+		long delay = MIN_RECONNECT_DELAY;
+
+		while (true) {
+			int subscription;
+			Set<String> itemNames;
+			synchronized (this) {
+				try {
+					while (!closed && items.isEmpty()) {
+						wait();
+					}
+				} catch (InterruptedException e) {
+					return;
+				}
+				if (closed) {
+					return;
+				}
+				subscription = generation;
+				itemNames = items;
+			}
+
+			EventStream eventStream = null;
+			boolean idle = false;
+			try {
+				eventStream = connect(itemNames);
+				synchronized (this) {
+					if (subscription == generation) {
+						stream = eventStream;
+					}
+				}
+				if (isCurrent(subscription)) {
+					delay = MIN_RECONNECT_DELAY;
+					idle = !receive(eventStream, subscription);
+				}
+			} catch (IOException e) {
+				if (isCurrent(subscription)) {
+					logger.log(Level.WARNING, "Could not receive item state events", e);
+				}
+			} finally {
+				if (eventStream != null) {
+					synchronized (this) {
+						if (stream == eventStream) {
+							closeStream();
+						}
+					}
+					try {
+						eventStream.close();
+					} catch (IOException e) {
+						logger.log(Level.FINE, "Could not close the item state events stream", e);
+					}
+				}
+			}
+
+			if (idle) {
+				// idle for too long, just connect again
+				logger.log(Level.FINE, "No item state events received, reconnecting");
+				continue;
+			}
+
+			synchronized (this) {
+				try {
+					// woken up early if the subscription changes
+					if (subscription == generation) {
+						wait(delay);
+						delay = Math.min(delay * 2, MAX_RECONNECT_DELAY);
+					}
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Connects to the event stream for some items.
+	 *
+	 * @param itemNames
+	 *            Names of the items.
+	 * @return Open stream.
+	 * @throws IOException
+	 *             If the connection could not be established.
+	 */
+	private EventStream connect(Set<String> itemNames) throws IOException {
+		String topics = itemNames.stream().map(i -> "smarthome/items/" + i + "/statechanged")
+				.collect(Collectors.joining(","));
+		URI uri = baseUri.resolve(EVENTS_PATH + "?topics=" + URLEncoder.encode(topics, "UTF-8"));
+
+		EventStream eventStream = new EventStream(uri, CONNECT_TIMEOUT, IDLE_TIMEOUT, sslSocketFactory);
+		logger.log(Level.FINE, "Subscribed to {0} items", itemNames.size());
+		return eventStream;
+	}
+
+	/**
+	 * Reads events from the stream until it ends or the subscription is no
+	 * longer current.
+	 *
+	 * @param eventStream
+	 *            Open stream.
+	 * @param subscription
+	 *            Generation of the subscription.
+	 * @return False if nothing was received for {@link #IDLE_TIMEOUT}, true
+	 *         otherwise.
+	 * @throws IOException
+	 *             If the stream could not be read, e.g. because it was closed
+	 *             for a new subscription.
+	 */
+	private boolean receive(EventStream eventStream, int subscription) throws IOException {
+		try {
+			StringBuilder data = new StringBuilder();
+			String line;
+			while ((line = eventStream.readLine()) != null && isCurrent(subscription)) {
+				if (line.isEmpty()) {
+					// blank line dispatches the event
+					if (data.length() > 0) {
+						dispatch(data.toString());
+						data.setLength(0);
+					}
+				} else if (line.startsWith("data:")) {
+					if (data.length() > 0) {
+						data.append('\n');
+					}
+					data.append(line.substring(line.startsWith("data: ") ? 6 : 5));
+				}
+				// other fields (event, id, retry) and comments are not used
+			}
+		} catch (SocketTimeoutException e) {
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Decodes an event and passes the new state to the consumer.
+	 *
+	 * @param data
+	 *            Event data, e.g. {"topic":"smarthome/items/Light/statechanged",
+	 *            "payload":"{\"type\":\"OnOff\",\"value\":\"ON\",...}", ...}.
+	 */
+	private void dispatch(String data) {
+		try {
+			JsonObject event = new JsonParser().parse(data).getAsJsonObject();
+			String[] topic = event.get("topic").getAsString().split("/");
+			JsonElement payload = new JsonParser().parse(event.get("payload").getAsString());
+			if (topic.length >= 3 && payload.isJsonObject() && payload.getAsJsonObject().has("value")) {
+				consumer.accept(topic[2], payload.getAsJsonObject().get("value").getAsString());
+			}
+		} catch (JsonParseException | IllegalStateException | NullPointerException e) {
+			logger.log(Level.WARNING, "Ignoring invalid item state event: {0}", data);
+		}
+	}
+}
@@ -0,0 +1,323 @@
+package org.openhab.ui.javafx.model.state;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps track of item states changed locally, before the server confirms them.
+ *
+ * When a control sends a command, its new value is displayed right away and
+ * the item is marked as pending. State updates from the server are then
+ * reconciled with the pending items: an update with the value sent confirms
+ * it, while any other value (e.g. an earlier step of a slider drag) is held
+ * back, so the control does not jump around. If no confirmation arrives in
+ * time, the item is rolled back to the last state known from the server, or
+ * reloaded from the server if no state was known.
+ *
+ * @author Flavio Costa
+ */
+public class PendingStateTracker {
+
+	/**
+	 * Used for logging activities of this class.
+	 */
+	private static final Logger logger = Logger.getLogger(PendingStateTracker.class.getPackage().getName());
+
+	/**
+	 * Default time to wait for a confirmation, in milliseconds.
+	 */
+	public static final long DEFAULT_TIMEOUT = 3000;
+
+	/**
+	 * Time to wait for a confirmation, in nanoseconds.
+	 */
+	private final long timeout;
+
+	/**
+	 * Current time, in nanoseconds.
+	 */
+	private final LongSupplier clock;
+
+	/**
+	 * Pending state of each item, in the order they expire.
+	 */
+	private final Map<String, Pending> pending = new LinkedHashMap<>();
+
+	/**
+	 * Number of items marked as pending.
+	 */
+	private long pendingCount;
+
+	/**
+	 * Number of pending items confirmed by the server.
+	 */
+	private long confirmedCount;
+
+	/**
+	 * Number of pending items rolled back.
+	 */
+	private long rolledBackCount;
+
+	/**
+	 * Total time between the first change and the confirmation of each item, in
+	 * nanoseconds.
+	 */
+	private long totalConfirmTime;
+
+	/**
+	 * Creates a tracker with the default timeout.
+	 */
+	public PendingStateTracker() {
+		this(DEFAULT_TIMEOUT);
+	}
+
+	/**
+	 * Creates a tracker.
+	 *
+	 * @param timeout
+	 *            Time to wait for a confirmation, in milliseconds.
+	 */
+	public PendingStateTracker(long timeout) {
+		this(timeout, System::nanoTime);
+	}
+
+	/**
+	 * Creates a tracker with its own clock.
+	 *
+	 * @param timeout
+	 *            Time to wait for a confirmation, in milliseconds.
+	 * @param clock
+	 *            Current time, in nanoseconds.
+	 */
+	PendingStateTracker(long timeout, LongSupplier clock) {
+		this.timeout = TimeUnit.MILLISECONDS.toNanos(timeout);
+		this.clock = clock;
+	}
+
+	/**
+	 * Marks an item as pending a new state. If it was pending already, the new
+	 * state replaces the previous one and the timeout starts again, but a
+	 * rollback still restores the state from before the first change.
+	 *
+	 * @param item
+	 *            Item name.
+	 * @param state
+	 *            State displayed locally.
+	 * @param previous
+	 *            State displayed before the change, or null if unknown.
+	 */
+	public synchronized void begin(String item, String state, String previous) {
+		long now = clock.getAsLong();
+		Pending entry = pending.remove(item);
+		if (entry == null) {
+			entry = new Pending(previous, now);
+			pendingCount++;
+		}
+		entry.state = state;
+		entry.deadline = now + timeout;
+		// re-inserted at the end, as it is now the last to expire
+		pending.put(item, entry);
+	}
+
+	/**
+	 * Reconciles state updates from the server with the pending items. Updates
+	 * confirming a pending state end it; other updates for pending items are
+	 * held back, and only used if the item is rolled back.
+	 *
+	 * @param patch
+	 *            State updates from the server, targeting item names.
+	 * @return Updates to be applied.
+	 */
+	public synchronized StatePatch reconcile(StatePatch patch) {
+		if (pending.isEmpty()) {
+			return patch;
+		}
+
+		StatePatch result = new StatePatch();
+		for (Map.Entry<String, String> update : patch.getStates().entrySet()) {
+			Pending entry = pending.get(update.getKey());
+			if (entry == null) {
+				result.put(update.getKey(), update.getValue());
+			} else if (isSameState(entry.state, update.getValue())) {
+				pending.remove(update.getKey());
+				confirmedCount++;
+				totalConfirmTime += clock.getAsLong() - entry.start;
+				// no change to the value displayed, but it is no longer pending
+				result.put(update.getKey(), update.getValue());
+			} else {
+				entry.previous = update.getValue();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Rolls back the pending items not confirmed in time. Items whose state
+	 * before the change is unknown cannot be restored, so they are passed on to
+	 * be reloaded from the server instead.
+	 *
+	 * @param reload
+	 *            Receives the name of each item rolled back without a known
+	 *            state.
+	 * @return Updates restoring the last state known for the other items rolled
+	 *         back, empty if none.
+	 */
+	public synchronized StatePatch expire(Consumer<String> reload) {
+		long now = clock.getAsLong();
+		StatePatch rollback = new StatePatch();
+
+		for (Iterator<Map.Entry<String, Pending>> i = pending.entrySet().iterator(); i.hasNext();) {
+			Map.Entry<String, Pending> entry = i.next();
+			if (entry.getValue().deadline - now > 0) {
+				// the following entries expire even later
+				break;
+			}
+			i.remove();
+			rolledBackCount++;
+			logger.log(Level.FINE, "State {0} of {1} not confirmed in time",
+					new Object[] { entry.getValue().state, entry.getKey() });
+			if (entry.getValue().previous != null) {
+				rollback.put(entry.getKey(), entry.getValue().previous);
+			} else {
+				reload.accept(entry.getKey());
+			}
+		}
+		return rollback;
+	}
+
+	/**
+	 * Returns the time until the next pending item expires.
+	 *
+	 * @return Time in milliseconds, or -1 if there are no pending items.
+	 */
+	public synchronized long getNextExpiry() {
+		if (pending.isEmpty()) {
+			return -1;
+		}
+		long remaining = pending.values().iterator().next().deadline - clock.getAsLong();
+		return Math.max(0, TimeUnit.NANOSECONDS.toMillis(remaining));
+	}
+
+	/**
+	 * Returns the items currently pending.
+	 *
+	 * @return Copy of the item names.
+	 */
+	public synchronized Set<String> getPendingItems() {
+		return Collections.unmodifiableSet(new HashSet<>(pending.keySet()));
+	}
+
+	/**
+	 * Returns the number of items marked as pending, counting consecutive
+	 * changes before a confirmation or rollback only once.
+	 *
+	 * @return Number of pending items.
+	 */
+	public synchronized long getPendingCount() {
+		return pendingCount;
+	}
+
+	/**
+	 * Returns the number of pending items confirmed by the server.
+	 *
+	 * @return Number of confirmed items.
+	 */
+	public synchronized long getConfirmedCount() {
+		return confirmedCount;
+	}
+
+	/**
+	 * Returns the number of pending items rolled back.
+	 *
+	 * @return Number of rolled back items.
+	 */
+	public synchronized long getRolledBackCount() {
+		return rolledBackCount;
+	}
+
+	/**
+	 * Returns the average time taken by the server to confirm a pending item.
+	 *
+	 * @return Average time, in milliseconds.
+	 */
+	public synchronized double getAverageConfirmTime() {
+		return confirmedCount == 0 ? 0 : totalConfirmTime / 1e6 / confirmedCount;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("%s[pending=%d, confirmed=%d, rolledBack=%d, waiting=%d, avgConfirm=%.1fms]",
+				getClass().getSimpleName(), pendingCount, confirmedCount, rolledBackCount, pending.size(),
+				getAverageConfirmTime());
+	}
+
+	/**
+	 * Determines whether two states are the same, also when they are numbers
+	 * written differently (e.g. 50 and 50.0).
+	 *
+	 * @param state
+	 *            State sent.
+	 * @param other
+	 *            State received.
+	 * @return True if they are the same.
+	 */
+	private static boolean isSameState(String state, String other) {
+		if (state.equals(other)) {
+			return true;
+		}
+		try {
+			return new BigDecimal(state).compareTo(new BigDecimal(other)) == 0;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * State of an item pending confirmation.
+	 */
+	private static class Pending {
+
+		/**
+		 * Last state known from the server, restored on rollback.
+		 */
+		private String previous;
+
+		/**
+		 * State displayed locally.
+		 */
+		private String state;
+
+		/**
+		 * Time of the first change, in nanoseconds.
+		 */
+		private final long start;
+
+		/**
+		 * Time when the state is rolled back if not confirmed, in nanoseconds.
+		 */
+		private long deadline;
+
+		/**
+		 * Creates a new instance.
+		 *
+		 * @param previous
+		 *            State displayed before the change, or null if unknown.
+		 * @param start
+		 *            Time of the change, in nanoseconds.
+		 */
+		private Pending(String previous, long start) {
+			this.previous = previous;
+			this.start = start;
+		}
+	}
+}
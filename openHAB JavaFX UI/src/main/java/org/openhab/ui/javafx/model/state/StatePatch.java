@@ -0,0 +1,139 @@
+package org.openhab.ui.javafx.model.state;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.openhab.ui.javafx.model.Component;
+import org.openhab.ui.javafx.model.ComponentType;
+import org.openhab.ui.javafx.model.atom.AbstractAtom;
+import org.openhab.ui.javafx.model.container.Container;
+import org.openhab.ui.javafx.model.container.NavigableContainer;
+import org.openhab.ui.javafx.model.container.Widget;
+
+/**
+ * A batch of state updates to be applied in place to a rendering model that
+ * is already loaded, instead of retrieving the whole model again.
+ * 
+ * Each update has a target, which is either a component path or an item name.
+ * A path starts with a slash and lists the index of the component at each
+ * level below the navigable container, e.g. "/1/0/2" is the third atom of the
+ * first widget in the second frame. Any other target is taken as the name of
+ * an item, and the state is applied to all widgets representing it.
+ * 
+ * Patches must be applied on the thread that renders the model.
+ * 
+ * @author Flavio Costa
+ */
+public class StatePatch {
+
+	/**
+	 * New states, indexed by target. Later updates to the same target replace
+	 * earlier ones.
+	 */
+	private final Map<String, String> states = new LinkedHashMap<>();
+
+	/**
+	 * Adds an update to the patch.
+	 * 
+	 * @param target
+	 *            Component path or item name.
+	 * @param state
+	 *            New state.
+	 * @return This patch.
+	 */
+	public StatePatch put(String target, String state) {
+		states.put(target, state);
+		return this;
+	}
+
+	/**
+	 * Returns the updates in this patch.
+	 * 
+	 * @return New states, indexed by target.
+	 */
+	public Map<String, String> getStates() {
+		return Collections.unmodifiableMap(states);
+	}
+
+	/**
+	 * Determines whether the patch has no updates.
+	 * 
+	 * @return True if there are no updates.
+	 */
+	public boolean isEmpty() {
+		return states.isEmpty();
+	}
+
+	/**
+	 * Applies the updates to a rendering model.
+	 * 
+	 * @param container
+	 *            Navigable container to be updated.
+	 * @return Widgets that had any of their atoms changed.
+	 */
+	public Set<Widget> applyTo(NavigableContainer<?, Container<?, ?>> container) {
+
+		Set<Widget> changed = new LinkedHashSet<>();
+
+		for (Map.Entry<String, String> update : states.entrySet()) {
+			String target = update.getKey();
+			String state = update.getValue();
+
+			if (target.startsWith("/")) {
+				applyToPath(container, target, state, changed);
+			} else {
+				for (Widget widget : container.getIndex().getWidgets(target)) {
+					if (widget.updateState(state)) {
+						changed.add(widget);
+					}
+				}
+			}
+		}
+
+		return changed;
+	}
+
+	/**
+	 * Applies an update to the component at a given path.
+	 * 
+	 * @param container
+	 *            Navigable container to be updated.
+	 * @param path
+	 *            Component path.
+	 * @param state
+	 *            New state.
+	 * @param changed
+	 *            Receives the widget if it was changed.
+	 * @throws IllegalArgumentException
+	 *             If the path does not lead to a widget or atom.
+	 */
+	private void applyToPath(NavigableContainer<?, Container<?, ?>> container, String path, String state,
+			Set<Widget> changed) throws IllegalArgumentException {
+
+		Component<?> component = container;
+		Widget widget = null;
+		try {
+			for (String index : path.substring(1).split("/")) {
+				component = ((Container<?, ?>) component).getComponents().get(Integer.parseInt(index));
+				if (component.getType() == ComponentType.WIDGET) {
+					widget = (Widget) component;
+				}
+			}
+		} catch (ClassCastException | IndexOutOfBoundsException | NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid component path: " + path, e);
+		}
+
+		if (widget == null) {
+			throw new IllegalArgumentException("Component path does not lead to a widget: " + path);
+		}
+
+		boolean updated = component == widget ? widget.updateState(state)
+				: ((AbstractAtom<?>) component).updateState(state);
+		if (updated) {
+			changed.add(widget);
+		}
+	}
+}
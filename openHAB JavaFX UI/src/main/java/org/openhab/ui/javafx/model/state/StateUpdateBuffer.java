@@ -0,0 +1,155 @@
+package org.openhab.ui.javafx.model.state;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects item state updates arriving from any thread, until they are drained
+ * as a single {@link StatePatch}. Updates are coalesced per item, so only the
+ * latest state of each item is kept while it waits to be applied.
+ *
+ * The buffer also keeps metrics about the updates received and applied.
+ *
+ * @author Flavio Costa
+ */
+public class StateUpdateBuffer {
+
+	/**
+	 * Called whenever the buffer stops being empty.
+	 */
+	private final Runnable pendingListener;
+
+	/**
+	 * Latest state of each item with pending updates.
+	 */
+	private Map<String, String> pending = new LinkedHashMap<>();
+
+	/**
+	 * Time when the buffer was created, in nanoseconds.
+	 */
+	private final long startTime = System.nanoTime();
+
+	/**
+	 * Number of updates received.
+	 */
+	private long receivedCount;
+
+	/**
+	 * Number of updates drained, after coalescing.
+	 */
+	private long drainedCount;
+
+	/**
+	 * Number of non-empty patches drained.
+	 */
+	private long batchCount;
+
+	/**
+	 * Creates a new buffer.
+	 *
+	 * @param pendingListener
+	 *            Called (from the thread adding the update) whenever an update is
+	 *            added to an empty buffer, so it can be scheduled to be drained.
+	 */
+	public StateUpdateBuffer(Runnable pendingListener) {
+		this.pendingListener = pendingListener;
+	}
+
+	/**
+	 * Adds an update, replacing any pending update for the same item.
+	 *
+	 * @param item
+	 *            Item name.
+	 * @param state
+	 *            New item state.
+	 */
+	public void put(String item, String state) {
+		boolean first;
+		synchronized (this) {
+			receivedCount++;
+			first = pending.isEmpty();
+			pending.put(item, state);
+		}
+		if (first) {
+			pendingListener.run();
+		}
+	}
+
+	/**
+	 * Removes all pending updates.
+	 *
+	 * @return Patch with the latest state of each item, empty if there were no
+	 *         updates.
+	 */
+	public StatePatch drain() {
+		Map<String, String> updates;
+		synchronized (this) {
+			if (pending.isEmpty()) {
+				return new StatePatch();
+			}
+			updates = pending;
+			pending = new LinkedHashMap<>();
+			drainedCount += updates.size();
+			batchCount++;
+		}
+
+		StatePatch patch = new StatePatch();
+		updates.forEach(patch::put);
+		return patch;
+	}
+
+	/**
+	 * Returns the number of updates received.
+	 *
+	 * @return Number of updates.
+	 */
+	public synchronized long getReceivedCount() {
+		return receivedCount;
+	}
+
+	/**
+	 * Returns the number of updates drained, i.e. those left after coalescing.
+	 *
+	 * @return Number of updates.
+	 */
+	public synchronized long getDrainedCount() {
+		return drainedCount;
+	}
+
+	/**
+	 * Returns the number of non-empty patches drained.
+	 *
+	 * @return Number of patches.
+	 */
+	public synchronized long getBatchCount() {
+		return batchCount;
+	}
+
+	/**
+	 * Returns how many updates were received for each update drained.
+	 *
+	 * @return Ratio between updates received and drained, 1 when nothing was
+	 *         coalesced.
+	 */
+	public synchronized double getCoalescingRatio() {
+		return drainedCount == 0 ? 1 : (double) (receivedCount - pending.size()) / drainedCount;
+	}
+
+	/**
+	 * Returns the average rate of updates received since the buffer was created.
+	 *
+	 * @return Updates per second.
+	 */
+	public synchronized double getIngestRate() {
+		long elapsed = System.nanoTime() - startTime;
+		return elapsed == 0 ? 0 : receivedCount * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("%s[received=%d, drained=%d, batches=%d, ratio=%.2f, rate=%.1f/s]",
+				getClass().getSimpleName(), receivedCount, drainedCount, batchCount, getCoalescingRatio(),
+				getIngestRate());
+	}
+}
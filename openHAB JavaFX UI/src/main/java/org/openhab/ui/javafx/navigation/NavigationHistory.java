@@ -2,13 +2,27 @@ package org.openhab.ui.javafx.navigation;
 
 import java.net.URI;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.openhab.ui.javafx.model.container.Container;
 import org.openhab.ui.javafx.model.container.NavigableContainer;
+import org.openhab.ui.javafx.model.rendering.CachingRenderingModelProvider;
 import org.openhab.ui.javafx.model.rendering.RenderingModelProvider;
 import org.openhab.ui.javafx.view.SitemapListView;
 
+import javafx.application.Platform;
 import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.ReadOnlyIntegerProperty;
 import javafx.beans.property.ReadOnlyStringProperty;
@@ -26,16 +40,61 @@ import javafx.beans.property.StringProperty;
  */
 public class NavigationHistory {
 
+	/**
+	 * Used for logging activities of this class.
+	 */
+	private static final Logger logger = Logger.getLogger(NavigationHistory.class.getPackage().getName());
+
+	/**
+	 * Executor used by default to load rendering models, so that the JavaFX
+	 * application thread is never blocked by I/O or parsing.
+	 */
+	private static final Executor DEFAULT_EXECUTOR = Executors.newFixedThreadPool(2, r -> {
+		Thread thread = new Thread(r, "rendering-model-loader");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * Executor where the rendering models are loaded.
+	 */
+	private Executor executor = DEFAULT_EXECUTOR;
+
+	/**
+	 * Navigation still being loaded, if any.
+	 */
+	private CompletableFuture<NavigableContainer<?, Container<?, ?>>> pendingNavigation;
+
+	/**
+	 * Transition of the navigation still being loaded, if any.
+	 */
+	private Transition pendingTransition;
+
 	/**
 	 * Used to retrieve the rendering model for the provided URL.
 	 */
 	private RenderingModelProvider modelProvider;
 
+	/**
+	 * Loads the pages linked from the current one in the background, if any.
+	 */
+	private PagePrefetcher prefetcher;
+
+	/**
+	 * Notified of each page displayed, once its index is built.
+	 */
+	private final List<Consumer<NavigableContainer<?, Container<?, ?>>>> pageListeners = new CopyOnWriteArrayList<>();
+
 	/**
 	 * Stack with the URIs in the navigation history.
 	 */
 	private Deque<URI> history = new ArrayDeque<>();
 
+	/**
+	 * Rendering model currently displayed.
+	 */
+	private NavigableContainer<?, Container<?, ?>> currentModel;
+
 	/**
 	 * Currently level in the hierarchy.
 	 */
@@ -58,8 +117,32 @@ public class NavigationHistory {
 	 *            List associated with this navigation history.
 	 */
 	protected NavigationHistory(SitemapListView listView) {
-		modelProvider = RenderingModelProvider.get();
+		this(listView, RenderingModelProvider.get());
+	}
+
+	/**
+	 * Creates a new instance with a list view and a specific rendering model
+	 * provider. Whenever the provider reports that the model currently displayed
+	 * has changed, it is refreshed in place.
+	 * 
+	 * @param listView
+	 *            List associated with this navigation history.
+	 * @param modelProvider
+	 *            Used to retrieve the rendering models.
+	 */
+	protected NavigationHistory(SitemapListView listView, RenderingModelProvider modelProvider) {
+		this.modelProvider = modelProvider;
 		this.listView = listView;
+
+		modelProvider.addChangeListener(uri -> Platform.runLater(() -> {
+			if (uri.equals(getCurrentURI())) {
+				refresh();
+			}
+		}));
+
+		if (modelProvider instanceof CachingRenderingModelProvider) {
+			prefetcher = new PagePrefetcher((CachingRenderingModelProvider) modelProvider);
+		}
 	}
 
 	/**
@@ -92,29 +175,291 @@ public class NavigationHistory {
 	}
 
 	/**
-	 * Navigates to another container.
+	 * Defines the executor where rendering models are loaded. By default, a small
+	 * pool of daemon threads is used.
+	 * 
+	 * @param executor
+	 *            Executor suitable for I/O bound tasks.
+	 */
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Defines the prefetcher that loads the pages linked from the one displayed.
+	 * By default, a prefetcher with the default settings is used if the rendering
+	 * models are cached.
+	 * 
+	 * @param prefetcher
+	 *            Prefetcher instance, or null to disable prefetching.
+	 */
+	public void setPrefetcher(PagePrefetcher prefetcher) {
+		this.prefetcher = prefetcher;
+	}
+
+	/**
+	 * Registers a listener to be notified of each page displayed, including
+	 * refreshes of the current page. The index of the page is built in the
+	 * background, so that large pages do not block the JavaFX application
+	 * thread, and the listeners are then called from the JavaFX application
+	 * thread, unless the page was replaced meanwhile.
+	 * 
+	 * @param listener
+	 *            Listener receiving the rendering model displayed.
+	 */
+	public void addPageListener(Consumer<NavigableContainer<?, Container<?, ?>>> listener) {
+		pageListeners.add(listener);
+	}
+
+	/**
+	 * Navigates to another container. The rendering model is loaded in the
+	 * background while the list view displays a loading state, and only the
+	 * update of the view happens on the JavaFX application thread. If another
+	 * navigation is requested before this one finishes loading, this one is
+	 * cancelled.
+	 * 
+	 * This method must be called from the JavaFX application thread.
 	 * 
 	 * @param uri
 	 *            URI of the container to be displayed.
 	 */
 	public void navigateTo(URI uri) {
+		load(uri, Transition.FORWARD);
+	}
+
+	/**
+	 * Navigates to a container whose rendering model is already being loaded,
+	 * e.g. started before the list view was created. Otherwise, it works as
+	 * {@link #navigateTo(URI)}.
+	 * 
+	 * This method must be called from the JavaFX application thread.
+	 * 
+	 * @param uri
+	 *            URI of the container to be displayed.
+	 * @param model
+	 *            Rendering model being loaded.
+	 */
+	public void navigateTo(URI uri, CompletableFuture<NavigableContainer<?, Container<?, ?>>> model) {
+		load(uri, Transition.FORWARD, model);
+	}
+
+	/**
+	 * Retrieves again the container currently displayed and updates the list
+	 * view in place, without changing the navigation history. Nothing is done if
+	 * a navigation is in progress, as it will display up-to-date data anyway.
+	 * 
+	 * This method must be called from the JavaFX application thread.
+	 */
+	public void refresh() {
+		URI uri = getCurrentURI();
+		if (uri != null && pendingNavigation == null) {
+			load(uri, Transition.REFRESH);
+		}
+	}
 
+	/**
+	 * Loads a container in the background and displays it.
+	 * 
+	 * @param uri
+	 *            URI of the container to be displayed.
+	 * @param transition
+	 *            How the container relates to the one currently displayed.
+	 */
+	private void load(URI uri, Transition transition) {
 		// rendering model for a sitemap or page
-		NavigableContainer<?, Container<?, ?>> model = modelProvider.retrieve(uri);
+		load(uri, transition, modelProvider.retrieveAsync(uri, executor));
+	}
 
-		history.push(uri);
-		listView.navigateTo(model);
+	/**
+	 * Displays a container once it is loaded.
+	 * 
+	 * @param uri
+	 *            URI of the container to be displayed.
+	 * @param transition
+	 *            How the container relates to the one currently displayed.
+	 * @param navigation
+	 *            Rendering model being loaded.
+	 */
+	private void load(URI uri, Transition transition,
+			CompletableFuture<NavigableContainer<?, Container<?, ?>>> navigation) {
+
+		if (pendingNavigation != null) {
+			// superseded by this navigation
+			pendingNavigation.cancel(false);
+		}
+
+		pendingNavigation = navigation;
+		pendingTransition = transition;
+		listView.setLoading(transition != Transition.REFRESH);
+
+		navigation.whenComplete((model, e) -> Platform.runLater(() -> {
+
+			if (navigation != pendingNavigation) {
+				// a newer navigation is in progress
+				return;
+			}
+			pendingNavigation = null;
+			pendingTransition = null;
+			listView.setLoading(false);
+
+			if (e != null || model == null) {
+				logger.log(Level.SEVERE, String.format("Could not navigate to %s", uri), e);
+				return;
+			}
+
+			show(uri, model, transition);
+		}));
+	}
+
+	/**
+	 * Displays a container already loaded.
+	 * 
+	 * @param uri
+	 *            URI of the container.
+	 * @param model
+	 *            Rendering model of the container.
+	 * @param transition
+	 *            How the container relates to the one displayed so far.
+	 */
+	private void show(URI uri, NavigableContainer<?, Container<?, ?>> model, Transition transition) {
+		switch (transition) {
+		case REFRESH:
+			listView.refresh(model);
+			break;
+		case BACK:
+			// the previous container stays on top
+			if (history.size() > 1) {
+				history.pop();
+			}
+			listView.navigateTo(model);
+			break;
+		default:
+			history.push(uri);
+			listView.navigateTo(model);
+		}
 		currentLevel.set(history.size());
+		currentModel = model;
 		currentTitle.set(model.getData().getLabel());
+
+		// builds the index in the background, before clicks or state updates
+		// need it, and notifies the listeners unless another page was shown
+		// meanwhile
+		executor.execute(() -> {
+			model.getIndex();
+			Platform.runLater(() -> {
+				if (model == currentModel) {
+					pageListeners.forEach(l -> l.accept(model));
+				}
+			});
+		});
+
+		if (prefetcher != null) {
+			prefetcher.prefetch(uri, model);
+		}
+	}
+
+	/**
+	 * Restores a previous navigation state, e.g. saved when the application was
+	 * last closed. The container on top of the history is displayed right away
+	 * from the model provided, and then retrieved again in the background to
+	 * replace it with up-to-date data.
+	 * 
+	 * This method must be called from the JavaFX application thread.
+	 * 
+	 * @param uris
+	 *            URIs in the navigation history, from the current one to the
+	 *            root.
+	 * @param model
+	 *            Rendering model of the current URI, possibly outdated.
+	 * @param revalidation
+	 *            Up-to-date rendering model of the current URI, already being
+	 *            loaded, or null to retrieve it now.
+	 */
+	public void restore(List<URI> uris, NavigableContainer<?, Container<?, ?>> model,
+			CompletableFuture<NavigableContainer<?, Container<?, ?>>> revalidation) {
+		history.clear();
+		for (int i = uris.size() - 1; i > 0; i--) {
+			history.push(uris.get(i));
+		}
+		show(uris.get(0), model, Transition.FORWARD);
+		if (revalidation == null) {
+			refresh();
+		} else {
+			load(uris.get(0), Transition.REFRESH, revalidation);
+		}
+	}
+
+	/**
+	 * Returns the URIs in the navigation history.
+	 * 
+	 * @return URIs from the current one to the root.
+	 */
+	public List<URI> getHistory() {
+		return new ArrayList<>(history);
+	}
+
+	/**
+	 * Returns the rendering models loaded for the sitemap currently displayed:
+	 * the current one and any others still cached.
+	 * 
+	 * This method must be called from the JavaFX application thread.
+	 * 
+	 * @return Rendering models, indexed by URI, starting with the current one.
+	 */
+	public Map<URI, NavigableContainer<?, Container<?, ?>>> getLoadedModels() {
+		Map<URI, NavigableContainer<?, Container<?, ?>>> models = new LinkedHashMap<>();
+		URI uri = getCurrentURI();
+		if (uri == null || currentModel == null) {
+			return models;
+		}
+
+		models.put(uri, currentModel);
+		if (modelProvider instanceof CachingRenderingModelProvider) {
+			((CachingRenderingModelProvider) modelProvider)
+					.getCachedModels(URI.create(uri.getScheme() + "://" + uri.getHost() + "/"))
+					.forEach(models::putIfAbsent);
+		}
+		return models;
 	}
 
 	/**
-	 * Navigates back to the previous container.
+	 * Navigates back to the previous container. The history only changes once
+	 * the previous container is loaded. Nothing is done if there is no previous
+	 * container, or while another navigation is loading (e.g. when going back
+	 * repeatedly), other than a refresh.
+	 * 
+	 * This method must be called from the JavaFX application thread.
 	 */
 	public void back() {
-		// discard current item
-		history.pop();
-		// go back to the previous item
-		navigateTo(history.pop());
+		if (history.size() < 2 || pendingNavigation != null && pendingTransition != Transition.REFRESH) {
+			return;
+		}
+		// skip the current item
+		Iterator<URI> uris = history.iterator();
+		uris.next();
+		load(uris.next(), Transition.BACK);
+	}
+
+	/**
+	 * How a container being displayed relates to the one displayed before.
+	 */
+	private enum Transition {
+
+		/**
+		 * Navigates into a new container, added to the history.
+		 */
+		FORWARD,
+
+		/**
+		 * Navigates back to the previous container in the history, removing the
+		 * current one.
+		 */
+		BACK,
+
+		/**
+		 * Replaces the container currently displayed, without changing the
+		 * history.
+		 */
+		REFRESH
 	}
 }
@@ -0,0 +1,316 @@
+package org.openhab.ui.javafx.navigation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openhab.ui.javafx.model.container.Container;
+import org.openhab.ui.javafx.model.container.NavigableContainer;
+import org.openhab.ui.javafx.model.rendering.BinarySitemapCompiler;
+import org.openhab.ui.javafx.model.rendering.BinarySitemapFormat;
+import org.openhab.ui.javafx.model.rendering.MappedRenderingModel;
+
+/**
+ * Keeps a copy on disk of the navigation state when the application is closed,
+ * so that the next launch can display the last page right away instead of
+ * waiting for it to be retrieved and parsed.
+ *
+ * The snapshot directory contains the rendering models loaded for the sitemap
+ * (compiled with {@link BinarySitemapCompiler}, so they are memory-mapped
+ * instead of parsed) and a properties file with the snapshot version, the
+ * source of the models, the navigation history and the directory holding the
+ * models. A snapshot is only used if it has the current version and was taken
+ * from the same source.
+ *
+ * Each save writes the models into a new directory, so a compiled sitemap is
+ * never replaced while it is still mapped (which is not allowed on Windows).
+ * Directories of earlier saves are deleted once they are no longer in use.
+ *
+ * @author Flavio Costa
+ */
+public class NavigationSnapshot {
+
+	/**
+	 * Used for logging activities of this class.
+	 */
+	private static final Logger logger = Logger.getLogger(NavigationSnapshot.class.getPackage().getName());
+
+	/**
+	 * Current snapshot version. It must be incremented whenever the contents of
+	 * the snapshot change in an incompatible way.
+	 */
+	private static final String VERSION = "2";
+
+	/**
+	 * Name of the file describing the snapshot.
+	 */
+	private static final String PROPERTIES_FILE = "navigation.properties";
+
+	/**
+	 * Prefix of the directories holding the models of each save.
+	 */
+	private static final String MODELS_PREFIX = "models-";
+
+	/**
+	 * Directory where the snapshot is kept.
+	 */
+	private final Path directory;
+
+	/**
+	 * Source of the rendering models, as given on the command line.
+	 */
+	private final String source;
+
+	/**
+	 * Navigation history loaded from the snapshot.
+	 */
+	private List<URI> history;
+
+	/**
+	 * Rendering model of the last page loaded from the snapshot, until it is
+	 * restored.
+	 */
+	private NavigableContainer<?, Container<?, ?>> loadedModel;
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param directory
+	 *            Directory where the snapshot is kept.
+	 * @param source
+	 *            Source of the rendering models, or null for the default one.
+	 */
+	public NavigationSnapshot(Path directory, String source) {
+		this.directory = directory;
+		this.source = source == null ? "" : source;
+	}
+
+	/**
+	 * Loads the navigation state saved in the snapshot, if it is for the sitemap
+	 * being loaded. This method may be called from any thread.
+	 *
+	 * @param sitemap
+	 *            URI of the sitemap being loaded.
+	 * @return URI of the page to be displayed when the snapshot is restored, or
+	 *         null if there is no usable snapshot.
+	 */
+	public URI load(URI sitemap) {
+		Properties properties = new Properties();
+		try (InputStream is = Files.newInputStream(directory.resolve(PROPERTIES_FILE))) {
+			properties.load(is);
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (IOException e) {
+			logger.log(Level.WARNING, "Could not read the navigation snapshot", e);
+			return null;
+		}
+
+		if (!VERSION.equals(properties.getProperty("version")) || !source.equals(properties.getProperty("source"))) {
+			logger.info("Ignoring navigation snapshot from another version or source");
+			return null;
+		}
+
+		List<URI> uris = new ArrayList<>();
+		for (String uri : properties.getProperty("history", "").split(" ")) {
+			if (!uri.isEmpty()) {
+				uris.add(URI.create(uri));
+			}
+		}
+		String models = properties.getProperty("models", "");
+		if (uris.isEmpty() || !sitemap.getHost().equals(uris.get(0).getHost()) || !models.startsWith(MODELS_PREFIX)) {
+			return null;
+		}
+
+		NavigableContainer<?, Container<?, ?>> model = new MappedRenderingModel(directory.resolve(models))
+				.retrieve(uris.get(0));
+		if (model == null) {
+			return null;
+		}
+
+		synchronized (this) {
+			history = uris;
+			loadedModel = model;
+		}
+		return uris.get(0);
+	}
+
+	/**
+	 * Restores the navigation state previously loaded from the snapshot. The
+	 * last page is displayed right away, and replaced once its up-to-date model
+	 * is loaded.
+	 *
+	 * This method must be called from the JavaFX application thread.
+	 *
+	 * @param navigation
+	 *            Navigation history to be restored.
+	 * @param revalidation
+	 *            Up-to-date rendering model of the last page, already being
+	 *            loaded, or null to retrieve it now.
+	 * @return True if the navigation state was restored, false if no snapshot
+	 *         was loaded.
+	 */
+	public synchronized boolean restore(NavigationHistory navigation,
+			CompletableFuture<NavigableContainer<?, Container<?, ?>>> revalidation) {
+		if (loadedModel == null) {
+			return false;
+		}
+
+		logger.info(String.format("Restoring %s from the navigation snapshot", history.get(0)));
+		navigation.restore(history, loadedModel, revalidation);
+		// the snapshot is only restored once
+		loadedModel = null;
+		return true;
+	}
+
+	/**
+	 * Saves the current navigation state. The rendering models are compiled on
+	 * the calling thread, and the files are written by the executor. The
+	 * properties file is replaced atomically, so an interrupted save leaves the
+	 * previous snapshot intact.
+	 *
+	 * This method must be called from the JavaFX application thread, as the
+	 * rendering models are read while they are compiled.
+	 *
+	 * @param navigation
+	 *            Navigation history to be saved.
+	 * @param executor
+	 *            Executor writing the files.
+	 * @return Future completed once the files are written, or the save failed.
+	 */
+	public CompletableFuture<Void> save(NavigationHistory navigation, Executor executor) {
+		List<URI> history = navigation.getHistory();
+		Map<URI, NavigableContainer<?, Container<?, ?>>> models = navigation.getLoadedModels();
+		if (history.isEmpty() || models.isEmpty()) {
+			return CompletableFuture.completedFuture(null);
+		}
+
+		// the compiled sitemap is indexed by the path of each page
+		Map<String, NavigableContainer<?, Container<?, ?>>> pages = new LinkedHashMap<>();
+		models.forEach((uri, model) -> pages.put(uri.getPath().isEmpty() ? "/" : uri.getPath(), model));
+		ByteArrayOutputStream compiled = new ByteArrayOutputStream();
+		try {
+			BinarySitemapCompiler.compile(pages, compiled);
+		} catch (IOException e) {
+			logger.log(Level.WARNING, "Could not save the navigation snapshot", e);
+			return CompletableFuture.completedFuture(null);
+		}
+
+		StringBuilder uris = new StringBuilder();
+		for (URI uri : history) {
+			uris.append(uris.length() == 0 ? "" : " ").append(uri);
+		}
+		Properties properties = new Properties();
+		properties.setProperty("version", VERSION);
+		properties.setProperty("source", source);
+		properties.setProperty("history", uris.toString());
+
+		String file = history.get(0).getHost() + BinarySitemapFormat.FILE_EXTENSION;
+		return CompletableFuture.runAsync(() -> write(file, compiled, properties, pages.size()), executor);
+	}
+
+	/**
+	 * Writes the files of the snapshot.
+	 *
+	 * @param file
+	 *            Name of the compiled sitemap file.
+	 * @param compiled
+	 *            Compiled sitemap.
+	 * @param properties
+	 *            Description of the snapshot, still without the directory of
+	 *            the models.
+	 * @param pageCount
+	 *            Number of pages in the compiled sitemap.
+	 */
+	private void write(String file, ByteArrayOutputStream compiled, Properties properties, int pageCount) {
+		try {
+			Files.createDirectories(directory);
+			Path models = Files.createTempDirectory(directory, MODELS_PREFIX);
+			try (OutputStream os = Files.newOutputStream(models.resolve(file))) {
+				compiled.writeTo(os);
+			}
+			properties.setProperty("models", models.getFileName().toString());
+
+			// written last, so it never refers to models not saved
+			Path temporary = Files.createTempFile(directory, "snapshot", ".tmp");
+			try {
+				try (OutputStream os = Files.newOutputStream(temporary)) {
+					properties.store(os, "Navigation snapshot");
+				}
+				replace(temporary, directory.resolve(PROPERTIES_FILE));
+			} finally {
+				Files.deleteIfExists(temporary);
+			}
+			logger.info(String.format("Saved %d pages in the navigation snapshot", pageCount));
+
+			deleteModelsExcept(models);
+
+		} catch (IOException e) {
+			logger.log(Level.WARNING, "Could not save the navigation snapshot", e);
+		}
+	}
+
+	/**
+	 * Deletes the directories with the models of earlier saves. Files still
+	 * mapped by this process may not be deleted, so they are left for a later
+	 * save.
+	 *
+	 * @param current
+	 *            Directory with the models of the current save.
+	 * @throws IOException
+	 *             If the snapshot directory could not be listed.
+	 */
+	private void deleteModelsExcept(Path current) throws IOException {
+		try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, MODELS_PREFIX + "*")) {
+			for (Path models : entries) {
+				if (models.equals(current) || !Files.isDirectory(models)) {
+					continue;
+				}
+				try {
+					try (DirectoryStream<Path> files = Files.newDirectoryStream(models)) {
+						for (Path file : files) {
+							Files.delete(file);
+						}
+					}
+					Files.delete(models);
+				} catch (IOException e) {
+					logger.log(Level.FINE, String.format("Could not delete %s yet", models), e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Replaces a file with a temporary one, as a single operation if possible.
+	 *
+	 * @param temporary
+	 *            File with the new contents.
+	 * @param target
+	 *            File to be replaced.
+	 * @throws IOException
+	 *             If the file could not be replaced.
+	 */
+	private void replace(Path temporary, Path target) throws IOException {
+		try {
+			Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+}
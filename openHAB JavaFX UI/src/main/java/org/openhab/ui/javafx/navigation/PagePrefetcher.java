@@ -0,0 +1,225 @@
+package org.openhab.ui.javafx.navigation;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openhab.ui.javafx.model.Component;
+import org.openhab.ui.javafx.model.ComponentType;
+import org.openhab.ui.javafx.model.container.Container;
+import org.openhab.ui.javafx.model.container.NavigableContainer;
+import org.openhab.ui.javafx.model.container.Widget;
+import org.openhab.ui.javafx.model.rendering.CachingRenderingModelProvider;
+import org.openhab.ui.javafx.view.SitemapClickListener;
+
+/**
+ * Loads in the background the pages linked from the page currently displayed,
+ * so that they are already cached when the user navigates into them. Pages
+ * are loaded by low priority threads, and prefetching stops whenever the cache
+ * holds more than the configured memory budget.
+ *
+ * @author Flavio Costa
+ */
+public class PagePrefetcher {
+
+	/**
+	 * Used for logging activities of this class.
+	 */
+	private static final Logger logger = Logger.getLogger(PagePrefetcher.class.getPackage().getName());
+
+	/**
+	 * Default number of levels below the current page to be prefetched.
+	 */
+	public static final int DEFAULT_DEPTH = 1;
+
+	/**
+	 * Default number of pages loaded at the same time.
+	 */
+	public static final int DEFAULT_CONCURRENCY = 1;
+
+	/**
+	 * Default memory budget, as the total weight (number of components) of the
+	 * cached models.
+	 */
+	public static final long DEFAULT_MEMORY_BUDGET = 20_000;
+
+	/**
+	 * Cache where the pages are loaded into.
+	 */
+	private final CachingRenderingModelProvider cache;
+
+	/**
+	 * Number of levels below the current page to be prefetched.
+	 */
+	private final int depth;
+
+	/**
+	 * Maximum total weight of the cache for prefetching to take place.
+	 */
+	private final long memoryBudget;
+
+	/**
+	 * Runs the prefetching tasks.
+	 */
+	private final ThreadPoolExecutor executor;
+
+	/**
+	 * Incremented every time a new page is shown, so that tasks scheduled for
+	 * previous pages can be discarded.
+	 */
+	private final AtomicInteger generation = new AtomicInteger();
+
+	/**
+	 * Creates a prefetcher with the default settings.
+	 *
+	 * @param cache
+	 *            Cache where the pages are loaded into.
+	 */
+	public PagePrefetcher(CachingRenderingModelProvider cache) {
+		this(cache, DEFAULT_DEPTH, DEFAULT_CONCURRENCY, DEFAULT_MEMORY_BUDGET);
+	}
+
+	/**
+	 * Creates a prefetcher.
+	 *
+	 * @param cache
+	 *            Cache where the pages are loaded into.
+	 * @param depth
+	 *            Number of levels below the current page to be prefetched.
+	 * @param concurrency
+	 *            Maximum number of pages loaded at the same time.
+	 * @param memoryBudget
+	 *            Maximum total weight of the cache for prefetching to take place.
+	 */
+	public PagePrefetcher(CachingRenderingModelProvider cache, int depth, int concurrency, long memoryBudget) {
+		this.cache = cache;
+		this.depth = depth;
+		this.memoryBudget = memoryBudget;
+
+		AtomicInteger threadCount = new AtomicInteger();
+		executor = new ThreadPoolExecutor(concurrency, concurrency, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+				r -> {
+					Thread thread = new Thread(r, "page-prefetcher-" + threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					thread.setPriority(Thread.MIN_PRIORITY);
+					return thread;
+				});
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Starts prefetching the pages linked from a page that has just been shown.
+	 * Any prefetching still pending for a previous page is abandoned.
+	 *
+	 * @param uri
+	 *            URI of the page shown.
+	 * @param page
+	 *            Rendering model of the page shown.
+	 */
+	public void prefetch(URI uri, NavigableContainer<?, Container<?, ?>> page) {
+		int current = generation.incrementAndGet();
+		executor.getQueue().clear();
+
+		// links are collected in the background too, as that may require
+		// lazily loaded components to be decoded
+		executor.execute(() -> {
+			if (current == generation.get()) {
+				for (URI link : getLinks(uri, page)) {
+					schedule(link, 1, current);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Schedules the prefetching of one page.
+	 *
+	 * @param uri
+	 *            URI of the page.
+	 * @param level
+	 *            Level of the page below the one currently shown.
+	 * @param scheduledGeneration
+	 *            Generation when the task was scheduled.
+	 */
+	private void schedule(URI uri, int level, int scheduledGeneration) {
+		executor.execute(() -> {
+
+			if (scheduledGeneration != generation.get()) {
+				// the user navigated somewhere else meanwhile
+				return;
+			}
+			if (cache.getTotalWeight() >= memoryBudget) {
+				logger.log(Level.FINE, "Memory budget exceeded, not prefetching {0}", uri);
+				return;
+			}
+
+			NavigableContainer<?, Container<?, ?>> page = cache.prefetch(uri);
+			if (page != null && level < depth) {
+				for (URI link : getLinks(uri, page)) {
+					schedule(link, level + 1, scheduledGeneration);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Collects the sitemap URIs linked from the widgets in a page, resolved
+	 * against the page URI the same way as {@link SitemapClickListener} does when
+	 * a widget is clicked.
+	 *
+	 * @param uri
+	 *            URI of the page.
+	 * @param page
+	 *            Rendering model of the page.
+	 * @return Linked page URIs, in the order they appear on the page.
+	 */
+	private Set<URI> getLinks(URI uri, NavigableContainer<?, Container<?, ?>> page) {
+
+		if (page.getComponents() == null) {
+			return Collections.emptySet();
+		}
+
+		Set<URI> links = new LinkedHashSet<>();
+		for (Container<?, ?> container : page.getComponents()) {
+			if (container.getType() == ComponentType.WIDGET) {
+				addLink(links, uri, (Widget) container);
+			} else if (container.getComponents() != null) {
+				for (Component<?> component : container.getComponents()) {
+					if (component.getType() == ComponentType.WIDGET) {
+						addLink(links, uri, (Widget) component);
+					}
+				}
+			}
+		}
+		links.remove(uri);
+		return links;
+	}
+
+	/**
+	 * Adds the link of a widget, if it opens another sitemap page.
+	 *
+	 * @param links
+	 *            Links found so far.
+	 * @param uri
+	 *            URI of the page containing the widget.
+	 * @param widget
+	 *            Widget possibly containing a link.
+	 */
+	private void addLink(Set<URI> links, URI uri, Widget widget) {
+		URI action = widget.getData();
+		if (action != null) {
+			URI link = uri.resolve(action);
+			// other schemes (e.g. item) do not lead to a page
+			if ("sitemap".equals(link.getScheme())) {
+				links.add(link);
+			}
+		}
+	}
+}
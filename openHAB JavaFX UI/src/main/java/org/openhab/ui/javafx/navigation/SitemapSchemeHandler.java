@@ -4,6 +4,7 @@ import java.net.URI;
 import java.util.Collections;
 import java.util.Set;
 
+import org.openhab.ui.javafx.model.rendering.RenderingModelProvider;
 import org.openhab.ui.javafx.scheme.SchemeHandler;
 import org.openhab.ui.javafx.scheme.SchemeType;
 import org.openhab.ui.javafx.view.SitemapListView;
@@ -35,6 +36,29 @@ public class SitemapSchemeHandler implements SchemeHandler<NavigationHistory> {
 		navigation = new NavigationHistory(listView);
 	}
 
+	/**
+	 * Creates a new instance with a list view and a specific rendering model
+	 * provider.
+	 * 
+	 * @param listView
+	 *            List associated with this SchemeHandler.
+	 * @param modelProvider
+	 *            Used to retrieve the rendering models.
+	 */
+	public SitemapSchemeHandler(SitemapListView listView, RenderingModelProvider modelProvider) {
+		navigation = new NavigationHistory(listView, modelProvider);
+	}
+
+	/**
+	 * Returns the navigation history for the sitemap list view, without
+	 * navigating anywhere.
+	 * 
+	 * @return Navigation history.
+	 */
+	public NavigationHistory getNavigation() {
+		return navigation;
+	}
+
 	@Override
 	public Set<SchemeType> getAcceptedTypes() {
 		return Collections.singleton(SchemeType.SITEMAP);
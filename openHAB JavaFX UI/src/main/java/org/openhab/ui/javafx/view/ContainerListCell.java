@@ -1,10 +1,11 @@
 package org.openhab.ui.javafx.view;
 
-import java.io.IOException;
 import java.io.InputStream;
+import java.math.BigDecimal;
 import java.net.URI;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.BiConsumer;
 
 import org.openhab.ui.javafx.model.atom.Atom;
 import org.openhab.ui.javafx.model.atom.IconAtom;
@@ -14,19 +15,22 @@ import org.openhab.ui.javafx.model.container.Frame;
 import org.openhab.ui.javafx.model.container.Widget;
 import org.openhab.ui.javafx.scheme.SchemeHandler;
 import org.openhab.ui.javafx.scheme.SchemeType;
+import org.openhab.ui.javafx.view.iconset.IconSchemeHandler;
 import org.openhab.ui.javafx.view.iconset.MaterialIcon;
 
 import com.jfoenix.controls.JFXComboBox;
 import com.jfoenix.controls.JFXSlider;
 import com.jfoenix.controls.JFXToggleButton;
 
+import javafx.collections.ObservableSet;
+import javafx.collections.SetChangeListener;
+import javafx.collections.WeakSetChangeListener;
+import javafx.css.PseudoClass;
 import javafx.geometry.Pos;
 import javafx.scene.Node;
 import javafx.scene.control.Label;
 import javafx.scene.control.ListCell;
 import javafx.scene.control.ListView;
-import javafx.scene.image.Image;
-import javafx.scene.image.ImageView;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
 import javafx.util.Callback;
@@ -36,43 +40,133 @@ import javafx.util.Callback;
  * 
  * TODO This is the messiest of all classes implemented now, it still needs to
  * be reorganized in order to: 1) implement the missing sitemap types; 2)
- * implement support for component layouts and inline styles.
+ * implement support for component layouts.
  * 
  * @author Flavio Costa
  */
 public class ContainerListCell extends ListCell<Container<?, ?>> {
 
+	/**
+	 * Pseudo-class set while the state of the item displayed is pending.
+	 */
+	private static final PseudoClass PENDING = PseudoClass.getPseudoClass("pending");
+
+	/**
+	 * Width and height of the widget icons.
+	 */
+	public static final double ICON_SIZE = 24;
+
 	/**
 	 * Used to loads icons for the sitemap.
 	 */
 	private SchemeHandler<Optional<InputStream>> iconLoader = SchemeHandler.of(SchemeType.ICON);
 
+	/**
+	 * Provides the style classes for inline styles.
+	 */
+	private final StyleCompiler styleCompiler;
+
+	/**
+	 * Receives the item name and command whenever a control is changed.
+	 */
+	private final BiConsumer<String, String> commandSink;
+
+	/**
+	 * Items with pending states.
+	 */
+	private final ObservableSet<String> pendingItems;
+
+	/**
+	 * Updates the "pending" pseudo-class when the pending items change. The set
+	 * only holds it weakly, so discarded cells are not kept alive by the set,
+	 * which lives as long as the list view.
+	 */
+	private final SetChangeListener<String> pendingListener = c -> updatePending();
+
+	/**
+	 * Style class currently applied for the inline style of the item.
+	 */
+	private String itemStyleClass;
+
+	/**
+	 * Number of times the item of this cell was updated.
+	 */
+	private long updateCount;
+
 	/**
 	 * Provides a Cell Factory callback to use this class with list views.
 	 * 
+	 * @param styleCompiler
+	 *            Provides the style classes for inline styles.
+	 * @param commandSink
+	 *            Receives the item name and command whenever a control is
+	 *            changed.
+	 * @param pendingItems
+	 *            Items with pending states, displayed with the "pending"
+	 *            pseudo-class.
 	 * @return New Callback instance.
 	 */
-	public static Callback<ListView<Container<?, ?>>, ListCell<Container<?, ?>>> getCellFactory() {
+	public static Callback<ListView<Container<?, ?>>, ListCell<Container<?, ?>>> getCellFactory(
+			StyleCompiler styleCompiler, BiConsumer<String, String> commandSink, ObservableSet<String> pendingItems) {
 		return new Callback<ListView<Container<?, ?>>, ListCell<Container<?, ?>>>() {
 
 			@Override
 			public ListCell<Container<?, ?>> call(ListView<Container<?, ?>> listView) {
-				// just calls the default constructor
-				return new ContainerListCell();
+				return new ContainerListCell(styleCompiler, commandSink, pendingItems);
 			}
 		};
 	}
 
 	/**
-	 * Default constructor.
+	 * Creates a new cell.
+	 * 
+	 * @param styleCompiler
+	 *            Provides the style classes for inline styles.
+	 * @param commandSink
+	 *            Receives the item name and command whenever a control is
+	 *            changed.
+	 * @param pendingItems
+	 *            Items with pending states.
 	 */
-	private ContainerListCell() {
+	private ContainerListCell(StyleCompiler styleCompiler, BiConsumer<String, String> commandSink,
+			ObservableSet<String> pendingItems) {
 		super();
+		this.styleCompiler = styleCompiler;
+		this.commandSink = commandSink;
+		this.pendingItems = pendingItems;
+
+		// the state may be confirmed without the row being rendered again
+		pendingItems.addListener(new WeakSetChangeListener<>(pendingListener));
+	}
+
+	/**
+	 * Sets the "pending" pseudo-class if the item displayed has a pending state.
+	 */
+	private void updatePending() {
+		Container<?, ?> item = getItem();
+		pseudoClassStateChanged(PENDING, item instanceof Widget && ((Widget) item).getItem() != null
+				&& pendingItems.contains(((Widget) item).getItem()));
+	}
+
+	/**
+	 * Returns the number of times the item of this cell was updated, i.e. how
+	 * many times it was rendered.
+	 * 
+	 * @return Number of updates.
+	 */
+	public long getUpdateCount() {
+		return updateCount;
 	}
 
 	@Override
 	protected void updateItem(Container<?, ?> item, boolean empty) {
 		super.updateItem(item, empty);
+		updateCount++;
+
+		// the cell may have been showing another item before
+		getStyleClass().remove(itemStyleClass);
+		itemStyleClass = null;
+		updatePending();
 
 		if (empty) {
 			// clean removed items from the list
@@ -97,6 +191,10 @@ public class ContainerListCell extends ListCell<Container<?, ?>> {
 			// set the style class for the container
 			setGraphic(graphic);
 			getStyleClass().add("container-" + item.getType().toString().toLowerCase());
+			itemStyleClass = styleCompiler.getStyleClass(item.getStyle());
+			if (itemStyleClass != null) {
+				getStyleClass().add(itemStyleClass);
+			}
 		}
 	}
 
@@ -127,7 +225,7 @@ public class ContainerListCell extends ListCell<Container<?, ?>> {
 		// for each atom in the widget
 		for (Atom<?> a : widget.getComponents()) {
 
-			URI uri = renderAtom(widgetPane, widgetBox, a);
+			URI uri = renderAtom(widgetPane, widgetBox, a, widget.getItem());
 			if (uri != null) {
 				// there is a URI defined in an atom, so we make this widget clickable
 				getStyleClass().add("clickable");
@@ -157,10 +255,13 @@ public class ContainerListCell extends ListCell<Container<?, ?>> {
 	 *            Box to include the icon and text.
 	 * @param atom
 	 *            Atom being added to the control pane.
+	 * @param item
+	 *            Item represented by the widget, which receives the commands
+	 *            from its controls, or null if there is none.
 	 * @return URI, in case there is one defined for the atom, or null if there is
 	 *         none.
 	 */
-	private URI renderAtom(BorderPane widgetPane, HBox widgetBox, Atom<?> atom) {
+	private URI renderAtom(BorderPane widgetPane, HBox widgetBox, Atom<?> atom, String item) {
 
 		// TODO the code in this method is super ugly, but it should be improved when
 		// support for the layout options is introduced
@@ -171,12 +272,8 @@ public class ContainerListCell extends ListCell<Container<?, ?>> {
 
 		switch (atom.getType()) {
 		case ICON:
-			try (InputStream is = getIconFromAtom((IconAtom) atom)) {
-				atomNode = new ImageView(new Image(is, 24, 24, true, true));
-			} catch (IOException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			}
+			// decoded images are shared by all cells
+			atomNode = IconSchemeHandler.createView(((IconAtom) atom).getData(), ICON_SIZE);
 			break;
 		case TEXT:
 			alignRight = true;
@@ -189,12 +286,22 @@ public class ContainerListCell extends ListCell<Container<?, ?>> {
 			Map<?, ?> mappings = selectionData.getMappings();
 			comboBox.getItems().setAll(mappings.values());
 			comboBox.setValue(mappings.get(selectionData.getSelected()));
+			if (item != null) {
+				comboBox.setOnAction(e -> mappings.entrySet().stream()
+						.filter(m -> m.getValue().equals(comboBox.getValue())).findFirst()
+						.ifPresent(m -> commandSink.accept(item, m.getKey().toString())));
+			}
 			atomNode = comboBox;
 			alignRight = true;
 			break;
 		case SLIDER:
 			JFXSlider slider = new JFXSlider();
 			slider.setValue((Double) atom.getData());
+			if (item != null) {
+				// every step of a drag is a command, rate-limited by the sender
+				slider.valueProperty().addListener((o, oldValue, newValue) -> commandSink.accept(item,
+						BigDecimal.valueOf(newValue.doubleValue()).stripTrailingZeros().toPlainString()));
+			}
 			atomNode = slider;
 			alignRight = true;
 			break;
@@ -202,6 +309,9 @@ public class ContainerListCell extends ListCell<Container<?, ?>> {
 			JFXToggleButton toggle = new JFXToggleButton();
 			MappingsAtom.Data switchData = ((MappingsAtom) atom).getData();
 			toggle.setSelected("ON".equals(switchData.getSelected()));
+			if (item != null) {
+				toggle.setOnAction(e -> commandSink.accept(item, toggle.isSelected() ? "ON" : "OFF"));
+			}
 			atomNode = toggle;
 			alignRight = true;
 			break;
@@ -215,6 +325,10 @@ public class ContainerListCell extends ListCell<Container<?, ?>> {
 		}
 
 		atomNode.getStyleClass().add("atom-" + atom.getType().toString().toLowerCase());
+		String atomStyleClass = styleCompiler.getStyleClass(atom.getStyle());
+		if (atomStyleClass != null) {
+			atomNode.getStyleClass().add(atomStyleClass);
+		}
 
 		if (alignRight) {
 			widgetPane.setRight(atomNode);
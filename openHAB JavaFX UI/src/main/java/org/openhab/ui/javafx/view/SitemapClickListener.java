@@ -4,6 +4,7 @@ import java.net.URI;
 
 import org.openhab.ui.javafx.model.ComponentType;
 import org.openhab.ui.javafx.model.container.Container;
+import org.openhab.ui.javafx.model.container.ContainerIndex;
 import org.openhab.ui.javafx.model.container.Widget;
 import org.openhab.ui.javafx.navigation.NavigationHistory;
 import org.openhab.ui.javafx.scheme.SchemeHandler;
@@ -21,6 +22,21 @@ import javafx.beans.value.ObservableValue;
  */
 public class SitemapClickListener implements ChangeListener<Container<?, ?>> {
 
+	/**
+	 * View whose selection is listened to.
+	 */
+	private final SitemapListView listView;
+
+	/**
+	 * Creates a listener for a view.
+	 * 
+	 * @param listView
+	 *            View whose selection is listened to.
+	 */
+	public SitemapClickListener(SitemapListView listView) {
+		this.listView = listView;
+	}
+
 	@Override
 	public void changed(ObservableValue<? extends Container<?, ?>> observable, Container<?, ?> oldValue,
 			Container<?, ?> newValue) {
@@ -30,7 +46,8 @@ public class SitemapClickListener implements ChangeListener<Container<?, ?>> {
 			return;
 		}
 
-		URI action = ((Widget) newValue).getData();
+		ContainerIndex index = listView.getIndex();
+		URI action = index == null ? ((Widget) newValue).getData() : index.getAction((Widget) newValue);
 
 		// only clickable widgets will contain an URI
 		if (action != null) {
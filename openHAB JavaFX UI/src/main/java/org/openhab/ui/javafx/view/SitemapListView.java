@@ -1,11 +1,34 @@
 package org.openhab.ui.javafx.view;
 
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+
 import org.openhab.ui.javafx.model.Component;
 import org.openhab.ui.javafx.model.ComponentType;
 import org.openhab.ui.javafx.model.container.Container;
+import org.openhab.ui.javafx.model.container.ContainerIndex;
 import org.openhab.ui.javafx.model.container.NavigableContainer;
+import org.openhab.ui.javafx.model.container.Widget;
+import org.openhab.ui.javafx.model.rendering.LazyComponentList;
+import org.openhab.ui.javafx.model.state.ItemCommandSender;
+import org.openhab.ui.javafx.model.state.PendingStateTracker;
+import org.openhab.ui.javafx.model.state.StatePatch;
 
 import com.jfoenix.controls.JFXListView;
+import com.jfoenix.controls.JFXSpinner;
+
+import javafx.animation.Animation;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableSet;
+import javafx.css.PseudoClass;
+import javafx.util.Duration;
 
 /**
  * Sitemap view that displays the components as list items.
@@ -14,16 +37,174 @@ import com.jfoenix.controls.JFXListView;
  */
 public class SitemapListView extends JFXListView<Container<?, ?>> {
 
+	/**
+	 * Pseudo-class set while a new container is being loaded.
+	 */
+	private static final PseudoClass LOADING = PseudoClass.getPseudoClass("loading");
+
+	/**
+	 * Compiles the inline styles of the components displayed.
+	 */
+	private final StyleCompiler styleCompiler = new StyleCompiler();
+
+	/**
+	 * Navigable container currently displayed.
+	 */
+	private NavigableContainer<?, Container<?, ?>> displayed;
+
+	/**
+	 * Sends the commands from the controls displayed, if any.
+	 */
+	private ItemCommandSender commandSender;
+
+	/**
+	 * Item states changed by the controls, waiting for the server to confirm.
+	 */
+	private final PendingStateTracker pendingStates = new PendingStateTracker();
+
+	/**
+	 * Items with pending states, observed by the cells to style them.
+	 */
+	private final ObservableSet<String> pendingItems = FXCollections.observableSet();
+
+	/**
+	 * Rolls back the pending states not confirmed in time.
+	 */
+	private final PauseTransition pendingExpiry = new PauseTransition();
+
 	/**
 	 * Default constructor.
 	 */
 	public SitemapListView() {
 
+		// displayed while the first container is loaded
+		setPlaceholder(new JFXSpinner());
+
 		// customized cell factory
-		setCellFactory(ContainerListCell.getCellFactory());
+		setCellFactory(ContainerListCell.getCellFactory(styleCompiler, this::sendCommand, pendingItems));
+
+		// pending states are checked whenever the next one expires
+		pendingExpiry.setOnFinished(e -> expirePendingStates());
 
 		// act when widgets are clicked
-		getSelectionModel().selectedItemProperty().addListener(new SitemapClickListener());
+		getSelectionModel().selectedItemProperty().addListener(new SitemapClickListener(this));
+	}
+
+	/**
+	 * Returns the compiler for the inline styles of the components displayed.
+	 * Its stylesheet must be added to the scene, after the default stylesheet.
+	 * 
+	 * @return Style compiler.
+	 */
+	public StyleCompiler getStyleCompiler() {
+		return styleCompiler;
+	}
+
+	/**
+	 * Defines where the commands from the controls displayed (switches, sliders
+	 * and selections) are sent. Without a sender, the controls do not affect any
+	 * item.
+	 * 
+	 * @param commandSender
+	 *            Command sender, or null to ignore the commands.
+	 */
+	public void setCommandSender(ItemCommandSender commandSender) {
+		this.commandSender = commandSender;
+	}
+
+	/**
+	 * Returns the tracker of item states changed by the controls, which also
+	 * keeps counts of the states confirmed and rolled back.
+	 * 
+	 * @return Pending state tracker.
+	 */
+	public PendingStateTracker getPendingStates() {
+		return pendingStates;
+	}
+
+	/**
+	 * Sends a command from one of the controls displayed. The new state is
+	 * applied to the model right away and kept pending, until the server
+	 * confirms it or it is rolled back. The rows are not rendered yet, as the
+	 * control already displays the new state (and may still be in use); atoms
+	 * of the row changed along with it, such as the icon, are only displayed
+	 * once the state is confirmed.
+	 * 
+	 * @param item
+	 *            Item name.
+	 * @param command
+	 *            Command to be sent.
+	 */
+	private void sendCommand(String item, String command) {
+		if (commandSender == null) {
+			return;
+		}
+		commandSender.send(item, command);
+
+		String previous = null;
+		for (Widget widget : displayed.getIndex().getWidgets(item)) {
+			if (previous == null) {
+				previous = widget.getState();
+			}
+			widget.updateState(command);
+		}
+		pendingStates.begin(item, command, previous);
+		pendingItems.add(item);
+
+		if (pendingExpiry.getStatus() != Animation.Status.RUNNING) {
+			pendingExpiry.setDuration(Duration.millis(pendingStates.getNextExpiry()));
+			pendingExpiry.playFromStart();
+		}
+	}
+
+	/**
+	 * Rolls back the pending states not confirmed in time, and waits for the
+	 * next one to expire.
+	 */
+	private void expirePendingStates() {
+		applyStates(pendingStates.expire(this::reloadState));
+
+		long nextExpiry = pendingStates.getNextExpiry();
+		if (nextExpiry >= 0) {
+			pendingExpiry.setDuration(Duration.millis(nextExpiry));
+			pendingExpiry.playFromStart();
+		}
+	}
+
+	/**
+	 * Requests the state of an item from the server, as a state sent for it was
+	 * not confirmed and there is no previous state to roll back to. The state
+	 * received is applied like any other update.
+	 * 
+	 * @param item
+	 *            Item name.
+	 */
+	private void reloadState(String item) {
+		if (commandSender != null) {
+			commandSender.requestState(item,
+					(name, state) -> Platform.runLater(() -> applyPatch(new StatePatch().put(name, state))));
+		}
+	}
+
+	/**
+	 * Returns the index of the navigable container currently displayed.
+	 * 
+	 * @return Index of the displayed container, or null if there is none.
+	 */
+	public ContainerIndex getIndex() {
+		return displayed == null ? null : displayed.getIndex();
+	}
+
+	/**
+	 * Indicates whether a new container is being loaded to replace the one
+	 * currently displayed. The current items remain visible, but the view can be
+	 * styled differently with the "loading" pseudo-class.
+	 * 
+	 * @param loading
+	 *            True while loading, false once the loading is finished.
+	 */
+	public void setLoading(boolean loading) {
+		pseudoClassStateChanged(LOADING, loading);
 	}
 
 	/**
@@ -33,21 +214,173 @@ public class SitemapListView extends JFXListView<Container<?, ?>> {
 	 *            Navigable container to be displayed.
 	 */
 	public void navigateTo(NavigableContainer<?, Container<?, ?>> navigableContainer) {
-		getItems().clear();
+		displayed = navigableContainer;
+		setItems(FXCollections.observableList(new RowList(navigableContainer)));
+		scrollTo(0);
+	}
+
+	/**
+	 * Replaces the container currently displayed with an updated version of it,
+	 * keeping the current scroll position.
+	 * 
+	 * @param navigableContainer
+	 *            Updated navigable container.
+	 */
+	public void refresh(NavigableContainer<?, Container<?, ?>> navigableContainer) {
+		displayed = navigableContainer;
+		setItems(FXCollections.observableList(new RowList(navigableContainer)));
+	}
 
-		for (Container<?, ?> container : navigableContainer.getComponents()) {
-			getItems().add(container);
+	/**
+	 * Applies state updates to the container currently displayed. Only the rows
+	 * of the widgets actually changed are rendered again; the rest of the view,
+	 * including the scroll position and selection, is left untouched.
+	 * 
+	 * @param patch
+	 *            State updates to be applied.
+	 * @return Number of rows updated.
+	 */
+	public int applyPatch(StatePatch patch) {
+		return applyStates(pendingStates.reconcile(patch));
+	}
 
-			if (container.getType() == ComponentType.WIDGET) {
-				// widgets contain atoms, which are not rendered
-				// as separate lines but inside the widget itself
-				continue;
+	/**
+	 * Applies state updates to the container currently displayed, and updates
+	 * the items with pending states. The rows of the items no longer pending are
+	 * rendered again, even if their state did not change.
+	 * 
+	 * @param patch
+	 *            State updates to be applied, already reconciled with the pending
+	 *            states.
+	 * @return Number of rows updated.
+	 */
+	private int applyStates(StatePatch patch) {
+		Set<String> settled = new HashSet<>(pendingItems);
+		pendingItems.retainAll(pendingStates.getPendingItems());
+		settled.removeAll(pendingItems);
+		if (displayed == null || patch.isEmpty() && settled.isEmpty()) {
+			return 0;
+		}
+
+		Set<Widget> changed = new LinkedHashSet<>(patch.applyTo(displayed));
+		// confirmed states were already applied when the command was sent, but
+		// their rows were not rendered again since then
+		for (String item : settled) {
+			changed.addAll(displayed.getIndex().getWidgets(item));
+		}
+
+		int updated = 0;
+		for (Widget widget : changed) {
+			int row = displayed.getIndex().getRow(widget);
+			if (row >= 0) {
+				// setting the same item again makes the cell update itself
+				getItems().set(row, widget);
+				updated++;
+			}
+		}
+		return updated;
+	}
+
+	/**
+	 * Rows of this view, flattening the components in a navigable container:
+	 * each of its containers takes one row, followed by one row for each
+	 * subcomponent if the container is not a widget (widgets contain atoms,
+	 * which are not rendered as separate lines but inside the widget itself).
+	 * 
+	 * Rows are fetched from the model only when requested, so subcomponents
+	 * loaded lazily are just decoded once their rows are displayed.
+	 */
+	private static class RowList extends AbstractList<Container<?, ?>> implements RandomAccess {
+
+		/**
+		 * Containers in the navigable container.
+		 */
+		private final List<Container<?, ?>> containers;
+
+		/**
+		 * Row of each container.
+		 */
+		private final int[] offsets;
+
+		/**
+		 * Total number of rows.
+		 */
+		private final int size;
+
+		/**
+		 * Navigable container displayed.
+		 */
+		private final NavigableContainer<?, Container<?, ?>> navigableContainer;
+
+		/**
+		 * Creates the rows for a navigable container.
+		 * 
+		 * @param navigableContainer
+		 *            Navigable container to be displayed.
+		 */
+		private RowList(NavigableContainer<?, Container<?, ?>> navigableContainer) {
+			containers = navigableContainer.getComponents();
+			this.navigableContainer = navigableContainer;
+			offsets = new int[containers.size()];
+
+			int row = 0;
+			for (int i = 0; i < offsets.length; i++) {
+				offsets[i] = row++;
+				if (getType(containers, i) != ComponentType.WIDGET) {
+					row += containers.get(i).getComponents().size();
+				}
+			}
+			size = row;
+		}
+
+		@Override
+		public Container<?, ?> get(int row) {
+			int i = Arrays.binarySearch(offsets, row);
+			if (i >= 0) {
+				return containers.get(i);
 			}
+			// a subcomponent of the container before the insertion point;
+			// type cast should work because widgets do not have these rows
+			i = -i - 2;
+			return (Container<?, ?>) containers.get(i).getComponents().get(row - offsets[i] - 1);
+		}
 
-			for (Component<?> component : container.getComponents()) {
-				// type cast should work because of the if / continue above
-				getItems().add((Container<?, ?>) component);
+		@Override
+		@SuppressWarnings("unchecked")
+		public Container<?, ?> set(int row, Container<?, ?> container) {
+			int i = Arrays.binarySearch(offsets, row);
+			if (i >= 0) {
+				return containers.set(i, container);
 			}
+			i = -i - 2;
+			List<Component<?>> components = (List<Component<?>>) containers.get(i).getComponents();
+			return (Container<?, ?>) components.set(row - offsets[i] - 1, container);
+		}
+
+		@Override
+		public int indexOf(Object o) {
+			// the index is only built when needed, as that decodes all components
+			return navigableContainer.getIndex().getRow(o);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		/**
+		 * Returns the type of a component, without decoding it if it is loaded
+		 * lazily.
+		 * 
+		 * @param components
+		 *            List of components.
+		 * @param index
+		 *            Index of the component.
+		 * @return Component type.
+		 */
+		private static ComponentType getType(List<? extends Component<?>> components, int index) {
+			return components instanceof LazyComponentList ? ((LazyComponentList) components).getType(index)
+					: components.get(index).getType();
 		}
 	}
 }
@@ -0,0 +1,126 @@
+package org.openhab.ui.javafx.view;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openhab.ui.javafx.model.state.StatePatch;
+import org.openhab.ui.javafx.model.state.StateUpdateBuffer;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+
+/**
+ * Applies the state updates collected in a {@link StateUpdateBuffer} to a
+ * {@link SitemapListView}, at most once per JavaFX pulse. However many updates
+ * arrive between two pulses, they are applied as a single patch.
+ *
+ * The timer only runs while there are updates to be applied, so it does not
+ * keep pulses going when nothing changes.
+ *
+ * @author Flavio Costa
+ */
+public class StatePatchApplier extends AnimationTimer {
+
+	/**
+	 * Used for logging activities of this class.
+	 */
+	private static final Logger logger = Logger.getLogger(StatePatchApplier.class.getPackage().getName());
+
+	/**
+	 * View where the updates are applied.
+	 */
+	private final SitemapListView listView;
+
+	/**
+	 * Updates waiting to be applied.
+	 */
+	private final StateUpdateBuffer buffer;
+
+	/**
+	 * Number of patches applied.
+	 */
+	private long applyCount;
+
+	/**
+	 * Total time applying patches, in nanoseconds.
+	 */
+	private long totalApplyTime;
+
+	/**
+	 * Longest time applying a single patch, in nanoseconds.
+	 */
+	private long maxApplyTime;
+
+	/**
+	 * Creates an applier with its own buffer.
+	 *
+	 * @param listView
+	 *            View where the updates are applied.
+	 */
+	public StatePatchApplier(SitemapListView listView) {
+		this.listView = listView;
+		// start() is idempotent, so it does not matter if the timer is running
+		this.buffer = new StateUpdateBuffer(() -> Platform.runLater(this::start));
+	}
+
+	/**
+	 * Returns the buffer where state updates should be added.
+	 *
+	 * @return Buffer for the updates.
+	 */
+	public StateUpdateBuffer getBuffer() {
+		return buffer;
+	}
+
+	@Override
+	public void handle(long now) {
+		StatePatch patch = buffer.drain();
+		if (patch.isEmpty()) {
+			stop();
+			return;
+		}
+
+		long start = System.nanoTime();
+		int updated = listView.applyPatch(patch);
+		long elapsed = System.nanoTime() - start;
+
+		applyCount++;
+		totalApplyTime += elapsed;
+		maxApplyTime = Math.max(maxApplyTime, elapsed);
+		logger.log(Level.FINEST, "Applied {0} updates to {1} rows", new Object[] { patch.getStates().size(), updated });
+	}
+
+	/**
+	 * Returns the number of patches applied.
+	 *
+	 * @return Number of patches.
+	 */
+	public long getApplyCount() {
+		return applyCount;
+	}
+
+	/**
+	 * Returns the average time spent applying a patch.
+	 *
+	 * @return Average time, in microseconds.
+	 */
+	public double getAverageApplyTime() {
+		return applyCount == 0 ? 0 : (double) TimeUnit.NANOSECONDS.toMicros(totalApplyTime) / applyCount;
+	}
+
+	/**
+	 * Returns the longest time spent applying a patch.
+	 *
+	 * @return Maximum time, in microseconds.
+	 */
+	public long getMaxApplyTime() {
+		return TimeUnit.NANOSECONDS.toMicros(maxApplyTime);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s[%s, applied=%d, avg=%.0fus, max=%dus]", getClass().getSimpleName(), buffer,
+				applyCount, getAverageApplyTime(), getMaxApplyTime());
+	}
+}
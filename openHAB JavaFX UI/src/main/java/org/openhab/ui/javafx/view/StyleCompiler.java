@@ -0,0 +1,262 @@
+package org.openhab.ui.javafx.view;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
+
+/**
+ * Compiles the inline styles of components into style classes, so that nodes
+ * do not need to have their inline styles parsed every time a cell is updated.
+ * Each distinct style is compiled once into a rule of a stylesheet generated at
+ * runtime, and nodes using it just get the corresponding style class.
+ *
+ * Styles use the names of web CSS properties (e.g. "font-weight:bold"), which
+ * are translated into the equivalent JavaFX properties.
+ *
+ * Instances must be used from the JavaFX application thread.
+ *
+ * @author Flavio Costa
+ */
+public class StyleCompiler {
+
+	/**
+	 * Used for logging activities of this class.
+	 */
+	private static final Logger logger = Logger.getLogger(StyleCompiler.class.getPackage().getName());
+
+	/**
+	 * Prefix of the generated style classes.
+	 */
+	private static final String CLASS_PREFIX = "style-";
+
+	/**
+	 * Properties whose JavaFX name is not just the web name with the -fx-
+	 * prefix.
+	 */
+	private static final Map<String, String> PROPERTY_NAMES = new HashMap<>();
+
+	static {
+		PROPERTY_NAMES.put("width", "-fx-pref-width");
+		PROPERTY_NAMES.put("height", "-fx-pref-height");
+		PROPERTY_NAMES.put("min-width", "-fx-min-width");
+		PROPERTY_NAMES.put("min-height", "-fx-min-height");
+		PROPERTY_NAMES.put("max-width", "-fx-max-width");
+		PROPERTY_NAMES.put("max-height", "-fx-max-height");
+		PROPERTY_NAMES.put("color", "-fx-text-fill");
+	}
+
+	/**
+	 * Compiled styles, indexed by the inline style.
+	 */
+	private final Map<String, CompiledStyle> styles = new ConcurrentHashMap<>();
+
+	/**
+	 * Number of the next style class to be generated.
+	 */
+	private final AtomicInteger nextClass = new AtomicInteger();
+
+	/**
+	 * Stylesheet lists where the generated stylesheet is added.
+	 */
+	private final List<ObservableList<String>> stylesheetLists = new ArrayList<>();
+
+	/**
+	 * URL of the stylesheet currently generated, if any.
+	 */
+	private String stylesheet;
+
+	/**
+	 * File where the stylesheet is generated, created when it is first
+	 * published.
+	 */
+	private Path stylesheetFile;
+
+	/**
+	 * Number of times the stylesheet was published.
+	 */
+	private int generation;
+
+	/**
+	 * Whether new styles were compiled after the stylesheet was generated.
+	 */
+	private boolean outdated;
+
+	/**
+	 * Adds the generated stylesheet to a list of stylesheets (e.g. of the scene
+	 * or of a parent node), keeping it up to date as new styles are compiled.
+	 *
+	 * @param stylesheets
+	 *            List of stylesheet URLs.
+	 */
+	public void addTo(ObservableList<String> stylesheets) {
+		stylesheetLists.add(stylesheets);
+		if (stylesheet != null) {
+			stylesheets.add(stylesheet);
+		}
+	}
+
+	/**
+	 * Returns the style class for an inline style, compiling the style if it is
+	 * used for the first time.
+	 *
+	 * @param style
+	 *            Inline style, e.g. "font-weight:bold;font-size:large".
+	 * @return Style class to be added to the node, or null if there is no style.
+	 */
+	public String getStyleClass(String style) {
+		if (style == null || style.trim().isEmpty()) {
+			return null;
+		}
+
+		CompiledStyle compiled = styles.get(style);
+		if (compiled == null) {
+			compiled = styles.computeIfAbsent(style, s -> new CompiledStyle(CLASS_PREFIX + nextClass.getAndIncrement(),
+					compile(s)));
+			if (!outdated) {
+				// new rules are published once for all styles compiled until then
+				outdated = true;
+				Platform.runLater(this::publish);
+			}
+		}
+		compiled.uses.incrementAndGet();
+		return compiled.styleClass;
+	}
+
+	/**
+	 * Returns the number of distinct styles compiled.
+	 *
+	 * @return Number of styles.
+	 */
+	public int getStyleCount() {
+		return styles.size();
+	}
+
+	/**
+	 * Returns how often each style has been used.
+	 *
+	 * @return Number of uses, indexed by style.
+	 */
+	public Map<String, Long> getUsage() {
+		Map<String, Long> usage = new LinkedHashMap<>();
+		styles.forEach((style, compiled) -> usage.put(style, compiled.uses.get()));
+		return usage;
+	}
+
+	@Override
+	public String toString() {
+		long uses = styles.values().stream().mapToLong(c -> c.uses.get()).sum();
+		return String.format("%s[styles=%d, uses=%d]", getClass().getSimpleName(), getStyleCount(), uses);
+	}
+
+	/**
+	 * Translates an inline style into JavaFX CSS declarations.
+	 *
+	 * @param style
+	 *            Inline style.
+	 * @return Equivalent declarations.
+	 */
+	private String compile(String style) {
+		StringBuilder declarations = new StringBuilder();
+		for (String declaration : style.split(";")) {
+			int colon = declaration.indexOf(':');
+			if (colon < 0) {
+				continue;
+			}
+			String name = declaration.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+			String value = declaration.substring(colon + 1).trim();
+			if (!name.startsWith("-")) {
+				name = PROPERTY_NAMES.getOrDefault(name, "-fx-" + name);
+			}
+			declarations.append("\t").append(name).append(": ").append(value).append(";\n");
+		}
+		return declarations.toString();
+	}
+
+	/**
+	 * Writes the stylesheet with all styles compiled so far, and replaces the
+	 * previous one. The same file is written every time, but its URL gets a new
+	 * fragment, as JavaFX would not parse a stylesheet again for the same URL.
+	 */
+	private void publish() {
+		outdated = false;
+
+		String previous = stylesheet;
+		try {
+			if (stylesheetFile == null) {
+				stylesheetFile = Files.createTempFile("sitemap-styles", ".css");
+				stylesheetFile.toFile().deleteOnExit();
+			}
+			try (Writer writer = Files.newBufferedWriter(stylesheetFile, StandardCharsets.UTF_8)) {
+				for (CompiledStyle compiled : styles.values()) {
+					// qualified by the root, so inline styles override the rules
+					// with two selectors in the default stylesheet
+					writer.write(".root ." + compiled.styleClass + " {\n" + compiled.declarations + "}\n");
+				}
+			}
+			stylesheet = stylesheetFile.toUri() + "#" + ++generation;
+		} catch (IOException e) {
+			logger.log(Level.SEVERE, "Could not write the compiled styles", e);
+			return;
+		}
+
+		for (ObservableList<String> stylesheets : stylesheetLists) {
+			int index = stylesheets.indexOf(previous);
+			if (index >= 0) {
+				stylesheets.set(index, stylesheet);
+			} else {
+				stylesheets.add(stylesheet);
+			}
+		}
+		logger.log(Level.FINE, "Published {0}", this);
+	}
+
+	/**
+	 * Style compiled into a style class.
+	 */
+	private static class CompiledStyle {
+
+		/**
+		 * Generated style class.
+		 */
+		private final String styleClass;
+
+		/**
+		 * JavaFX CSS declarations for the style.
+		 */
+		private final String declarations;
+
+		/**
+		 * Number of times the style has been used.
+		 */
+		private final AtomicLong uses = new AtomicLong();
+
+		/**
+		 * Creates a compiled style.
+		 *
+		 * @param styleClass
+		 *            Generated style class.
+		 * @param declarations
+		 *            JavaFX CSS declarations for the style.
+		 */
+		private CompiledStyle(String styleClass, String declarations) {
+			this.styleClass = styleClass;
+			this.declarations = declarations;
+		}
+	}
+}
@@ -0,0 +1,217 @@
+package org.openhab.ui.javafx.view.iconset;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+
+/**
+ * Icons packed into atlas images by {@link IconAtlasCompiler}, so that the
+ * views displaying them share a few textures instead of one per icon. Each
+ * view displays the region of its icon, with a viewport.
+ *
+ * Atlas images are loaded when the first of their icons is displayed, and
+ * kept for as long as the atlas is used. This class is thread-safe.
+ *
+ * @author Flavio Costa
+ */
+public class IconAtlas {
+
+	/**
+	 * Used for logging activities of this class.
+	 */
+	private static final Logger logger = Logger.getLogger(IconAtlas.class.getPackage().getName());
+
+	/**
+	 * Name of the atlas index compiled during the build, relative to this class.
+	 */
+	public static final String ATLAS_FILE = "icons.atlas";
+
+	/**
+	 * Icons in the atlas images, indexed by icon resource and size.
+	 */
+	private final Map<String, Sprite> sprites = new HashMap<>();
+
+	/**
+	 * Atlas images already loaded, indexed by their URL.
+	 */
+	private final Map<URL, Image> pages = new ConcurrentHashMap<>();
+
+	/**
+	 * Creates an empty atlas.
+	 */
+	private IconAtlas() {
+	}
+
+	/**
+	 * Loads the atlas index compiled during the build.
+	 *
+	 * @return Icon atlas, which is empty if it was not compiled.
+	 */
+	public static IconAtlas load() {
+		IconAtlas atlas = new IconAtlas();
+		URL index = IconAtlas.class.getResource(ATLAS_FILE);
+		if (index == null) {
+			logger.fine("Icon atlas not found, icons are loaded individually");
+			return atlas;
+		}
+
+		Map<String, URL> pageURLs = new HashMap<>();
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(index.openStream(), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] fields = line.split(" ");
+				if (fields.length != 7) {
+					continue;
+				}
+				URL page = pageURLs.get(fields[2]);
+				if (page == null) {
+					page = new URL(index, fields[2]);
+					pageURLs.put(fields[2], page);
+				}
+				// same URL as resolved by the icon index
+				atlas.sprites.put(new URL(index, fields[0]).toExternalForm() + '@' + Integer.parseInt(fields[1]),
+						new Sprite(page, new Rectangle2D(Integer.parseInt(fields[3]), Integer.parseInt(fields[4]),
+								Integer.parseInt(fields[5]), Integer.parseInt(fields[6]))));
+			}
+		} catch (IOException | NumberFormatException e) {
+			logger.log(Level.WARNING, "Could not read the icon atlas", e);
+			atlas.sprites.clear();
+		}
+		return atlas;
+	}
+
+	/**
+	 * Creates a view displaying an icon from its atlas image.
+	 *
+	 * @param icon
+	 *            Icon resource, as resolved by {@link IconSchemeHandler}.
+	 * @param pixels
+	 *            Size of the icon, in pixels.
+	 * @return View displaying the icon, not scaled, or null if the icon is not
+	 *         in any atlas image at this size, or its atlas image could not be
+	 *         loaded.
+	 */
+	public ImageView createView(URL icon, double pixels) {
+		Sprite sprite = find(icon, pixels);
+		Image page = sprite == null ? null : getPage(sprite.page);
+		if (page == null) {
+			return null;
+		}
+		ImageView view = new ImageView(page);
+		view.setViewport(sprite.viewport);
+		return view;
+	}
+
+	/**
+	 * Loads the atlas image containing an icon, so that it is displayed at
+	 * once.
+	 *
+	 * @param icon
+	 *            Icon resource, as resolved by {@link IconSchemeHandler}.
+	 * @param pixels
+	 *            Size of the icon, in pixels.
+	 * @return Whether the icon is in an atlas image at this size, and its atlas
+	 *         image was loaded.
+	 */
+	public boolean prepare(URL icon, double pixels) {
+		Sprite sprite = find(icon, pixels);
+		return sprite != null && getPage(sprite.page) != null;
+	}
+
+	/**
+	 * Finds an icon in the atlas images.
+	 *
+	 * @param icon
+	 *            Icon resource.
+	 * @param pixels
+	 *            Size of the icon, in pixels.
+	 * @return Icon found, or null if there is none at this size.
+	 */
+	private Sprite find(URL icon, double pixels) {
+		long size = Math.round(pixels);
+		if (Math.abs(size - pixels) > 0.01) {
+			// only whole pixel sizes are compiled
+			return null;
+		}
+		return sprites.get(icon.toExternalForm() + '@' + size);
+	}
+
+	/**
+	 * Returns an atlas image, loading it if needed.
+	 *
+	 * @param page
+	 *            URL of the atlas image.
+	 * @return Atlas image, or null if it could not be loaded.
+	 */
+	private Image getPage(URL page) {
+		return pages.computeIfAbsent(page, url -> {
+			logger.fine(String.format("Loading icon atlas %s", url));
+			try (InputStream is = url.openStream()) {
+				return new Image(is);
+			} catch (IOException e) {
+				logger.log(Level.WARNING, String.format("Could not load icon atlas %s", url), e);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Returns the number of icons in the atlas images, counting each size.
+	 *
+	 * @return Number of icons.
+	 */
+	public int size() {
+		return sprites.size();
+	}
+
+	/**
+	 * Returns the number of atlas images loaded so far.
+	 *
+	 * @return Number of atlas images.
+	 */
+	public int getPageCount() {
+		return pages.size();
+	}
+
+	/**
+	 * Region of an atlas image containing an icon.
+	 */
+	private static class Sprite {
+
+		/**
+		 * URL of the atlas image.
+		 */
+		private final URL page;
+
+		/**
+		 * Region of the icon.
+		 */
+		private final Rectangle2D viewport;
+
+		/**
+		 * Creates a new instance.
+		 *
+		 * @param page
+		 *            URL of the atlas image.
+		 * @param viewport
+		 *            Region of the icon.
+		 */
+		private Sprite(URL page, Rectangle2D viewport) {
+			this.page = page;
+			this.viewport = viewport;
+		}
+	}
+}
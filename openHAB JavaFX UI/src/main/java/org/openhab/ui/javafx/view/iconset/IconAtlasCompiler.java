@@ -0,0 +1,308 @@
+package org.openhab.ui.javafx.view.iconset;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Packs the icons of each icon set into a few atlas images, one set of them for
+ * each icon size, so that all icons displayed are drawn from the same textures.
+ * This class is run during the build, but it may also be used standalone:
+ *
+ * <pre>
+ * java IconAtlasCompiler &lt;icon set directory&gt; &lt;target directory&gt; &lt;sizes&gt;
+ * </pre>
+ *
+ * Sizes are given in pixels, separated by commas (e.g. 24,48). The icons with
+ * a PNG file are packed, rendered from their SVG file if there is one, or else
+ * scaled down from the PNG file. The atlas images are written into an atlas
+ * subdirectory of the target directory, and their index into
+ * {@link IconAtlas#ATLAS_FILE}, with one line per icon:
+ *
+ * <pre>
+ * &lt;icon file&gt; &lt;size&gt; &lt;atlas image&gt; &lt;x&gt; &lt;y&gt; &lt;width&gt; &lt;height&gt;
+ * </pre>
+ *
+ * @author Flavio Costa
+ */
+public class IconAtlasCompiler {
+
+	/**
+	 * Used for logging activities of this class.
+	 */
+	private static final Logger logger = Logger.getLogger(IconAtlasCompiler.class.getPackage().getName());
+
+	/**
+	 * Maximum width and height of an atlas image, supported by any GPU.
+	 */
+	static final int MAX_ATLAS_SIZE = 1024;
+
+	/**
+	 * Transparent pixels between icons, so that they do not bleed into each
+	 * other when scaled.
+	 */
+	private static final int GUTTER = 1;
+
+	/**
+	 * Renders the SVG icons.
+	 */
+	private final SvgRasterizer rasterizer = new SvgRasterizer();
+
+	/**
+	 * Compiles the atlas images of all icon sets.
+	 *
+	 * @param args
+	 *            Icon set directory, target directory and sizes.
+	 * @throws IOException
+	 *             If any icon could not be read, or any file could not be
+	 *             written.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 3) {
+			throw new IllegalArgumentException(
+					"Usage: IconAtlasCompiler <icon set directory> <target directory> <sizes>");
+		}
+		List<Integer> sizes = new ArrayList<>();
+		for (String size : args[2].split(",")) {
+			sizes.add(Integer.valueOf(size.trim()));
+		}
+		new IconAtlasCompiler().compile(Paths.get(args[0]), Paths.get(args[1]), sizes);
+	}
+
+	/**
+	 * Compiles the atlas images of all icon sets.
+	 *
+	 * @param sourceDirectory
+	 *            Directory containing the icon sets.
+	 * @param targetDirectory
+	 *            Directory where the atlas index is written.
+	 * @param sizes
+	 *            Icon sizes, in pixels.
+	 * @throws IOException
+	 *             If any icon could not be read, or any file could not be
+	 *             written.
+	 */
+	public void compile(Path sourceDirectory, Path targetDirectory, List<Integer> sizes) throws IOException {
+
+		// icons with a PNG file, grouped by icon set
+		Set<String> files = new LinkedHashSet<>(IconIndex.list(sourceDirectory));
+		Map<String, List<String>> iconSets = new TreeMap<>();
+		for (String file : files) {
+			if (file.endsWith(IconIndex.PNG)) {
+				iconSets.computeIfAbsent(file.substring(0, file.indexOf('/')), s -> new ArrayList<>()).add(file);
+			}
+		}
+
+		Files.createDirectories(targetDirectory.resolve("atlas"));
+		int count = 0;
+		try (Writer index = Files.newBufferedWriter(targetDirectory.resolve(IconAtlas.ATLAS_FILE),
+				StandardCharsets.UTF_8)) {
+			for (int size : sizes) {
+				for (Map.Entry<String, List<String>> iconSet : iconSets.entrySet()) {
+					List<Sprite> sprites = new ArrayList<>();
+					for (String file : iconSet.getValue()) {
+						String svg = file.substring(0, file.length() - IconIndex.PNG.length()) + IconIndex.SVG;
+						BufferedImage image = files.contains(svg) ? renderSvg(sourceDirectory.resolve(svg), size)
+								: scalePng(sourceDirectory.resolve(file), size);
+						sprites.add(new Sprite(file, image));
+					}
+					count += pack(sprites, iconSet.getKey() + '-' + size, size, targetDirectory, index);
+				}
+			}
+		}
+		logger.info(String.format("Packed %d icons into %s", count, targetDirectory.resolve(IconAtlas.ATLAS_FILE)));
+	}
+
+	/**
+	 * Renders an SVG icon.
+	 *
+	 * @param file
+	 *            SVG file.
+	 * @param size
+	 *            Width and height of the icon.
+	 * @return Icon image.
+	 * @throws IOException
+	 *             If the file could not be read.
+	 */
+	private BufferedImage renderSvg(Path file, int size) throws IOException {
+		try (InputStream is = Files.newInputStream(file)) {
+			return rasterizer.render(is, size, size);
+		}
+	}
+
+	/**
+	 * Scales a PNG icon to fit a given size, preserving its ratio.
+	 *
+	 * @param file
+	 *            PNG file.
+	 * @param size
+	 *            Maximum width and height of the icon.
+	 * @return Icon image.
+	 * @throws IOException
+	 *             If the file could not be read.
+	 */
+	private static BufferedImage scalePng(Path file, int size) throws IOException {
+		BufferedImage source = ImageIO.read(file.toFile());
+		if (source == null) {
+			throw new IOException("Unsupported image " + file);
+		}
+		double scale = Math.min((double) size / source.getWidth(), (double) size / source.getHeight());
+		int width = Math.max(1, (int) Math.round(source.getWidth() * scale));
+		int height = Math.max(1, (int) Math.round(source.getHeight() * scale));
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = image.createGraphics();
+		try {
+			// area averaging, which does not alias when scaling down
+			g.drawImage(source.getScaledInstance(width, height, Image.SCALE_AREA_AVERAGING), 0, 0, null);
+		} finally {
+			g.dispose();
+		}
+		return image;
+	}
+
+	/**
+	 * Packs icons into as many atlas images as needed, in rows of icons of
+	 * decreasing height.
+	 *
+	 * @param sprites
+	 *            Icons to be packed.
+	 * @param name
+	 *            Name of the atlas images, to which a sequential number is
+	 *            added.
+	 * @param size
+	 *            Icon size, for the index.
+	 * @param targetDirectory
+	 *            Directory where the atlas index is written.
+	 * @param index
+	 *            Atlas index.
+	 * @return Number of icons packed.
+	 * @throws IOException
+	 *             If any file could not be written.
+	 */
+	private static int pack(List<Sprite> sprites, String name, int size, Path targetDirectory, Writer index)
+			throws IOException {
+		sprites.sort(Comparator.comparingInt((Sprite s) -> -s.image.getHeight()).thenComparing(s -> s.file));
+
+		List<Sprite> page = new ArrayList<>();
+		int pageCount = 0;
+		int x = 0;
+		int y = 0;
+		int rowHeight = 0;
+		for (Sprite sprite : sprites) {
+			int width = sprite.image.getWidth();
+			int height = sprite.image.getHeight();
+			if (x + width > MAX_ATLAS_SIZE) {
+				x = 0;
+				y += rowHeight + GUTTER;
+				rowHeight = 0;
+			}
+			if (y + height > MAX_ATLAS_SIZE) {
+				writePage(page, name + '-' + pageCount++, size, targetDirectory, index);
+				page.clear();
+				x = 0;
+				y = 0;
+				rowHeight = 0;
+			}
+			sprite.x = x;
+			sprite.y = y;
+			page.add(sprite);
+			x += width + GUTTER;
+			rowHeight = Math.max(rowHeight, height);
+		}
+		if (!page.isEmpty()) {
+			writePage(page, name + '-' + pageCount, size, targetDirectory, index);
+		}
+		return sprites.size();
+	}
+
+	/**
+	 * Writes an atlas image and adds its icons to the index.
+	 *
+	 * @param sprites
+	 *            Icons in the atlas image, already placed.
+	 * @param name
+	 *            Name of the atlas image.
+	 * @param size
+	 *            Icon size, for the index.
+	 * @param targetDirectory
+	 *            Directory where the atlas index is written.
+	 * @param index
+	 *            Atlas index.
+	 * @throws IOException
+	 *             If any file could not be written.
+	 */
+	private static void writePage(List<Sprite> sprites, String name, int size, Path targetDirectory, Writer index)
+			throws IOException {
+		int width = sprites.stream().mapToInt(s -> s.x + s.image.getWidth()).max().orElse(1);
+		int height = sprites.stream().mapToInt(s -> s.y + s.image.getHeight()).max().orElse(1);
+		BufferedImage atlas = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = atlas.createGraphics();
+		String file = "atlas/" + name + IconIndex.PNG;
+		try {
+			for (Sprite sprite : sprites) {
+				g.drawImage(sprite.image, sprite.x, sprite.y, null);
+				index.write(String.format("%s %d %s %d %d %d %d%n", sprite.file, size, file, sprite.x, sprite.y,
+						sprite.image.getWidth(), sprite.image.getHeight()));
+			}
+		} finally {
+			g.dispose();
+		}
+		ImageIO.write(atlas, "png", targetDirectory.resolve(file).toFile());
+	}
+
+	/**
+	 * Icon being packed.
+	 */
+	private static class Sprite {
+
+		/**
+		 * Icon file, relative to the icon set directory.
+		 */
+		private final String file;
+
+		/**
+		 * Icon image.
+		 */
+		private final BufferedImage image;
+
+		/**
+		 * Horizontal position in the atlas image.
+		 */
+		private int x;
+
+		/**
+		 * Vertical position in the atlas image.
+		 */
+		private int y;
+
+		/**
+		 * Creates a new instance.
+		 *
+		 * @param file
+		 *            Icon file, relative to the icon set directory.
+		 * @param image
+		 *            Icon image.
+		 */
+		private Sprite(String file, BufferedImage image) {
+			this.file = file;
+			this.image = image;
+		}
+	}
+}
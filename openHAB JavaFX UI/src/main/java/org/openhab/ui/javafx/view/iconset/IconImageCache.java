@@ -0,0 +1,513 @@
+package org.openhab.ui.javafx.view.iconset;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.net.URI;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javafx.scene.image.Image;
+
+/**
+ * Keeps decoded icon images in memory, so that rendering the same icon again
+ * (e.g. when a row is scrolled back into view, or in every row linking to a
+ * page) does not decode it one more time. Images are immutable once loaded, so
+ * the same instance is shared by all the views displaying it.
+ *
+ * Images are cached by the resource they were decoded from and their size, so
+ * icon URIs with different states that resolve to the same file share an
+ * image. They are evicted in least-recently-used order whenever their total
+ * size exceeds the configured budget. Evicted images are still kept through
+ * soft references, and used again if the garbage collector has not reclaimed
+ * them yet.
+ *
+ * This class is thread-safe, so images can be decoded in the background
+ * before they are displayed, either ahead of time with
+ * {@link #get(URI, double)} or on demand with
+ * {@link #getAsync(URI, double, Executor)}.
+ *
+ * @author Flavio Costa
+ */
+public class IconImageCache {
+
+	/**
+	 * Used for logging activities of this class.
+	 */
+	private static final Logger logger = Logger.getLogger(IconImageCache.class.getPackage().getName());
+
+	/**
+	 * Default budget for the decoded images, in bytes.
+	 */
+	public static final long DEFAULT_BUDGET = 8 * 1024 * 1024;
+
+	/**
+	 * Decodes raster icons, such as PNG files.
+	 */
+	public static final Decoder RASTER = (is, size) -> new Image(is, size, size, true, true);
+
+	/**
+	 * Resolves an icon URI to the resource containing the icon.
+	 */
+	private final Function<URI, Optional<URL>> resolver;
+
+	/**
+	 * Opens the resources containing the icons.
+	 */
+	private final Opener opener;
+
+	/**
+	 * Decodes the icons into images.
+	 */
+	private final Decoder decoder;
+
+	/**
+	 * Budget for the decoded images, in bytes.
+	 */
+	private final long budget;
+
+	/**
+	 * Cached images, iterated from the least to the most recently used.
+	 */
+	private final LinkedHashMap<String, Image> images = new LinkedHashMap<>(16, 0.75f, true);
+
+	/**
+	 * Images evicted, until they are reclaimed by the garbage collector.
+	 */
+	private final Map<String, SoftImage> evicted = new HashMap<>();
+
+	/**
+	 * Receives the soft references whose images were reclaimed.
+	 */
+	private final ReferenceQueue<Image> reclaimed = new ReferenceQueue<>();
+
+	/**
+	 * Images being decoded in the background, which may be requested again
+	 * meanwhile.
+	 */
+	private final Map<String, CompletableFuture<Image>> decoding = new HashMap<>();
+
+	/**
+	 * Sum of the sizes of the cached images, in bytes.
+	 */
+	private long totalSize;
+
+	/**
+	 * Number of images found in the cache.
+	 */
+	private long hitCount;
+
+	/**
+	 * Number of images found among the evicted ones.
+	 */
+	private long softHitCount;
+
+	/**
+	 * Number of images that had to be decoded.
+	 */
+	private long missCount;
+
+	/**
+	 * Number of images evicted because of the budget.
+	 */
+	private long evictionCount;
+
+	/**
+	 * Total time decoding images, in nanoseconds.
+	 */
+	private long totalDecodeTime;
+
+	/**
+	 * Creates a cache.
+	 *
+	 * @param resolver
+	 *            Resolves an icon URI to the resource containing the icon, if
+	 *            there is one.
+	 * @param decoder
+	 *            Decodes the icons into images, e.g. {@link #RASTER}.
+	 * @param budget
+	 *            Budget for the decoded images, in bytes.
+	 */
+	public IconImageCache(Function<URI, Optional<URL>> resolver, Decoder decoder, long budget) {
+		this(resolver, URL::openStream, decoder, budget);
+	}
+
+	/**
+	 * Creates a cache reading the icons with a given opener, e.g. from an
+	 * {@link IconPack} instead of the resources themselves.
+	 *
+	 * @param resolver
+	 *            Resolves an icon URI to the resource containing the icon, if
+	 *            there is one.
+	 * @param opener
+	 *            Opens the resources containing the icons.
+	 * @param decoder
+	 *            Decodes the icons into images, e.g. {@link #RASTER}.
+	 * @param budget
+	 *            Budget for the decoded images, in bytes.
+	 */
+	public IconImageCache(Function<URI, Optional<URL>> resolver, Opener opener, Decoder decoder, long budget) {
+		this.resolver = resolver;
+		this.opener = opener;
+		this.decoder = decoder;
+		this.budget = budget;
+	}
+
+	/**
+	 * Returns the image for an icon, decoding it if needed.
+	 *
+	 * @param icon
+	 *            Icon URI.
+	 * @param size
+	 *            Width and height of the image, preserving the ratio of the
+	 *            icon.
+	 * @return Image, or null if there is no such icon or it could not be
+	 *         decoded.
+	 */
+	public Image get(URI icon, double size) {
+		Optional<URL> resource = resolver.apply(icon);
+		if (!resource.isPresent()) {
+			return null;
+		}
+
+		String key = resource.get().toExternalForm() + '@' + size;
+		Image image = lookup(key);
+		return image != null ? image : decode(icon, resource.get(), key, size);
+	}
+
+	/**
+	 * Returns the image for an icon, decoding it in the background if needed.
+	 * Concurrent requests for an image still being decoded share the same
+	 * result.
+	 *
+	 * @param icon
+	 *            Icon URI.
+	 * @param size
+	 *            Width and height of the image, preserving the ratio of the
+	 *            icon.
+	 * @param executor
+	 *            Executor where the image is decoded.
+	 * @return Image, which is already completed if the image was cached, or
+	 *         completed with null if there is no such icon or it could not be
+	 *         decoded.
+	 */
+	public CompletableFuture<Image> getAsync(URI icon, double size, Executor executor) {
+		Optional<URL> resource = resolver.apply(icon);
+		if (!resource.isPresent()) {
+			return CompletableFuture.completedFuture(null);
+		}
+
+		String key = resource.get().toExternalForm() + '@' + size;
+		Image image = lookup(key);
+		if (image != null) {
+			return CompletableFuture.completedFuture(image);
+		}
+
+		synchronized (this) {
+			CompletableFuture<Image> pending = decoding.get(key);
+			if (pending == null) {
+				pending = CompletableFuture.supplyAsync(() -> decode(icon, resource.get(), key, size), executor);
+				decoding.put(key, pending);
+				// the image is cached before it is completed
+				pending.whenComplete((decoded, e) -> done(key));
+			}
+			return pending;
+		}
+	}
+
+	/**
+	 * Decodes an image and adds it to the cache.
+	 *
+	 * @param icon
+	 *            Icon URI.
+	 * @param resource
+	 *            Resource containing the icon.
+	 * @param key
+	 *            Resource and size of the image.
+	 * @param size
+	 *            Width and height of the image.
+	 * @return Image, or null if it could not be decoded.
+	 */
+	private Image decode(URI icon, URL resource, String key, double size) {
+		// decoded outside the lock, so other icons can be served meanwhile
+		Image image;
+		long start = System.nanoTime();
+		try (InputStream is = opener.open(resource)) {
+			image = decoder.decode(is, size);
+		} catch (IOException e) {
+			logger.log(Level.WARNING, String.format("Could not read icon %s", icon), e);
+			return null;
+		}
+		long elapsed = System.nanoTime() - start;
+
+		if (image.isError()) {
+			logger.log(Level.WARNING, String.format("Could not decode icon %s", icon), image.getException());
+			return null;
+		}
+		return put(key, image, elapsed);
+	}
+
+	/**
+	 * Forgets an image no longer being decoded.
+	 *
+	 * @param key
+	 *            Resource and size of the image.
+	 */
+	private synchronized void done(String key) {
+		decoding.remove(key);
+	}
+
+	/**
+	 * Looks up an image already decoded.
+	 *
+	 * @param key
+	 *            Resource and size of the image.
+	 * @return Image, or null if it has to be decoded.
+	 */
+	private synchronized Image lookup(String key) {
+		purge();
+
+		Image image = images.get(key);
+		if (image != null) {
+			hitCount++;
+			return image;
+		}
+
+		SoftImage soft = evicted.remove(key);
+		image = soft == null ? null : soft.get();
+		if (image != null) {
+			softHitCount++;
+			add(key, image);
+		}
+		return image;
+	}
+
+	/**
+	 * Adds an image just decoded to the cache.
+	 *
+	 * @param key
+	 *            Resource and size of the image.
+	 * @param image
+	 *            Image decoded.
+	 * @param decodeTime
+	 *            Time taken to decode it, in nanoseconds.
+	 * @return Image to be used, which is the one already cached if another
+	 *         thread decoded the same image meanwhile.
+	 */
+	private synchronized Image put(String key, Image image, long decodeTime) {
+		missCount++;
+		totalDecodeTime += decodeTime;
+
+		Image cached = images.get(key);
+		if (cached != null) {
+			return cached;
+		}
+		evicted.remove(key);
+		add(key, image);
+		return image;
+	}
+
+	/**
+	 * Adds an image to the cache, evicting the least recently used images if the
+	 * budget is exceeded.
+	 *
+	 * @param key
+	 *            Resource and size of the image.
+	 * @param image
+	 *            Image to be cached.
+	 */
+	private void add(String key, Image image) {
+		images.put(key, image);
+		totalSize += sizeOf(image);
+
+		Iterator<Map.Entry<String, Image>> eldest = images.entrySet().iterator();
+		while (totalSize > budget && images.size() > 1) {
+			Map.Entry<String, Image> entry = eldest.next();
+			totalSize -= sizeOf(entry.getValue());
+			eldest.remove();
+			evicted.put(entry.getKey(), new SoftImage(entry.getKey(), entry.getValue(), reclaimed));
+			evictionCount++;
+			logger.log(Level.FINEST, "Evicted {0} from the icon cache", entry.getKey());
+		}
+	}
+
+	/**
+	 * Forgets the evicted images already reclaimed by the garbage collector.
+	 */
+	private void purge() {
+		SoftImage soft;
+		while ((soft = (SoftImage) reclaimed.poll()) != null) {
+			// the key may have been reused by a newer image
+			evicted.remove(soft.key, soft);
+		}
+	}
+
+	/**
+	 * Calculates the memory taken by a decoded image.
+	 *
+	 * @param image
+	 *            Image decoded.
+	 * @return Size, in bytes.
+	 */
+	private static long sizeOf(Image image) {
+		// 4 bytes per pixel, as decoded
+		return (long) Math.ceil(image.getWidth()) * (long) Math.ceil(image.getHeight()) * 4;
+	}
+
+	/**
+	 * Returns the number of images cached, not counting the evicted ones.
+	 *
+	 * @return Number of images.
+	 */
+	public synchronized int size() {
+		return images.size();
+	}
+
+	/**
+	 * Returns the total size of the images cached.
+	 *
+	 * @return Size, in bytes.
+	 */
+	public synchronized long getTotalSize() {
+		return totalSize;
+	}
+
+	/**
+	 * Returns the number of images found in the cache, including those evicted
+	 * but not reclaimed yet.
+	 *
+	 * @return Hit count.
+	 */
+	public synchronized long getHitCount() {
+		return hitCount + softHitCount;
+	}
+
+	/**
+	 * Returns the number of images found among the evicted ones.
+	 *
+	 * @return Soft hit count.
+	 */
+	public synchronized long getSoftHitCount() {
+		return softHitCount;
+	}
+
+	/**
+	 * Returns the number of images that had to be decoded.
+	 *
+	 * @return Miss count.
+	 */
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * Returns the number of images evicted because of the budget.
+	 *
+	 * @return Eviction count.
+	 */
+	public synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+
+	/**
+	 * Returns the ratio of images found in the cache.
+	 *
+	 * @return Hit ratio, between 0 and 1.
+	 */
+	public synchronized double getHitRatio() {
+		long requests = hitCount + softHitCount + missCount;
+		return requests == 0 ? 0 : (double) (hitCount + softHitCount) / requests;
+	}
+
+	/**
+	 * Returns the average time taken to decode an image.
+	 *
+	 * @return Average time, in microseconds.
+	 */
+	public synchronized double getAverageDecodeTime() {
+		return missCount == 0 ? 0 : (double) TimeUnit.NANOSECONDS.toMicros(totalDecodeTime) / missCount;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("%s[size=%d, bytes=%d, hits=%d, softHits=%d, misses=%d, evictions=%d, hitRatio=%.3f, "
+				+ "avgDecode=%.0fus]", getClass().getSimpleName(), images.size(), totalSize, hitCount + softHitCount,
+				softHitCount, missCount, evictionCount, getHitRatio(), getAverageDecodeTime());
+	}
+
+	/**
+	 * Opens the resources containing the icons.
+	 */
+	@FunctionalInterface
+	public interface Opener {
+
+		/**
+		 * Opens a resource.
+		 *
+		 * @param resource
+		 *            Resource containing an icon.
+		 * @return Icon contents.
+		 * @throws IOException
+		 *             If the resource could not be opened.
+		 */
+		InputStream open(URL resource) throws IOException;
+	}
+
+	/**
+	 * Decodes icons into images.
+	 */
+	@FunctionalInterface
+	public interface Decoder {
+
+		/**
+		 * Decodes an icon.
+		 *
+		 * @param is
+		 *            Icon contents.
+		 * @param size
+		 *            Width and height of the image, preserving the ratio of the
+		 *            icon.
+		 * @return Image decoded.
+		 * @throws IOException
+		 *             If the icon could not be read or decoded.
+		 */
+		Image decode(InputStream is, double size) throws IOException;
+	}
+
+	/**
+	 * Soft reference to an evicted image, which remembers its key.
+	 */
+	private static class SoftImage extends SoftReference<Image> {
+
+		/**
+		 * Resource and size of the image.
+		 */
+		private final String key;
+
+		/**
+		 * Creates a new instance.
+		 *
+		 * @param key
+		 *            Resource and size of the image.
+		 * @param image
+		 *            Evicted image.
+		 * @param queue
+		 *            Receives the reference once the image is reclaimed.
+		 */
+		private SoftImage(String key, Image image, ReferenceQueue<Image> queue) {
+			super(image, queue);
+			this.key = key;
+		}
+	}
+}
@@ -0,0 +1,341 @@
+package org.openhab.ui.javafx.view.iconset;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Index of the icons available in the icon sets, so that icon URIs can be
+ * resolved without looking up any resources.
+ *
+ * Icons are grouped by category, which is the file name up to its last hyphen,
+ * and the states of each category are kept sorted. A named state (e.g.
+ * light-on) is found by a binary search on the state names, and a numeric
+ * state is mapped to the nearest bucket at or below it (e.g. light-90 for 95),
+ * as done by the openHAB servers. Every file is also a category of its own, so
+ * icons such as material/arrow-back are found by their full name.
+ *
+ * Each index covers the icons of one format, PNG or SVG. The index is compiled
+ * during the build by {@link #main(String[])} into a listing of the icon
+ * files. If the listing is not available (e.g. when
+ * running from the sources), the icon sets are listed when the index is
+ * loaded.
+ *
+ * @author Flavio Costa
+ */
+public class IconIndex {
+
+	/**
+	 * Used for logging activities of this class.
+	 */
+	private static final Logger logger = Logger.getLogger(IconIndex.class.getPackage().getName());
+
+	/**
+	 * Name of the listing compiled during the build, relative to this class.
+	 */
+	public static final String INDEX_FILE = "icons.index";
+
+	/**
+	 * Icon sets indexed.
+	 */
+	private static final String[] ICON_SETS = { "app", "classic", "material" };
+
+	/**
+	 * Extension of the PNG icon files.
+	 */
+	public static final String PNG = ".png";
+
+	/**
+	 * Extension of the SVG icon files.
+	 */
+	public static final String SVG = ".svg";
+
+	/**
+	 * Icon categories, indexed by icon set and category name (e.g.
+	 * classic/light).
+	 */
+	private final Map<String, Category> categories = new HashMap<>();
+
+	/**
+	 * Creates an empty index.
+	 */
+	private IconIndex() {
+	}
+
+	/**
+	 * Creates the index.
+	 *
+	 * @param base
+	 *            URL that icon paths are relative to.
+	 * @param files
+	 *            Icon paths, made of icon set and file name (e.g.
+	 *            classic/light-90.png).
+	 * @param extension
+	 *            Extension of the icon files indexed, other files are ignored.
+	 * @throws IOException
+	 *             If the URL of any icon is not valid.
+	 */
+	IconIndex(URL base, Collection<String> files, String extension) throws IOException {
+		Map<String, TreeMap<String, URL>> named = new HashMap<>();
+		Map<String, TreeMap<Double, URL>> numeric = new HashMap<>();
+		for (String file : files) {
+			if (!file.endsWith(extension)) {
+				continue;
+			}
+			String icon = file.substring(0, file.length() - extension.length());
+			URL url = new URL(base, file);
+			categories.put(icon, new Category(url));
+
+			int hyphen = icon.lastIndexOf('-');
+			if (hyphen > icon.indexOf('/') + 1) {
+				String category = icon.substring(0, hyphen);
+				String state = icon.substring(hyphen + 1).toLowerCase(Locale.ROOT);
+				named.computeIfAbsent(category, c -> new TreeMap<>()).put(state, url);
+				double level = parseLevel(state);
+				if (!Double.isNaN(level)) {
+					numeric.computeIfAbsent(category, c -> new TreeMap<>()).put(level, url);
+				}
+			}
+		}
+
+		for (Map.Entry<String, TreeMap<String, URL>> states : named.entrySet()) {
+			Category category = categories.computeIfAbsent(states.getKey(), c -> new Category(null));
+			category.states = states.getValue().keySet().toArray(new String[0]);
+			category.stateIcons = states.getValue().values().toArray(new URL[0]);
+			TreeMap<Double, URL> levels = numeric.get(states.getKey());
+			if (levels != null) {
+				category.levels = levels.keySet().stream().mapToDouble(Double::doubleValue).toArray();
+				category.levelIcons = levels.values().toArray(new URL[0]);
+			}
+		}
+	}
+
+	/**
+	 * Loads the index of the icon sets, from the listing compiled during the
+	 * build or else by listing the icon sets.
+	 *
+	 * @param extension
+	 *            Extension of the icon files indexed, {@link #PNG} or
+	 *            {@link #SVG}.
+	 * @return Icon index, which is empty if the icon sets could not be listed.
+	 */
+	public static IconIndex load(String extension) {
+		try {
+			URL listing = IconIndex.class.getResource(INDEX_FILE);
+			if (listing != null) {
+				try (BufferedReader reader = new BufferedReader(
+						new InputStreamReader(listing.openStream(), StandardCharsets.UTF_8))) {
+					return new IconIndex(listing,
+							reader.lines().filter(line -> !line.isEmpty()).collect(Collectors.toList()), extension);
+				}
+			}
+
+			URL base = IconIndex.class.getResource("");
+			if (base != null) {
+				logger.fine("Icon index not found, listing the icon sets");
+				URI uri = base.toURI();
+				if ("jar".equals(uri.getScheme())) {
+					try (FileSystem jar = FileSystems.newFileSystem(uri, Collections.emptyMap())) {
+						return new IconIndex(base, list(jar.provider().getPath(uri)), extension);
+					}
+				}
+				return new IconIndex(base, list(Paths.get(uri)), extension);
+			}
+			logger.warning("Icon sets not found");
+		} catch (IOException | URISyntaxException e) {
+			logger.log(Level.WARNING, "Could not index the icon sets", e);
+		}
+
+		return new IconIndex();
+	}
+
+	/**
+	 * Compiles the index of the icon sets.
+	 *
+	 * @param args
+	 *            Directory containing the icon sets and index file to be
+	 *            written.
+	 * @throws IOException
+	 *             If the icon sets could not be listed or the index could not
+	 *             be written.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			throw new IllegalArgumentException("Usage: IconIndex <icon set directory> <index file>");
+		}
+		List<String> icons = list(Paths.get(args[0]));
+		Path target = Paths.get(args[1]);
+		Files.createDirectories(target.toAbsolutePath().getParent());
+		Files.write(target, icons, StandardCharsets.UTF_8);
+		logger.info(String.format("Indexed %d icons into %s", icons.size(), target));
+	}
+
+	/**
+	 * Lists the icons of all icon sets.
+	 *
+	 * @param directory
+	 *            Directory containing the icon sets.
+	 * @return Icon paths, made of icon set and file name, in alphabetical order.
+	 * @throws IOException
+	 *             If any icon set could not be listed.
+	 */
+	static List<String> list(Path directory) throws IOException {
+		List<String> icons = new ArrayList<>();
+		for (String iconSet : ICON_SETS) {
+			Path iconSetDirectory = directory.resolve(iconSet);
+			if (!Files.isDirectory(iconSetDirectory)) {
+				continue;
+			}
+			try (DirectoryStream<Path> files = Files.newDirectoryStream(iconSetDirectory,
+					"*{" + PNG + ',' + SVG + '}')) {
+				for (Path file : files) {
+					icons.add(iconSet + '/' + file.getFileName().toString());
+				}
+			}
+		}
+		Collections.sort(icons);
+		return icons;
+	}
+
+	/**
+	 * Finds the icon of a category for a given state.
+	 *
+	 * @param category
+	 *            Icon set and category name (e.g. classic/light).
+	 * @param state
+	 *            State of the icon, or null for the category icon.
+	 * @return Icon resource, which is the category icon if there is none
+	 *         specific for the state, or empty if there is no such category.
+	 */
+	public Optional<URL> resolve(String category, String state) {
+		Category icons = categories.get(category);
+		if (icons == null) {
+			return Optional.empty();
+		}
+		URL icon = state == null ? null : icons.find(state);
+		return Optional.ofNullable(icon == null ? icons.icon : icon);
+	}
+
+	/**
+	 * Returns the number of categories indexed, including the individual icons.
+	 *
+	 * @return Number of categories.
+	 */
+	public int size() {
+		return categories.size();
+	}
+
+	/**
+	 * Parses a numeric state, ignoring any unit after the number (e.g. 21.3 °C).
+	 *
+	 * @param state
+	 *            Icon state.
+	 * @return Numeric value, or NaN if the state is not numeric.
+	 */
+	private static double parseLevel(String state) {
+		int end = state.indexOf(' ');
+		String number = end < 0 ? state : state.substring(0, end);
+		// most states are names, not worth an exception each
+		if (number.isEmpty() || !(Character.isDigit(number.charAt(number.length() - 1)))) {
+			return Double.NaN;
+		}
+		try {
+			return Double.parseDouble(number);
+		} catch (NumberFormatException e) {
+			return Double.NaN;
+		}
+	}
+
+	/**
+	 * Icons of a category.
+	 */
+	private static class Category {
+
+		/**
+		 * Category icon, or null if there are only icons for specific states.
+		 */
+		private final URL icon;
+
+		/**
+		 * Names of the states with their own icon, in alphabetical order.
+		 */
+		private String[] states = {};
+
+		/**
+		 * Icons of the named states, in the same order.
+		 */
+		private URL[] stateIcons = {};
+
+		/**
+		 * Numeric states with their own icon, in ascending order.
+		 */
+		private double[] levels = {};
+
+		/**
+		 * Icons of the numeric states, in the same order.
+		 */
+		private URL[] levelIcons = {};
+
+		/**
+		 * Creates a new instance.
+		 *
+		 * @param icon
+		 *            Category icon, or null if there is none.
+		 */
+		private Category(URL icon) {
+			this.icon = icon;
+		}
+
+		/**
+		 * Finds the icon for a given state.
+		 *
+		 * @param state
+		 *            State of the icon.
+		 * @return Icon with the same name as the state or, for numeric states,
+		 *         with the highest level not above the state; or null if there
+		 *         is none.
+		 */
+		private URL find(String state) {
+			String name = state.toLowerCase(Locale.ROOT);
+			int index = Arrays.binarySearch(states, name);
+			if (index >= 0) {
+				return stateIcons[index];
+			}
+			if (levels.length == 0) {
+				return null;
+			}
+
+			double level = parseLevel(name);
+			if (Double.isNaN(level)) {
+				return null;
+			}
+			index = Arrays.binarySearch(levels, level);
+			// not found: the insertion point is after the nearest lower level
+			index = index >= 0 ? index : -index - 2;
+			return index >= 0 ? levelIcons[index] : null;
+		}
+	}
+}
@@ -0,0 +1,222 @@
+package org.openhab.ui.javafx.view.iconset;
+
+import static org.openhab.ui.javafx.view.iconset.IconPackFormat.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Icon files packed by {@link IconPackCompiler}, memory-mapped so that icons
+ * are read without looking up classpath resources or inflating jar entries.
+ * Only the header is read when the pack is mapped; each icon is found through
+ * the hash table of the pack and served as a slice of the mapping, without
+ * copying it.
+ *
+ * This class is thread-safe.
+ *
+ * @author Flavio Costa
+ */
+public class IconPack {
+
+	/**
+	 * Used for logging activities of this class.
+	 */
+	private static final Logger logger = Logger.getLogger(IconPack.class.getPackage().getName());
+
+	/**
+	 * Contents of the file, never modified.
+	 */
+	private final ByteBuffer buffer;
+
+	/**
+	 * Number of icons in the pack.
+	 */
+	private final int iconCount;
+
+	/**
+	 * Number of slots in the hash table, a power of two.
+	 */
+	private final int slotCount;
+
+	/**
+	 * Maps an icon pack and reads its header.
+	 *
+	 * @param file
+	 *            Icon pack file.
+	 * @throws IOException
+	 *             If the file could not be mapped or is not valid.
+	 */
+	public IconPack(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+				throw new IOException(file + " is not an icon pack");
+			}
+			buffer = channel.map(MapMode.READ_ONLY, 0, channel.size()).asReadOnlyBuffer();
+		}
+
+		if (buffer.getInt(0) != MAGIC || buffer.getShort(4) != VERSION) {
+			throw new IOException(file + " is not an icon pack in the supported version");
+		}
+		iconCount = buffer.getInt(8);
+		slotCount = buffer.getInt(12);
+		if (slotCount <= iconCount || Integer.bitCount(slotCount) != 1
+				|| HEADER_SIZE + (long) SLOT_SIZE * slotCount > buffer.capacity()) {
+			throw new IOException(file + " has an invalid hash table");
+		}
+
+		logger.log(Level.FINE, "Mapped {0} with {1} icons", new Object[] { file, iconCount });
+	}
+
+	/**
+	 * Returns the contents of an icon file.
+	 *
+	 * @param path
+	 *            Icon path, made of icon set and file name (e.g.
+	 *            classic/light-90.png).
+	 * @return Read-only slice of the pack with the contents of the file, or
+	 *         null if it is not in the pack.
+	 */
+	public ByteBuffer get(String path) {
+		int hash = path.hashCode();
+		byte[] encoded = null;
+		for (int slot = slot(hash, slotCount);; slot = (slot + 1) & (slotCount - 1)) {
+			int position = HEADER_SIZE + SLOT_SIZE * slot;
+			int pathOffset = buffer.getInt(position + 4);
+			if (pathOffset == 0) {
+				return null;
+			}
+			if (buffer.getInt(position) != hash) {
+				continue;
+			}
+
+			// only paths with the same hash are compared
+			if (encoded == null) {
+				encoded = path.getBytes(StandardCharsets.UTF_8);
+			}
+			if (matches(pathOffset, encoded)) {
+				ByteBuffer data = buffer.duplicate();
+				int offset = buffer.getInt(position + 8);
+				data.limit(offset + buffer.getInt(position + 12)).position(offset);
+				return data.slice();
+			}
+		}
+	}
+
+	/**
+	 * Opens an icon file.
+	 *
+	 * @param path
+	 *            Icon path, made of icon set and file name (e.g.
+	 *            classic/light-90.png).
+	 * @return Stream reading the file from the pack, or null if it is not in the
+	 *         pack.
+	 */
+	public InputStream open(String path) {
+		ByteBuffer data = get(path);
+		return data == null ? null : new SliceInputStream(data);
+	}
+
+	/**
+	 * Checks whether an icon path in the pack is the same as the one being
+	 * looked up.
+	 *
+	 * @param pathOffset
+	 *            Offset of the icon path in the pack.
+	 * @param encoded
+	 *            Icon path being looked up, in UTF-8.
+	 * @return Whether the paths are the same.
+	 */
+	private boolean matches(int pathOffset, byte[] encoded) {
+		if (buffer.getShort(pathOffset) != encoded.length) {
+			return false;
+		}
+		for (int i = 0; i < encoded.length; i++) {
+			if (buffer.get(pathOffset + 2 + i) != encoded[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the number of icon files in the pack.
+	 *
+	 * @return Number of icon files.
+	 */
+	public int size() {
+		return iconCount;
+	}
+
+	/**
+	 * Returns the size of the pack, which is mapped into memory.
+	 *
+	 * @return Size in bytes.
+	 */
+	public int getMappedSize() {
+		return buffer.capacity();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("IconPack[icons=%d, bytes=%d]", iconCount, buffer.capacity());
+	}
+
+	/**
+	 * Reads an icon file from its slice of the pack.
+	 */
+	private static class SliceInputStream extends InputStream {
+
+		/**
+		 * Contents of the icon file, positioned at the next byte to be read.
+		 */
+		private final ByteBuffer data;
+
+		/**
+		 * Creates a new instance.
+		 *
+		 * @param data
+		 *            Contents of the icon file.
+		 */
+		private SliceInputStream(ByteBuffer data) {
+			this.data = data;
+		}
+
+		@Override
+		public int read() {
+			return data.hasRemaining() ? data.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (len == 0) {
+				return 0;
+			}
+			if (!data.hasRemaining()) {
+				return -1;
+			}
+			int count = Math.min(len, data.remaining());
+			data.get(b, off, count);
+			return count;
+		}
+
+		@Override
+		public long skip(long n) {
+			int count = (int) Math.max(0, Math.min(n, data.remaining()));
+			data.position(data.position() + count);
+			return count;
+		}
+
+		@Override
+		public int available() {
+			return data.remaining();
+		}
+	}
+}
@@ -0,0 +1,138 @@
+package org.openhab.ui.javafx.view.iconset;
+
+import static org.openhab.ui.javafx.view.iconset.IconPackFormat.*;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Packs the files of all icon sets into a single file in the format described
+ * in {@link IconPackFormat}, so they can be served by {@link IconPack} from
+ * memory instead of being looked up as classpath resources. This class is run
+ * during the build, but it may also be used standalone:
+ *
+ * <pre>
+ * java IconPackCompiler &lt;icon set directory&gt; &lt;pack file&gt;
+ * </pre>
+ *
+ * Both the PNG and the SVG files are packed, with the same paths as listed by
+ * {@link IconIndex}.
+ *
+ * @author Flavio Costa
+ */
+public class IconPackCompiler {
+
+	/**
+	 * Used for logging activities of this class.
+	 */
+	private static final Logger logger = Logger.getLogger(IconPackCompiler.class.getPackage().getName());
+
+	/**
+	 * Packs all icon sets.
+	 *
+	 * @param args
+	 *            Icon set directory and pack file.
+	 * @throws IOException
+	 *             If any icon could not be read, or the pack could not be
+	 *             written.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			throw new IllegalArgumentException("Usage: IconPackCompiler <icon set directory> <pack file>");
+		}
+		Path target = Paths.get(args[1]);
+		Files.createDirectories(target.toAbsolutePath().getParent());
+		try (OutputStream os = Files.newOutputStream(target)) {
+			int count = compile(Paths.get(args[0]), os);
+			logger.info(String.format("Packed %d icons into %s", count, target));
+		}
+	}
+
+	/**
+	 * Packs all icon sets.
+	 *
+	 * @param sourceDirectory
+	 *            Directory containing the icon sets. It may also be a directory
+	 *            inside a jar file system.
+	 * @param os
+	 *            Stream where the pack is written.
+	 * @return Number of icons packed.
+	 * @throws IOException
+	 *             If any icon could not be read, or the stream could not be
+	 *             written.
+	 */
+	public static int compile(Path sourceDirectory, OutputStream os) throws IOException {
+		List<String> files = IconIndex.list(sourceDirectory);
+		List<byte[]> paths = new ArrayList<>(files.size());
+		long[] lengths = new long[files.size()];
+		for (int i = 0; i < files.size(); i++) {
+			paths.add(files.get(i).getBytes(StandardCharsets.UTF_8));
+			lengths[i] = Files.size(sourceDirectory.resolve(files.get(i)));
+		}
+
+		// at most half of the slots are used, so collisions stay rare
+		int slotCount = Integer.highestOneBit(Math.max(1, 2 * files.size() - 1)) << 1;
+		int[] slots = new int[slotCount];
+		long pathOffset = HEADER_SIZE + (long) SLOT_SIZE * slotCount;
+		long dataOffset = pathOffset + 2L * paths.size() + paths.stream().mapToInt(p -> p.length).sum();
+		long[] pathOffsets = new long[files.size()];
+		long[] dataOffsets = new long[files.size()];
+		for (int i = 0; i < files.size(); i++) {
+			pathOffsets[i] = pathOffset;
+			dataOffsets[i] = dataOffset;
+			pathOffset += 2 + paths.get(i).length;
+			dataOffset += lengths[i];
+
+			int slot = slot(files.get(i).hashCode(), slotCount);
+			while (slots[slot] != 0) {
+				slot = (slot + 1) & (slotCount - 1);
+			}
+			// slot entries are one-based, so that zero means empty
+			slots[slot] = i + 1;
+		}
+		if (dataOffset > Integer.MAX_VALUE) {
+			throw new IOException("Icon sets too large to be packed: " + dataOffset + " bytes");
+		}
+
+		DataOutputStream output = new DataOutputStream(os);
+		output.writeInt(MAGIC);
+		output.writeShort(VERSION);
+		output.writeShort(0); // flags, none defined yet
+		output.writeInt(files.size());
+		output.writeInt(slotCount);
+
+		for (int entry : slots) {
+			if (entry == 0) {
+				output.write(new byte[SLOT_SIZE]);
+			} else {
+				int i = entry - 1;
+				output.writeInt(files.get(i).hashCode());
+				output.writeInt((int) pathOffsets[i]);
+				output.writeInt((int) dataOffsets[i]);
+				output.writeInt((int) lengths[i]);
+			}
+		}
+
+		for (byte[] path : paths) {
+			output.writeShort(path.length);
+			output.write(path);
+		}
+
+		for (int i = 0; i < files.size(); i++) {
+			long copied = Files.copy(sourceDirectory.resolve(files.get(i)), output);
+			if (copied != lengths[i]) {
+				throw new IOException(files.get(i) + " changed while being packed");
+			}
+		}
+		output.flush();
+		return files.size();
+	}
+}
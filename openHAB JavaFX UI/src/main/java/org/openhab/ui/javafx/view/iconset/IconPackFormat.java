@@ -0,0 +1,66 @@
+package org.openhab.ui.javafx.view.iconset;
+
+/**
+ * Constants describing the icon pack format, written by
+ * {@link IconPackCompiler} and read by {@link IconPack}. All numbers are
+ * big-endian, and all offsets are absolute positions in the file.
+ *
+ * <pre>
+ * header       magic (int), version (short), flags (short),
+ *              icon count (int), slot count (int)
+ * slots        hash table of the icon paths, with a power of two slots:
+ *              path hash (int), path offset (int),
+ *              data offset (int), data length (int)
+ * paths        length (short) and UTF-8 bytes of each icon path
+ * data         contents of each icon file, uncompressed
+ * </pre>
+ *
+ * Icon paths are made of icon set and file name (e.g. classic/light-90.png),
+ * hashed with {@link String#hashCode()}. The slot of a path is given by its
+ * spread hash, followed by the next slots in case of collisions. Empty slots
+ * have a path offset of 0.
+ *
+ * @author Flavio Costa
+ */
+final class IconPackFormat {
+
+	/**
+	 * Magic number at the start of every file ("OHIP").
+	 */
+	static final int MAGIC = 0x4F484950;
+
+	/**
+	 * Current format version.
+	 */
+	static final short VERSION = 1;
+
+	/**
+	 * Size of the header, in bytes.
+	 */
+	static final int HEADER_SIZE = 16;
+
+	/**
+	 * Size of each slot of the hash table, in bytes.
+	 */
+	static final int SLOT_SIZE = 16;
+
+	/**
+	 * Not supposed to be instantiated.
+	 */
+	private IconPackFormat() {
+	}
+
+	/**
+	 * Determines the first slot for an icon path.
+	 *
+	 * @param hash
+	 *            Hash of the icon path.
+	 * @param slotCount
+	 *            Number of slots, a power of two.
+	 * @return Slot index.
+	 */
+	static int slot(int hash, int slotCount) {
+		// the high bits also matter, as in HashMap
+		return (hash ^ hash >>> 16) & (slotCount - 1);
+	}
+}
@@ -1,19 +1,39 @@
 package org.openhab.ui.javafx.view.iconset;
 
+import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.net.URL;
 import java.util.Collections;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 import org.openhab.ui.javafx.scheme.SchemeHandler;
 import org.openhab.ui.javafx.scheme.SchemeType;
 
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.stage.Screen;
+
 /**
  * Loads icons from the available icon sets.
  * 
  * The URI should follow the format icon:[<iconset>/]category[#state] 
  * 
+ * Icons are displayed by {@link #createView(URI, double)} from the shared
+ * {@link IconAtlas} images whenever they were compiled at the size needed by
+ * the screen. Otherwise icons available as SVG are rendered at that exact
+ * size, and PNG icons are used for the rest.
+ * 
+ * Icon files are read from an {@link IconPack} if one is set, and otherwise
+ * (or if an icon is not in the pack, unless that fallback is disabled) from
+ * the classpath resources.
+ * 
  * @author Flavio Costa
  */
 public class IconSchemeHandler implements SchemeHandler<Optional<InputStream>> {
@@ -23,6 +43,282 @@ public class IconSchemeHandler implements SchemeHandler<Optional<InputStream>> {
 	 */
 	private static final String DEFAULT_ICONSET = "classic";
 
+	/**
+	 * Rasterizes the SVG icons, so the JavaFX application thread is never
+	 * blocked by it.
+	 */
+	private static final Executor RASTER_EXECUTOR = Executors
+			.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors() / 2), r -> {
+				Thread thread = new Thread(r, "icon-rasterizer");
+				thread.setDaemon(true);
+				return thread;
+			});
+
+	/**
+	 * PNG icons available, so they are resolved without looking up resources.
+	 */
+	private final IconIndex index = IconIndex.load(IconIndex.PNG);
+
+	/**
+	 * SVG icons available.
+	 */
+	private final IconIndex vectorIndex = IconIndex.load(IconIndex.SVG);
+
+	/**
+	 * Icons packed into shared images during the build.
+	 */
+	private final IconAtlas atlas = IconAtlas.load();
+
+	/**
+	 * Whether icons are displayed from the atlas images when possible.
+	 */
+	private volatile boolean atlasEnabled = true;
+
+	/**
+	 * Icon files mapped into memory, or null to read them from the classpath.
+	 */
+	private volatile IconPack pack;
+
+	/**
+	 * Whether icons not found in the pack are read from the classpath.
+	 */
+	private volatile boolean classpathFallback = true;
+
+	/**
+	 * Decoded icon images, shared by all the views displaying icons.
+	 */
+	private final IconImageCache imageCache = new IconImageCache(this::resolve, this::open, IconImageCache.RASTER,
+			IconImageCache.DEFAULT_BUDGET);
+
+	/**
+	 * SVG icons rasterized, by the size in pixels of the images.
+	 */
+	private final IconImageCache vectorCache;
+
+	/**
+	 * Number of pixels per unit of the scene coordinates, used to rasterize
+	 * the SVG icons.
+	 */
+	private volatile double outputScale = 1;
+
+	/**
+	 * Creates a new instance.
+	 */
+	public IconSchemeHandler() {
+		SvgRasterizer rasterizer = new SvgRasterizer();
+		vectorCache = new IconImageCache(this::resolveVector, this::open,
+				(is, size) -> rasterizer.rasterize(is, (int) Math.ceil(size)), IconImageCache.DEFAULT_BUDGET);
+	}
+
+	/**
+	 * Returns the image for an icon, decoded with the icon handler currently
+	 * registered. Images decoded by this class are shared through its cache.
+	 * 
+	 * @param icon
+	 *            Icon URI.
+	 * @param size
+	 *            Width and height of the image, preserving the ratio of the
+	 *            icon.
+	 * @return Image, or null if there is no such icon.
+	 */
+	public static Image loadImage(URI icon, double size) {
+		SchemeHandler<Optional<InputStream>> iconHandler = SchemeHandler.of(SchemeType.ICON);
+		if (iconHandler instanceof IconSchemeHandler) {
+			return ((IconSchemeHandler) iconHandler).getImageCache().get(icon, size);
+		}
+
+		Optional<InputStream> icons = iconHandler.handle(icon);
+		if (!icons.isPresent()) {
+			return null;
+		}
+		try (InputStream is = icons.get()) {
+			return new Image(is, size, size, true, true);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Creates a view displaying an icon, with the icon handler currently
+	 * registered. SVG icons are rasterized in the background if they were not
+	 * already, in which case the view is empty until they are ready.
+	 * 
+	 * @param icon
+	 *            Icon URI.
+	 * @param size
+	 *            Width and height of the view.
+	 * @return View displaying the icon.
+	 */
+	public static ImageView createView(URI icon, double size) {
+		SchemeHandler<Optional<InputStream>> iconHandler = SchemeHandler.of(SchemeType.ICON);
+		if (iconHandler instanceof IconSchemeHandler) {
+			return ((IconSchemeHandler) iconHandler).view(icon, size);
+		}
+		return new ImageView(loadImage(icon, size));
+	}
+
+	/**
+	 * Creates a view displaying an icon, from the atlas images, the SVG icon or
+	 * the PNG icon, in this order of preference.
+	 * 
+	 * @param icon
+	 *            Icon URI.
+	 * @param size
+	 *            Width and height of the view.
+	 * @return View displaying the icon.
+	 */
+	private ImageView view(URI icon, double size) {
+		double pixels = size * outputScale;
+		Optional<URL> resource = resolve(icon);
+		ImageView view = atlasEnabled && resource.isPresent() ? atlas.createView(resource.get(), pixels) : null;
+		if (view == null && !resolveVector(icon).isPresent()) {
+			return new ImageView(imageCache.get(icon, size));
+		}
+
+		if (view == null) {
+			view = new ImageView();
+			CompletableFuture<Image> image = vectorCache.getAsync(icon, pixels, RASTER_EXECUTOR);
+			if (image.isDone() && image.getNow(null) != null) {
+				view.setImage(image.getNow(null));
+			} else {
+				// the PNG icon if the SVG one could not be rendered
+				ImageView target = view;
+				image.whenCompleteAsync((rendered, e) -> target.setImage(rendered != null ? rendered
+						: imageCache.get(icon, size)), Platform::runLater);
+			}
+		}
+		view.setFitWidth(size);
+		view.setFitHeight(size);
+		view.setPreserveRatio(true);
+		view.setSmooth(true);
+		return view;
+	}
+
+	/**
+	 * Decodes an icon in the current thread, into the same atlas image or cache
+	 * used by {@link #createView(URI, double)}, so that it is displayed at once.
+	 * 
+	 * @param icon
+	 *            Icon URI.
+	 * @param size
+	 *            Width and height of the view.
+	 * @return Whether the icon was found and decoded.
+	 */
+	public boolean prepare(URI icon, double size) {
+		double pixels = size * outputScale;
+		Optional<URL> resource = resolve(icon);
+		if (atlasEnabled && resource.isPresent() && atlas.prepare(resource.get(), pixels)) {
+			return true;
+		}
+		if (resolveVector(icon).isPresent() && vectorCache.get(icon, pixels) != null) {
+			return true;
+		}
+		return imageCache.get(icon, size) != null;
+	}
+
+	/**
+	 * Measures the scale of the primary screen, i.e. how many pixels there are
+	 * per unit of the scene coordinates, rounded to half units. This method
+	 * must be called on the JavaFX application thread.
+	 * 
+	 * @return Output scale, at least 1.
+	 */
+	public static double measureOutputScale() {
+		// 96 DPI is the reference density used by JavaFX
+		return Math.max(1, Math.round(Screen.getPrimary().getDpi() / 96 * 2) / 2.0);
+	}
+
+	/**
+	 * Returns the scale used to rasterize the SVG icons.
+	 * 
+	 * @return Pixels per unit of the scene coordinates.
+	 */
+	public double getOutputScale() {
+		return outputScale;
+	}
+
+	/**
+	 * Sets the scale used to rasterize the SVG icons, e.g. the one returned by
+	 * {@link #measureOutputScale()}.
+	 * 
+	 * @param outputScale
+	 *            Pixels per unit of the scene coordinates.
+	 */
+	public void setOutputScale(double outputScale) {
+		this.outputScale = outputScale;
+	}
+
+	/**
+	 * Returns the atlas images the icons are displayed from.
+	 * 
+	 * @return Icon atlas.
+	 */
+	public IconAtlas getAtlas() {
+		return atlas;
+	}
+
+	/**
+	 * Sets whether icons are displayed from the atlas images when possible,
+	 * which is the default, e.g. to compare with displaying them individually.
+	 * 
+	 * @param atlasEnabled
+	 *            Whether the atlas images are used.
+	 */
+	public void setAtlasEnabled(boolean atlasEnabled) {
+		this.atlasEnabled = atlasEnabled;
+	}
+
+	/**
+	 * Returns the icon files mapped into memory.
+	 * 
+	 * @return Icon pack, or null if icons are read from the classpath.
+	 */
+	public IconPack getPack() {
+		return pack;
+	}
+
+	/**
+	 * Sets the icon files mapped into memory, from which icons are read from
+	 * now on. Images already decoded are not affected.
+	 * 
+	 * @param pack
+	 *            Icon pack, or null to read icons from the classpath.
+	 */
+	public void setPack(IconPack pack) {
+		this.pack = pack;
+	}
+
+	/**
+	 * Sets whether icons not found in the pack are read from the classpath,
+	 * which is the default. Without a pack, icons are always read from the
+	 * classpath.
+	 * 
+	 * @param classpathFallback
+	 *            Whether the classpath is used for icons not in the pack.
+	 */
+	public void setClasspathFallback(boolean classpathFallback) {
+		this.classpathFallback = classpathFallback;
+	}
+
+	/**
+	 * Returns the cache of the images decoded from the icons of this handler.
+	 * 
+	 * @return Image cache.
+	 */
+	public IconImageCache getImageCache() {
+		return imageCache;
+	}
+
+	/**
+	 * Returns the cache of the images rasterized from the SVG icons of this
+	 * handler.
+	 * 
+	 * @return Image cache, by the size in pixels of the images.
+	 */
+	public IconImageCache getVectorCache() {
+		return vectorCache;
+	}
+
 	@Override
 	public Set<SchemeType> getAcceptedTypes() {
 		return Collections.singleton(SchemeType.ICON);
@@ -30,34 +326,106 @@ public class IconSchemeHandler implements SchemeHandler<Optional<InputStream>> {
 
 	@Override
 	public Optional<InputStream> handle(URI uri) throws IllegalArgumentException {
-		validate(uri);
+		Optional<URL> resource = resolve(uri);
+		if (!resource.isPresent()) {
+			return Optional.empty();
+		}
+		try {
+			return Optional.of(open(resource.get()));
+		} catch (IOException e) {
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * Opens an icon resource, from the icon pack if there is one.
+	 * 
+	 * @param resource
+	 *            Icon resource, as resolved by this handler.
+	 * @return Icon contents.
+	 * @throws IOException
+	 *             If the icon could not be opened, or it is not in the pack
+	 *             and the classpath fallback is disabled.
+	 */
+	public InputStream open(URL resource) throws IOException {
+		IconPack icons = pack;
+		if (icons != null) {
+			InputStream is = icons.open(path(resource));
+			if (is != null) {
+				return is;
+			}
+			if (!classpathFallback) {
+				throw new FileNotFoundException(resource + " is not in the icon pack");
+			}
+		}
+		return resource.openStream();
+	}
+
+	/**
+	 * Determines the path of an icon resource in the icon pack, made of the
+	 * icon set and file name, i.e. the last two segments of its URL.
+	 * 
+	 * @param resource
+	 *            Icon resource.
+	 * @return Icon path (e.g. classic/light-90.png).
+	 */
+	private static String path(URL resource) {
+		String path = resource.getPath();
+		return path.substring(path.lastIndexOf('/', path.lastIndexOf('/') - 1) + 1);
+	}
+
+	/**
+	 * Determines the resource containing an icon, without reading it. If the
+	 * state has no icon of its own, numeric states use the icon of the nearest
+	 * lower level (e.g. light-90 for 95), and other states use the category icon.
+	 * 
+	 * @param uri
+	 *            Icon URI.
+	 * @return Icon resource, or empty if there is no such icon.
+	 * @throws IllegalArgumentException
+	 *             If the URI is not a valid icon URI.
+	 */
+	public Optional<URL> resolve(URI uri) throws IllegalArgumentException {
+		// the state variant, if any, or else the category icon
+		return index.resolve(category(uri), uri.getFragment());
+	}
+
+	/**
+	 * Determines the resource containing the SVG version of an icon, in the
+	 * same way as {@link #resolve(URI)}.
+	 * 
+	 * @param uri
+	 *            Icon URI.
+	 * @return SVG icon resource, or empty if there is no such icon in SVG.
+	 * @throws IllegalArgumentException
+	 *             If the URI is not a valid icon URI.
+	 */
+	public Optional<URL> resolveVector(URI uri) throws IllegalArgumentException {
+		return vectorIndex.resolve(category(uri), uri.getFragment());
+	}
 
+	/**
+	 * Determines the icon set and category of an icon.
+	 * 
+	 * @param uri
+	 *            Icon URI.
+	 * @return Icon set and category, e.g. classic/light.
+	 * @throws IllegalArgumentException
+	 *             If the URI is not a valid icon URI.
+	 */
+	private String category(URI uri) throws IllegalArgumentException {
+		validate(uri);
 		String path = uri.getSchemeSpecificPart();
 
 		long numberofSlashes = path.codePoints().filter(ch -> ch == '/').count();
 		switch ((int) numberofSlashes) {
 		case 0:
-			path = DEFAULT_ICONSET + '/' + path;
-			break;
+			return DEFAULT_ICONSET + '/' + path;
 		case 1:
 			// no processing needed
-			break;
+			return path;
 		default:
 			throw new IllegalArgumentException(uri + " cannot contain more than one slash");
 		}
-		
-		InputStream is = null;
-		
-		String fragment = uri.getFragment();
-		if (fragment != null) {
-			// tries to retrieve the icon with a state
-			is = getClass().getResourceAsStream(path + '-' + fragment.toLowerCase() + ".png");
-		}
-
-		// not found or no state defined, load the standard category icon
-		if(is == null) {
-			is = getClass().getResourceAsStream(path + ".png");
-		}
-		return Optional.ofNullable(is);
 	}
 }
@@ -1,11 +1,6 @@
 package org.openhab.ui.javafx.view.iconset;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.util.Optional;
-
-import org.openhab.ui.javafx.scheme.SchemeHandler;
-import org.openhab.ui.javafx.scheme.SchemeType;
+import java.net.URI;
 
 import javafx.scene.Node;
 import javafx.scene.control.Label;
@@ -28,15 +23,14 @@ public class MaterialIcon extends StackPane {
 	 */
 	public MaterialIcon(String category) {
 
-		SchemeHandler<Optional<InputStream>> iconLoader = SchemeHandler.of(SchemeType.ICON);
-
 		Node child;
 
-		try (InputStream is = iconLoader.handle("icon:material/" + category).get()) {
-			child = new ImageView(new Image(is, 24, 24, true, true));
-		} catch (IOException e) {
+		// decoded images are shared by all icons
+		Image image = IconSchemeHandler.loadImage(URI.create("icon:material/" + category), 24);
+		if (image != null) {
+			child = new ImageView(image);
+		} else {
 			// TODO should display a default icon
-			e.printStackTrace();
 			child = new Label("[icon]");
 		}
 
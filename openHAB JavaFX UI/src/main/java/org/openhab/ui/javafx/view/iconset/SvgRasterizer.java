@@ -0,0 +1,1255 @@
+package org.openhab.ui.javafx.view.iconset;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Graphics2D;
+import java.awt.MultipleGradientPaint.ColorSpaceType;
+import java.awt.MultipleGradientPaint.CycleMethod;
+import java.awt.LinearGradientPaint;
+import java.awt.Paint;
+import java.awt.RadialGradientPaint;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Arc2D;
+import java.awt.geom.Area;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+/**
+ * Renders SVG icons into images of any size, so that they stay sharp on
+ * high-density screens instead of scaling up the PNG icons.
+ *
+ * Only the subset of SVG used by the icon sets is supported: paths,
+ * rectangles, circles and ellipses, groups and references with use, solid
+ * colors and linear or radial gradients, strokes, opacity and clipping paths.
+ * Text is not rendered, and the opacity of a group is applied to each of its
+ * children rather than to the group as a whole.
+ *
+ * Icons are drawn with Java2D rather than the scene graph, so that they can be
+ * rendered on any thread. This class is thread-safe.
+ *
+ * @author Flavio Costa
+ */
+public class SvgRasterizer {
+
+	/**
+	 * Used for logging activities of this class.
+	 */
+	private static final Logger logger = Logger.getLogger(SvgRasterizer.class.getPackage().getName());
+
+	/**
+	 * Maximum depth of references followed, against reference cycles.
+	 */
+	private static final int MAX_DEPTH = 16;
+
+	/**
+	 * Matches each function of a transform list, e.g. translate(10 20).
+	 */
+	private static final Pattern TRANSFORM = Pattern.compile("(\\w+)\\s*\\(([^)]*)\\)");
+
+	/**
+	 * XML parsers, which are not thread-safe.
+	 */
+	private static final ThreadLocal<DocumentBuilder> builders = ThreadLocal.withInitial(() -> {
+		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+		factory.setValidating(false);
+		factory.setExpandEntityReferences(false);
+		try {
+			factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+			return factory.newDocumentBuilder();
+		} catch (ParserConfigurationException e) {
+			throw new IllegalStateException(e);
+		}
+	});
+
+	/**
+	 * Renders an icon into an image.
+	 *
+	 * @param svg
+	 *            SVG document.
+	 * @param size
+	 *            Width and height of the image, in pixels. The icon is scaled
+	 *            to fit, preserving its ratio.
+	 * @return Image rendered.
+	 * @throws IOException
+	 *             If the document could not be read or is not valid XML.
+	 */
+	public Image rasterize(InputStream svg, int size) throws IOException {
+		BufferedImage raster = render(svg, size, size);
+		WritableImage image = new WritableImage(size, size);
+		int[] pixels = ((DataBufferInt) raster.getRaster().getDataBuffer()).getData();
+		image.getPixelWriter().setPixels(0, 0, size, size, PixelFormat.getIntArgbPreInstance(), pixels, 0, size);
+		return image;
+	}
+
+	/**
+	 * Renders an icon into a Java2D image.
+	 *
+	 * @param svg
+	 *            SVG document.
+	 * @param width
+	 *            Width of the image, in pixels.
+	 * @param height
+	 *            Height of the image, in pixels.
+	 * @return Image rendered, with premultiplied alpha.
+	 * @throws IOException
+	 *             If the document could not be read or is not valid XML.
+	 */
+	public BufferedImage render(InputStream svg, int width, int height) throws IOException {
+		Document document;
+		try {
+			document = builders.get().parse(svg);
+		} catch (SAXException e) {
+			throw new IOException("Invalid SVG document", e);
+		}
+
+		BufferedImage raster = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+		Graphics2D graphics = raster.createGraphics();
+		try {
+			graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+			graphics.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+			graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+			graphics.setRenderingHint(RenderingHints.KEY_COLOR_RENDERING, RenderingHints.VALUE_COLOR_RENDER_QUALITY);
+			new Renderer(document).render(graphics, width, height);
+		} finally {
+			graphics.dispose();
+		}
+		return raster;
+	}
+
+	/**
+	 * Renders one document.
+	 */
+	private static class Renderer {
+
+		/**
+		 * Root element of the document.
+		 */
+		private final Element root;
+
+		/**
+		 * Elements with an id, which can be referenced.
+		 */
+		private final Map<String, Element> ids = new HashMap<>();
+
+		/**
+		 * Clipping paths already built, indexed by id.
+		 */
+		private final Map<String, Shape> clipPaths = new HashMap<>();
+
+		/**
+		 * Width of the view box, for percentages.
+		 */
+		private double viewWidth;
+
+		/**
+		 * Height of the view box, for percentages.
+		 */
+		private double viewHeight;
+
+		/**
+		 * Creates a new instance.
+		 *
+		 * @param document
+		 *            SVG document.
+		 */
+		private Renderer(Document document) {
+			root = document.getDocumentElement();
+			collectIds(root);
+		}
+
+		/**
+		 * Indexes the elements with an id.
+		 *
+		 * @param element
+		 *            Element whose subtree is indexed.
+		 */
+		private void collectIds(Element element) {
+			if (element.hasAttribute("id")) {
+				ids.putIfAbsent(element.getAttribute("id"), element);
+			}
+			for (Element child : children(element)) {
+				collectIds(child);
+			}
+		}
+
+		/**
+		 * Renders the document, fitted into the image.
+		 *
+		 * @param graphics
+		 *            Graphics of the image.
+		 * @param width
+		 *            Width of the image.
+		 * @param height
+		 *            Height of the image.
+		 */
+		private void render(Graphics2D graphics, int width, int height) {
+			double[] viewBox = numbers(root.getAttribute("viewBox"));
+			if (viewBox.length == 4 && viewBox[2] > 0 && viewBox[3] > 0) {
+				viewWidth = viewBox[2];
+				viewHeight = viewBox[3];
+				// centered, as with the default preserveAspectRatio
+				double scale = Math.min(width / viewWidth, height / viewHeight);
+				graphics.translate((width - viewWidth * scale) / 2, (height - viewHeight * scale) / 2);
+				graphics.scale(scale, scale);
+				graphics.translate(-viewBox[0], -viewBox[1]);
+			} else {
+				viewWidth = length(root.getAttribute("width"), width, width);
+				viewHeight = length(root.getAttribute("height"), height, height);
+			}
+			render(root, graphics, new Style(), 0);
+		}
+
+		/**
+		 * Renders an element and its children.
+		 *
+		 * @param element
+		 *            Element to be rendered.
+		 * @param graphics
+		 *            Graphics of the parent element.
+		 * @param parentStyle
+		 *            Style inherited from the parent element.
+		 * @param depth
+		 *            Number of references followed so far.
+		 */
+		private void render(Element element, Graphics2D graphics, Style parentStyle, int depth) {
+			String tag = element.getTagName();
+			switch (tag) {
+			case "svg":
+			case "g":
+			case "use":
+			case "path":
+			case "rect":
+			case "circle":
+			case "ellipse":
+				break;
+			default:
+				// definitions, or not supported
+				return;
+			}
+
+			Map<String, String> properties = properties(element);
+			if ("none".equals(properties.get("display"))) {
+				return;
+			}
+			Style style = parentStyle.derive(properties);
+
+			Graphics2D g = (Graphics2D) graphics.create();
+			try {
+				if (element != root) {
+					g.transform(transform(element.getAttribute("transform")));
+				}
+				String opacity = properties.get("opacity");
+				if (opacity != null) {
+					Composite composite = g.getComposite();
+					float alpha = composite instanceof AlphaComposite ? ((AlphaComposite) composite).getAlpha() : 1;
+					g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER,
+							clamp(alpha * (float) number(opacity, 1))));
+				}
+				Shape clip = clipPath(properties.get("clip-path"), depth);
+				if (clip != null) {
+					g.clip(clip);
+				}
+
+				switch (tag) {
+				case "svg":
+				case "g":
+					for (Element child : children(element)) {
+						render(child, g, style, depth);
+					}
+					break;
+				case "use":
+					Element referenced = reference(element);
+					if (referenced != null && depth < MAX_DEPTH) {
+						g.translate(length(element.getAttribute("x"), 0, viewWidth),
+								length(element.getAttribute("y"), 0, viewHeight));
+						render(referenced, g, style, depth + 1);
+					}
+					break;
+				default:
+					draw(g, shape(element, style.windingRule), style);
+				}
+			} finally {
+				g.dispose();
+			}
+		}
+
+		/**
+		 * Fills and strokes a shape.
+		 *
+		 * @param g
+		 *            Graphics where the shape is drawn.
+		 * @param shape
+		 *            Shape, or null if there is none.
+		 * @param style
+		 *            Style of the shape.
+		 */
+		private void draw(Graphics2D g, Shape shape, Style style) {
+			if (shape == null) {
+				return;
+			}
+			Rectangle2D bounds = shape.getBounds2D();
+			Paint fill = paint(style.fill, bounds, style.fillOpacity);
+			if (fill != null) {
+				g.setPaint(fill);
+				g.fill(shape);
+			}
+			Paint stroke = paint(style.stroke, bounds, style.strokeOpacity);
+			if (stroke != null && style.strokeWidth > 0) {
+				g.setPaint(stroke);
+				g.setStroke(new BasicStroke(style.strokeWidth, style.lineCap, style.lineJoin,
+						Math.max(1, style.miterLimit), style.dashes, 0));
+				g.draw(shape);
+			}
+		}
+
+		/**
+		 * Creates the geometry of a shape element.
+		 *
+		 * @param element
+		 *            Shape element.
+		 * @param windingRule
+		 *            Winding rule of paths.
+		 * @return Shape, or null if the element is not a shape or is empty.
+		 */
+		private Shape shape(Element element, int windingRule) {
+			switch (element.getTagName()) {
+			case "path":
+				return path(element.getAttribute("d"), windingRule);
+			case "rect": {
+				double width = length(element.getAttribute("width"), 0, viewWidth);
+				double height = length(element.getAttribute("height"), 0, viewHeight);
+				if (width <= 0 || height <= 0) {
+					return null;
+				}
+				double x = length(element.getAttribute("x"), 0, viewWidth);
+				double y = length(element.getAttribute("y"), 0, viewHeight);
+				double rx = length(element.getAttribute("rx"), -1, viewWidth);
+				double ry = length(element.getAttribute("ry"), -1, viewHeight);
+				// either radius defaults to the other one
+				rx = rx < 0 ? Math.max(ry, 0) : rx;
+				ry = ry < 0 ? rx : ry;
+				if (rx > 0 && ry > 0) {
+					return new RoundRectangle2D.Double(x, y, width, height, Math.min(2 * rx, width),
+							Math.min(2 * ry, height));
+				}
+				return new Rectangle2D.Double(x, y, width, height);
+			}
+			case "circle": {
+				double r = length(element.getAttribute("r"), 0, viewWidth);
+				return r <= 0 ? null
+						: new Ellipse2D.Double(length(element.getAttribute("cx"), 0, viewWidth) - r,
+								length(element.getAttribute("cy"), 0, viewHeight) - r, 2 * r, 2 * r);
+			}
+			case "ellipse": {
+				double rx = length(element.getAttribute("rx"), 0, viewWidth);
+				double ry = length(element.getAttribute("ry"), 0, viewHeight);
+				return rx <= 0 || ry <= 0 ? null
+						: new Ellipse2D.Double(length(element.getAttribute("cx"), 0, viewWidth) - rx,
+								length(element.getAttribute("cy"), 0, viewHeight) - ry, 2 * rx, 2 * ry);
+			}
+			default:
+				return null;
+			}
+		}
+
+		/**
+		 * Builds the clipping path referenced by an element.
+		 *
+		 * @param value
+		 *            Value of the clip-path property, i.e. url(#id).
+		 * @param depth
+		 *            Number of references followed so far.
+		 * @return Clipping shape, or null if there is none.
+		 */
+		private Shape clipPath(String value, int depth) {
+			Element clipPath = url(value);
+			if (clipPath == null || !"clipPath".equals(clipPath.getTagName())) {
+				return null;
+			}
+			String id = clipPath.getAttribute("id");
+			Shape clip = clipPaths.get(id);
+			if (clip == null) {
+				Area area = new Area();
+				for (Element child : children(clipPath)) {
+					AffineTransform transform = transform(child.getAttribute("transform"));
+					Element shapeElement = child;
+					if ("use".equals(child.getTagName())) {
+						shapeElement = reference(child);
+						if (shapeElement == null) {
+							continue;
+						}
+						transform.translate(length(child.getAttribute("x"), 0, viewWidth),
+								length(child.getAttribute("y"), 0, viewHeight));
+						transform.concatenate(transform(shapeElement.getAttribute("transform")));
+					}
+					Shape shape = shape(shapeElement, Path2D.WIND_NON_ZERO);
+					if (shape != null) {
+						area.add(new Area(transform.createTransformedShape(shape)));
+					}
+				}
+				clip = transform(clipPath.getAttribute("transform")).createTransformedShape(area);
+				clipPaths.put(id, clip);
+			}
+			return clip;
+		}
+
+		/**
+		 * Creates the paint for a fill or stroke.
+		 *
+		 * @param value
+		 *            Color, url(#id) of a gradient, none, or null.
+		 * @param bounds
+		 *            Bounds of the shape being painted.
+		 * @param opacity
+		 *            Opacity of the fill or stroke.
+		 * @return Paint, or null if nothing is to be painted.
+		 */
+		private Paint paint(String value, Rectangle2D bounds, float opacity) {
+			if (value == null || value.equals("none")) {
+				return null;
+			}
+			if (value.startsWith("url(")) {
+				Element gradient = url(value);
+				return gradient == null ? null : gradient(gradient, bounds, opacity);
+			}
+			return color(value, opacity);
+		}
+
+		/**
+		 * Creates the paint for a gradient, following the references to other
+		 * gradients for any attribute or stops not defined.
+		 *
+		 * @param gradient
+		 *            Gradient element.
+		 * @param bounds
+		 *            Bounds of the shape being painted.
+		 * @param opacity
+		 *            Opacity of the fill or stroke.
+		 * @return Paint, or null if the gradient has no stops.
+		 */
+		private Paint gradient(Element gradient, Rectangle2D bounds, float opacity) {
+			String tag = gradient.getTagName();
+			boolean linear = tag.equals("linearGradient");
+			if (!linear && !tag.equals("radialGradient")) {
+				return null;
+			}
+
+			Map<String, String> attributes = new HashMap<>();
+			List<Element> stops = null;
+			Element current = gradient;
+			for (int depth = 0; current != null && depth < MAX_DEPTH; depth++) {
+				for (String name : new String[] { "x1", "y1", "x2", "y2", "cx", "cy", "r", "fx", "fy",
+						"gradientUnits", "gradientTransform", "spreadMethod" }) {
+					if (current.hasAttribute(name)) {
+						attributes.putIfAbsent(name, current.getAttribute(name));
+					}
+				}
+				if (stops == null) {
+					List<Element> own = children(current);
+					own.removeIf(e -> !e.getTagName().equals("stop"));
+					stops = own.isEmpty() ? null : own;
+				}
+				current = reference(current);
+			}
+			if (stops == null) {
+				return null;
+			}
+
+			// fractions must be strictly increasing
+			List<Float> fractions = new ArrayList<>();
+			List<Color> colors = new ArrayList<>();
+			float previous = -1;
+			for (Element stop : stops) {
+				Map<String, String> properties = properties(stop);
+				float fraction = clamp((float) length(stop.getAttribute("offset"), 0, 1));
+				fraction = Math.max(fraction, Math.nextUp(previous));
+				if (fraction > 1) {
+					break;
+				}
+				String stopColor = properties.getOrDefault("stop-color", "#000");
+				Color color = color(stopColor,
+						opacity * clamp((float) number(properties.get("stop-opacity"), 1)));
+				if (color != null) {
+					fractions.add(fraction);
+					colors.add(color);
+					previous = fraction;
+				}
+			}
+			if (colors.isEmpty()) {
+				return null;
+			}
+			Color last = colors.get(colors.size() - 1);
+			if (colors.size() == 1) {
+				return last;
+			}
+
+			AffineTransform transform = new AffineTransform();
+			double width = viewWidth;
+			double height = viewHeight;
+			if (!"userSpaceOnUse".equals(attributes.get("gradientUnits"))) {
+				if (bounds.getWidth() <= 0 || bounds.getHeight() <= 0) {
+					return last;
+				}
+				transform.translate(bounds.getX(), bounds.getY());
+				transform.scale(bounds.getWidth(), bounds.getHeight());
+				width = 1;
+				height = 1;
+			}
+			transform.concatenate(transform(attributes.get("gradientTransform")));
+
+			String spreadMethod = attributes.get("spreadMethod");
+			CycleMethod cycle = "reflect".equals(spreadMethod) ? CycleMethod.REFLECT
+					: "repeat".equals(spreadMethod) ? CycleMethod.REPEAT : CycleMethod.NO_CYCLE;
+			float[] fractionArray = new float[fractions.size()];
+			for (int i = 0; i < fractionArray.length; i++) {
+				fractionArray[i] = fractions.get(i);
+			}
+			Color[] colorArray = colors.toArray(new Color[0]);
+
+			try {
+				if (linear) {
+					Point2D start = new Point2D.Double(length(attributes.get("x1"), 0, width),
+							length(attributes.get("y1"), 0, height));
+					Point2D end = new Point2D.Double(length(attributes.get("x2"), width, width),
+							length(attributes.get("y2"), 0, height));
+					if (start.equals(end)) {
+						return last;
+					}
+					return new LinearGradientPaint(start, end, fractionArray, colorArray, cycle, ColorSpaceType.SRGB,
+							transform);
+				}
+				Point2D center = new Point2D.Double(length(attributes.get("cx"), width / 2, width),
+						length(attributes.get("cy"), height / 2, height));
+				double radius = length(attributes.get("r"), Math.hypot(width, height) / Math.sqrt(2) / 2,
+						Math.hypot(width, height) / Math.sqrt(2));
+				if (radius <= 0) {
+					return last;
+				}
+				Point2D focus = new Point2D.Double(length(attributes.get("fx"), center.getX(), width),
+						length(attributes.get("fy"), center.getY(), height));
+				return new RadialGradientPaint(center, (float) radius, focus, fractionArray, colorArray, cycle,
+						ColorSpaceType.SRGB, transform);
+			} catch (IllegalArgumentException e) {
+				// e.g. a transform that cannot be inverted
+				return last;
+			}
+		}
+
+		/**
+		 * Finds the element referenced by a url(#id) value.
+		 *
+		 * @param value
+		 *            Property value.
+		 * @return Element referenced, or null if there is none.
+		 */
+		private Element url(String value) {
+			if (value == null || !value.startsWith("url(")) {
+				return null;
+			}
+			int start = value.indexOf('#');
+			int end = value.indexOf(')');
+			return start < 0 || end < start ? null : ids.get(value.substring(start + 1, end).trim());
+		}
+
+		/**
+		 * Finds the element referenced by the href attribute of an element.
+		 *
+		 * @param element
+		 *            Referencing element.
+		 * @return Element referenced, or null if there is none.
+		 */
+		private Element reference(Element element) {
+			String href = element.getAttribute("xlink:href");
+			if (href.isEmpty()) {
+				href = element.getAttribute("href");
+			}
+			return href.startsWith("#") ? ids.get(href.substring(1)) : null;
+		}
+	}
+
+	/**
+	 * Style properties inherited by the children of an element.
+	 */
+	private static class Style {
+
+		/**
+		 * Fill color or gradient, or none.
+		 */
+		private String fill = "#000";
+
+		/**
+		 * Opacity of the fill.
+		 */
+		private float fillOpacity = 1;
+
+		/**
+		 * Winding rule of the fill.
+		 */
+		private int windingRule = Path2D.WIND_NON_ZERO;
+
+		/**
+		 * Stroke color or gradient, or none.
+		 */
+		private String stroke = "none";
+
+		/**
+		 * Opacity of the stroke.
+		 */
+		private float strokeOpacity = 1;
+
+		/**
+		 * Width of the stroke.
+		 */
+		private float strokeWidth = 1;
+
+		/**
+		 * Shape at the ends of the stroke.
+		 */
+		private int lineCap = BasicStroke.CAP_BUTT;
+
+		/**
+		 * Shape at the corners of the stroke.
+		 */
+		private int lineJoin = BasicStroke.JOIN_MITER;
+
+		/**
+		 * Limit of mitered corners.
+		 */
+		private float miterLimit = 4;
+
+		/**
+		 * Dash pattern, or null for a solid stroke.
+		 */
+		private float[] dashes;
+
+		/**
+		 * Creates the style of a child element.
+		 *
+		 * @param properties
+		 *            Properties of the child element.
+		 * @return Style of the child element.
+		 */
+		private Style derive(Map<String, String> properties) {
+			Style style = new Style();
+			style.fill = properties.getOrDefault("fill", fill);
+			style.fillOpacity = clamp((float) number(properties.get("fill-opacity"), fillOpacity));
+			String fillRule = properties.get("fill-rule");
+			style.windingRule = fillRule == null ? windingRule
+					: fillRule.equals("evenodd") ? Path2D.WIND_EVEN_ODD : Path2D.WIND_NON_ZERO;
+			style.stroke = properties.getOrDefault("stroke", stroke);
+			style.strokeOpacity = clamp((float) number(properties.get("stroke-opacity"), strokeOpacity));
+			style.strokeWidth = (float) number(properties.get("stroke-width"), strokeWidth);
+			String lineCapValue = properties.getOrDefault("stroke-linecap", "");
+			style.lineCap = lineCapValue.equals("round") ? BasicStroke.CAP_ROUND
+					: lineCapValue.equals("square") ? BasicStroke.CAP_SQUARE
+							: lineCapValue.equals("butt") ? BasicStroke.CAP_BUTT : lineCap;
+			String lineJoinValue = properties.getOrDefault("stroke-linejoin", "");
+			style.lineJoin = lineJoinValue.equals("round") ? BasicStroke.JOIN_ROUND
+					: lineJoinValue.equals("bevel") ? BasicStroke.JOIN_BEVEL
+							: lineJoinValue.equals("miter") ? BasicStroke.JOIN_MITER : lineJoin;
+			style.miterLimit = (float) number(properties.get("stroke-miterlimit"), miterLimit);
+			String dashArray = properties.get("stroke-dasharray");
+			if (dashArray == null) {
+				style.dashes = dashes;
+			} else if (!dashArray.equals("none")) {
+				double[] values = numbers(dashArray);
+				float total = 0;
+				style.dashes = new float[values.length % 2 == 0 ? values.length : values.length * 2];
+				for (int i = 0; i < style.dashes.length; i++) {
+					style.dashes[i] = (float) Math.max(0, values[i % values.length]);
+					total += style.dashes[i];
+				}
+				if (total == 0) {
+					style.dashes = null;
+				}
+			}
+			return style;
+		}
+	}
+
+	/**
+	 * Reads the presentation attributes and style properties of an element, the
+	 * latter taking precedence.
+	 *
+	 * @param element
+	 *            Element.
+	 * @return Properties, without any values set to inherit.
+	 */
+	private static Map<String, String> properties(Element element) {
+		Map<String, String> properties = new HashMap<>();
+		for (String name : new String[] { "fill", "fill-opacity", "fill-rule", "stroke", "stroke-opacity",
+				"stroke-width", "stroke-linecap", "stroke-linejoin", "stroke-miterlimit", "stroke-dasharray",
+				"opacity", "clip-path", "display", "stop-color", "stop-opacity" }) {
+			if (element.hasAttribute(name)) {
+				properties.put(name, element.getAttribute(name).trim());
+			}
+		}
+		for (String declaration : element.getAttribute("style").split(";")) {
+			int colon = declaration.indexOf(':');
+			if (colon > 0) {
+				properties.put(declaration.substring(0, colon).trim(), declaration.substring(colon + 1).trim());
+			}
+		}
+		properties.values().removeIf(value -> value.equals("inherit"));
+		return properties;
+	}
+
+	/**
+	 * Returns the child elements of an element.
+	 *
+	 * @param element
+	 *            Parent element.
+	 * @return Child elements, in document order.
+	 */
+	private static List<Element> children(Element element) {
+		List<Element> children = new ArrayList<>();
+		for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+			if (child instanceof Element) {
+				children.add((Element) child);
+			}
+		}
+		return children;
+	}
+
+	/**
+	 * Parses a color.
+	 *
+	 * @param value
+	 *            Color in #rgb, #rrggbb or rgb(r, g, b) format, or one of the
+	 *            basic color names.
+	 * @param opacity
+	 *            Opacity applied to the color.
+	 * @return Color, or null if the value is not supported.
+	 */
+	private static Color color(String value, float opacity) {
+		int rgb;
+		try {
+			if (value.startsWith("#") && value.length() == 4) {
+				int r = Character.digit(value.charAt(1), 16);
+				int g = Character.digit(value.charAt(2), 16);
+				int b = Character.digit(value.charAt(3), 16);
+				if (r < 0 || g < 0 || b < 0) {
+					return null;
+				}
+				rgb = r * 0x110000 + g * 0x1100 + b * 0x11;
+			} else if (value.startsWith("#") && value.length() == 7) {
+				rgb = Integer.parseInt(value.substring(1), 16);
+			} else if (value.startsWith("rgb(")) {
+				double[] components = numbers(value.substring(4, value.indexOf(')')));
+				if (components.length != 3) {
+					return null;
+				}
+				rgb = 0;
+				for (double component : components) {
+					rgb = rgb << 8 | (int) Math.max(0, Math.min(255, component));
+				}
+			} else {
+				switch (value.toLowerCase(Locale.ROOT)) {
+				case "black":
+					rgb = 0x000000;
+					break;
+				case "white":
+					rgb = 0xffffff;
+					break;
+				case "red":
+					rgb = 0xff0000;
+					break;
+				case "green":
+					rgb = 0x008000;
+					break;
+				case "blue":
+					rgb = 0x0000ff;
+					break;
+				default:
+					logger.fine(String.format("Color %s not supported", value));
+					return null;
+				}
+			}
+		} catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+			logger.fine(String.format("Invalid color %s", value));
+			return null;
+		}
+		return new Color(rgb >> 16 & 0xff, rgb >> 8 & 0xff, rgb & 0xff, Math.round(clamp(opacity) * 255));
+	}
+
+	/**
+	 * Parses a transform list.
+	 *
+	 * @param value
+	 *            Transform list, e.g. translate(10 20) scale(2), or null.
+	 * @return Transform, which is the identity if there is none.
+	 */
+	private static AffineTransform transform(String value) {
+		AffineTransform transform = new AffineTransform();
+		if (value == null || value.isEmpty()) {
+			return transform;
+		}
+		Matcher matcher = TRANSFORM.matcher(value);
+		while (matcher.find()) {
+			double[] a = numbers(matcher.group(2));
+			switch (matcher.group(1)) {
+			case "matrix":
+				if (a.length == 6) {
+					transform.concatenate(new AffineTransform(a));
+				}
+				break;
+			case "translate":
+				if (a.length > 0) {
+					transform.translate(a[0], a.length > 1 ? a[1] : 0);
+				}
+				break;
+			case "scale":
+				if (a.length > 0) {
+					transform.scale(a[0], a.length > 1 ? a[1] : a[0]);
+				}
+				break;
+			case "rotate":
+				if (a.length == 3) {
+					transform.rotate(Math.toRadians(a[0]), a[1], a[2]);
+				} else if (a.length > 0) {
+					transform.rotate(Math.toRadians(a[0]));
+				}
+				break;
+			case "skewX":
+				if (a.length > 0) {
+					transform.shear(Math.tan(Math.toRadians(a[0])), 0);
+				}
+				break;
+			case "skewY":
+				if (a.length > 0) {
+					transform.shear(0, Math.tan(Math.toRadians(a[0])));
+				}
+				break;
+			default:
+				logger.fine(String.format("Transform %s not supported", matcher.group(1)));
+			}
+		}
+		return transform;
+	}
+
+	/**
+	 * Parses path data. As done by browsers, the path is rendered up to the
+	 * first error found.
+	 *
+	 * @param data
+	 *            Path data.
+	 * @param windingRule
+	 *            Winding rule of the path.
+	 * @return Path, or null if it is empty.
+	 */
+	private static Shape path(String data, int windingRule) {
+		Path2D.Double path = new Path2D.Double(windingRule);
+		NumberScanner scanner = new NumberScanner(data);
+		char command = 0;
+		char previous = 0;
+		double x = 0, y = 0, startX = 0, startY = 0, controlX = 0, controlY = 0;
+		try {
+			while (scanner.skipSeparators()) {
+				char next = scanner.peek();
+				if (Character.isLetter(next)) {
+					command = next;
+					scanner.skip();
+				} else if (command == 0 || command == 'Z' || command == 'z') {
+					throw new IllegalArgumentException("Missing command at " + next);
+				}
+
+				boolean relative = Character.isLowerCase(command);
+				double originX = relative ? x : 0;
+				double originY = relative ? y : 0;
+				char type = Character.toUpperCase(command);
+				switch (type) {
+				case 'M':
+					x = originX + scanner.next();
+					y = originY + scanner.next();
+					path.moveTo(x, y);
+					startX = x;
+					startY = y;
+					// further coordinate pairs are lines
+					command = relative ? 'l' : 'L';
+					break;
+				case 'L':
+					x = originX + scanner.next();
+					y = originY + scanner.next();
+					path.lineTo(x, y);
+					break;
+				case 'H':
+					x = originX + scanner.next();
+					path.lineTo(x, y);
+					break;
+				case 'V':
+					y = originY + scanner.next();
+					path.lineTo(x, y);
+					break;
+				case 'C':
+				case 'S': {
+					double x1;
+					double y1;
+					if (type == 'C') {
+						x1 = originX + scanner.next();
+						y1 = originY + scanner.next();
+					} else if (previous == 'C' || previous == 'S') {
+						x1 = 2 * x - controlX;
+						y1 = 2 * y - controlY;
+					} else {
+						x1 = x;
+						y1 = y;
+					}
+					controlX = originX + scanner.next();
+					controlY = originY + scanner.next();
+					x = originX + scanner.next();
+					y = originY + scanner.next();
+					path.curveTo(x1, y1, controlX, controlY, x, y);
+					break;
+				}
+				case 'Q':
+				case 'T':
+					if (type == 'Q') {
+						controlX = originX + scanner.next();
+						controlY = originY + scanner.next();
+					} else if (previous == 'Q' || previous == 'T') {
+						controlX = 2 * x - controlX;
+						controlY = 2 * y - controlY;
+					} else {
+						controlX = x;
+						controlY = y;
+					}
+					x = originX + scanner.next();
+					y = originY + scanner.next();
+					path.quadTo(controlX, controlY, x, y);
+					break;
+				case 'A': {
+					double rx = scanner.next();
+					double ry = scanner.next();
+					double angle = scanner.next();
+					boolean largeArc = scanner.nextFlag();
+					boolean sweep = scanner.nextFlag();
+					double endX = originX + scanner.next();
+					double endY = originY + scanner.next();
+					arcTo(path, x, y, rx, ry, angle, largeArc, sweep, endX, endY);
+					x = endX;
+					y = endY;
+					break;
+				}
+				case 'Z':
+					path.closePath();
+					x = startX;
+					y = startY;
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown command " + command);
+				}
+				previous = type;
+			}
+		} catch (IllegalArgumentException e) {
+			logger.fine(String.format("Invalid path data: %s", e.getMessage()));
+		}
+		return path.getCurrentPoint() == null ? null : path;
+	}
+
+	/**
+	 * Adds an elliptical arc to a path, converting its SVG endpoint
+	 * parameterization into the center parameterization used by Java2D.
+	 *
+	 * @param path
+	 *            Path where the arc is added.
+	 * @param x0
+	 *            Start point X.
+	 * @param y0
+	 *            Start point Y.
+	 * @param rx
+	 *            Radius X.
+	 * @param ry
+	 *            Radius Y.
+	 * @param angle
+	 *            Rotation of the ellipse, in degrees.
+	 * @param largeArc
+	 *            Whether the arc spans more than 180 degrees.
+	 * @param sweep
+	 *            Whether the arc is drawn in the positive angle direction.
+	 * @param x
+	 *            End point X.
+	 * @param y
+	 *            End point Y.
+	 */
+	private static void arcTo(Path2D path, double x0, double y0, double rx, double ry, double angle,
+			boolean largeArc, boolean sweep, double x, double y) {
+		if (x0 == x && y0 == y) {
+			return;
+		}
+		rx = Math.abs(rx);
+		ry = Math.abs(ry);
+		if (rx == 0 || ry == 0) {
+			path.lineTo(x, y);
+			return;
+		}
+
+		double phi = Math.toRadians(angle % 360);
+		double cos = Math.cos(phi);
+		double sin = Math.sin(phi);
+		double dx = (x0 - x) / 2;
+		double dy = (y0 - y) / 2;
+		double x1 = cos * dx + sin * dy;
+		double y1 = -sin * dx + cos * dy;
+
+		// radii too small to reach the end point are scaled up
+		double lambda = x1 * x1 / (rx * rx) + y1 * y1 / (ry * ry);
+		if (lambda > 1) {
+			rx *= Math.sqrt(lambda);
+			ry *= Math.sqrt(lambda);
+		}
+
+		double numerator = rx * rx * ry * ry - rx * rx * y1 * y1 - ry * ry * x1 * x1;
+		double denominator = rx * rx * y1 * y1 + ry * ry * x1 * x1;
+		double coefficient = (largeArc == sweep ? -1 : 1) * Math.sqrt(Math.max(0, numerator / denominator));
+		double centerX1 = coefficient * rx * y1 / ry;
+		double centerY1 = -coefficient * ry * x1 / rx;
+		double centerX = cos * centerX1 - sin * centerY1 + (x0 + x) / 2;
+		double centerY = sin * centerX1 + cos * centerY1 + (y0 + y) / 2;
+
+		double ux = (x1 - centerX1) / rx;
+		double uy = (y1 - centerY1) / ry;
+		double vx = (-x1 - centerX1) / rx;
+		double vy = (-y1 - centerY1) / ry;
+		double start = Math.atan2(uy, ux);
+		double extent = Math.atan2(ux * vy - uy * vx, ux * vx + uy * vy);
+		if (!sweep && extent > 0) {
+			extent -= 2 * Math.PI;
+		} else if (sweep && extent < 0) {
+			extent += 2 * Math.PI;
+		}
+
+		// Java2D angles grow counterclockwise on screen, SVG angles clockwise
+		Arc2D arc = new Arc2D.Double(-rx, -ry, 2 * rx, 2 * ry, -Math.toDegrees(start), -Math.toDegrees(extent),
+				Arc2D.OPEN);
+		AffineTransform transform = AffineTransform.getTranslateInstance(centerX, centerY);
+		transform.rotate(phi);
+		path.append(transform.createTransformedShape(arc), true);
+	}
+
+	/**
+	 * Parses a length.
+	 *
+	 * @param value
+	 *            Length, optionally in pixels or as a percentage, or null.
+	 * @param defaultValue
+	 *            Value if there is none or it is not valid.
+	 * @param reference
+	 *            Length corresponding to 100%.
+	 * @return Length.
+	 */
+	private static double length(String value, double defaultValue, double reference) {
+		if (value == null || value.isEmpty()) {
+			return defaultValue;
+		}
+		value = value.trim();
+		if (value.endsWith("%")) {
+			return number(value.substring(0, value.length() - 1), defaultValue * 100 / reference) * reference / 100;
+		}
+		return number(value.endsWith("px") ? value.substring(0, value.length() - 2) : value, defaultValue);
+	}
+
+	/**
+	 * Parses a number.
+	 *
+	 * @param value
+	 *            Number, or null.
+	 * @param defaultValue
+	 *            Value if there is none or it is not valid.
+	 * @return Number.
+	 */
+	private static double number(String value, double defaultValue) {
+		if (value == null || value.isEmpty()) {
+			return defaultValue;
+		}
+		try {
+			return Double.parseDouble(value.trim());
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * Parses a list of numbers, separated by whitespace and/or commas.
+	 *
+	 * @param value
+	 *            List of numbers, or null.
+	 * @return Numbers, up to the first one that is not valid.
+	 */
+	private static double[] numbers(String value) {
+		if (value == null) {
+			return new double[0];
+		}
+		List<Double> numbers = new ArrayList<>();
+		NumberScanner scanner = new NumberScanner(value);
+		try {
+			while (scanner.skipSeparators()) {
+				numbers.add(scanner.next());
+			}
+		} catch (IllegalArgumentException e) {
+			// the numbers read so far are used
+		}
+		return numbers.stream().mapToDouble(Double::doubleValue).toArray();
+	}
+
+	/**
+	 * Restricts a value to the range between 0 and 1.
+	 *
+	 * @param value
+	 *            Value.
+	 * @return Value restricted to the range.
+	 */
+	private static float clamp(float value) {
+		return Math.max(0, Math.min(1, value));
+	}
+
+	/**
+	 * Reads numbers in the compact SVG syntax, where separators may be omitted
+	 * whenever the numbers are still unambiguous (e.g. 1.5.5-2 is 1.5, .5 and
+	 * -2).
+	 */
+	private static class NumberScanner {
+
+		/**
+		 * Text being read.
+		 */
+		private final String text;
+
+		/**
+		 * Position of the next character to be read.
+		 */
+		private int position;
+
+		/**
+		 * Creates a new instance.
+		 *
+		 * @param text
+		 *            Text to be read.
+		 */
+		private NumberScanner(String text) {
+			this.text = text;
+		}
+
+		/**
+		 * Skips any whitespace and commas.
+		 *
+		 * @return Whether there is anything else to be read.
+		 */
+		private boolean skipSeparators() {
+			while (position < text.length()
+					&& (Character.isWhitespace(text.charAt(position)) || text.charAt(position) == ',')) {
+				position++;
+			}
+			return position < text.length();
+		}
+
+		/**
+		 * Returns the next character, without reading it.
+		 *
+		 * @return Next character.
+		 */
+		private char peek() {
+			return text.charAt(position);
+		}
+
+		/**
+		 * Skips the next character.
+		 */
+		private void skip() {
+			position++;
+		}
+
+		/**
+		 * Reads the next number.
+		 *
+		 * @return Number read.
+		 * @throws IllegalArgumentException
+		 *             If there is no number to be read.
+		 */
+		private double next() {
+			skipSeparators();
+			int start = position;
+			if (position < text.length() && (text.charAt(position) == '-' || text.charAt(position) == '+')) {
+				position++;
+			}
+			int digits = skipDigits();
+			if (position < text.length() && text.charAt(position) == '.') {
+				position++;
+				digits += skipDigits();
+			}
+			if (digits == 0) {
+				position = start;
+				throw new IllegalArgumentException("Number expected at " + start);
+			}
+			if (position < text.length() && (text.charAt(position) == 'e' || text.charAt(position) == 'E')) {
+				int exponent = position++;
+				if (position < text.length() && (text.charAt(position) == '-' || text.charAt(position) == '+')) {
+					position++;
+				}
+				if (skipDigits() == 0) {
+					position = exponent;
+				}
+			}
+			return Double.parseDouble(text.substring(start, position));
+		}
+
+		/**
+		 * Reads an arc flag, which may not be followed by a separator.
+		 *
+		 * @return Flag read.
+		 * @throws IllegalArgumentException
+		 *             If there is no flag to be read.
+		 */
+		private boolean nextFlag() {
+			skipSeparators();
+			if (position < text.length() && (text.charAt(position) == '0' || text.charAt(position) == '1')) {
+				return text.charAt(position++) == '1';
+			}
+			throw new IllegalArgumentException("Flag expected at " + position);
+		}
+
+		/**
+		 * Skips decimal digits.
+		 *
+		 * @return Number of digits skipped.
+		 */
+		private int skipDigits() {
+			int start = position;
+			while (position < text.length() && Character.isDigit(text.charAt(position))) {
+				position++;
+			}
+			return position - start;
+		}
+	}
+}
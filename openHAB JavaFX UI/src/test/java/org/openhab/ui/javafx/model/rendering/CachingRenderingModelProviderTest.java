@@ -0,0 +1,215 @@
+package org.openhab.ui.javafx.model.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+import org.openhab.ui.javafx.model.Component;
+import org.openhab.ui.javafx.model.container.Container;
+import org.openhab.ui.javafx.model.container.NavigableContainer;
+import org.openhab.ui.javafx.model.container.Page;
+
+/**
+ * Checks how {@link CachingRenderingModelProvider} shares loads between
+ * threads, handles invalidations during a load and weighs its models.
+ *
+ * @author Flavio Costa
+ */
+public class CachingRenderingModelProviderTest {
+
+	/**
+	 * Time to wait for anything to happen, in seconds.
+	 */
+	private static final long TIMEOUT = 5;
+
+	/**
+	 * URI of the page loaded.
+	 */
+	private static final URI PAGE = URI.create("sitemap://demo/page/");
+
+	/**
+	 * Runs the retrievals that wait for the delegate.
+	 */
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	/**
+	 * Number of models loaded by the delegate.
+	 */
+	private final AtomicInteger loadCount = new AtomicInteger();
+
+	/**
+	 * Counted down when the delegate starts loading a model.
+	 */
+	private final CountDownLatch loading = new CountDownLatch(1);
+
+	/**
+	 * Released to let the delegate finish loading.
+	 */
+	private final CountDownLatch loaded = new CountDownLatch(1);
+
+	/**
+	 * Cache being tested, whose delegate waits for {@link #loaded}, weighing
+	 * each model as 1.
+	 */
+	private final CachingRenderingModelProvider cache = new CachingRenderingModelProvider(this::load, 4, 10,
+			TimeUnit.MINUTES.toMillis(1), model -> 1);
+
+	@After
+	public void tearDown() {
+		loaded.countDown();
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void sharesLoadBetweenThreads() throws Exception {
+		Future<NavigableContainer<?, Container<?, ?>>> first = executor.submit(() -> cache.retrieve(PAGE));
+		assertTrue(loading.await(TIMEOUT, TimeUnit.SECONDS));
+		Future<NavigableContainer<?, Container<?, ?>>> second = executor.submit(() -> cache.retrieve(PAGE));
+		Future<NavigableContainer<?, Container<?, ?>>> prefetched = executor.submit(() -> cache.prefetch(PAGE));
+		// gives them time to find the load in progress
+		Thread.sleep(100);
+		loaded.countDown();
+
+		assertSame(first.get(TIMEOUT, TimeUnit.SECONDS), second.get(TIMEOUT, TimeUnit.SECONDS));
+		assertSame(first.get(), prefetched.get(TIMEOUT, TimeUnit.SECONDS));
+		assertSame(first.get(), cache.retrieve(PAGE));
+		assertEquals(1, loadCount.get());
+		assertEquals(1, cache.getMissCount());
+	}
+
+	@Test
+	public void doesNotCacheModelInvalidatedWhileLoading() throws Exception {
+		Future<NavigableContainer<?, Container<?, ?>>> invalidated = executor.submit(() -> cache.retrieve(PAGE));
+		assertTrue(loading.await(TIMEOUT, TimeUnit.SECONDS));
+		cache.invalidate(URI.create("sitemap://demo/"));
+		loaded.countDown();
+
+		NavigableContainer<?, Container<?, ?>> model = invalidated.get(TIMEOUT, TimeUnit.SECONDS);
+		assertEquals(0, cache.size());
+		assertNotSame(model, cache.retrieve(PAGE));
+		assertEquals(2, loadCount.get());
+	}
+
+	@Test
+	public void weighsModelsAgainOnlyOnceDecoded() {
+		AtomicInteger weighCount = new AtomicInteger();
+		CachingRenderingModelProvider lazyCache = new CachingRenderingModelProvider(generatedSitemaps(), 4, 100,
+				TimeUnit.MINUTES.toMillis(1), model -> {
+					weighCount.incrementAndGet();
+					return CachingRenderingModelProvider.countComponents(model);
+				});
+		URI first = URI.create("sitemap://first/");
+		URI second = URI.create("sitemap://second/");
+
+		// sitemap and frame, with 40 widgets not decoded yet
+		NavigableContainer<?, Container<?, ?>> sitemap = lazyCache.retrieve(first);
+		lazyCache.retrieve(second);
+		assertEquals(84, lazyCache.getTotalWeight());
+		assertSame(sitemap, lazyCache.retrieve(first));
+		assertEquals(2, weighCount.get());
+
+		// each widget decoded adds its icon, label and control
+		List<? extends Component<?>> widgets = sitemap.getComponents().get(0).getComponents();
+		widgets.get(0);
+		assertEquals(87, lazyCache.getTotalWeight());
+		assertEquals(3, weighCount.get());
+
+		// and the least recently used model is evicted once too heavy
+		for (int i = 1; i < widgets.size(); i++) {
+			widgets.get(i);
+		}
+		lazyCache.retrieve(second);
+		assertEquals(1, lazyCache.size());
+		assertEquals(42, lazyCache.getTotalWeight());
+	}
+
+	@Test
+	public void evictsPrefetchedModelsFirst() {
+		loaded.countDown();
+		for (int i = 0; i < 3; i++) {
+			cache.retrieve(page("shown-" + i));
+		}
+		cache.prefetch(page("linked-0"));
+		cache.prefetch(page("linked-1"));
+		assertEquals(Arrays.asList(page("shown-2"), page("shown-1"), page("shown-0"), page("linked-1")),
+				new ArrayList<>(cache.getCachedModels(URI.create("sitemap://demo/")).keySet()));
+
+		// shown once retrieved, prefetching does not make it more recently used
+		cache.retrieve(page("linked-1"));
+		cache.prefetch(page("shown-0"));
+		cache.retrieve(page("shown-3"));
+		assertEquals(Arrays.asList(page("shown-3"), page("linked-1"), page("shown-2"), page("shown-1")),
+				new ArrayList<>(cache.getCachedModels(URI.create("sitemap://demo/")).keySet()));
+		assertEquals(6, loadCount.get());
+	}
+
+	/**
+	 * Returns the URI of a page of the demo sitemap.
+	 *
+	 * @param name
+	 *            Page name.
+	 * @return Page URI.
+	 */
+	private static URI page(String name) {
+		return URI.create("sitemap://demo/" + name + "/");
+	}
+
+	/**
+	 * Loads lazily decoded sitemaps generated in memory, each with a frame of 40
+	 * widgets.
+	 *
+	 * @return Provider of the generated sitemaps.
+	 */
+	private static RenderingModelProvider generatedSitemaps() {
+		AbstractJsonRenderingModel provider = new AbstractJsonRenderingModel() {
+
+			@Override
+			protected InputStream open(URI uri, String documentPath) {
+				SitemapGenerator generator = new SitemapGenerator();
+				generator.setId(uri.getHost());
+				generator.setFrames(1);
+				generator.setWidgetsPerFrame(40);
+				generator.setGroupDepth(0);
+				String document = generator.generate().get(documentPath);
+				return document == null ? null : new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8));
+			}
+		};
+		provider.setLazyThreshold(20);
+		return provider;
+	}
+
+	/**
+	 * Loads a new model, after waiting for {@link #loaded}.
+	 *
+	 * @param uri
+	 *            URI of the model.
+	 * @return New model.
+	 */
+	private NavigableContainer<?, Container<?, ?>> load(URI uri) {
+		loadCount.incrementAndGet();
+		loading.countDown();
+		try {
+			loaded.await(TIMEOUT, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return new Page();
+	}
+}
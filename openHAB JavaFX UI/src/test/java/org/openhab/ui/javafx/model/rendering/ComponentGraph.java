@@ -0,0 +1,81 @@
+package org.openhab.ui.javafx.model.rendering;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.List;
+
+/**
+ * Describes component graphs as text, so that the graphs produced by different
+ * rendering models can be compared field by field.
+ *
+ * @author Flavio Costa
+ */
+final class ComponentGraph {
+
+	/**
+	 * Not supposed to be instantiated.
+	 */
+	private ComponentGraph() {
+	}
+
+	/**
+	 * Describes an object and everything reachable from it through non-static,
+	 * non-transient fields. Lists are described through iteration, so lazily
+	 * decoded components are decoded.
+	 *
+	 * @param object
+	 *            Object to describe, may be null.
+	 * @return Description of the object graph.
+	 */
+	static String describe(Object object) {
+		StringBuilder description = new StringBuilder();
+		describe(object, description);
+		return description.toString();
+	}
+
+	/**
+	 * Appends the description of an object.
+	 *
+	 * @param object
+	 *            Object to describe, may be null.
+	 * @param description
+	 *            Description being built.
+	 */
+	private static void describe(Object object, StringBuilder description) {
+		if (object == null) {
+			description.append("null");
+			return;
+		}
+
+		Class<?> objectClass = object.getClass();
+		if (object instanceof List) {
+			description.append('[');
+			for (Object element : (List<?>) object) {
+				describe(element, description);
+				description.append(',');
+			}
+			description.append(']');
+		} else if (objectClass.isEnum() || objectClass.getName().startsWith("java.")) {
+			description.append(objectClass.getSimpleName()).append(':').append(object);
+		} else {
+			description.append(objectClass.getSimpleName()).append('{');
+			for (Class<?> c = objectClass; c != Object.class; c = c.getSuperclass()) {
+				for (Field field : c.getDeclaredFields()) {
+					if (Modifier.isStatic(field.getModifiers()) || Modifier.isTransient(field.getModifiers())
+							|| field.isSynthetic()) {
+						continue;
+					}
+					field.setAccessible(true);
+					description.append(field.getName()).append('=');
+					try {
+						describe(field.get(object), description);
+					} catch (IllegalAccessException e) {
+						throw new IllegalStateException(e);
+					}
+					description.append(';');
+				}
+			}
+			description.append('}');
+		}
+	}
+}
@@ -0,0 +1,151 @@
+package org.openhab.ui.javafx.model.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.ui.javafx.model.Component;
+import org.openhab.ui.javafx.model.ComponentType;
+import org.openhab.ui.javafx.model.container.Container;
+import org.openhab.ui.javafx.model.container.NavigableContainer;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
+
+/**
+ * Checks that {@link ComponentTypeAdapter} produces the same component graphs
+ * as {@link ComponentDeserializer} for the demo sitemap.
+ *
+ * @author Flavio Costa
+ */
+public class ComponentTypeAdapterTest {
+
+	/**
+	 * Demo sitemap and one of its pages.
+	 */
+	private static final String[] URIS = { "sitemap://demo/", "sitemap://demo/components-4/" };
+
+	/**
+	 * Deserializes JSON trees with {@link ComponentDeserializer}.
+	 */
+	private Gson gson;
+
+	/**
+	 * Adapter being tested.
+	 */
+	private ComponentTypeAdapter adapter;
+
+	@Before
+	public void setUp() {
+		ComponentDeserializer deserializer = new ComponentDeserializer();
+		gson = new GsonBuilder().registerTypeAdapter(Component.class, deserializer)
+				.registerTypeAdapter(Container.class, deserializer)
+				.registerTypeAdapter(ComponentType.class, new ComponentTypeDeserializer()).create();
+		adapter = new ComponentTypeAdapter(
+				new GsonBuilder().registerTypeAdapter(ComponentType.class, new ComponentTypeDeserializer()).create());
+	}
+
+	@Test
+	public void readsSameGraphAsTreeDeserializer() throws IOException {
+		for (String uri : URIS) {
+			String expected = ComponentGraph.describe(readTree(uri));
+			try (Reader reader = open(uri)) {
+				assertEquals(uri, expected, ComponentGraph.describe(adapter.read(new JsonReader(reader))));
+			}
+		}
+	}
+
+	@Test
+	public void readsSameGraphWithLazyDecoding() {
+		ClasspathResourceRenderingModel model = new ClasspathResourceRenderingModel();
+		for (int threshold : new int[] { 0, 1, AbstractJsonRenderingModel.DEFAULT_LAZY_THRESHOLD }) {
+			model.setLazyThreshold(threshold);
+			for (String uri : URIS) {
+				NavigableContainer<?, Container<?, ?>> container = model.retrieve(URI.create(uri));
+				assertNotNull(uri, container);
+				assertEquals(uri + " with threshold " + threshold, ComponentGraph.describe(readTree(uri)),
+						ComponentGraph.describe(container));
+			}
+		}
+	}
+
+	@Test
+	public void decodesLazyArraysInAnyOrder() throws IOException {
+		StringBuilder json = new StringBuilder("{\"type\":\"page\",\"data\":{\"label\":\"Many\"},\"components\":[");
+		for (int i = 0; i < 500; i++) {
+			json.append(i == 0 ? "" : ",").append("{\"type\":\"widget\",\"components\":[{\"type\":\"label\",")
+					.append("\"data\":\"Widget ").append(i).append("\"}]}");
+		}
+		json.append("]}");
+		String expected = ComponentGraph.describe(adapter.read(new JsonReader(new StringReader(json.toString()))));
+
+		Container<?, ?> page = (Container<?, ?>) new LazyComponentReader(adapter,
+				AbstractJsonRenderingModel.DEFAULT_LAZY_THRESHOLD).read(json.toString().toCharArray());
+		LazyComponentList components = (LazyComponentList) page.getComponents();
+		// every third one, then backwards, so that the pending ranges are compacted
+		for (int i = 0; i < components.size(); i += 3) {
+			components.get(i);
+		}
+		for (int i = components.size() - 1; i >= 0; i--) {
+			components.get(i);
+		}
+		assertEquals(expected, ComponentGraph.describe(page));
+	}
+
+	@Test
+	public void readsBackWhatItWrites() throws IOException {
+		for (String uri : URIS) {
+			Component<?> component = readTree(uri);
+			String json = adapter.toJson(component);
+			assertEquals(uri, ComponentGraph.describe(component),
+					ComponentGraph.describe(adapter.read(new JsonReader(new StringReader(json)))));
+		}
+	}
+
+	@Test
+	public void readsMembersBeforeType() throws IOException {
+		String typeFirst = "{\"type\":\"frame\",\"data\":\"Date\",\"components\":"
+				+ "[{\"type\":\"widget\",\"components\":[{\"type\":\"label\",\"data\":\"Today\"}]}]}";
+		String typeLast = "{\"data\":\"Date\",\"components\":"
+				+ "[{\"components\":[{\"data\":\"Today\",\"type\":\"label\"}],\"type\":\"widget\"}],\"type\":\"frame\"}";
+		assertEquals(ComponentGraph.describe(gson.fromJson(typeFirst, Component.class)),
+				ComponentGraph.describe(adapter.read(new JsonReader(new StringReader(typeLast)))));
+	}
+
+	/**
+	 * Reads a document of the demo sitemap with the tree-based deserializer.
+	 *
+	 * @param uri
+	 *            Sitemap or page URI.
+	 * @return Component read.
+	 */
+	private Component<?> readTree(String uri) {
+		try (Reader reader = open(uri)) {
+			return gson.fromJson(reader, Component.class);
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	/**
+	 * Opens a document of the demo sitemap.
+	 *
+	 * @param uri
+	 *            Sitemap or page URI.
+	 * @return Reader for the document.
+	 */
+	private static Reader open(String uri) {
+		URI parsed = URI.create(uri);
+		String path = String.format("sitemap/%s%s", parsed.getHost(), parsed.getPath().replaceAll("/$", ".json"));
+		return new InputStreamReader(Component.class.getResourceAsStream(path), StandardCharsets.UTF_8);
+	}
+}
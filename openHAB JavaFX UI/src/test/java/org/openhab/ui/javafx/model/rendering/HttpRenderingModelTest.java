@@ -0,0 +1,257 @@
+package org.openhab.ui.javafx.model.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.ui.javafx.model.Component;
+import org.openhab.ui.javafx.model.container.Container;
+import org.openhab.ui.javafx.model.container.NavigableContainer;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Checks {@link HttpRenderingModel} against a local server that stands in for
+ * the REST API of openHAB, serving the demo sitemap.
+ *
+ * @author Flavio Costa
+ */
+public class HttpRenderingModelTest {
+
+	/**
+	 * Demo sitemap and one of its pages.
+	 */
+	private static final String[] URIS = { "sitemap://demo/", "sitemap://demo/components-4/" };
+
+	/**
+	 * Path of the sitemaps resource on the server.
+	 */
+	private static final String SITEMAPS_PATH = "/rest/sitemaps/";
+
+	/**
+	 * Server standing in for openHAB.
+	 */
+	private HttpServer server;
+
+	/**
+	 * Requests received by the server.
+	 */
+	private final List<Request> requests = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Version of the documents served, used as their entity tag.
+	 */
+	private final AtomicInteger version = new AtomicInteger(1);
+
+	/**
+	 * Provider being tested.
+	 */
+	private HttpRenderingModel model;
+
+	@Before
+	public void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext(SITEMAPS_PATH, this::handle);
+		server.start();
+		model = new HttpRenderingModel(URI.create(String.format("http://%s:%d/",
+				server.getAddress().getHostString(), server.getAddress().getPort())));
+		model.setLazyThreshold(0);
+	}
+
+	@After
+	public void tearDown() {
+		server.stop(0);
+	}
+
+	@Test
+	public void retrievesSameGraphAsJson() {
+		ClasspathResourceRenderingModel json = new ClasspathResourceRenderingModel();
+		json.setLazyThreshold(0);
+		for (String uri : URIS) {
+			NavigableContainer<?, Container<?, ?>> container = model.retrieve(URI.create(uri));
+			assertNotNull(uri, container);
+			assertEquals(uri, ComponentGraph.describe(json.retrieve(URI.create(uri))),
+					ComponentGraph.describe(container));
+		}
+
+		assertEquals(URIS.length, requests.size());
+		for (Request request : requests) {
+			assertEquals("gzip", request.acceptEncoding);
+			assertEquals(200, request.status);
+		}
+	}
+
+	@Test
+	public void revalidatesWithEntityTag() {
+		URI uri = URI.create(URIS[1]);
+		NavigableContainer<?, Container<?, ?>> first = model.retrieve(uri);
+		assertNotNull(first);
+		assertNull(requests.get(0).ifNoneMatch);
+
+		// unchanged, the same instance is returned
+		assertSame(first, model.retrieve(uri));
+		assertEquals("\"1\"", requests.get(1).ifNoneMatch);
+		assertEquals(304, requests.get(1).status);
+
+		// changed, the document is read again
+		version.incrementAndGet();
+		NavigableContainer<?, Container<?, ?>> second = model.retrieve(uri);
+		assertNotNull(second);
+		assertNotSame(first, second);
+		assertEquals(200, requests.get(2).status);
+		assertEquals(ComponentGraph.describe(first), ComponentGraph.describe(second));
+	}
+
+	@Test
+	public void reusesConnection() {
+		for (String uri : URIS) {
+			assertNotNull(model.retrieve(URI.create(uri)));
+		}
+		// also after a response without body
+		assertNotNull(model.retrieve(URI.create(URIS[0])));
+		assertNotNull(model.retrieve(URI.create(URIS[1])));
+
+		assertEquals(4, requests.size());
+		for (Request request : requests) {
+			assertEquals(requests.get(0).remotePort, request.remotePort);
+		}
+	}
+
+	@Test
+	public void returnsNullWhenNotFound() {
+		assertNull(model.retrieve(URI.create("sitemap://demo/unknown/")));
+		assertEquals(404, requests.get(0).status);
+		assertNotNull(model.retrieve(URI.create(URIS[0])));
+	}
+
+	/**
+	 * Serves a document of the demo sitemap, as the REST API would.
+	 *
+	 * @param exchange
+	 *            Request and response.
+	 * @throws IOException
+	 *             If the response could not be sent.
+	 */
+	private void handle(HttpExchange exchange) throws IOException {
+		try (InputStream body = exchange.getRequestBody()) {
+			// sitemap://<id>/<page>/ is served from <id>/<page>.json
+			String path = exchange.getRequestURI().getPath().substring(SITEMAPS_PATH.length());
+			String etag = "\"" + version.get() + "\"";
+			String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+			Request request = new Request(exchange.getRequestHeaders().getFirst("If-None-Match"), acceptEncoding,
+					exchange.getRemoteAddress().getPort());
+			requests.add(request);
+
+			byte[] document = read(Component.class.getResourceAsStream("sitemap/" + path + ".json"));
+			if (document == null) {
+				request.status = 404;
+				exchange.sendResponseHeaders(request.status, -1);
+			} else if (etag.equals(request.ifNoneMatch)) {
+				request.status = 304;
+				exchange.getResponseHeaders().set("ETag", etag);
+				exchange.sendResponseHeaders(request.status, -1);
+			} else {
+				if ("gzip".equals(acceptEncoding)) {
+					ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+					try (OutputStream os = new GZIPOutputStream(compressed)) {
+						os.write(document);
+					}
+					document = compressed.toByteArray();
+					exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+				}
+				request.status = 200;
+				exchange.getResponseHeaders().set("Content-Type", "application/json");
+				exchange.getResponseHeaders().set("ETag", etag);
+				exchange.sendResponseHeaders(request.status, document.length);
+				try (OutputStream os = exchange.getResponseBody()) {
+					os.write(document);
+				}
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Reads a whole resource.
+	 *
+	 * @param is
+	 *            Stream with the resource contents, may be null.
+	 * @return Resource contents, or null if there is no stream.
+	 * @throws IOException
+	 *             If the stream could not be read.
+	 */
+	private static byte[] read(InputStream is) throws IOException {
+		if (is == null) {
+			return null;
+		}
+		try (InputStream resource = is) {
+			ByteArrayOutputStream contents = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			for (int count; (count = resource.read(buffer)) >= 0;) {
+				contents.write(buffer, 0, count);
+			}
+			return contents.toByteArray();
+		}
+	}
+
+	/**
+	 * Request received by the server.
+	 */
+	private static class Request {
+
+		/**
+		 * Entity tag the request was conditional on, if any.
+		 */
+		private final String ifNoneMatch;
+
+		/**
+		 * Encodings accepted for the response.
+		 */
+		private final String acceptEncoding;
+
+		/**
+		 * Port of the client, which only changes with a new connection.
+		 */
+		private final int remotePort;
+
+		/**
+		 * Status of the response.
+		 */
+		private volatile int status;
+
+		/**
+		 * Creates a new instance.
+		 *
+		 * @param ifNoneMatch
+		 *            Entity tag the request was conditional on, if any.
+		 * @param acceptEncoding
+		 *            Encodings accepted for the response.
+		 * @param remotePort
+		 *            Port of the client.
+		 */
+		private Request(String ifNoneMatch, String acceptEncoding, int remotePort) {
+			this.ifNoneMatch = ifNoneMatch;
+			this.acceptEncoding = acceptEncoding;
+			this.remotePort = remotePort;
+		}
+	}
+}
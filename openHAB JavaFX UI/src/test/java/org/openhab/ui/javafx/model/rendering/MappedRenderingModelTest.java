@@ -0,0 +1,99 @@
+package org.openhab.ui.javafx.model.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openhab.ui.javafx.model.Component;
+import org.openhab.ui.javafx.model.container.Container;
+import org.openhab.ui.javafx.model.container.NavigableContainer;
+
+/**
+ * Checks that sitemaps compiled by {@link BinarySitemapCompiler} are loaded by
+ * {@link MappedRenderingModel} into the same component graphs as the JSON
+ * documents they were compiled from.
+ *
+ * @author Flavio Costa
+ */
+public class MappedRenderingModelTest {
+
+	/**
+	 * Demo sitemap and one of its pages.
+	 */
+	private static final String[] URIS = { "sitemap://demo/", "sitemap://demo/components-4/" };
+
+	/**
+	 * Directory where the sitemaps are compiled.
+	 */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Loads the JSON documents the sitemaps are compiled from.
+	 */
+	private ClasspathResourceRenderingModel json;
+
+	@Before
+	public void setUp() {
+		json = new ClasspathResourceRenderingModel();
+		json.setLazyThreshold(0);
+	}
+
+	@Test
+	public void loadsSameGraphAsJson() throws IOException, URISyntaxException {
+		Path source = Paths.get(Component.class.getResource("sitemap").toURI());
+		BinarySitemapCompiler.compileAll(source, folder.getRoot().toPath());
+		assertSameGraphs(new MappedRenderingModel(folder.getRoot().toPath()));
+	}
+
+	@Test
+	public void loadsModelsCompiledFromMemory() throws IOException {
+		Map<String, Component<?>> models = new LinkedHashMap<>();
+		for (String uri : URIS) {
+			models.put(URI.create(uri).getPath(), json.retrieve(URI.create(uri)));
+		}
+		Path file = folder.getRoot().toPath().resolve("demo" + BinarySitemapFormat.FILE_EXTENSION);
+		try (OutputStream os = Files.newOutputStream(file)) {
+			BinarySitemapCompiler.compile(models, os);
+		}
+		assertSameGraphs(new MappedRenderingModel(folder.getRoot().toPath()));
+	}
+
+	@Test
+	public void returnsNullWhenNotCompiled() throws IOException, URISyntaxException {
+		Path source = Paths.get(Component.class.getResource("sitemap").toURI());
+		BinarySitemapCompiler.compileAll(source, folder.getRoot().toPath());
+		MappedRenderingModel model = new MappedRenderingModel(folder.getRoot().toPath());
+		assertNull(model.retrieve(URI.create("sitemap://demo/unknown/")));
+		assertNull(model.retrieve(URI.create("sitemap://unknown/")));
+	}
+
+	/**
+	 * Checks that a mapped model loads the same graphs as the JSON documents.
+	 *
+	 * @param model
+	 *            Mapped model.
+	 */
+	private void assertSameGraphs(MappedRenderingModel model) {
+		for (String uri : URIS) {
+			NavigableContainer<?, Container<?, ?>> container = model.retrieve(URI.create(uri));
+			assertNotNull(uri, container);
+			assertEquals(uri, ComponentGraph.describe(json.retrieve(URI.create(uri))),
+					ComponentGraph.describe(container));
+		}
+	}
+}
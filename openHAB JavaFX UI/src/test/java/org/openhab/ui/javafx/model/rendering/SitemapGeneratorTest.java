@@ -0,0 +1,75 @@
+package org.openhab.ui.javafx.model.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openhab.ui.javafx.model.ComponentType;
+import org.openhab.ui.javafx.model.container.Container;
+import org.openhab.ui.javafx.model.container.NavigableContainer;
+
+/**
+ * Checks that the sitemaps generated by {@link SitemapGenerator} are loaded
+ * with the shape requested, and generated the same way for the same seed.
+ *
+ * @author Flavio Costa
+ */
+public class SitemapGeneratorTest {
+
+	/**
+	 * Directory where the sitemaps are written.
+	 */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void loadsGeneratedSitemapAndPages() throws IOException {
+		SitemapGenerator generator = new SitemapGenerator();
+		generator.setFrames(3);
+		generator.setWidgetsPerFrame(4);
+		generator.setAtomWeight(ComponentType.GROUP, 0);
+		generator.setAtomWeight(ComponentType.SELECTION, 1);
+		generator.write(folder.getRoot().toPath());
+
+		// not watched, as no change listeners are added
+		FileSystemRenderingModel model = new FileSystemRenderingModel(folder.getRoot().toPath());
+		NavigableContainer<?, Container<?, ?>> sitemap = model.retrieve(URI.create("sitemap://generated/"));
+		assertNotNull(sitemap);
+		assertEquals(3, sitemap.getComponents().size());
+		for (Container<?, ?> frame : sitemap.getComponents()) {
+			assertEquals(4, frame.getComponents().size());
+		}
+		// no groups, so every widget has an item of its own
+		assertEquals(12, generator.getWidgetCount());
+		assertEquals(12, sitemap.getIndex().getItemNames().size());
+
+		generator.setAtomWeight(ComponentType.GROUP, 1);
+		generator.setMaxPages(2);
+		generator.write(folder.getRoot().toPath());
+		assertEquals(2, generator.getPageCount());
+		for (int page = 1; page <= 2; page++) {
+			NavigableContainer<?, Container<?, ?>> container = model
+					.retrieve(URI.create("sitemap://generated/page-" + page + "/"));
+			assertNotNull(container);
+			assertEquals(4, container.getComponents().size());
+		}
+	}
+
+	@Test
+	public void generatesSameDocumentsForSameSeed() {
+		SitemapGenerator generator = new SitemapGenerator();
+		generator.setSeed(42);
+		Map<String, String> documents = generator.generate();
+		assertEquals(documents, generator.generate());
+
+		generator.setSeed(43);
+		assertNotEquals(documents, generator.generate());
+	}
+}
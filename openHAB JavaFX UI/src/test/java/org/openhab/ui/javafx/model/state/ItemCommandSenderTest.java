@@ -0,0 +1,167 @@
+package org.openhab.ui.javafx.model.state;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Checks {@link ItemCommandSender} against a local server that stands in for
+ * the items resource of the openHAB REST API.
+ *
+ * @author Flavio Costa
+ */
+public class ItemCommandSenderTest {
+
+	/**
+	 * Time to wait for anything to happen, in seconds.
+	 */
+	private static final long TIMEOUT = 5;
+
+	/**
+	 * Path of the items resource on the server.
+	 */
+	private static final String ITEMS_PATH = "/rest/items/";
+
+	/**
+	 * Server standing in for openHAB.
+	 */
+	private HttpServer server;
+
+	/**
+	 * Requests received by the server, as &lt;method&gt; &lt;item&gt;
+	 * &lt;body&gt;.
+	 */
+	private final BlockingQueue<String> requests = new LinkedBlockingQueue<>();
+
+	/**
+	 * Status of the responses sent by the server.
+	 */
+	private volatile int status = 200;
+
+	/**
+	 * Sender being tested.
+	 */
+	private ItemCommandSender sender;
+
+	@Before
+	public void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext(ITEMS_PATH, this::handle);
+		server.start();
+		sender = new ItemCommandSender(URI.create(String.format("http://%s:%d/",
+				server.getAddress().getHostString(), server.getAddress().getPort())));
+	}
+
+	@After
+	public void tearDown() {
+		sender.close();
+		server.stop(0);
+	}
+
+	@Test
+	public void sendsLastValueOfBurst() throws InterruptedException {
+		sender.send("Dimmer", "0");
+		assertEquals("POST Dimmer 0", requests.poll(TIMEOUT, TimeUnit.SECONDS));
+
+		// dragging the slider right after the first command was sent
+		for (int value = 1; value <= 100; value++) {
+			sender.send("Dimmer", Integer.toString(value));
+		}
+		assertEquals("POST Dimmer 100", requests.poll(TIMEOUT, TimeUnit.SECONDS));
+		assertNull(requests.poll(2 * ItemCommandSender.DEFAULT_MIN_INTERVAL, TimeUnit.MILLISECONDS));
+
+		assertEquals(101, sender.getRequestedCount());
+		assertEquals(99, sender.getReplacedCount());
+		assertEquals(2, sender.getSentCount());
+	}
+
+	@Test
+	public void retriesFailedCommandThreeTimes() throws InterruptedException {
+		status = 500;
+		sender.send("Light", "ON");
+		for (int attempt = 1; attempt <= 3; attempt++) {
+			assertEquals("attempt " + attempt, "POST Light ON", requests.poll(TIMEOUT, TimeUnit.SECONDS));
+		}
+
+		// given up right after the last attempt failed
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT);
+		while (sender.getFailedCount() == 0 && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(1, sender.getFailedCount());
+		assertEquals(0, sender.getSentCount());
+		assertNull(requests.poll(0, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void requestsCurrentState() throws InterruptedException {
+		BlockingQueue<String> states = new LinkedBlockingQueue<>();
+		sender.requestState("Light", (item, state) -> states.add(item + "=" + state));
+
+		assertEquals("GET Light/state ", requests.poll(TIMEOUT, TimeUnit.SECONDS));
+		assertEquals("Light=OFF", states.poll(TIMEOUT, TimeUnit.SECONDS));
+		assertEquals(0, sender.getRequestedCount());
+	}
+
+	/**
+	 * Records a command posted to an item, or serves the state of an item, as
+	 * the REST API would. All items are OFF.
+	 *
+	 * @param exchange
+	 *            Request and response.
+	 * @throws IOException
+	 *             If the response could not be sent.
+	 */
+	private void handle(HttpExchange exchange) throws IOException {
+		try (InputStream body = exchange.getRequestBody()) {
+			String path = exchange.getRequestURI().getPath().substring(ITEMS_PATH.length());
+			requests.add(exchange.getRequestMethod() + " " + path + " " + read(body));
+
+			byte[] response = "GET".equals(exchange.getRequestMethod()) ? "OFF".getBytes(StandardCharsets.UTF_8)
+					: new byte[0];
+			exchange.getResponseHeaders().set("Content-Type", "text/plain");
+			exchange.sendResponseHeaders(status, response.length == 0 ? -1 : response.length);
+			try (OutputStream os = exchange.getResponseBody()) {
+				os.write(response);
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Reads a whole request body.
+	 *
+	 * @param is
+	 *            Stream with the request body.
+	 * @return Request body.
+	 * @throws IOException
+	 *             If the stream could not be read.
+	 */
+	private static String read(InputStream is) throws IOException {
+		ByteArrayOutputStream contents = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		for (int count; (count = is.read(buffer)) >= 0;) {
+			contents.write(buffer, 0, count);
+		}
+		return new String(contents.toByteArray(), StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,332 @@
+package org.openhab.ui.javafx.model.state;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLHandshakeException;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManagerFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks {@link ItemStateSubscriber} against a local server that stands in for
+ * the event stream of openHAB. The server works on plain sockets, so that it
+ * notices when the subscriber closes a stream without having to send anything.
+ * For https, it presents a self-signed certificate from the test resources,
+ * which the subscriber is made to trust.
+ *
+ * @author Flavio Costa
+ */
+public class ItemStateSubscriberTest {
+
+	/**
+	 * Time to wait for anything to happen, in seconds.
+	 */
+	private static final long TIMEOUT = 5;
+
+	/**
+	 * Password of the test key stores.
+	 */
+	private static final char[] STORE_PASSWORD = "changeit".toCharArray();
+
+	/**
+	 * Server standing in for openHAB.
+	 */
+	private ServerSocket server;
+
+	/**
+	 * Event streams opened by the subscriber, in order.
+	 */
+	private final BlockingQueue<ServerStream> streams = new LinkedBlockingQueue<>();
+
+	/**
+	 * Item states received by the subscriber, as &lt;item&gt;=&lt;state&gt;.
+	 */
+	private final BlockingQueue<String> states = new LinkedBlockingQueue<>();
+
+	/**
+	 * Subscriber being tested.
+	 */
+	private ItemStateSubscriber subscriber;
+
+	@Before
+	public void setUp() throws IOException {
+		listen(new ServerSocket(0, 0, InetAddress.getLoopbackAddress()), "http",
+				(SSLSocketFactory) SSLSocketFactory.getDefault());
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		subscriber.close();
+		server.close();
+		for (ServerStream stream : streams) {
+			stream.socket.close();
+		}
+	}
+
+	@Test
+	public void receivesStatesOfSubscribedItems() throws Exception {
+		subscriber.subscribe(Arrays.asList("Temperature", "Light"));
+		ServerStream stream = nextStream();
+		assertEquals("smarthome/items/Light/statechanged,smarthome/items/Temperature/statechanged", stream.topics);
+
+		stream.send(event("Light", "ON"));
+		stream.send(": keep-alive comment\n\ndata: not an event\n\n");
+		stream.send(event("Temperature", "21.3 °C"));
+		assertEquals("Light=ON", states.poll(TIMEOUT, TimeUnit.SECONDS));
+		assertEquals("Temperature=21.3 °C", states.poll(TIMEOUT, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void resubscribingClosesPreviousStream() throws Exception {
+		subscriber.subscribe(Arrays.asList("Light"));
+		ServerStream previous = nextStream();
+		subscriber.subscribe(Arrays.asList("Dimmer"));
+		ServerStream current = nextStream();
+		assertEquals("smarthome/items/Dimmer/statechanged", current.topics);
+		assertTrue("previous stream still open", previous.awaitClosed());
+
+		current.send(event("Dimmer", "55"));
+		assertEquals("Dimmer=55", states.poll(TIMEOUT, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void keepsStreamForSameItems() throws Exception {
+		subscriber.subscribe(Arrays.asList("Light", "Dimmer"));
+		ServerStream stream = nextStream();
+		subscriber.subscribe(Arrays.asList("Dimmer", "Light"));
+		assertNull(streams.poll(200, TimeUnit.MILLISECONDS));
+
+		stream.send(event("Light", "OFF"));
+		assertEquals("Light=OFF", states.poll(TIMEOUT, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void closingClosesStream() throws Exception {
+		subscriber.subscribe(Arrays.asList("Light"));
+		ServerStream stream = nextStream();
+		subscriber.close();
+		assertTrue("stream still open", stream.awaitClosed());
+		subscriber.subscribe(Arrays.asList("Dimmer"));
+		assertNull(streams.poll(200, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void receivesStatesOverTls() throws Exception {
+		secure("loopback.p12");
+		subscriber.subscribe(Arrays.asList("Light"));
+		ServerStream stream = nextStream();
+		assertEquals("smarthome/items/Light/statechanged", stream.topics);
+
+		stream.send(event("Light", "ON"));
+		assertEquals("Light=ON", states.poll(TIMEOUT, TimeUnit.SECONDS));
+	}
+
+	@Test(expected = SSLHandshakeException.class)
+	public void rejectsCertificateOfAnotherHost() throws Exception {
+		// trusted, but issued for openhab.example.org rather than 127.0.0.1
+		SSLSocketFactory factory = secure("other-host.p12");
+		new EventStream(URI.create(String.format("https://%s:%d/rest/events?topics=",
+				server.getInetAddress().getHostAddress(), server.getLocalPort())), 1000, 1000, factory).close();
+	}
+
+	/**
+	 * Starts accepting connections and creates the subscriber for them.
+	 *
+	 * @param serverSocket
+	 *            Socket bound to the loopback address.
+	 * @param scheme
+	 *            Scheme of the server URI, http or https.
+	 * @param sslSocketFactory
+	 *            Creates the TLS layer of the subscriber.
+	 */
+	private void listen(ServerSocket serverSocket, String scheme, SSLSocketFactory sslSocketFactory) {
+		server = serverSocket;
+		Thread acceptor = new Thread(this::accept, "event-server");
+		acceptor.setDaemon(true);
+		acceptor.start();
+		subscriber = new ItemStateSubscriber(URI.create(String.format("%s://%s:%d", scheme,
+				server.getInetAddress().getHostAddress(), server.getLocalPort())),
+				(item, state) -> states.add(item + "=" + state), sslSocketFactory);
+	}
+
+	/**
+	 * Replaces the plain server with one presenting a certificate, which the new
+	 * subscriber trusts.
+	 *
+	 * @param keyStore
+	 *            Test resource with the certificate and its key.
+	 * @return Creates the TLS layer trusting the certificate.
+	 * @throws IOException
+	 *             If the key store could not be read.
+	 * @throws GeneralSecurityException
+	 *             If the key store is not valid.
+	 */
+	private SSLSocketFactory secure(String keyStore) throws IOException, GeneralSecurityException {
+		tearDown();
+		KeyStore store = KeyStore.getInstance("PKCS12");
+		try (InputStream is = getClass().getResourceAsStream(keyStore)) {
+			store.load(is, STORE_PASSWORD);
+		}
+		KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+		keyManagers.init(store, STORE_PASSWORD);
+		TrustManagerFactory trustManagers = TrustManagerFactory
+				.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+		trustManagers.init(store);
+		SSLContext context = SSLContext.getInstance("TLS");
+		context.init(keyManagers.getKeyManagers(), trustManagers.getTrustManagers(), null);
+
+		listen(context.getServerSocketFactory().createServerSocket(0, 0, InetAddress.getLoopbackAddress()), "https",
+				context.getSocketFactory());
+		return context.getSocketFactory();
+	}
+
+	/**
+	 * Waits for the subscriber to open an event stream.
+	 *
+	 * @return Stream opened.
+	 * @throws InterruptedException
+	 *             If interrupted while waiting.
+	 */
+	private ServerStream nextStream() throws InterruptedException {
+		ServerStream stream = streams.poll(TIMEOUT, TimeUnit.SECONDS);
+		assertNotNull("no stream opened", stream);
+		return stream;
+	}
+
+	/**
+	 * Formats an item state event as sent by openHAB.
+	 *
+	 * @param item
+	 *            Item name.
+	 * @param state
+	 *            New item state.
+	 * @return Event in the stream format.
+	 */
+	private static String event(String item, String state) {
+		return String.format("event: message\ndata: {\"topic\":\"smarthome/items/%s/statechanged\","
+				+ "\"payload\":\"{\\\"type\\\":\\\"String\\\",\\\"value\\\":\\\"%s\\\","
+				+ "\\\"oldType\\\":\\\"String\\\",\\\"oldValue\\\":\\\"\\\"}\","
+				+ "\"type\":\"ItemStateChangedEvent\"}\n\n", item, state);
+	}
+
+	/**
+	 * Accepts connections until the server is closed, answering each request
+	 * with an event stream that is kept open for the test to send events.
+	 */
+	private void accept() {
+		while (!server.isClosed()) {
+			try {
+				Socket socket = server.accept();
+				BufferedReader reader = new BufferedReader(
+						new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+				// GET /rest/events?topics=<topics> HTTP/1.1
+				String target = reader.readLine().split(" ")[1];
+				while (!reader.readLine().isEmpty()) {
+					// headers not used
+				}
+
+				OutputStream os = socket.getOutputStream();
+				os.write(("HTTP/1.1 200 OK\r\nContent-Type: text/event-stream\r\n"
+						+ "Transfer-Encoding: chunked\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+				os.flush();
+				streams.add(new ServerStream(
+						URLDecoder.decode(target.substring(target.indexOf("topics=") + 7), "UTF-8"), socket));
+			} catch (IOException e) {
+				// server closed, or TLS handshake failed
+			}
+		}
+	}
+
+	/**
+	 * Event stream on the server side.
+	 */
+	private static class ServerStream {
+
+		/**
+		 * Topics subscribed to.
+		 */
+		private final String topics;
+
+		/**
+		 * Connection to the subscriber.
+		 */
+		private final Socket socket;
+
+		/**
+		 * Creates a new instance.
+		 *
+		 * @param topics
+		 *            Topics subscribed to.
+		 * @param socket
+		 *            Connection to the subscriber, after the response header.
+		 */
+		private ServerStream(String topics, Socket socket) {
+			this.topics = topics;
+			this.socket = socket;
+		}
+
+		/**
+		 * Sends data to the subscriber, as a single chunk.
+		 *
+		 * @param data
+		 *            Data in the stream format.
+		 * @throws IOException
+		 *             If the stream was closed.
+		 */
+		private void send(String data) throws IOException {
+			byte[] chunk = data.getBytes(StandardCharsets.UTF_8);
+			OutputStream os = socket.getOutputStream();
+			os.write(String.format("%x\r\n", chunk.length).getBytes(StandardCharsets.US_ASCII));
+			os.write(chunk);
+			os.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+			os.flush();
+		}
+
+		/**
+		 * Waits for the subscriber to close the stream, without sending anything
+		 * that could wake it up.
+		 *
+		 * @return True if the stream was closed.
+		 * @throws IOException
+		 *             If the socket could not be configured.
+		 */
+		private boolean awaitClosed() throws IOException {
+			socket.setSoTimeout((int) TimeUnit.SECONDS.toMillis(TIMEOUT));
+			try {
+				return socket.getInputStream().read() < 0;
+			} catch (SocketTimeoutException e) {
+				return false;
+			} catch (IOException e) {
+				// reset by the subscriber
+				return true;
+			}
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package org.openhab.ui.javafx.model.state;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Checks how {@link PendingStateTracker} reconciles the states sent with the
+ * updates from the server, and rolls them back, with a clock of its own.
+ *
+ * @author Flavio Costa
+ */
+public class PendingStateTrackerTest {
+
+	/**
+	 * Time to wait for a confirmation, in milliseconds.
+	 */
+	private static final long TIMEOUT = 100;
+
+	/**
+	 * Current time of the tracker, in nanoseconds.
+	 */
+	private long now;
+
+	/**
+	 * Items passed on to be reloaded.
+	 */
+	private final List<String> reloaded = new ArrayList<>();
+
+	/**
+	 * Tracker being tested.
+	 */
+	private final PendingStateTracker tracker = new PendingStateTracker(TIMEOUT, () -> now);
+
+	@Test
+	public void confirmsSameStateWrittenDifferently() {
+		tracker.begin("Dimmer", "50", "10");
+		tracker.begin("Light", "ON", "OFF");
+		StatePatch result = tracker.reconcile(new StatePatch().put("Dimmer", "50.0").put("Light", "ON"));
+
+		assertEquals("50.0", result.getStates().get("Dimmer"));
+		assertEquals("ON", result.getStates().get("Light"));
+		assertTrue(tracker.getPendingItems().isEmpty());
+		assertEquals(2, tracker.getConfirmedCount());
+		assertEquals(-1, tracker.getNextExpiry());
+	}
+
+	@Test
+	public void holdsBackIntermediateUpdates() {
+		tracker.begin("Dimmer", "80", "10");
+		StatePatch result = tracker.reconcile(new StatePatch().put("Dimmer", "40").put("Light", "ON"));
+
+		// the slider does not jump back, other items are not affected
+		assertEquals(Collections.singletonMap("Light", "ON"), result.getStates());
+		assertEquals(Collections.singleton("Dimmer"), tracker.getPendingItems());
+
+		// but the held back update is the one restored
+		advance(TIMEOUT);
+		assertEquals(Collections.singletonMap("Dimmer", "40"), tracker.expire(reloaded::add).getStates());
+		assertEquals(1, tracker.getRolledBackCount());
+	}
+
+	@Test
+	public void keepsStateFromBeforeFirstChange() {
+		tracker.begin("Dimmer", "20", "10");
+		advance(TIMEOUT / 2);
+		tracker.begin("Dimmer", "30", "20");
+
+		// the timeout starts again with each change
+		advance(TIMEOUT / 2);
+		assertTrue(tracker.expire(reloaded::add).isEmpty());
+		advance(TIMEOUT / 2);
+		assertEquals(Collections.singletonMap("Dimmer", "10"), tracker.expire(reloaded::add).getStates());
+		assertEquals(1, tracker.getPendingCount());
+	}
+
+	@Test
+	public void expiresInOrderOfLastChange() {
+		tracker.begin("First", "ON", "OFF");
+		advance(10);
+		tracker.begin("Second", "ON", "OFF");
+		advance(10);
+		tracker.begin("Third", "ON", "OFF");
+		advance(10);
+		// changed again, so now the last to expire
+		tracker.begin("First", "OFF", "OFF");
+
+		advance(TIMEOUT - 20);
+		assertEquals(Arrays.asList("Second"),
+				new ArrayList<>(tracker.expire(reloaded::add).getStates().keySet()));
+		assertEquals(10, tracker.getNextExpiry());
+		advance(TIMEOUT);
+		assertEquals(Arrays.asList("Third", "First"),
+				new ArrayList<>(tracker.expire(reloaded::add).getStates().keySet()));
+		assertTrue(reloaded.isEmpty());
+	}
+
+	@Test
+	public void reloadsItemsWithoutPreviousState() {
+		tracker.begin("Light", "ON", null);
+		tracker.begin("Dimmer", "50", "10");
+
+		advance(TIMEOUT);
+		assertEquals(Collections.singletonMap("Dimmer", "10"), tracker.expire(reloaded::add).getStates());
+		assertEquals(Arrays.asList("Light"), reloaded);
+		assertTrue(tracker.getPendingItems().isEmpty());
+	}
+
+	/**
+	 * Moves the clock of the tracker forward.
+	 *
+	 * @param millis
+	 *            Time elapsed, in milliseconds.
+	 */
+	private void advance(long millis) {
+		now += TimeUnit.MILLISECONDS.toNanos(millis);
+	}
+}
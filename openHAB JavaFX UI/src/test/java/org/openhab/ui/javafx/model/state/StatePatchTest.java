@@ -0,0 +1,101 @@
+package org.openhab.ui.javafx.model.state;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.ui.javafx.model.atom.Atom;
+import org.openhab.ui.javafx.model.atom.MappingsAtom;
+import org.openhab.ui.javafx.model.container.Container;
+import org.openhab.ui.javafx.model.container.NavigableContainer;
+import org.openhab.ui.javafx.model.container.Widget;
+import org.openhab.ui.javafx.model.rendering.ClasspathResourceRenderingModel;
+
+/**
+ * Checks that the states in a {@link StatePatch} only reach the atoms bound to
+ * them, in the form each atom displays.
+ *
+ * @author Flavio Costa
+ */
+public class StatePatchTest {
+
+	/**
+	 * Loads the demo sitemap.
+	 */
+	private ClasspathResourceRenderingModel json;
+
+	@Before
+	public void setUp() {
+		json = new ClasspathResourceRenderingModel();
+		json.setLazyThreshold(0);
+	}
+
+	@Test
+	public void formatsTextWithItsPattern() {
+		NavigableContainer<?, Container<?, ?>> sitemap = json.retrieve(URI.create("sitemap://demo/"));
+		new StatePatch().put("Temperature_Livingroom", "22").applyTo(sitemap);
+
+		List<Atom<?>> atoms = widget(sitemap, "Temperature_Livingroom").getComponents();
+		assertEquals(URI.create("icon:temperature#22"), atoms.get(0).getData());
+		assertEquals("Livingroom", atoms.get(1).getData());
+		assertEquals(String.format("%.1f °C", new BigDecimal("22")), atoms.get(2).getData());
+	}
+
+	@Test
+	public void switchesOnAndOffWithNumericStates() {
+		NavigableContainer<?, Container<?, ?>> sitemap = json.retrieve(URI.create("sitemap://demo/"));
+		Widget widget = widget(sitemap, "Light_Livingroom");
+
+		new StatePatch().put("Light_Livingroom", "0").applyTo(sitemap);
+		assertEquals("OFF", selected(widget.getComponents().get(2)));
+		new StatePatch().put("Light_Livingroom", "55").applyTo(sitemap);
+		assertEquals("ON", selected(widget.getComponents().get(2)));
+		assertEquals("Lights", widget.getComponents().get(1).getData());
+
+		// states that cannot be displayed leave the switch as it was
+		new StatePatch().put("Light_Livingroom", "UNDEF").applyTo(sitemap);
+		assertEquals("ON", selected(widget.getComponents().get(2)));
+	}
+
+	@Test
+	public void selectsOnlyMappedStates() {
+		NavigableContainer<?, Container<?, ?>> page = json.retrieve(URI.create("sitemap://demo/components-4/"));
+		Widget widget = widget(page, "TV_Channel");
+
+		// the icon reflects any state, the selection only its mappings
+		new StatePatch().put("TV_Channel", "7").applyTo(page);
+		assertEquals(URI.create("icon:screen#7"), widget.getComponents().get(0).getData());
+		assertEquals("1", selected(widget.getComponents().get(2)));
+		assertEquals(0, new StatePatch().put("/0/2", "UNDEF").applyTo(page).size());
+		assertEquals(1, new StatePatch().put("TV_Channel", "2").applyTo(page).size());
+		assertEquals("2", selected(widget.getComponents().get(2)));
+	}
+
+	/**
+	 * Finds the widget representing an item.
+	 *
+	 * @param container
+	 *            Navigable container with the widget.
+	 * @param item
+	 *            Item name.
+	 * @return First widget representing the item.
+	 */
+	private static Widget widget(NavigableContainer<?, Container<?, ?>> container, String item) {
+		return container.getIndex().getWidgets(item).get(0);
+	}
+
+	/**
+	 * Returns the key selected in a mappings atom.
+	 *
+	 * @param atom
+	 *            Mappings atom.
+	 * @return Selected key.
+	 */
+	private static String selected(Atom<?> atom) {
+		return ((MappingsAtom) atom).getData().getSelected();
+	}
+}